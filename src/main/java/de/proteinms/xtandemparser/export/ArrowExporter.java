@@ -0,0 +1,279 @@
+package de.proteinms.xtandemparser.export;
+
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class exports the results of an X!Tandem file as tables in the Arrow
+ * IPC streaming format, to be read by any Arrow implementation, e.g., pandas,
+ * polars or Spark. Each table is written as a stream of its own: the spectra,
+ * the domains (the peptide to spectrum matches), the modifications of the
+ * domains and the proteins hit by the peptides. The rows are read straight
+ * from the columns of the result store and written in record batches of
+ * {@link #getBatchSize()} rows, so no objects are built per row.
+ * <p>
+ * Missing values are written as nulls. The domains, modifications and
+ * proteins carry the spectrum number, and the modifications the index of
+ * their domain, so the tables can be joined.
+ */
+public class ArrowExporter {
+
+    /**
+     * The default number of rows of a record batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 65536;
+    /**
+     * The result store to export.
+     */
+    private XTandemResultStore iResultStore;
+    /**
+     * The number of rows of a record batch.
+     */
+    private int iBatchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Creates an exporter of a parsed X!Tandem file.
+     *
+     * @param aXTandemFile the X!Tandem file
+     */
+    public ArrowExporter(XTandemFile aXTandemFile) {
+        this(aXTandemFile.getXTandemParser().getResultStore());
+    }
+
+    /**
+     * Creates an exporter of a result store.
+     *
+     * @param aResultStore the result store
+     */
+    public ArrowExporter(XTandemResultStore aResultStore) {
+        iResultStore = aResultStore;
+    }
+
+    /**
+     * Returns the number of rows of a record batch.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return iBatchSize;
+    }
+
+    /**
+     * Sets the number of rows of a record batch. Larger batches are read
+     * faster, smaller batches need less memory when written and read.
+     *
+     * @param aBatchSize the batch size
+     */
+    public void setBatchSize(int aBatchSize) {
+        if (aBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + aBatchSize);
+        }
+        iBatchSize = aBatchSize;
+    }
+
+    /**
+     * Exports the spectra, one row per spectrum.
+     *
+     * @param aOutput the output, not closed
+     * @return the number of rows written
+     * @exception IOException if the table could not be written
+     */
+    public long exportSpectra(OutputStream aOutput) throws IOException {
+        ArrowStreamWriter writer = new ArrowStreamWriter(aOutput,
+                new String[]{"spectrum_number", "spectrum_id", "precursor_charge", "expect", "precursor_mh",
+                    "retention_time", "label", "summed_intensity", "max_intensity", "intensity_multiplier"},
+                new int[]{ArrowStreamWriter.INT32, ArrowStreamWriter.INT32, ArrowStreamWriter.INT32,
+                    ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64, ArrowStreamWriter.UTF8,
+                    ArrowStreamWriter.UTF8, ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64,
+                    ArrowStreamWriter.FLOAT64},
+                iBatchSize);
+        for (int spectrum = 0; spectrum < iResultStore.getNumberOfSpectra(); spectrum++) {
+            writer.addInt(iResultStore.getSpectrumNumber(spectrum));
+            addInt(writer, iResultStore.getSpectrumId(spectrum));
+            addInt(writer, iResultStore.getPrecursorCharge(spectrum));
+            addDouble(writer, iResultStore.getSpectrumExpect(spectrum));
+            addDouble(writer, iResultStore.getPrecursorMh(spectrum));
+            addString(writer, iResultStore.getRetentionTime(spectrum));
+            writer.addString(iResultStore.getSpectrumLabel(spectrum));
+            addDouble(writer, iResultStore.getSummedIntensity(spectrum));
+            addDouble(writer, iResultStore.getMaxIntensity(spectrum));
+            addDouble(writer, iResultStore.getIntensityMultiplier(spectrum));
+        }
+        writer.finish();
+        return writer.getRowCount();
+    }
+
+    /**
+     * Exports the domains, i.e., the peptide to spectrum matches, one row
+     * per domain.
+     *
+     * @param aOutput the output, not closed
+     * @return the number of rows written
+     * @exception IOException if the table could not be written
+     */
+    public long exportDomains(OutputStream aOutput) throws IOException {
+        ArrowStreamWriter writer = new ArrowStreamWriter(aOutput,
+                new String[]{"spectrum_number", "domain_index", "domain_id", "protein_key", "start", "end",
+                    "expect", "mh", "delta", "hyperscore", "nextscore", "b_score", "b_ions", "y_score", "y_ions",
+                    "up_flank", "sequence", "down_flank", "missed_cleavages"},
+                new int[]{ArrowStreamWriter.INT32, ArrowStreamWriter.INT32, ArrowStreamWriter.UTF8,
+                    ArrowStreamWriter.UTF8, ArrowStreamWriter.INT32, ArrowStreamWriter.INT32,
+                    ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64,
+                    ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64,
+                    ArrowStreamWriter.INT32, ArrowStreamWriter.FLOAT64, ArrowStreamWriter.INT32,
+                    ArrowStreamWriter.UTF8, ArrowStreamWriter.UTF8, ArrowStreamWriter.UTF8,
+                    ArrowStreamWriter.INT32},
+                iBatchSize);
+        for (int spectrum = 0; spectrum < iResultStore.getNumberOfSpectra(); spectrum++) {
+            int spectrumNumber = iResultStore.getSpectrumNumber(spectrum);
+            int firstPeptide = iResultStore.getFirstPeptide(spectrum);
+            for (int peptide = firstPeptide; peptide < firstPeptide + iResultStore.getPeptideCount(spectrum); peptide++) {
+                int firstDomain = iResultStore.getFirstDomain(peptide);
+                for (int domain = firstDomain; domain < firstDomain + iResultStore.getDomainCount(peptide); domain++) {
+                    writer.addInt(spectrumNumber);
+                    writer.addInt(domain);
+                    writer.addString(iResultStore.getDomainId(domain));
+                    writer.addString(iResultStore.getProteinKey(peptide));
+                    addInt(writer, iResultStore.getDomainStart(domain));
+                    addInt(writer, iResultStore.getDomainEnd(domain));
+                    addDouble(writer, iResultStore.getDomainExpect(domain));
+                    addDouble(writer, iResultStore.getDomainMh(domain));
+                    addDouble(writer, iResultStore.getDomainDelta(domain));
+                    addDouble(writer, iResultStore.getDomainHyperScore(domain));
+                    addDouble(writer, iResultStore.getDomainNextScore(domain));
+                    addDouble(writer, iResultStore.getDomainBScore(domain));
+                    addInt(writer, iResultStore.getDomainBIons(domain));
+                    addDouble(writer, iResultStore.getDomainYScore(domain));
+                    addInt(writer, iResultStore.getDomainYIons(domain));
+                    writer.addString(iResultStore.getUpFlankSequence(domain));
+                    writer.addString(iResultStore.getDomainSequence(domain));
+                    writer.addString(iResultStore.getDownFlankSequence(domain));
+                    addInt(writer, iResultStore.getMissedCleavages(domain));
+                }
+            }
+        }
+        writer.finish();
+        return writer.getRowCount();
+    }
+
+    /**
+     * Exports the modifications of the domains, one row per modification.
+     *
+     * @param aOutput the output, not closed
+     * @return the number of rows written
+     * @exception IOException if the table could not be written
+     */
+    public long exportModifications(OutputStream aOutput) throws IOException {
+        ArrowStreamWriter writer = new ArrowStreamWriter(aOutput,
+                new String[]{"spectrum_number", "domain_index", "position", "mass", "residue", "substitution"},
+                new int[]{ArrowStreamWriter.INT32, ArrowStreamWriter.INT32, ArrowStreamWriter.INT32,
+                    ArrowStreamWriter.FLOAT64, ArrowStreamWriter.UTF8, ArrowStreamWriter.UTF8},
+                iBatchSize);
+        for (int spectrum = 0; spectrum < iResultStore.getNumberOfSpectra(); spectrum++) {
+            int spectrumNumber = iResultStore.getSpectrumNumber(spectrum);
+            int firstPeptide = iResultStore.getFirstPeptide(spectrum);
+            for (int peptide = firstPeptide; peptide < firstPeptide + iResultStore.getPeptideCount(spectrum); peptide++) {
+                int firstDomain = iResultStore.getFirstDomain(peptide);
+                for (int domain = firstDomain; domain < firstDomain + iResultStore.getDomainCount(peptide); domain++) {
+                    int firstModification = iResultStore.getFirstModification(domain);
+                    for (int modification = firstModification;
+                            modification < firstModification + iResultStore.getModificationCount(domain); modification++) {
+                        writer.addInt(spectrumNumber);
+                        writer.addInt(domain);
+                        addInt(writer, iResultStore.getModificationPosition(modification));
+                        addDouble(writer, iResultStore.getModificationMass(modification));
+                        writer.addString(iResultStore.getModifiedResidue(modification));
+                        writer.addString(iResultStore.getSubstitutedAminoAcid(modification));
+                    }
+                }
+            }
+        }
+        writer.finish();
+        return writer.getRowCount();
+    }
+
+    /**
+     * Exports the proteins hit by the peptides, one row per peptide.
+     *
+     * @param aOutput the output, not closed
+     * @return the number of rows written
+     * @exception IOException if the table could not be written
+     */
+    public long exportProteins(OutputStream aOutput) throws IOException {
+        ArrowStreamWriter writer = new ArrowStreamWriter(aOutput,
+                new String[]{"spectrum_number", "protein_id", "protein_key", "uid", "expect", "summed_intensity",
+                    "description", "fasta_file", "peptide_start", "peptide_end"},
+                new int[]{ArrowStreamWriter.INT32, ArrowStreamWriter.UTF8, ArrowStreamWriter.UTF8,
+                    ArrowStreamWriter.INT32, ArrowStreamWriter.FLOAT64, ArrowStreamWriter.FLOAT64,
+                    ArrowStreamWriter.UTF8, ArrowStreamWriter.UTF8, ArrowStreamWriter.INT32,
+                    ArrowStreamWriter.INT32},
+                iBatchSize);
+        for (int spectrum = 0; spectrum < iResultStore.getNumberOfSpectra(); spectrum++) {
+            int spectrumNumber = iResultStore.getSpectrumNumber(spectrum);
+            int firstPeptide = iResultStore.getFirstPeptide(spectrum);
+            for (int peptide = firstPeptide; peptide < firstPeptide + iResultStore.getPeptideCount(spectrum); peptide++) {
+                writer.addInt(spectrumNumber);
+                writer.addString(iResultStore.getProteinId(peptide));
+                writer.addString(iResultStore.getProteinKey(peptide));
+                addInt(writer, iResultStore.getProteinUid(peptide));
+                addDouble(writer, iResultStore.getProteinExpect(peptide));
+                addDouble(writer, iResultStore.getProteinSummedIntensity(peptide));
+                writer.addString(iResultStore.getProteinDescription(peptide));
+                writer.addString(iResultStore.getFastaFilePath(peptide));
+                addInt(writer, iResultStore.getPeptideStart(peptide));
+                addInt(writer, iResultStore.getPeptideEnd(peptide));
+            }
+        }
+        writer.finish();
+        return writer.getRowCount();
+    }
+
+    /**
+     * Adds an int value, a missing value as null.
+     *
+     * @param aWriter the writer
+     * @param aValue the value, XTandemResultStore.NO_VALUE if missing
+     * @exception IOException if a full batch could not be written
+     */
+    private static void addInt(ArrowStreamWriter aWriter, int aValue) throws IOException {
+        if (aValue == XTandemResultStore.NO_VALUE) {
+            aWriter.addNull();
+        } else {
+            aWriter.addInt(aValue);
+        }
+    }
+
+    /**
+     * Adds a double value, a missing value as null.
+     *
+     * @param aWriter the writer
+     * @param aValue the value, NaN if missing
+     * @exception IOException if a full batch could not be written
+     */
+    private static void addDouble(ArrowStreamWriter aWriter, double aValue) throws IOException {
+        if (Double.isNaN(aValue)) {
+            aWriter.addNull();
+        } else {
+            aWriter.addDouble(aValue);
+        }
+    }
+
+    /**
+     * Adds a string value, a missing or empty value as null. X!Tandem writes
+     * an empty rt attribute if the retention time is not known.
+     *
+     * @param aWriter the writer
+     * @param aValue the value, null or empty if missing
+     * @exception IOException if a full batch could not be written
+     */
+    private static void addString(ArrowStreamWriter aWriter, String aValue) throws IOException {
+        if (aValue == null || aValue.length() == 0) {
+            aWriter.addNull();
+        } else {
+            aWriter.addString(aValue);
+        }
+    }
+}
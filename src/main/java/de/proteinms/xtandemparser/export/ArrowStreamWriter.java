@@ -0,0 +1,497 @@
+package de.proteinms.xtandemparser.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * This class writes a table in the Arrow IPC streaming format: the schema
+ * message, one record batch message for every batch of rows and the end of
+ * stream marker. The rows are added value by value, column after column,
+ * and a record batch is written whenever a batch is full. The columns are
+ * nullable 32 or 64 bit signed integers, doubles or UTF-8 strings.
+ * <p>
+ * Only the parts of the format needed for flat tables are written, version
+ * V5 of the metadata, little endian and without compression or
+ * dictionaries, so any Arrow implementation can read the stream.
+ */
+class ArrowStreamWriter {
+
+    /**
+     * A column of 32 bit signed integers.
+     */
+    static final int INT32 = 0;
+    /**
+     * A column of 64 bit signed integers.
+     */
+    static final int INT64 = 1;
+    /**
+     * A column of doubles.
+     */
+    static final int FLOAT64 = 2;
+    /**
+     * A column of UTF-8 strings.
+     */
+    static final int UTF8 = 3;
+    /**
+     * The metadata version V5.
+     */
+    private static final int METADATA_VERSION = 4;
+    /**
+     * The message header type of a schema.
+     */
+    private static final int HEADER_SCHEMA = 1;
+    /**
+     * The message header type of a record batch.
+     */
+    private static final int HEADER_RECORD_BATCH = 3;
+    /**
+     * The field type of integers.
+     */
+    private static final int TYPE_INT = 2;
+    /**
+     * The field type of floating point numbers.
+     */
+    private static final int TYPE_FLOATING_POINT = 3;
+    /**
+     * The field type of UTF-8 strings.
+     */
+    private static final int TYPE_UTF8 = 5;
+    /**
+     * The floating point precision of doubles.
+     */
+    private static final int PRECISION_DOUBLE = 2;
+    /**
+     * The marker starting every message.
+     */
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    /**
+     * The charset of the strings.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * The output.
+     */
+    private OutputStream iOutput;
+    /**
+     * The names of the columns.
+     */
+    private String[] iNames;
+    /**
+     * The types of the columns.
+     */
+    private int[] iTypes;
+    /**
+     * The number of rows of a batch.
+     */
+    private int iBatchSize;
+    /**
+     * The validity bits of the columns, a set bit marks a value.
+     */
+    private byte[][] iValidity;
+    /**
+     * The number of nulls of the columns in the batch.
+     */
+    private int[] iNullCounts;
+    /**
+     * The values of the int columns.
+     */
+    private int[][] iInts;
+    /**
+     * The values of the long columns.
+     */
+    private long[][] iLongs;
+    /**
+     * The values of the double columns.
+     */
+    private double[][] iDoubles;
+    /**
+     * The end offsets of the strings of the string columns.
+     */
+    private int[][] iStringOffsets;
+    /**
+     * The bytes of the strings of the string columns.
+     */
+    private byte[][] iStringBytes;
+    /**
+     * The number of complete rows in the batch.
+     */
+    private int iRowCount = 0;
+    /**
+     * The column of the next value.
+     */
+    private int iColumn = 0;
+    /**
+     * The number of rows written, including the current batch.
+     */
+    private long iTotalRowCount = 0;
+
+    /**
+     * Creates a writer and writes the schema.
+     *
+     * @param aOutput the output, not closed by the writer
+     * @param aNames the names of the columns
+     * @param aTypes the types of the columns, e.g., {@link #INT32}
+     * @param aBatchSize the number of rows of a record batch
+     * @exception IOException if the schema could not be written
+     */
+    ArrowStreamWriter(OutputStream aOutput, String[] aNames, int[] aTypes, int aBatchSize) throws IOException {
+        if (aBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + aBatchSize);
+        }
+        iOutput = aOutput;
+        iNames = aNames;
+        iTypes = aTypes;
+        iBatchSize = aBatchSize;
+        int columns = aNames.length;
+        iValidity = new byte[columns][];
+        iNullCounts = new int[columns];
+        iInts = new int[columns][];
+        iLongs = new long[columns][];
+        iDoubles = new double[columns][];
+        iStringOffsets = new int[columns][];
+        iStringBytes = new byte[columns][];
+        for (int column = 0; column < columns; column++) {
+            iValidity[column] = new byte[(aBatchSize + 7) / 8];
+            switch (aTypes[column]) {
+                case INT32:
+                    iInts[column] = new int[aBatchSize];
+                    break;
+                case INT64:
+                    iLongs[column] = new long[aBatchSize];
+                    break;
+                case FLOAT64:
+                    iDoubles[column] = new double[aBatchSize];
+                    break;
+                case UTF8:
+                    iStringOffsets[column] = new int[aBatchSize + 1];
+                    iStringBytes[column] = new byte[Math.max(64, aBatchSize * 8)];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown column type " + aTypes[column]);
+            }
+        }
+        writeMessage(writeSchema(), null);
+    }
+
+    /**
+     * Adds the value of an int column.
+     *
+     * @param aValue the value
+     * @exception IOException if a full batch could not be written
+     */
+    void addInt(int aValue) throws IOException {
+        iInts[checkColumn(INT32)][iRowCount] = aValue;
+        valueAdded(true);
+    }
+
+    /**
+     * Adds the value of a long column.
+     *
+     * @param aValue the value
+     * @exception IOException if a full batch could not be written
+     */
+    void addLong(long aValue) throws IOException {
+        iLongs[checkColumn(INT64)][iRowCount] = aValue;
+        valueAdded(true);
+    }
+
+    /**
+     * Adds the value of a double column.
+     *
+     * @param aValue the value
+     * @exception IOException if a full batch could not be written
+     */
+    void addDouble(double aValue) throws IOException {
+        iDoubles[checkColumn(FLOAT64)][iRowCount] = aValue;
+        valueAdded(true);
+    }
+
+    /**
+     * Adds the value of a string column.
+     *
+     * @param aValue the value, null for a null
+     * @exception IOException if a full batch could not be written
+     */
+    void addString(String aValue) throws IOException {
+        if (aValue == null) {
+            addNull();
+            return;
+        }
+        int column = checkColumn(UTF8);
+        byte[] bytes = aValue.getBytes(UTF_8);
+        int start = iStringOffsets[column][iRowCount];
+        if (start + bytes.length > iStringBytes[column].length) {
+            iStringBytes[column] = Arrays.copyOf(iStringBytes[column], Math.max(iStringBytes[column].length * 2, start + bytes.length));
+        }
+        System.arraycopy(bytes, 0, iStringBytes[column], start, bytes.length);
+        iStringOffsets[column][iRowCount + 1] = start + bytes.length;
+        valueAdded(true);
+    }
+
+    /**
+     * Adds a null to the current column.
+     *
+     * @exception IOException if a full batch could not be written
+     */
+    void addNull() throws IOException {
+        if (iTypes[iColumn] == UTF8) {
+            iStringOffsets[iColumn][iRowCount + 1] = iStringOffsets[iColumn][iRowCount];
+        }
+        iNullCounts[iColumn]++;
+        valueAdded(false);
+    }
+
+    /**
+     * Returns the number of rows added.
+     *
+     * @return the number of rows
+     */
+    long getRowCount() {
+        return iTotalRowCount;
+    }
+
+    /**
+     * Writes the last batch and the end of stream marker.
+     *
+     * @exception IOException if the stream could not be written
+     */
+    void finish() throws IOException {
+        if (iColumn != 0) {
+            throw new IllegalStateException("The last row is incomplete");
+        }
+        if (iRowCount > 0) {
+            writeBatch();
+        }
+        writeInt(CONTINUATION);
+        writeInt(0);
+        iOutput.flush();
+    }
+
+    /**
+     * Checks the type of the current column.
+     *
+     * @param aType the type of the value added
+     * @return the current column
+     */
+    private int checkColumn(int aType) {
+        if (iTypes[iColumn] != aType) {
+            throw new IllegalArgumentException("Column " + iNames[iColumn] + " has another type");
+        }
+        return iColumn;
+    }
+
+    /**
+     * Marks the value of the current column and moves to the next column,
+     * writing the batch once full.
+     *
+     * @param aValid false for a null
+     * @exception IOException if a full batch could not be written
+     */
+    private void valueAdded(boolean aValid) throws IOException {
+        if (aValid) {
+            iValidity[iColumn][iRowCount >> 3] |= 1 << (iRowCount & 7);
+        } else {
+            iValidity[iColumn][iRowCount >> 3] &= ~(1 << (iRowCount & 7));
+        }
+        iColumn++;
+        if (iColumn == iTypes.length) {
+            iColumn = 0;
+            iRowCount++;
+            iTotalRowCount++;
+            if (iRowCount == iBatchSize) {
+                writeBatch();
+            }
+        }
+    }
+
+    /**
+     * Writes the rows of the batch as a record batch and empties the batch.
+     *
+     * @exception IOException if the batch could not be written
+     */
+    private void writeBatch() throws IOException {
+        int columns = iTypes.length;
+        // the validity, the values and for strings the data of every column
+        ByteBuffer[] buffers = new ByteBuffer[columns * 3];
+        long[] nodes = new long[columns * 2];
+        int bufferCount = 0;
+        for (int column = 0; column < columns; column++) {
+            nodes[column * 2] = iRowCount;
+            nodes[column * 2 + 1] = iNullCounts[column];
+            buffers[bufferCount++] = iNullCounts[column] > 0
+                    ? ByteBuffer.wrap(iValidity[column], 0, (iRowCount + 7) / 8)
+                    : ByteBuffer.allocate(0);
+            ByteBuffer values;
+            switch (iTypes[column]) {
+                case INT32:
+                    values = ByteBuffer.allocate(iRowCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+                    values.asIntBuffer().put(iInts[column], 0, iRowCount);
+                    buffers[bufferCount++] = values;
+                    break;
+                case INT64:
+                    values = ByteBuffer.allocate(iRowCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+                    values.asLongBuffer().put(iLongs[column], 0, iRowCount);
+                    buffers[bufferCount++] = values;
+                    break;
+                case FLOAT64:
+                    values = ByteBuffer.allocate(iRowCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+                    values.asDoubleBuffer().put(iDoubles[column], 0, iRowCount);
+                    buffers[bufferCount++] = values;
+                    break;
+                default:
+                    values = ByteBuffer.allocate((iRowCount + 1) * 4).order(ByteOrder.LITTLE_ENDIAN);
+                    values.asIntBuffer().put(iStringOffsets[column], 0, iRowCount + 1);
+                    buffers[bufferCount++] = values;
+                    buffers[bufferCount++] = ByteBuffer.wrap(iStringBytes[column], 0, iStringOffsets[column][iRowCount]);
+                    break;
+            }
+        }
+        buffers = Arrays.copyOf(buffers, bufferCount);
+
+        // the buffers are 8 byte aligned in the body
+        long[] bufferLocations = new long[bufferCount * 2];
+        long offset = 0;
+        for (int i = 0; i < bufferCount; i++) {
+            bufferLocations[i * 2] = offset;
+            bufferLocations[i * 2 + 1] = buffers[i].remaining();
+            offset += pad(buffers[i].remaining());
+        }
+
+        writeMessage(writeRecordBatch(nodes, bufferLocations), buffers);
+
+        Arrays.fill(iNullCounts, 0);
+        for (int column = 0; column < columns; column++) {
+            Arrays.fill(iValidity[column], (byte) 0);
+        }
+        iRowCount = 0;
+    }
+
+    /**
+     * Writes the flatbuffer of a schema.
+     *
+     * @param aWriter the writer of the message
+     * @return the position of the schema table
+     */
+    private int writeSchemaTable(FlatBufferWriter aWriter) {
+        FlatBufferWriter.Table schema = new FlatBufferWriter.Table().addShort(0, 0).addOffset(1);
+        int schemaPosition = aWriter.writeTable(schema);
+        int fields = aWriter.writeOffsetVector(iNames.length);
+        aWriter.setOffset(schema.getSlot(1), fields);
+
+        for (int column = 0; column < iNames.length; column++) {
+            int type = iTypes[column] == FLOAT64 ? TYPE_FLOATING_POINT : iTypes[column] == UTF8 ? TYPE_UTF8 : TYPE_INT;
+            FlatBufferWriter.Table field = new FlatBufferWriter.Table().addOffset(0).addByte(1, 1).addByte(2, type).addOffset(3).addOffset(5);
+            aWriter.setOffset(FlatBufferWriter.getVectorSlot(fields, column), aWriter.writeTable(field));
+            aWriter.setOffset(field.getSlot(0), aWriter.writeString(iNames[column]));
+
+            FlatBufferWriter.Table fieldType = new FlatBufferWriter.Table();
+            if (type == TYPE_INT) {
+                fieldType.addInt(0, iTypes[column] == INT64 ? 64 : 32).addByte(1, 1);
+            } else if (type == TYPE_FLOATING_POINT) {
+                fieldType.addShort(0, PRECISION_DOUBLE);
+            }
+            aWriter.setOffset(field.getSlot(3), aWriter.writeTable(fieldType));
+            aWriter.setOffset(field.getSlot(5), aWriter.writeOffsetVector(0));
+        }
+        return schemaPosition;
+    }
+
+    /**
+     * Writes the flatbuffer message of the schema.
+     *
+     * @return the flatbuffer
+     */
+    private byte[] writeSchema() {
+        FlatBufferWriter writer = new FlatBufferWriter();
+        FlatBufferWriter.Table message = new FlatBufferWriter.Table()
+                .addShort(0, METADATA_VERSION).addByte(1, HEADER_SCHEMA).addOffset(2).addLong(3, 0);
+        int root = writer.writeTable(message);
+        writer.setOffset(message.getSlot(2), writeSchemaTable(writer));
+        return writer.finish(root);
+    }
+
+    /**
+     * Writes the flatbuffer message of a record batch.
+     *
+     * @param aNodes the length and null count of every column
+     * @param aBuffers the offset and length of every buffer in the body
+     * @return the flatbuffer
+     */
+    private byte[] writeRecordBatch(long[] aNodes, long[] aBuffers) {
+        long bodyLength = 0;
+        for (int i = 0; i < aBuffers.length; i += 2) {
+            bodyLength = aBuffers[i] + pad(aBuffers[i + 1]);
+        }
+        FlatBufferWriter writer = new FlatBufferWriter();
+        FlatBufferWriter.Table message = new FlatBufferWriter.Table()
+                .addShort(0, METADATA_VERSION).addByte(1, HEADER_RECORD_BATCH).addOffset(2).addLong(3, bodyLength);
+        int root = writer.writeTable(message);
+        FlatBufferWriter.Table recordBatch = new FlatBufferWriter.Table().addLong(0, iRowCount).addOffset(1).addOffset(2);
+        writer.setOffset(message.getSlot(2), writer.writeTable(recordBatch));
+        writer.setOffset(recordBatch.getSlot(1), writer.writeLongStructVector(aNodes, 2));
+        writer.setOffset(recordBatch.getSlot(2), writer.writeLongStructVector(aBuffers, 2));
+        return writer.finish(root);
+    }
+
+    /**
+     * Writes an encapsulated message: the continuation marker, the size of
+     * the metadata padded to 8 bytes, the metadata and the body.
+     *
+     * @param aMetadata the flatbuffer of the message
+     * @param aBody the buffers of the body, null if none
+     * @exception IOException if the message could not be written
+     */
+    private void writeMessage(byte[] aMetadata, ByteBuffer[] aBody) throws IOException {
+        int metadataLength = (int) pad(8 + aMetadata.length) - 8;
+        writeInt(CONTINUATION);
+        writeInt(metadataLength);
+        iOutput.write(aMetadata);
+        writePadding(metadataLength - aMetadata.length);
+        if (aBody != null) {
+            for (ByteBuffer buffer : aBody) {
+                int length = buffer.remaining();
+                iOutput.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                writePadding((int) (pad(length) - length));
+            }
+        }
+    }
+
+    /**
+     * Writes a little endian int.
+     *
+     * @param aValue the value
+     * @exception IOException if the value could not be written
+     */
+    private void writeInt(int aValue) throws IOException {
+        iOutput.write(aValue);
+        iOutput.write(aValue >>> 8);
+        iOutput.write(aValue >>> 16);
+        iOutput.write(aValue >>> 24);
+    }
+
+    /**
+     * Writes zero bytes.
+     *
+     * @param aLength the number of bytes
+     * @exception IOException if the bytes could not be written
+     */
+    private void writePadding(int aLength) throws IOException {
+        for (int i = 0; i < aLength; i++) {
+            iOutput.write(0);
+        }
+    }
+
+    /**
+     * Rounds a length up to a multiple of 8 bytes.
+     *
+     * @param aLength the length
+     * @return the padded length
+     */
+    private static long pad(long aLength) {
+        return (aLength + 7) & ~7L;
+    }
+}
@@ -0,0 +1,334 @@
+package de.proteinms.xtandemparser.export;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * This class writes the small flatbuffers of the Arrow IPC metadata. The
+ * buffer is written front to back: the root offset, then every table
+ * followed by its strings, vectors and child tables. A table records the
+ * positions of its offset fields, which are set once the referenced object
+ * is written behind it, so all offsets point forward as flatbuffers require.
+ * Every value is aligned to its size, relative to the start of the buffer.
+ */
+final class FlatBufferWriter {
+
+    /**
+     * The charset of the strings.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * The buffer, little endian like all flatbuffers.
+     */
+    private ByteBuffer iBuffer = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Creates a writer, the root offset is set by {@link #finish(int)}.
+     */
+    FlatBufferWriter() {
+        iBuffer.putInt(0);
+    }
+
+    /**
+     * Writes a table.
+     *
+     * @param aTable the fields of the table
+     * @return the position of the table
+     */
+    int writeTable(Table aTable) {
+        int fieldCount = 0;
+        boolean hasLongs = false;
+        for (int i = 0; i < aTable.iCount; i++) {
+            fieldCount = Math.max(fieldCount, aTable.iIds[i] + 1);
+            hasLongs |= aTable.iSizes[i] == 8;
+        }
+
+        // The fields follow the vtable offset, the largest ones first
+        int[] fieldOffsets = new int[aTable.iCount];
+        int tableSize = hasLongs ? 8 : 4;
+        for (int size = 8; size >= 1; size /= 2) {
+            for (int i = 0; i < aTable.iCount; i++) {
+                if (aTable.iSizes[i] == size) {
+                    fieldOffsets[i] = tableSize;
+                    tableSize += size;
+                }
+            }
+        }
+
+        align(2, 0);
+        int vtable = iBuffer.position();
+        ensureCapacity(4 + 2 * fieldCount + 8 + tableSize);
+        iBuffer.putShort((short) (4 + 2 * fieldCount));
+        iBuffer.putShort((short) tableSize);
+        short[] vtableOffsets = new short[fieldCount];
+        for (int i = 0; i < aTable.iCount; i++) {
+            vtableOffsets[aTable.iIds[i]] = (short) fieldOffsets[i];
+        }
+        for (short offset : vtableOffsets) {
+            iBuffer.putShort(offset);
+        }
+
+        align(hasLongs ? 8 : 4, 0);
+        int table = iBuffer.position();
+        iBuffer.putInt(table - vtable);
+        for (int i = 0; i < aTable.iCount; i++) {
+            int position = table + fieldOffsets[i];
+            switch (aTable.iSizes[i]) {
+                case 1:
+                    iBuffer.put(position, (byte) aTable.iValues[i]);
+                    break;
+                case 2:
+                    iBuffer.putShort(position, (short) aTable.iValues[i]);
+                    break;
+                case 4:
+                    iBuffer.putInt(position, (int) aTable.iValues[i]);
+                    break;
+                default:
+                    iBuffer.putLong(position, aTable.iValues[i]);
+                    break;
+            }
+            if (aTable.iOffsets[i]) {
+                aTable.iSlots[aTable.iIds[i]] = position;
+            }
+        }
+        iBuffer.position(table + tableSize);
+        return table;
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param aString the string
+     * @return the position of the string
+     */
+    int writeString(String aString) {
+        byte[] bytes = aString.getBytes(UTF_8);
+        align(4, 0);
+        ensureCapacity(4 + bytes.length + 1);
+        int position = iBuffer.position();
+        iBuffer.putInt(bytes.length);
+        iBuffer.put(bytes);
+        iBuffer.put((byte) 0);
+        return position;
+    }
+
+    /**
+     * Writes a vector of offsets, the offsets are set with
+     * {@link #setOffset(int, int)} on the slots returned by
+     * {@link #getVectorSlot(int, int)}.
+     *
+     * @param aLength the number of offsets
+     * @return the position of the vector
+     */
+    int writeOffsetVector(int aLength) {
+        align(4, 0);
+        ensureCapacity(4 + 4 * aLength);
+        int position = iBuffer.position();
+        iBuffer.putInt(aLength);
+        for (int i = 0; i < aLength; i++) {
+            iBuffer.putInt(0);
+        }
+        return position;
+    }
+
+    /**
+     * Returns the slot of an element of a vector of offsets.
+     *
+     * @param aVector the position of the vector
+     * @param aIndex the index of the element
+     * @return the position of the slot
+     */
+    static int getVectorSlot(int aVector, int aIndex) {
+        return aVector + 4 + 4 * aIndex;
+    }
+
+    /**
+     * Writes a vector of structs made of longs, e.g., the field nodes and
+     * buffers of a record batch.
+     *
+     * @param aValues the longs of all structs
+     * @param aLongsPerStruct the number of longs of a struct
+     * @return the position of the vector
+     */
+    int writeLongStructVector(long[] aValues, int aLongsPerStruct) {
+        // the length is followed by the 8 byte aligned structs
+        align(8, 4);
+        ensureCapacity(4 + 8 * aValues.length);
+        int position = iBuffer.position();
+        iBuffer.putInt(aValues.length / aLongsPerStruct);
+        for (long value : aValues) {
+            iBuffer.putLong(value);
+        }
+        return position;
+    }
+
+    /**
+     * Sets an offset field or vector element to a position written after it.
+     *
+     * @param aSlot the position of the offset
+     * @param aTarget the position of the referenced object
+     */
+    void setOffset(int aSlot, int aTarget) {
+        iBuffer.putInt(aSlot, aTarget - aSlot);
+    }
+
+    /**
+     * Sets the root table and returns the buffer.
+     *
+     * @param aRootTable the position of the root table
+     * @return the flatbuffer
+     */
+    byte[] finish(int aRootTable) {
+        setOffset(0, aRootTable);
+        return Arrays.copyOf(iBuffer.array(), iBuffer.position());
+    }
+
+    /**
+     * Pads the buffer with zeros until the position has the given remainder.
+     *
+     * @param aAlignment the alignment
+     * @param aRemainder the remainder of the position
+     */
+    private void align(int aAlignment, int aRemainder) {
+        ensureCapacity(aAlignment);
+        while (iBuffer.position() % aAlignment != aRemainder) {
+            iBuffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Ensures the buffer can take the given number of bytes more.
+     *
+     * @param aBytes the number of bytes
+     */
+    private void ensureCapacity(int aBytes) {
+        if (iBuffer.remaining() < aBytes) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(iBuffer.capacity() * 2, iBuffer.position() + aBytes));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(iBuffer.array(), 0, iBuffer.position());
+            iBuffer = buffer;
+        }
+    }
+
+    /**
+     * The fields of a table to write. Offset fields are set after the table
+     * was written, see {@link #getSlot(int)}.
+     */
+    static final class Table {
+
+        /**
+         * The number of fields.
+         */
+        private int iCount = 0;
+        /**
+         * The ids of the fields.
+         */
+        private int[] iIds = new int[8];
+        /**
+         * The sizes of the fields in bytes.
+         */
+        private int[] iSizes = new int[8];
+        /**
+         * The values of the fields.
+         */
+        private long[] iValues = new long[8];
+        /**
+         * True for the offset fields.
+         */
+        private boolean[] iOffsets = new boolean[8];
+        /**
+         * The positions of the offset fields by id, once written.
+         */
+        private int[] iSlots = new int[16];
+
+        /**
+         * Adds a field.
+         *
+         * @param aId the id of the field
+         * @param aSize the size of the field
+         * @param aValue the value of the field
+         * @param aOffset true for an offset field
+         * @return this table
+         */
+        private Table add(int aId, int aSize, long aValue, boolean aOffset) {
+            if (iCount == iIds.length) {
+                iIds = Arrays.copyOf(iIds, iCount * 2);
+                iSizes = Arrays.copyOf(iSizes, iCount * 2);
+                iValues = Arrays.copyOf(iValues, iCount * 2);
+                iOffsets = Arrays.copyOf(iOffsets, iCount * 2);
+            }
+            iIds[iCount] = aId;
+            iSizes[iCount] = aSize;
+            iValues[iCount] = aValue;
+            iOffsets[iCount] = aOffset;
+            iCount++;
+            return this;
+        }
+
+        /**
+         * Adds a byte or bool field, e.g., the type of a union.
+         *
+         * @param aId the id of the field
+         * @param aValue the value
+         * @return this table
+         */
+        Table addByte(int aId, int aValue) {
+            return add(aId, 1, aValue, false);
+        }
+
+        /**
+         * Adds a short field, e.g., an enum.
+         *
+         * @param aId the id of the field
+         * @param aValue the value
+         * @return this table
+         */
+        Table addShort(int aId, int aValue) {
+            return add(aId, 2, aValue, false);
+        }
+
+        /**
+         * Adds an int field.
+         *
+         * @param aId the id of the field
+         * @param aValue the value
+         * @return this table
+         */
+        Table addInt(int aId, int aValue) {
+            return add(aId, 4, aValue, false);
+        }
+
+        /**
+         * Adds a long field.
+         *
+         * @param aId the id of the field
+         * @param aValue the value
+         * @return this table
+         */
+        Table addLong(int aId, long aValue) {
+            return add(aId, 8, aValue, false);
+        }
+
+        /**
+         * Adds an offset field, set once the referenced object is written.
+         *
+         * @param aId the id of the field
+         * @return this table
+         */
+        Table addOffset(int aId) {
+            return add(aId, 4, 0, true);
+        }
+
+        /**
+         * Returns the position of an offset field of the written table.
+         *
+         * @param aId the id of the field
+         * @return the position of the offset
+         */
+        int getSlot(int aId) {
+            return iSlots[aId];
+        }
+    }
+}
@@ -0,0 +1,1039 @@
+package de.proteinms.xtandemparser.export;
+
+import de.proteinms.xtandemparser.interfaces.Modification;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.Domain;
+import de.proteinms.xtandemparser.xtandem.InputParams;
+import de.proteinms.xtandemparser.xtandem.PerformParams;
+import de.proteinms.xtandemparser.xtandem.Peptide;
+import de.proteinms.xtandemparser.xtandem.Spectrum;
+import de.proteinms.xtandemparser.xtandem.StreamingXTandemFile;
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.XTandemHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.xml.sax.SAXException;
+
+/**
+ * This class converts an X!Tandem file to mzIdentML without loading the file.
+ * The file is parsed spectrum by spectrum with a {@link StreamingXTandemFile},
+ * and the spectrum identification result of every spectrum is written to a
+ * temporary file as soon as its model group is parsed. The peptides, the
+ * protein sequences and the peptide evidences are collected in dictionaries
+ * holding every distinct entry once. As mzIdentML puts the sequence
+ * collection before the results, the document is written once the file is
+ * parsed: the sequence collection from the dictionaries, the protocol from
+ * the parameters and the results copied from the temporary file. The memory
+ * needed depends on the number of distinct peptides and proteins, not on the
+ * number of peptide to spectrum matches.
+ * <p>
+ * The domains of a spectrum with the same sequence and modifications are
+ * written as one spectrum identification item referencing the evidence of
+ * every protein, ranked by their expectation value. The modifications are
+ * written as unknown modifications with their mass, as X!Tandem only reports
+ * the masses.
+ */
+public class MzIdentMLWriter {
+
+    /**
+     * The mzIdentML version 1.1.0.
+     */
+    public static final String VERSION_1_1 = "1.1.0";
+    /**
+     * The mzIdentML version 1.2.0.
+     */
+    public static final String VERSION_1_2 = "1.2.0";
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON_MASS = 1.007276;
+    /**
+     * The sections of the X!Tandem file needed, the fragment ion spectra
+     * group is parsed for the spectrum titles only.
+     */
+    private static final EnumSet<XTandemSection> SECTIONS = EnumSet.of(XTandemSection.SPECTRA, XTandemSection.PEPTIDES,
+            XTandemSection.DOMAINS, XTandemSection.MODIFICATIONS, XTandemSection.PARAMETERS);
+    /**
+     * The X!Tandem file.
+     */
+    private StreamingXTandemFile iXTandemFile;
+    /**
+     * The mzIdentML version written.
+     */
+    private String iVersion = VERSION_1_1;
+    /**
+     * The directory of the temporary file, null for the default directory.
+     */
+    private File iTemporaryDirectory = null;
+
+    /**
+     * Creates a writer converting an X!Tandem file.
+     *
+     * @param aXTandemFile the X!Tandem file
+     */
+    public MzIdentMLWriter(String aXTandemFile) {
+        iXTandemFile = new StreamingXTandemFile(aXTandemFile, SECTIONS);
+    }
+
+    /**
+     * Sets the mzIdentML version written, {@link #VERSION_1_1} by default.
+     *
+     * @param aVersion the version, {@link #VERSION_1_1} or
+     * {@link #VERSION_1_2}
+     */
+    public void setVersion(String aVersion) {
+        if (!VERSION_1_1.equals(aVersion) && !VERSION_1_2.equals(aVersion)) {
+            throw new IllegalArgumentException("Unsupported mzIdentML version: " + aVersion);
+        }
+        iVersion = aVersion;
+    }
+
+    /**
+     * Sets the directory of the temporary file holding the results until the
+     * sequence collection is written.
+     *
+     * @param aTemporaryDirectory the directory, null for the default
+     * temporary directory
+     */
+    public void setTemporaryDirectory(File aTemporaryDirectory) {
+        iTemporaryDirectory = aTemporaryDirectory;
+    }
+
+    /**
+     * Converts the X!Tandem file to an mzIdentML file.
+     *
+     * @param aPath the path of the mzIdentML file
+     * @return the number of spectrum identification results written
+     * @exception IOException if a file could not be read or written
+     * @exception SAXException if the X!Tandem file could not be parsed
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public int write(String aPath) throws IOException, SAXException, ParserConfigurationException {
+        OutputStream output = new FileOutputStream(aPath);
+        try {
+            return write(output);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Converts the X!Tandem file to mzIdentML.
+     *
+     * @param aOutput the output, not closed
+     * @return the number of spectrum identification results written
+     * @exception IOException if the X!Tandem file could not be read or the
+     * output could not be written
+     * @exception SAXException if the X!Tandem file could not be parsed
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public int write(OutputStream aOutput) throws IOException, SAXException, ParserConfigurationException {
+        XMLOutputFactory factory = XMLOutputFactory.newInstance();
+        File resultFile = File.createTempFile("xtandem", ".mzid", iTemporaryDirectory);
+        try {
+            ResultHandler handler;
+            OutputStream resultOutput = new BufferedOutputStream(new FileOutputStream(resultFile), 1 << 16);
+            try {
+                handler = new ResultHandler(factory.createXMLStreamWriter(resultOutput, "UTF-8"));
+                try {
+                    iXTandemFile.process(handler);
+                } catch (WriteException e) {
+                    throw e.getIOException();
+                }
+            } catch (XMLStreamException e) {
+                throw new IOException("Error writing the mzIdentML results: " + e.getMessage(), e);
+            } finally {
+                resultOutput.close();
+            }
+
+            OutputStream output = new BufferedOutputStream(aOutput, 1 << 16);
+            try {
+                writeDocument(factory.createXMLStreamWriter(output, "UTF-8"), output, handler, resultFile);
+            } catch (XMLStreamException e) {
+                throw new IOException("Error writing the mzIdentML file: " + e.getMessage(), e);
+            }
+            output.flush();
+            return handler.iResultCount;
+        } finally {
+            resultFile.delete();
+        }
+    }
+
+    /**
+     * Writes the mzIdentML document.
+     *
+     * @param aWriter the writer
+     * @param aOutput the output of the writer, for the results copied
+     * @param aHandler the handler holding the dictionaries and parameters
+     * @param aResultFile the file holding the results
+     * @exception XMLStreamException if the document could not be written
+     * @exception IOException if the results could not be copied
+     */
+    private void writeDocument(XMLStreamWriter aWriter, OutputStream aOutput, ResultHandler aHandler, File aResultFile)
+            throws XMLStreamException, IOException {
+        aWriter.writeStartDocument("UTF-8", "1.0");
+        aWriter.writeStartElement("MzIdentML");
+        aWriter.writeDefaultNamespace(VERSION_1_2.equals(iVersion)
+                ? "http://psidev.info/psi/pi/mzIdentML/1.2" : "http://psidev.info/psi/pi/mzIdentML/1.1");
+        aWriter.writeAttribute("id", iXTandemFile.getFileName());
+        aWriter.writeAttribute("version", iVersion);
+        aWriter.writeAttribute("creationDate", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+
+        aWriter.writeStartElement("cvList");
+        writeCv(aWriter, "PSI-MS", "Proteomics Standards Initiative Mass Spectrometry Vocabularies",
+                "https://raw.githubusercontent.com/HUPO-PSI/psi-ms-CV/master/psi-ms.obo");
+        writeCv(aWriter, "UO", "Unit Ontology", "http://ontologies.berkeleybop.org/uo.obo");
+        aWriter.writeEndElement();
+
+        aWriter.writeStartElement("AnalysisSoftwareList");
+        aWriter.writeStartElement("AnalysisSoftware");
+        aWriter.writeAttribute("id", "AS_XTandem");
+        aWriter.writeAttribute("name", "X!Tandem");
+        if (aHandler.iPerformParams != null && aHandler.iPerformParams.getProcVersion() != null) {
+            aWriter.writeAttribute("version", aHandler.iPerformParams.getProcVersion());
+        }
+        aWriter.writeStartElement("SoftwareName");
+        writeCvParam(aWriter, "MS:1001476", "X!Tandem", null);
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+
+        writeSequenceCollection(aWriter, aHandler);
+
+        aWriter.writeStartElement("AnalysisCollection");
+        aWriter.writeStartElement("SpectrumIdentification");
+        aWriter.writeAttribute("id", "SI_1");
+        aWriter.writeAttribute("spectrumIdentificationProtocol_ref", "SIP_1");
+        aWriter.writeAttribute("spectrumIdentificationList_ref", "SIL_1");
+        aWriter.writeEmptyElement("InputSpectra");
+        aWriter.writeAttribute("spectraData_ref", "SD_1");
+        for (String database : aHandler.iDatabases.values()) {
+            aWriter.writeEmptyElement("SearchDatabaseRef");
+            aWriter.writeAttribute("searchDatabase_ref", database);
+        }
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+
+        writeProtocol(aWriter, aHandler.iInputParams);
+
+        aWriter.writeStartElement("DataCollection");
+        aWriter.writeStartElement("Inputs");
+        for (String path : aHandler.iDatabases.keySet()) {
+            aWriter.writeStartElement("SearchDatabase");
+            aWriter.writeAttribute("id", aHandler.iDatabases.get(path));
+            aWriter.writeAttribute("location", path);
+            aWriter.writeStartElement("DatabaseName");
+            writeUserParam(aWriter, new File(path).getName());
+            aWriter.writeEndElement();
+            aWriter.writeEndElement();
+        }
+        aWriter.writeStartElement("SpectraData");
+        aWriter.writeAttribute("id", "SD_1");
+        String spectrumPath = aHandler.iInputParams != null ? aHandler.iInputParams.getSpectrumPath() : null;
+        aWriter.writeAttribute("location", spectrumPath != null ? spectrumPath : "unknown");
+        aWriter.writeStartElement("SpectrumIDFormat");
+        writeCvParam(aWriter, "MS:1000774", "multiple peak list nativeID format", null);
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+
+        aWriter.writeStartElement("AnalysisData");
+        aWriter.writeStartElement("SpectrumIdentificationList");
+        aWriter.writeAttribute("id", "SIL_1");
+        // Close the start tag and copy the results behind it
+        aWriter.writeCharacters("");
+        aWriter.flush();
+        InputStream results = new FileInputStream(aResultFile);
+        try {
+            byte[] buffer = new byte[1 << 16];
+            int length;
+            while ((length = results.read(buffer)) > 0) {
+                aOutput.write(buffer, 0, length);
+            }
+        } finally {
+            results.close();
+        }
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+
+        aWriter.writeEndElement();
+        aWriter.writeEndDocument();
+        aWriter.flush();
+    }
+
+    /**
+     * Writes the sequence collection from the dictionaries.
+     *
+     * @param aWriter the writer
+     * @param aHandler the handler holding the dictionaries
+     * @exception XMLStreamException if the sequence collection could not be
+     * written
+     */
+    private static void writeSequenceCollection(XMLStreamWriter aWriter, ResultHandler aHandler) throws XMLStreamException {
+        aWriter.writeStartElement("SequenceCollection");
+
+        for (ProteinEntry protein : aHandler.iProteins.values()) {
+            aWriter.writeStartElement("DBSequence");
+            aWriter.writeAttribute("id", protein.iId);
+            aWriter.writeAttribute("accession", protein.iAccession);
+            aWriter.writeAttribute("searchDatabase_ref", protein.iDatabase);
+            writeCvParam(aWriter, "MS:1001088", "protein description", protein.iLabel);
+            aWriter.writeEndElement();
+        }
+
+        for (PeptideEntry peptide : aHandler.iPeptides.values()) {
+            aWriter.writeStartElement("Peptide");
+            aWriter.writeAttribute("id", peptide.iId);
+            aWriter.writeStartElement("PeptideSequence");
+            aWriter.writeCharacters(peptide.iSequence);
+            aWriter.writeEndElement();
+            for (int i = 0; i < peptide.iLocations.length; i++) {
+                if (peptide.iSubstitutions[i] == null) {
+                    aWriter.writeStartElement("Modification");
+                    aWriter.writeAttribute("location", String.valueOf(peptide.iLocations[i]));
+                    aWriter.writeAttribute("monoisotopicMassDelta", String.valueOf(peptide.iMasses[i]));
+                    aWriter.writeAttribute("residues", peptide.iResidues[i]);
+                    writeCvParam(aWriter, "MS:1001460", "unknown modification", null);
+                    aWriter.writeEndElement();
+                }
+            }
+            for (int i = 0; i < peptide.iLocations.length; i++) {
+                if (peptide.iSubstitutions[i] != null) {
+                    aWriter.writeEmptyElement("SubstitutionModification");
+                    aWriter.writeAttribute("originalResidue", peptide.iResidues[i]);
+                    aWriter.writeAttribute("replacementResidue", peptide.iSubstitutions[i]);
+                    aWriter.writeAttribute("location", String.valueOf(peptide.iLocations[i]));
+                    aWriter.writeAttribute("monoisotopicMassDelta", String.valueOf(peptide.iMasses[i]));
+                }
+            }
+            aWriter.writeEndElement();
+        }
+
+        for (EvidenceEntry evidence : aHandler.iEvidences.values()) {
+            aWriter.writeEmptyElement("PeptideEvidence");
+            aWriter.writeAttribute("id", evidence.iId);
+            aWriter.writeAttribute("peptide_ref", evidence.iPeptide);
+            aWriter.writeAttribute("dBSequence_ref", evidence.iProtein);
+            aWriter.writeAttribute("start", String.valueOf(evidence.iStart));
+            aWriter.writeAttribute("end", String.valueOf(evidence.iEnd));
+            aWriter.writeAttribute("pre", evidence.iPre);
+            aWriter.writeAttribute("post", evidence.iPost);
+            aWriter.writeAttribute("isDecoy", "false");
+        }
+
+        aWriter.writeEndElement();
+    }
+
+    /**
+     * Writes the spectrum identification protocol from the input parameters.
+     *
+     * @param aWriter the writer
+     * @param aInputParams the input parameters, may be null
+     * @exception XMLStreamException if the protocol could not be written
+     */
+    private static void writeProtocol(XMLStreamWriter aWriter, InputParams aInputParams) throws XMLStreamException {
+        aWriter.writeStartElement("AnalysisProtocolCollection");
+        aWriter.writeStartElement("SpectrumIdentificationProtocol");
+        aWriter.writeAttribute("id", "SIP_1");
+        aWriter.writeAttribute("analysisSoftware_ref", "AS_XTandem");
+        aWriter.writeStartElement("SearchType");
+        writeCvParam(aWriter, "MS:1001083", "ms-ms search", null);
+        aWriter.writeEndElement();
+
+        if (aInputParams != null) {
+            List<String> fixedModifications = splitModifications(aInputParams.getResidueModMass());
+            List<String> variableModifications = splitModifications(aInputParams.getResiduePotModMass());
+            if (!fixedModifications.isEmpty() || !variableModifications.isEmpty()) {
+                aWriter.writeStartElement("ModificationParams");
+                writeSearchModifications(aWriter, fixedModifications, true);
+                writeSearchModifications(aWriter, variableModifications, false);
+                aWriter.writeEndElement();
+            }
+
+            String cleavageSite = aInputParams.getProteinCleavageSite();
+            if (cleavageSite != null && cleavageSite.indexOf('|') > 0) {
+                aWriter.writeStartElement("Enzymes");
+                aWriter.writeStartElement("Enzyme");
+                aWriter.writeAttribute("id", "Enz_1");
+                aWriter.writeAttribute("missedCleavages", String.valueOf(aInputParams.getScoringMissCleavageSites()));
+                aWriter.writeAttribute("semiSpecific", "false");
+                aWriter.writeStartElement("SiteRegexp");
+                aWriter.writeCharacters(toSiteRegexp(cleavageSite));
+                aWriter.writeEndElement();
+                if (cleavageSite.equals("[RK]|{P}")) {
+                    aWriter.writeStartElement("EnzymeName");
+                    writeCvParam(aWriter, "MS:1001251", "Trypsin", null);
+                    aWriter.writeEndElement();
+                }
+                aWriter.writeEndElement();
+                aWriter.writeEndElement();
+            }
+
+            if (aInputParams.getSpectrumMonoIsoMassErrorUnits() != null) {
+                aWriter.writeStartElement("FragmentTolerance");
+                writeTolerance(aWriter, aInputParams.getSpectrumMonoIsoMassError(), aInputParams.getSpectrumMonoIsoMassError(),
+                        aInputParams.getSpectrumMonoIsoMassErrorUnits());
+                aWriter.writeEndElement();
+            }
+            if (aInputParams.getSpectrumParentMonoIsoMassErrorUnits() != null) {
+                aWriter.writeStartElement("ParentTolerance");
+                writeTolerance(aWriter, aInputParams.getSpectrumParentMonoIsoMassErrorPlus(),
+                        aInputParams.getSpectrumParentMonoIsoMassErrorMinus(), aInputParams.getSpectrumParentMonoIsoMassErrorUnits());
+                aWriter.writeEndElement();
+            }
+        }
+
+        aWriter.writeStartElement("Threshold");
+        if (aInputParams != null && aInputParams.getMaxValidExpectValue() > 0) {
+            writeCvParam(aWriter, "MS:1001330", "X!Tandem:expect", String.valueOf(aInputParams.getMaxValidExpectValue()));
+        } else {
+            writeCvParam(aWriter, "MS:1001494", "no threshold", null);
+        }
+        aWriter.writeEndElement();
+
+        aWriter.writeEndElement();
+        aWriter.writeEndElement();
+    }
+
+    /**
+     * Writes the search modifications of the parameters.
+     *
+     * @param aWriter the writer
+     * @param aModifications the modifications, mass@residue
+     * @param aFixed true for fixed modifications
+     * @exception XMLStreamException if the modifications could not be written
+     */
+    private static void writeSearchModifications(XMLStreamWriter aWriter, List<String> aModifications, boolean aFixed)
+            throws XMLStreamException {
+        for (String modification : aModifications) {
+            int at = modification.indexOf('@');
+            if (at <= 0 || at == modification.length() - 1) {
+                continue;
+            }
+            char residue = modification.charAt(at + 1);
+            aWriter.writeStartElement("SearchModification");
+            aWriter.writeAttribute("fixedMod", String.valueOf(aFixed));
+            aWriter.writeAttribute("massDelta", modification.substring(0, at).trim());
+            aWriter.writeAttribute("residues", Character.isLetter(residue) ? String.valueOf(residue) : ".");
+            if (residue == '[' || residue == ']') {
+                aWriter.writeStartElement("SpecificityRules");
+                if (residue == '[') {
+                    writeCvParam(aWriter, "MS:1001189", "modification specificity peptide N-term", null);
+                } else {
+                    writeCvParam(aWriter, "MS:1001190", "modification specificity peptide C-term", null);
+                }
+                aWriter.writeEndElement();
+            }
+            writeCvParam(aWriter, "MS:1001460", "unknown modification", null);
+            aWriter.writeEndElement();
+        }
+    }
+
+    /**
+     * Writes the plus and minus values of a tolerance.
+     *
+     * @param aWriter the writer
+     * @param aPlus the plus value
+     * @param aMinus the minus value
+     * @param aUnits the X!Tandem units, ppm or Daltons
+     * @exception XMLStreamException if the tolerance could not be written
+     */
+    private static void writeTolerance(XMLStreamWriter aWriter, double aPlus, double aMinus, String aUnits) throws XMLStreamException {
+        boolean ppm = aUnits.trim().equalsIgnoreCase("ppm");
+        for (int i = 0; i < 2; i++) {
+            aWriter.writeEmptyElement("cvParam");
+            aWriter.writeAttribute("cvRef", "PSI-MS");
+            aWriter.writeAttribute("accession", i == 0 ? "MS:1001412" : "MS:1001413");
+            aWriter.writeAttribute("name", i == 0 ? "search tolerance plus value" : "search tolerance minus value");
+            aWriter.writeAttribute("value", String.valueOf(i == 0 ? aPlus : aMinus));
+            aWriter.writeAttribute("unitCvRef", "UO");
+            aWriter.writeAttribute("unitAccession", ppm ? "UO:0000169" : "UO:0000221");
+            aWriter.writeAttribute("unitName", ppm ? "parts per million" : "dalton");
+        }
+    }
+
+    /**
+     * Splits the modifications of a parameter, e.g., 57.021464@C,15.994915@M.
+     *
+     * @param aModifications the modifications, may be null
+     * @return the modifications
+     */
+    private static List<String> splitModifications(String aModifications) {
+        List<String> modifications = new ArrayList<String>();
+        if (aModifications != null) {
+            for (String modification : aModifications.split(",")) {
+                if (modification.trim().length() > 0) {
+                    modifications.add(modification.trim());
+                }
+            }
+        }
+        return modifications;
+    }
+
+    /**
+     * Converts an X!Tandem cleavage site, e.g., [RK]|{P}, to a regular
+     * expression matching the cleavage positions.
+     *
+     * @param aCleavageSite the cleavage site
+     * @return the regular expression
+     */
+    private static String toSiteRegexp(String aCleavageSite) {
+        int bar = aCleavageSite.indexOf('|');
+        return toLookaround(aCleavageSite.substring(0, bar).trim(), "(?<=", "(?<!")
+                + toLookaround(aCleavageSite.substring(bar + 1).trim(), "(?=", "(?!");
+    }
+
+    /**
+     * Converts a side of an X!Tandem cleavage site to a lookaround, [..]
+     * matching and {..} excluding the residues.
+     *
+     * @param aSide the side of the cleavage site
+     * @param aMatching the start of a matching lookaround
+     * @param aExcluding the start of an excluding lookaround
+     * @return the lookaround, empty if any residue matches
+     */
+    private static String toLookaround(String aSide, String aMatching, String aExcluding) {
+        if (aSide.length() < 2) {
+            return "";
+        }
+        String residues = aSide.substring(1, aSide.length() - 1);
+        if (residues.equals("X")) {
+            return aSide.charAt(0) == '{' ? aExcluding + ".)" : "";
+        }
+        return (aSide.charAt(0) == '{' ? aExcluding : aMatching) + "[" + residues + "])";
+    }
+
+    /**
+     * Writes a controlled vocabulary.
+     *
+     * @param aWriter the writer
+     * @param aId the id of the vocabulary
+     * @param aName the full name of the vocabulary
+     * @param aUri the location of the vocabulary
+     * @exception XMLStreamException if the vocabulary could not be written
+     */
+    private static void writeCv(XMLStreamWriter aWriter, String aId, String aName, String aUri) throws XMLStreamException {
+        aWriter.writeEmptyElement("cv");
+        aWriter.writeAttribute("id", aId);
+        aWriter.writeAttribute("fullName", aName);
+        aWriter.writeAttribute("uri", aUri);
+    }
+
+    /**
+     * Writes a cvParam of the PSI-MS vocabulary.
+     *
+     * @param aWriter the writer
+     * @param aAccession the accession of the term
+     * @param aName the name of the term
+     * @param aValue the value, null if none
+     * @exception XMLStreamException if the cvParam could not be written
+     */
+    private static void writeCvParam(XMLStreamWriter aWriter, String aAccession, String aName, String aValue) throws XMLStreamException {
+        aWriter.writeEmptyElement("cvParam");
+        aWriter.writeAttribute("cvRef", "PSI-MS");
+        aWriter.writeAttribute("accession", aAccession);
+        aWriter.writeAttribute("name", aName);
+        if (aValue != null) {
+            aWriter.writeAttribute("value", aValue);
+        }
+    }
+
+    /**
+     * Writes a userParam.
+     *
+     * @param aWriter the writer
+     * @param aName the name of the parameter
+     * @exception XMLStreamException if the userParam could not be written
+     */
+    private static void writeUserParam(XMLStreamWriter aWriter, String aName) throws XMLStreamException {
+        aWriter.writeEmptyElement("userParam");
+        aWriter.writeAttribute("name", aName);
+    }
+
+    /**
+     * This class writes the spectrum identification results of the model
+     * groups streamed by the parser and collects the distinct peptides,
+     * proteins and peptide evidences.
+     */
+    private static class ResultHandler implements XTandemHandler {
+
+        /**
+         * The writer of the results.
+         */
+        private XMLStreamWriter iWriter;
+        /**
+         * The input parameters.
+         */
+        private InputParams iInputParams = null;
+        /**
+         * The perform parameters.
+         */
+        private PerformParams iPerformParams = null;
+        /**
+         * The ids of the search databases by FASTA file path.
+         */
+        private LinkedHashMap<String, String> iDatabases = new LinkedHashMap<String, String>();
+        /**
+         * The protein sequences by protein label.
+         */
+        private LinkedHashMap<String, ProteinEntry> iProteins = new LinkedHashMap<String, ProteinEntry>();
+        /**
+         * The peptides by sequence and modifications.
+         */
+        private LinkedHashMap<String, PeptideEntry> iPeptides = new LinkedHashMap<String, PeptideEntry>();
+        /**
+         * The peptide evidences by peptide, protein and start.
+         */
+        private LinkedHashMap<String, EvidenceEntry> iEvidences = new LinkedHashMap<String, EvidenceEntry>();
+        /**
+         * The spectrum of the current group, null once written.
+         */
+        private Spectrum iSpectrum = null;
+        /**
+         * The title of the spectrum of the current group.
+         */
+        private String iSpectrumTitle = null;
+        /**
+         * The peptide of the domains passed next.
+         */
+        private Peptide iPeptide = null;
+        /**
+         * The identification items of the current group by peptide id.
+         */
+        private LinkedHashMap<String, ItemEntry> iItems = new LinkedHashMap<String, ItemEntry>();
+        /**
+         * The number of results written.
+         */
+        private int iResultCount = 0;
+
+        /**
+         * Creates a handler writing the results.
+         *
+         * @param aWriter the writer of the results
+         */
+        private ResultHandler(XMLStreamWriter aWriter) {
+            iWriter = aWriter;
+        }
+
+        public void onParameters(InputParams aInputParams) {
+            iInputParams = aInputParams;
+        }
+
+        public Action onSpectrum(Spectrum aSpectrum) {
+            writeResult();
+            iSpectrum = aSpectrum;
+            return Action.CONTINUE;
+        }
+
+        public Action onPeptide(Peptide aPeptide) {
+            iPeptide = aPeptide;
+            return Action.CONTINUE;
+        }
+
+        public Action onDomain(Domain aDomain, List<Modification> aModifications) {
+            String sequence = aDomain.getDomainSequence();
+            String[] modificationKeys = new String[aModifications.size()];
+            for (int i = 0; i < modificationKeys.length; i++) {
+                Modification modification = aModifications.get(i);
+                modificationKeys[i] = getLocation(aDomain, modification) + ":" + modification.getMass() + ":"
+                        + modification.getSubstitutedAminoAcid();
+            }
+            Arrays.sort(modificationKeys);
+            StringBuilder key = new StringBuilder(sequence);
+            for (String modificationKey : modificationKeys) {
+                key.append('|').append(modificationKey);
+            }
+            PeptideEntry peptide = iPeptides.get(key.toString());
+            if (peptide == null) {
+                peptide = new PeptideEntry("PEP_" + (iPeptides.size() + 1), sequence, aDomain, aModifications);
+                iPeptides.put(key.toString(), peptide);
+            }
+
+            String proteinLabel = aDomain.getProteinKey();
+            ProteinEntry protein = iProteins.get(proteinLabel);
+            if (protein == null) {
+                String fastaFilePath = iPeptide != null && iPeptide.getFastaFilePath() != null ? iPeptide.getFastaFilePath() : "unknown";
+                String database = iDatabases.get(fastaFilePath);
+                if (database == null) {
+                    database = "SDB_" + (iDatabases.size() + 1);
+                    iDatabases.put(fastaFilePath, database);
+                }
+                protein = new ProteinEntry("DBSeq_" + (iProteins.size() + 1), proteinLabel, database);
+                iProteins.put(proteinLabel, protein);
+            }
+
+            String evidenceKey = peptide.iId + "|" + protein.iId + "|" + aDomain.getDomainStart();
+            EvidenceEntry evidence = iEvidences.get(evidenceKey);
+            if (evidence == null) {
+                evidence = new EvidenceEntry("PE_" + (iEvidences.size() + 1), peptide.iId, protein.iId, aDomain);
+                iEvidences.put(evidenceKey, evidence);
+            }
+
+            ItemEntry item = iItems.get(peptide.iId);
+            if (item == null) {
+                item = new ItemEntry(peptide.iId, aDomain);
+                iItems.put(peptide.iId, item);
+            }
+            if (!item.iEvidences.contains(evidence.iId)) {
+                item.iEvidences.add(evidence.iId);
+            }
+            return Action.CONTINUE;
+        }
+
+        public Action onSupportData(SupportData aSupportData) {
+            iSpectrumTitle = aSupportData.getFragIonSpectrumDescription();
+            return Action.CONTINUE;
+        }
+
+        public void onEnd(PerformParams aPerformParams) {
+            writeResult();
+            iPerformParams = aPerformParams;
+            try {
+                iWriter.flush();
+            } catch (XMLStreamException e) {
+                throw new WriteException(e);
+            }
+        }
+
+        /**
+         * Writes the spectrum identification result of the current group,
+         * unless it has no identification items.
+         */
+        private void writeResult() {
+            if (iSpectrum != null && !iItems.isEmpty()) {
+                try {
+                    writeResult(iSpectrum, iItems.values());
+                } catch (XMLStreamException e) {
+                    throw new WriteException(e);
+                }
+                iResultCount++;
+            }
+            iSpectrum = null;
+            iSpectrumTitle = null;
+            iPeptide = null;
+            iItems.clear();
+        }
+
+        /**
+         * Writes a spectrum identification result.
+         *
+         * @param aSpectrum the spectrum
+         * @param aItems the identification items
+         * @exception XMLStreamException if the result could not be written
+         */
+        private void writeResult(Spectrum aSpectrum, Collection<ItemEntry> aItems) throws XMLStreamException {
+            int spectrumNumber = aSpectrum.getSpectrumNumber();
+            iWriter.writeStartElement("SpectrumIdentificationResult");
+            iWriter.writeAttribute("id", "SIR_" + spectrumNumber);
+            // The X!Tandem id of a spectrum is its position in the peak list starting from one
+            iWriter.writeAttribute("spectrumID", "index=" + (aSpectrum.getSpectrumId() - 1));
+            iWriter.writeAttribute("spectraData_ref", "SD_1");
+
+            int charge = aSpectrum.getPrecursorCharge() > 0 ? aSpectrum.getPrecursorCharge() : 0;
+            List<ItemEntry> items = new ArrayList<ItemEntry>(aItems);
+            Collections.sort(items, new Comparator<ItemEntry>() {
+                public int compare(ItemEntry aItem, ItemEntry aOtherItem) {
+                    return Double.compare(aItem.iExpect, aOtherItem.iExpect);
+                }
+            });
+            int rank = 0;
+            for (int i = 0; i < items.size(); i++) {
+                ItemEntry item = items.get(i);
+                if (i == 0 || Double.compare(item.iExpect, items.get(i - 1).iExpect) != 0) {
+                    rank = i + 1;
+                }
+                iWriter.writeStartElement("SpectrumIdentificationItem");
+                iWriter.writeAttribute("id", "SII_" + spectrumNumber + "_" + (i + 1));
+                iWriter.writeAttribute("chargeState", String.valueOf(charge));
+                iWriter.writeAttribute("experimentalMassToCharge", String.valueOf(toMassToCharge(aSpectrum.getPrecursorMh(), charge)));
+                if (!Double.isNaN(item.iMh)) {
+                    iWriter.writeAttribute("calculatedMassToCharge", String.valueOf(toMassToCharge(item.iMh, charge)));
+                }
+                iWriter.writeAttribute("peptide_ref", item.iPeptide);
+                iWriter.writeAttribute("rank", String.valueOf(rank));
+                iWriter.writeAttribute("passThreshold", String.valueOf(iInputParams == null
+                        || iInputParams.getMaxValidExpectValue() <= 0 || item.iExpect <= iInputParams.getMaxValidExpectValue()));
+                for (String evidence : item.iEvidences) {
+                    iWriter.writeEmptyElement("PeptideEvidenceRef");
+                    iWriter.writeAttribute("peptideEvidence_ref", evidence);
+                }
+                if (!Double.isNaN(item.iExpect)) {
+                    writeCvParam(iWriter, "MS:1001330", "X!Tandem:expect", String.valueOf(item.iExpect));
+                }
+                if (!Double.isNaN(item.iHyperScore)) {
+                    writeCvParam(iWriter, "MS:1001331", "X!Tandem:hyperscore", String.valueOf(item.iHyperScore));
+                }
+                iWriter.writeEndElement();
+            }
+
+            if (iSpectrumTitle != null) {
+                writeCvParam(iWriter, "MS:1000796", "spectrum title", iSpectrumTitle);
+            }
+            iWriter.writeEndElement();
+        }
+
+        /**
+         * Returns the mass to charge ratio of a singly protonated mass.
+         *
+         * @param aMh the mass plus a proton
+         * @param aCharge the charge, zero if unknown
+         * @return the mass to charge ratio
+         */
+        private static double toMassToCharge(double aMh, int aCharge) {
+            return aCharge > 1 ? (aMh + (aCharge - 1) * PROTON_MASS) / aCharge : aMh;
+        }
+    }
+
+    /**
+     * Returns the location of a modification in a domain, starting from one.
+     *
+     * @param aDomain the domain
+     * @param aModification the modification
+     * @return the location
+     */
+    private static int getLocation(Domain aDomain, Modification aModification) {
+        return Integer.parseInt(aModification.getLocation().trim()) - aDomain.getDomainStart() + 1;
+    }
+
+    /**
+     * A distinct peptide, i.e., a sequence with its modifications.
+     */
+    private static final class PeptideEntry {
+
+        /**
+         * The id of the peptide.
+         */
+        private final String iId;
+        /**
+         * The sequence.
+         */
+        private final String iSequence;
+        /**
+         * The locations of the modifications, starting from one.
+         */
+        private final int[] iLocations;
+        /**
+         * The mass deltas of the modifications.
+         */
+        private final double[] iMasses;
+        /**
+         * The modified residues.
+         */
+        private final String[] iResidues;
+        /**
+         * The substituted residues, null for modifications.
+         */
+        private final String[] iSubstitutions;
+
+        /**
+         * Creates a peptide.
+         *
+         * @param aId the id of the peptide
+         * @param aSequence the sequence
+         * @param aDomain the domain
+         * @param aModifications the modifications of the domain
+         */
+        private PeptideEntry(String aId, String aSequence, Domain aDomain, List<Modification> aModifications) {
+            iId = aId;
+            iSequence = aSequence;
+            int count = aModifications.size();
+            iLocations = new int[count];
+            iMasses = new double[count];
+            iResidues = new String[count];
+            iSubstitutions = new String[count];
+            for (int i = 0; i < count; i++) {
+                Modification modification = aModifications.get(i);
+                iLocations[i] = getLocation(aDomain, modification);
+                iMasses[i] = modification.getMass();
+                String name = modification.getName();
+                int at = name != null ? name.indexOf('@') : -1;
+                iResidues[i] = at >= 0 && at < name.length() - 1 ? name.substring(at + 1)
+                        : iLocations[i] >= 1 && iLocations[i] <= aSequence.length() ? String.valueOf(aSequence.charAt(iLocations[i] - 1)) : ".";
+                if (modification.isSubstitution()) {
+                    iSubstitutions[i] = modification.getSubstitutedAminoAcid();
+                }
+            }
+        }
+    }
+
+    /**
+     * A distinct protein sequence.
+     */
+    private static final class ProteinEntry {
+
+        /**
+         * The id of the sequence.
+         */
+        private final String iId;
+        /**
+         * The protein label.
+         */
+        private final String iLabel;
+        /**
+         * The accession, the label up to the first space.
+         */
+        private final String iAccession;
+        /**
+         * The id of the search database.
+         */
+        private final String iDatabase;
+
+        /**
+         * Creates a protein sequence.
+         *
+         * @param aId the id of the sequence
+         * @param aLabel the protein label
+         * @param aDatabase the id of the search database
+         */
+        private ProteinEntry(String aId, String aLabel, String aDatabase) {
+            iId = aId;
+            iLabel = aLabel != null ? aLabel : aId;
+            String[] words = iLabel.trim().split("\\s+", 2);
+            iAccession = words[0].length() > 0 ? words[0] : aId;
+            iDatabase = aDatabase;
+        }
+    }
+
+    /**
+     * A distinct peptide evidence, i.e., a peptide at a position of a
+     * protein.
+     */
+    private static final class EvidenceEntry {
+
+        /**
+         * The id of the evidence.
+         */
+        private final String iId;
+        /**
+         * The id of the peptide.
+         */
+        private final String iPeptide;
+        /**
+         * The id of the protein sequence.
+         */
+        private final String iProtein;
+        /**
+         * The start of the peptide in the protein.
+         */
+        private final int iStart;
+        /**
+         * The end of the peptide in the protein.
+         */
+        private final int iEnd;
+        /**
+         * The residue before the peptide, - at the protein start.
+         */
+        private final String iPre;
+        /**
+         * The residue after the peptide, - at the protein end.
+         */
+        private final String iPost;
+
+        /**
+         * Creates a peptide evidence.
+         *
+         * @param aId the id of the evidence
+         * @param aPeptide the id of the peptide
+         * @param aProtein the id of the protein sequence
+         * @param aDomain the domain
+         */
+        private EvidenceEntry(String aId, String aPeptide, String aProtein, Domain aDomain) {
+            iId = aId;
+            iPeptide = aPeptide;
+            iProtein = aProtein;
+            iStart = aDomain.getDomainStart();
+            iEnd = aDomain.getDomainEnd();
+            String upFlank = aDomain.getUpFlankSequence();
+            String downFlank = aDomain.getDownFlankSequence();
+            iPre = upFlank == null || upFlank.length() == 0 || upFlank.endsWith("[") ? "-" : upFlank.substring(upFlank.length() - 1);
+            iPost = downFlank == null || downFlank.length() == 0 || downFlank.startsWith("]") ? "-" : downFlank.substring(0, 1);
+        }
+    }
+
+    /**
+     * A spectrum identification item of the current group.
+     */
+    private static final class ItemEntry {
+
+        /**
+         * The id of the peptide.
+         */
+        private final String iPeptide;
+        /**
+         * The expectation value.
+         */
+        private final double iExpect;
+        /**
+         * The hyperscore.
+         */
+        private final double iHyperScore;
+        /**
+         * The calculated mass plus a proton.
+         */
+        private final double iMh;
+        /**
+         * The ids of the peptide evidences.
+         */
+        private final List<String> iEvidences = new ArrayList<String>(2);
+
+        /**
+         * Creates an identification item.
+         *
+         * @param aPeptide the id of the peptide
+         * @param aDomain the first domain of the peptide
+         */
+        private ItemEntry(String aPeptide, Domain aDomain) {
+            iPeptide = aPeptide;
+            iExpect = aDomain.getDomainExpect();
+            iHyperScore = aDomain.getDomainHyperScore();
+            iMh = aDomain.getDomainMh();
+        }
+    }
+
+    /**
+     * Carries an error writing the results through the parser.
+     */
+    private static final class WriteException extends RuntimeException {
+
+        /**
+         * Creates the exception.
+         *
+         * @param aCause the error writing the results
+         */
+        private WriteException(XMLStreamException aCause) {
+            super(aCause);
+        }
+
+        /**
+         * Returns the error as an IOException.
+         *
+         * @return the IOException
+         */
+        private IOException getIOException() {
+            return new IOException("Error writing the mzIdentML results: " + getCause().getMessage(), getCause());
+        }
+    }
+}
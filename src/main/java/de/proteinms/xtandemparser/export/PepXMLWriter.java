@@ -0,0 +1,691 @@
+package de.proteinms.xtandemparser.export;
+
+import de.proteinms.xtandemparser.interfaces.Modification;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.AminoAcidSequence;
+import de.proteinms.xtandemparser.xtandem.Domain;
+import de.proteinms.xtandemparser.xtandem.InputParams;
+import de.proteinms.xtandemparser.xtandem.PerformParams;
+import de.proteinms.xtandemparser.xtandem.Peptide;
+import de.proteinms.xtandemparser.xtandem.Spectrum;
+import de.proteinms.xtandemparser.xtandem.StreamingXTandemFile;
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import de.proteinms.xtandemparser.xtandem.XTandemHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.xml.sax.SAXException;
+
+/**
+ * This class converts an X!Tandem file to pepXML, e.g., for PeptideProphet,
+ * while the file is parsed. The file is parsed spectrum by spectrum with a
+ * {@link StreamingXTandemFile}, and the spectrum query of every spectrum is
+ * written through an XMLStreamWriter as soon as its model group is parsed,
+ * so only one model group is held in memory whatever the size of the file.
+ * The search summary is written first from the parameters, which the
+ * streaming reader reads ahead of the spectra.
+ * <p>
+ * The domains of a spectrum with the same sequence and modifications are
+ * written as one search hit, the proteins of the other domains as
+ * alternative proteins, ranked by their expectation value. The hyperscore,
+ * next score, expectation value and delta of the domains are written as
+ * search scores and mass difference, the flanks as the previous and next
+ * residues, and the modifications as the masses of the modified residues.
+ */
+public class PepXMLWriter {
+
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON_MASS = 1.007276;
+    /**
+     * The sections of the X!Tandem file needed.
+     */
+    private static final EnumSet<XTandemSection> SECTIONS = EnumSet.of(XTandemSection.SPECTRA, XTandemSection.PEPTIDES,
+            XTandemSection.DOMAINS, XTandemSection.MODIFICATIONS, XTandemSection.PARAMETERS);
+    /**
+     * The X!Tandem file.
+     */
+    private StreamingXTandemFile iXTandemFile;
+
+    /**
+     * Creates a writer converting an X!Tandem file.
+     *
+     * @param aXTandemFile the X!Tandem file
+     */
+    public PepXMLWriter(String aXTandemFile) {
+        iXTandemFile = new StreamingXTandemFile(aXTandemFile, SECTIONS);
+    }
+
+    /**
+     * Converts the X!Tandem file to a pepXML file.
+     *
+     * @param aPath the path of the pepXML file
+     * @return the number of spectrum queries written
+     * @exception IOException if a file could not be read or written
+     * @exception SAXException if the X!Tandem file could not be parsed
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public int write(String aPath) throws IOException, SAXException, ParserConfigurationException {
+        OutputStream output = new FileOutputStream(aPath);
+        try {
+            return write(output, new File(aPath).getAbsolutePath());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Converts the X!Tandem file to pepXML.
+     *
+     * @param aOutput the output, not closed
+     * @return the number of spectrum queries written
+     * @exception IOException if the X!Tandem file could not be read or the
+     * output could not be written
+     * @exception SAXException if the X!Tandem file could not be parsed
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public int write(OutputStream aOutput) throws IOException, SAXException, ParserConfigurationException {
+        return write(aOutput, null);
+    }
+
+    /**
+     * Converts the X!Tandem file to pepXML.
+     *
+     * @param aOutput the output, not closed
+     * @param aSummaryPath the path of the pepXML file, null if unknown
+     * @return the number of spectrum queries written
+     * @exception IOException if the X!Tandem file could not be read or the
+     * output could not be written
+     * @exception SAXException if the X!Tandem file could not be parsed
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    private int write(OutputStream aOutput, String aSummaryPath) throws IOException, SAXException, ParserConfigurationException {
+        OutputStream output = new BufferedOutputStream(aOutput, 1 << 16);
+        QueryHandler handler;
+        try {
+            handler = new QueryHandler(XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8"),
+                    iXTandemFile.getFileName(), aSummaryPath);
+        } catch (XMLStreamException e) {
+            throw new IOException("Error writing the pepXML file: " + e.getMessage(), e);
+        }
+        try {
+            iXTandemFile.process(handler);
+        } catch (WriteException e) {
+            throw new IOException("Error writing the pepXML file: " + e.getCause().getMessage(), e.getCause());
+        }
+        output.flush();
+        return handler.iQueryCount;
+    }
+
+    /**
+     * This class writes the spectrum queries of the model groups streamed by
+     * the parser.
+     */
+    private static class QueryHandler implements XTandemHandler {
+
+        /**
+         * The writer.
+         */
+        private XMLStreamWriter iWriter;
+        /**
+         * The name of the X!Tandem file.
+         */
+        private String iFileName;
+        /**
+         * The path of the pepXML file, null if unknown.
+         */
+        private String iSummaryPath;
+        /**
+         * The input parameters.
+         */
+        private InputParams iInputParams = null;
+        /**
+         * The base name of the spectrum file, used in the spectrum names.
+         */
+        private String iBaseName;
+        /**
+         * The residues cut by the enzyme, null if unknown.
+         */
+        private String iCut = null;
+        /**
+         * The residues preventing a cut, null if none.
+         */
+        private String iNoCut = null;
+        /**
+         * True if the enzyme cuts C terminal of the cut residues.
+         */
+        private boolean iCutAfter = true;
+        /**
+         * The masses of the residues by code.
+         */
+        private double[] iResidueMasses;
+        /**
+         * The spectrum of the current group, null once written.
+         */
+        private Spectrum iSpectrum = null;
+        /**
+         * The peptide of the domains passed next.
+         */
+        private Peptide iPeptide = null;
+        /**
+         * The search hits of the current group by sequence and
+         * modifications.
+         */
+        private LinkedHashMap<String, HitEntry> iHits = new LinkedHashMap<String, HitEntry>();
+        /**
+         * The number of spectrum queries written.
+         */
+        private int iQueryCount = 0;
+
+        /**
+         * Creates a handler writing the spectrum queries.
+         *
+         * @param aWriter the writer
+         * @param aFileName the name of the X!Tandem file
+         * @param aSummaryPath the path of the pepXML file, null if unknown
+         */
+        @SuppressWarnings("unchecked")
+        private QueryHandler(XMLStreamWriter aWriter, String aFileName, String aSummaryPath) {
+            iWriter = aWriter;
+            iFileName = aFileName;
+            iSummaryPath = aSummaryPath;
+            iResidueMasses = AminoAcidSequence.getMassesByCode(XTandemFile.getMassesMap());
+        }
+
+        public void onParameters(InputParams aInputParams) {
+            iInputParams = aInputParams;
+            String spectrumPath = aInputParams.getSpectrumPath() != null ? aInputParams.getSpectrumPath() : iFileName;
+            String spectrumFile = new File(spectrumPath).getName();
+            iBaseName = spectrumFile.indexOf('.') > 0 ? spectrumFile.substring(0, spectrumFile.indexOf('.')) : spectrumFile;
+            parseCleavageSite(aInputParams.getProteinCleavageSite());
+            try {
+                writeSummary(spectrumPath);
+            } catch (XMLStreamException e) {
+                throw new WriteException(e);
+            }
+        }
+
+        public Action onSpectrum(Spectrum aSpectrum) {
+            writeQuery();
+            iSpectrum = aSpectrum;
+            return Action.CONTINUE;
+        }
+
+        public Action onPeptide(Peptide aPeptide) {
+            iPeptide = aPeptide;
+            return Action.CONTINUE;
+        }
+
+        public Action onDomain(Domain aDomain, List<Modification> aModifications) {
+            String[] modificationKeys = new String[aModifications.size()];
+            for (int i = 0; i < modificationKeys.length; i++) {
+                modificationKeys[i] = getPosition(aDomain, aModifications.get(i)) + ":" + aModifications.get(i).getMass();
+            }
+            Arrays.sort(modificationKeys);
+            StringBuilder key = new StringBuilder(aDomain.getDomainSequence());
+            for (String modificationKey : modificationKeys) {
+                key.append('|').append(modificationKey);
+            }
+            HitEntry hit = iHits.get(key.toString());
+            if (hit == null) {
+                hit = new HitEntry(aDomain, aModifications);
+                iHits.put(key.toString(), hit);
+            }
+            String protein = aDomain.getProteinKey() != null ? aDomain.getProteinKey() : iPeptide.getPeptideID();
+            if (!hit.iProteins.contains(protein)) {
+                hit.iProteins.add(protein);
+            }
+            return Action.CONTINUE;
+        }
+
+        public Action onSupportData(SupportData aSupportData) {
+            return Action.CONTINUE;
+        }
+
+        public void onEnd(PerformParams aPerformParams) {
+            writeQuery();
+            try {
+                if (iInputParams == null) {
+                    // No parameters, e.g., an empty file
+                    writeSummary(iFileName);
+                }
+                iWriter.writeEndElement();
+                iWriter.writeEndElement();
+                iWriter.writeEndDocument();
+                iWriter.flush();
+            } catch (XMLStreamException e) {
+                throw new WriteException(e);
+            }
+        }
+
+        /**
+         * Reads the enzyme from an X!Tandem cleavage site, e.g., [RK]|{P}.
+         *
+         * @param aCleavageSite the cleavage site, may be null
+         */
+        private void parseCleavageSite(String aCleavageSite) {
+            if (aCleavageSite == null || aCleavageSite.indexOf('|') < 0) {
+                return;
+            }
+            String before = aCleavageSite.substring(0, aCleavageSite.indexOf('|')).trim();
+            String after = aCleavageSite.substring(aCleavageSite.indexOf('|') + 1).trim();
+            if (before.startsWith("[") && !before.equals("[X]")) {
+                iCutAfter = true;
+                iCut = before.substring(1, before.length() - 1);
+                iNoCut = after.startsWith("{") ? after.substring(1, after.length() - 1) : null;
+            } else if (after.startsWith("[") && !after.equals("[X]")) {
+                iCutAfter = false;
+                iCut = after.substring(1, after.length() - 1);
+                iNoCut = before.startsWith("{") ? before.substring(1, before.length() - 1) : null;
+            }
+        }
+
+        /**
+         * Writes the start of the document and of the run summary, and the
+         * search summary.
+         *
+         * @param aSpectrumPath the path of the spectrum file
+         * @exception XMLStreamException if the summary could not be written
+         */
+        private void writeSummary(String aSpectrumPath) throws XMLStreamException {
+            iWriter.writeStartDocument("UTF-8", "1.0");
+            iWriter.writeStartElement("msms_pipeline_analysis");
+            iWriter.writeDefaultNamespace("http://regis-web.systemsbiology.net/pepXML");
+            iWriter.writeAttribute("date", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+            iWriter.writeAttribute("summary_xml", iSummaryPath != null ? iSummaryPath : iFileName);
+
+            String baseName = aSpectrumPath.indexOf('.') > 0 ? aSpectrumPath.substring(0, aSpectrumPath.lastIndexOf('.')) : aSpectrumPath;
+            String extension = aSpectrumPath.indexOf('.') > 0 ? aSpectrumPath.substring(aSpectrumPath.lastIndexOf('.')) : "";
+            iWriter.writeStartElement("msms_run_summary");
+            iWriter.writeAttribute("base_name", baseName);
+            iWriter.writeAttribute("raw_data_type", "raw");
+            iWriter.writeAttribute("raw_data", extension);
+
+            String enzyme = getEnzymeName();
+            iWriter.writeStartElement("sample_enzyme");
+            iWriter.writeAttribute("name", enzyme);
+            if (iCut != null) {
+                iWriter.writeEmptyElement("specificity");
+                iWriter.writeAttribute("cut", iCut);
+                if (iNoCut != null) {
+                    iWriter.writeAttribute("no_cut", iNoCut);
+                }
+                iWriter.writeAttribute("sense", iCutAfter ? "C" : "N");
+            }
+            iWriter.writeEndElement();
+
+            iWriter.writeStartElement("search_summary");
+            iWriter.writeAttribute("base_name", baseName);
+            iWriter.writeAttribute("search_engine", "X! Tandem");
+            iWriter.writeAttribute("precursor_mass_type", "monoisotopic");
+            iWriter.writeAttribute("fragment_mass_type", "monoisotopic");
+            iWriter.writeAttribute("search_id", "1");
+            if (iInputParams != null) {
+                iWriter.writeEmptyElement("enzymatic_search_constraint");
+                iWriter.writeAttribute("enzyme", enzyme);
+                iWriter.writeAttribute("max_num_internal_cleavages", String.valueOf(iInputParams.getScoringMissCleavageSites()));
+                iWriter.writeAttribute("min_number_termini", iCut != null ? "2" : "0");
+                writeSearchModifications(iInputParams.getResidueModMass(), false);
+                writeSearchModifications(iInputParams.getResiduePotModMass(), true);
+                writeParameter("spectrum, path", iInputParams.getSpectrumPath());
+                writeParameter("protein, cleavage site", iInputParams.getProteinCleavageSite());
+                writeParameter("protein, taxon", iInputParams.getProteinTaxon());
+                writeParameter("output, maximum valid expectation value", String.valueOf(iInputParams.getMaxValidExpectValue()));
+            }
+            iWriter.writeEndElement();
+        }
+
+        /**
+         * Returns the name of the enzyme.
+         *
+         * @return the enzyme name
+         */
+        private String getEnzymeName() {
+            if ("KR".equals(iCut) || "RK".equals(iCut)) {
+                return "P".equals(iNoCut) ? "trypsin" : "stricttrypsin";
+            }
+            return iCut != null ? iInputParams.getProteinCleavageSite() : "nonspecific";
+        }
+
+        /**
+         * Writes the search modifications of a parameter, e.g.,
+         * 57.021464@C,15.994915@M.
+         *
+         * @param aModifications the modifications, may be null
+         * @param aVariable true for variable modifications
+         * @exception XMLStreamException if the modifications could not be
+         * written
+         */
+        private void writeSearchModifications(String aModifications, boolean aVariable) throws XMLStreamException {
+            if (aModifications == null) {
+                return;
+            }
+            for (String modification : aModifications.split(",")) {
+                int at = modification.indexOf('@');
+                if (at <= 0 || at == modification.trim().length() - 1) {
+                    continue;
+                }
+                String residue = modification.substring(at + 1).trim();
+                double massDifference = Double.parseDouble(modification.substring(0, at).trim());
+                if (residue.equals("[") || residue.equals("]")) {
+                    iWriter.writeEmptyElement("terminal_modification");
+                    iWriter.writeAttribute("terminus", residue.equals("[") ? "n" : "c");
+                    iWriter.writeAttribute("massdiff", String.valueOf(massDifference));
+                    iWriter.writeAttribute("mass", String.valueOf(massDifference));
+                } else {
+                    double residueMass = AminoAcidSequence.valueOf(residue).getMass(0, iResidueMasses);
+                    iWriter.writeEmptyElement("aminoacid_modification");
+                    iWriter.writeAttribute("aminoacid", residue);
+                    iWriter.writeAttribute("massdiff", String.valueOf(massDifference));
+                    iWriter.writeAttribute("mass", String.valueOf(Double.isNaN(residueMass) ? massDifference : residueMass + massDifference));
+                }
+                iWriter.writeAttribute("variable", aVariable ? "Y" : "N");
+            }
+        }
+
+        /**
+         * Writes a parameter of the search summary.
+         *
+         * @param aName the name of the parameter
+         * @param aValue the value, not written if null
+         * @exception XMLStreamException if the parameter could not be written
+         */
+        private void writeParameter(String aName, String aValue) throws XMLStreamException {
+            if (aValue != null) {
+                iWriter.writeEmptyElement("parameter");
+                iWriter.writeAttribute("name", aName);
+                iWriter.writeAttribute("value", aValue);
+            }
+        }
+
+        /**
+         * Writes the spectrum query of the current group, unless it has no
+         * search hits.
+         */
+        private void writeQuery() {
+            if (iSpectrum != null && !iHits.isEmpty()) {
+                try {
+                    writeQuery(iSpectrum, new ArrayList<HitEntry>(iHits.values()));
+                } catch (XMLStreamException e) {
+                    throw new WriteException(e);
+                }
+                iQueryCount++;
+            }
+            iSpectrum = null;
+            iPeptide = null;
+            iHits.clear();
+        }
+
+        /**
+         * Writes a spectrum query.
+         *
+         * @param aSpectrum the spectrum
+         * @param aHits the search hits
+         * @exception XMLStreamException if the query could not be written
+         */
+        private void writeQuery(Spectrum aSpectrum, List<HitEntry> aHits) throws XMLStreamException {
+            int charge = aSpectrum.getPrecursorCharge() > 0 ? aSpectrum.getPrecursorCharge() : 0;
+            int scan = aSpectrum.getSpectrumId();
+            iWriter.writeStartElement("spectrum_query");
+            iWriter.writeAttribute("spectrum", iBaseName + "." + scan + "." + scan + "." + charge);
+            iWriter.writeAttribute("start_scan", String.valueOf(scan));
+            iWriter.writeAttribute("end_scan", String.valueOf(scan));
+            iWriter.writeAttribute("precursor_neutral_mass", String.valueOf(aSpectrum.getPrecursorMh() - PROTON_MASS));
+            iWriter.writeAttribute("assumed_charge", String.valueOf(charge));
+            iWriter.writeAttribute("index", String.valueOf(aSpectrum.getSpectrumNumber()));
+            double retentionTime = parseRetentionTime(aSpectrum.getPrecursorRetentionTime());
+            if (!Double.isNaN(retentionTime)) {
+                iWriter.writeAttribute("retention_time_sec", String.valueOf(retentionTime));
+            }
+            iWriter.writeStartElement("search_result");
+
+            Collections.sort(aHits, new Comparator<HitEntry>() {
+                public int compare(HitEntry aHit, HitEntry aOtherHit) {
+                    return Double.compare(aHit.iDomain.getDomainExpect(), aOtherHit.iDomain.getDomainExpect());
+                }
+            });
+            int rank = 0;
+            for (int i = 0; i < aHits.size(); i++) {
+                HitEntry hit = aHits.get(i);
+                Domain domain = hit.iDomain;
+                if (i == 0 || Double.compare(domain.getDomainExpect(), aHits.get(i - 1).iDomain.getDomainExpect()) != 0) {
+                    rank = i + 1;
+                }
+                writeHit(hit, rank);
+            }
+
+            iWriter.writeEndElement();
+            iWriter.writeEndElement();
+        }
+
+        /**
+         * Writes a search hit.
+         *
+         * @param aHit the search hit
+         * @param aRank the rank of the hit
+         * @exception XMLStreamException if the hit could not be written
+         */
+        private void writeHit(HitEntry aHit, int aRank) throws XMLStreamException {
+            Domain domain = aHit.iDomain;
+            String sequence = domain.getDomainSequence();
+            String upFlank = domain.getUpFlankSequence();
+            String downFlank = domain.getDownFlankSequence();
+            char previous = upFlank == null || upFlank.length() == 0 || upFlank.endsWith("[") ? '-' : upFlank.charAt(upFlank.length() - 1);
+            char next = downFlank == null || downFlank.length() == 0 || downFlank.startsWith("]") ? '-' : downFlank.charAt(0);
+
+            iWriter.writeStartElement("search_hit");
+            iWriter.writeAttribute("hit_rank", String.valueOf(aRank));
+            iWriter.writeAttribute("peptide", sequence);
+            iWriter.writeAttribute("peptide_prev_aa", String.valueOf(previous));
+            iWriter.writeAttribute("peptide_next_aa", String.valueOf(next));
+            writeProtein(aHit.iProteins.get(0));
+            iWriter.writeAttribute("num_tot_proteins", String.valueOf(aHit.iProteins.size()));
+            iWriter.writeAttribute("calc_neutral_pep_mass", String.valueOf(domain.getDomainMh() - PROTON_MASS));
+            iWriter.writeAttribute("massdiff", String.valueOf(domain.getDomainDeltaMh()));
+            if (iCut != null && sequence.length() > 0) {
+                int tolerableTermini = (previous == '-' || isCleavage(previous, sequence.charAt(0)) ? 1 : 0)
+                        + (next == '-' || isCleavage(sequence.charAt(sequence.length() - 1), next) ? 1 : 0);
+                iWriter.writeAttribute("num_tol_term", String.valueOf(tolerableTermini));
+            }
+            iWriter.writeAttribute("num_missed_cleavages", String.valueOf(domain.getMissedCleavages()));
+            iWriter.writeAttribute("is_rejected", "0");
+
+            for (int i = 1; i < aHit.iProteins.size(); i++) {
+                iWriter.writeEmptyElement("alternative_protein");
+                writeProtein(aHit.iProteins.get(i));
+            }
+
+            if (!aHit.iModifications.isEmpty()) {
+                // The modifications of a residue are added up
+                TreeMap<Integer, Double> massDifferences = new TreeMap<Integer, Double>();
+                for (Modification modification : aHit.iModifications) {
+                    int position = getPosition(domain, modification);
+                    Double massDifference = massDifferences.get(position);
+                    massDifferences.put(position, (massDifference != null ? massDifference : 0) + modification.getMass());
+                }
+                AminoAcidSequence packedSequence = domain.getPackedDomainSequence();
+                double[] masses = new double[massDifferences.size()];
+                StringBuilder modifiedPeptide = new StringBuilder();
+                int end = 0;
+                int index = 0;
+                for (Map.Entry<Integer, Double> entry : massDifferences.entrySet()) {
+                    int position = entry.getKey();
+                    double residueMass = position >= 1 && position <= sequence.length()
+                            ? packedSequence.getMass(position - 1, iResidueMasses) : Double.NaN;
+                    masses[index] = Double.isNaN(residueMass) ? entry.getValue() : residueMass + entry.getValue();
+                    if (position >= 1 && position <= sequence.length()) {
+                        modifiedPeptide.append(sequence, end, position).append('[').append(Math.round(masses[index])).append(']');
+                        end = position;
+                    }
+                    index++;
+                }
+                modifiedPeptide.append(sequence, end, sequence.length());
+
+                iWriter.writeStartElement("modification_info");
+                iWriter.writeAttribute("modified_peptide", modifiedPeptide.toString());
+                index = 0;
+                for (int position : massDifferences.keySet()) {
+                    iWriter.writeEmptyElement("mod_aminoacid_mass");
+                    iWriter.writeAttribute("position", String.valueOf(position));
+                    iWriter.writeAttribute("mass", String.valueOf(masses[index++]));
+                }
+                iWriter.writeEndElement();
+            }
+
+            writeScore("hyperscore", domain.getDomainHyperScore());
+            writeScore("nextscore", domain.getDomainNextScore());
+            writeScore("expect", domain.getDomainExpect());
+            iWriter.writeEndElement();
+        }
+
+        /**
+         * Writes the protein attributes of a hit or alternative protein, the
+         * label up to the first space as protein and the rest as
+         * description.
+         *
+         * @param aLabel the protein label
+         * @exception XMLStreamException if the attributes could not be
+         * written
+         */
+        private void writeProtein(String aLabel) throws XMLStreamException {
+            String[] words = aLabel.trim().split("\\s+", 2);
+            iWriter.writeAttribute("protein", words[0]);
+            if (words.length > 1) {
+                iWriter.writeAttribute("protein_descr", words[1]);
+            }
+        }
+
+        /**
+         * Writes a search score.
+         *
+         * @param aName the name of the score
+         * @param aValue the value, not written if NaN
+         * @exception XMLStreamException if the score could not be written
+         */
+        private void writeScore(String aName, double aValue) throws XMLStreamException {
+            if (!Double.isNaN(aValue)) {
+                iWriter.writeEmptyElement("search_score");
+                iWriter.writeAttribute("name", aName);
+                iWriter.writeAttribute("value", String.valueOf(aValue));
+            }
+        }
+
+        /**
+         * Returns true if the enzyme cuts between two residues.
+         *
+         * @param aBefore the residue before the cut
+         * @param aAfter the residue after the cut
+         * @return true for a cleavage site
+         */
+        private boolean isCleavage(char aBefore, char aAfter) {
+            char cut = iCutAfter ? aBefore : aAfter;
+            char other = iCutAfter ? aAfter : aBefore;
+            return iCut.indexOf(cut) >= 0 && (iNoCut == null || iNoCut.indexOf(other) < 0);
+        }
+
+        /**
+         * Returns the retention time in seconds of an X!Tandem retention
+         * time, e.g., PT3000S.
+         *
+         * @param aRetentionTime the retention time, may be null
+         * @return the retention time in seconds, NaN if unknown
+         */
+        private static double parseRetentionTime(String aRetentionTime) {
+            if (aRetentionTime == null) {
+                return Double.NaN;
+            }
+            String seconds = aRetentionTime.trim();
+            if (seconds.startsWith("PT")) {
+                seconds = seconds.substring(2);
+            }
+            if (seconds.endsWith("S")) {
+                seconds = seconds.substring(0, seconds.length() - 1);
+            }
+            try {
+                return Double.parseDouble(seconds);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Returns the position of a modification in a domain, starting from one.
+     *
+     * @param aDomain the domain
+     * @param aModification the modification
+     * @return the position
+     */
+    private static int getPosition(Domain aDomain, Modification aModification) {
+        return Integer.parseInt(aModification.getLocation().trim()) - aDomain.getDomainStart() + 1;
+    }
+
+    /**
+     * A search hit of the current group, i.e., the domains with the same
+     * sequence and modifications.
+     */
+    private static final class HitEntry {
+
+        /**
+         * The first domain.
+         */
+        private final Domain iDomain;
+        /**
+         * The modifications of the first domain.
+         */
+        private final List<Modification> iModifications;
+        /**
+         * The labels of the proteins of the domains.
+         */
+        private final List<String> iProteins = new ArrayList<String>(2);
+
+        /**
+         * Creates a search hit.
+         *
+         * @param aDomain the first domain
+         * @param aModifications the modifications of the domain
+         */
+        private HitEntry(Domain aDomain, List<Modification> aModifications) {
+            iDomain = aDomain;
+            iModifications = aModifications;
+        }
+    }
+
+    /**
+     * Carries an error writing the pepXML file through the parser.
+     */
+    private static final class WriteException extends RuntimeException {
+
+        /**
+         * Creates the exception.
+         *
+         * @param aCause the error writing the file
+         */
+        private WriteException(XMLStreamException aCause) {
+            super(aCause);
+        }
+    }
+}
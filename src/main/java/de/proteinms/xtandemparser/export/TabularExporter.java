@@ -0,0 +1,502 @@
+package de.proteinms.xtandemparser.export;
+
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class exports the results of an X!Tandem file as tab or comma
+ * separated text without the viewer, one row per peptide to spectrum match
+ * (domain) or one row per modification. The rows are read straight from the
+ * columns of the result store. The spectra are split into chunks which are
+ * formatted on worker threads, and the formatted chunks are written in the
+ * order of the spectra through a large buffer to the output channel, so the
+ * export of large files is not held up by the number formatting.
+ * <p>
+ * Missing values are written as empty fields. Comma separated values are
+ * quoted as described in RFC 4180, in tab separated values the tabs and line
+ * breaks within the values are replaced by spaces.
+ */
+public class TabularExporter {
+
+    /**
+     * The separator of tab separated values.
+     */
+    public static final char TAB = '\t';
+    /**
+     * The separator of comma separated values.
+     */
+    public static final char COMMA = ',';
+    /**
+     * The default number of spectra formatted at once by a worker thread.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+    /**
+     * The size of the buffer in front of the output channel.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * The columns of the peptide to spectrum matches.
+     */
+    private static final String[] PSM_COLUMNS = {"spectrum_number", "spectrum_id", "precursor_charge",
+        "precursor_mh", "retention_time", "label", "domain_id", "protein_key", "start", "end", "expect", "mh",
+        "delta", "hyperscore", "nextscore", "b_score", "b_ions", "y_score", "y_ions", "up_flank", "sequence",
+        "down_flank", "missed_cleavages", "modifications"};
+    /**
+     * The columns of the modifications.
+     */
+    private static final String[] MODIFICATION_COLUMNS = {"spectrum_number", "domain_id", "sequence",
+        "position", "mass", "residue", "substitution"};
+    /**
+     * The charset of the output.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * The result store to export.
+     */
+    private XTandemResultStore iResultStore;
+    /**
+     * The separator of the values.
+     */
+    private char iSeparator = TAB;
+    /**
+     * The number of spectra formatted at once.
+     */
+    private int iChunkSize = DEFAULT_CHUNK_SIZE;
+    /**
+     * The number of threads formatting the chunks.
+     */
+    private int iThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates an exporter of a parsed X!Tandem file.
+     *
+     * @param aXTandemFile the X!Tandem file
+     */
+    public TabularExporter(XTandemFile aXTandemFile) {
+        this(aXTandemFile.getXTandemParser().getResultStore());
+    }
+
+    /**
+     * Creates an exporter of a result store.
+     *
+     * @param aResultStore the result store
+     */
+    public TabularExporter(XTandemResultStore aResultStore) {
+        iResultStore = aResultStore;
+    }
+
+    /**
+     * Sets the separator of the values, {@link #TAB} by default.
+     *
+     * @param aSeparator the separator, e.g., {@link #COMMA}
+     */
+    public void setSeparator(char aSeparator) {
+        if (aSeparator == '"' || aSeparator == '\n' || aSeparator == '\r') {
+            throw new IllegalArgumentException("Invalid separator: " + aSeparator);
+        }
+        iSeparator = aSeparator;
+    }
+
+    /**
+     * Sets the number of spectra formatted at once by a worker thread.
+     *
+     * @param aChunkSize the number of spectra
+     */
+    public void setChunkSize(int aChunkSize) {
+        if (aChunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive: " + aChunkSize);
+        }
+        iChunkSize = aChunkSize;
+    }
+
+    /**
+     * Sets the number of threads formatting the chunks, the number of
+     * processors by default. With one thread the chunks are formatted by the
+     * calling thread.
+     *
+     * @param aThreads the number of threads
+     */
+    public void setThreads(int aThreads) {
+        if (aThreads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + aThreads);
+        }
+        iThreads = aThreads;
+    }
+
+    /**
+     * Exports the peptide to spectrum matches to a file, one row per domain.
+     *
+     * @param aPath the path of the file
+     * @return the number of rows written, without the header
+     * @exception IOException if the file could not be written
+     */
+    public long exportPsms(String aPath) throws IOException {
+        FileOutputStream output = new FileOutputStream(aPath);
+        try {
+            return exportPsms(output.getChannel());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Exports the peptide to spectrum matches, one row per domain. The
+     * modifications of a domain are summarized as mass@residue:position
+     * separated by semicolons.
+     *
+     * @param aChannel the output, not closed
+     * @return the number of rows written, without the header
+     * @exception IOException if the output could not be written
+     */
+    public long exportPsms(WritableByteChannel aChannel) throws IOException {
+        return export(aChannel, PSM_COLUMNS, false);
+    }
+
+    /**
+     * Exports the modifications to a file, one row per modification.
+     *
+     * @param aPath the path of the file
+     * @return the number of rows written, without the header
+     * @exception IOException if the file could not be written
+     */
+    public long exportModifications(String aPath) throws IOException {
+        FileOutputStream output = new FileOutputStream(aPath);
+        try {
+            return exportModifications(output.getChannel());
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Exports the modifications, one row per modification of a domain.
+     *
+     * @param aChannel the output, not closed
+     * @return the number of rows written, without the header
+     * @exception IOException if the output could not be written
+     */
+    public long exportModifications(WritableByteChannel aChannel) throws IOException {
+        return export(aChannel, MODIFICATION_COLUMNS, true);
+    }
+
+    /**
+     * Writes the header and the chunks of rows, the chunks formatted on the
+     * worker threads are written in the order of the spectra.
+     *
+     * @param aChannel the output
+     * @param aColumns the names of the columns
+     * @param aModifications true for the rows of the modifications, false
+     * for the rows of the domains
+     * @return the number of rows written
+     * @exception IOException if the output could not be written
+     */
+    private long export(WritableByteChannel aChannel, String[] aColumns, final boolean aModifications) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < aColumns.length; i++) {
+            if (i > 0) {
+                header.append(iSeparator);
+            }
+            header.append(aColumns[i]);
+        }
+        header.append('\n');
+        write(aChannel, buffer, header.toString().getBytes(UTF_8));
+
+        long rows = 0;
+        int spectra = iResultStore.getNumberOfSpectra();
+        if (iThreads == 1) {
+            for (int first = 0; first < spectra; first += iChunkSize) {
+                Chunk chunk = formatChunk(first, Math.min(spectra, first + iChunkSize), aModifications);
+                write(aChannel, buffer, chunk.iBytes);
+                rows += chunk.iRows;
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(iThreads);
+            LinkedList<Future<Chunk>> pendingChunks = new LinkedList<Future<Chunk>>();
+            try {
+                for (int first = 0; first < spectra; first += iChunkSize) {
+                    final int start = first;
+                    final int end = Math.min(spectra, first + iChunkSize);
+                    pendingChunks.add(executor.submit(new Callable<Chunk>() {
+                        public Chunk call() {
+                            return formatChunk(start, end, aModifications);
+                        }
+                    }));
+                    // Keep the workers busy without formatting the whole file ahead
+                    while (pendingChunks.size() > 2 * iThreads) {
+                        rows += writeChunk(aChannel, buffer, pendingChunks.removeFirst());
+                    }
+                }
+                while (!pendingChunks.isEmpty()) {
+                    rows += writeChunk(aChannel, buffer, pendingChunks.removeFirst());
+                }
+            } finally {
+                for (Future<Chunk> pendingChunk : pendingChunks) {
+                    pendingChunk.cancel(true);
+                }
+                executor.shutdown();
+            }
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            aChannel.write(buffer);
+        }
+        return rows;
+    }
+
+    /**
+     * Waits for a chunk to be formatted and writes it.
+     *
+     * @param aChannel the output
+     * @param aBuffer the buffer in front of the output
+     * @param aChunk the future chunk
+     * @return the number of rows of the chunk
+     * @exception IOException if the output could not be written
+     */
+    private static int writeChunk(WritableByteChannel aChannel, ByteBuffer aBuffer, Future<Chunk> aChunk) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = aChunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting the X!Tandem file");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("Error exporting the X!Tandem file: " + e.getMessage(), e);
+        }
+        write(aChannel, aBuffer, chunk.iBytes);
+        return chunk.iRows;
+    }
+
+    /**
+     * Writes bytes through the buffer, the buffer is written to the channel
+     * whenever it is full.
+     *
+     * @param aChannel the output
+     * @param aBuffer the buffer in front of the output
+     * @param aBytes the bytes
+     * @exception IOException if the output could not be written
+     */
+    private static void write(WritableByteChannel aChannel, ByteBuffer aBuffer, byte[] aBytes) throws IOException {
+        int offset = 0;
+        while (offset < aBytes.length) {
+            int length = Math.min(aBuffer.remaining(), aBytes.length - offset);
+            aBuffer.put(aBytes, offset, length);
+            offset += length;
+            if (!aBuffer.hasRemaining()) {
+                aBuffer.flip();
+                while (aBuffer.hasRemaining()) {
+                    aChannel.write(aBuffer);
+                }
+                aBuffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Formats the rows of a range of spectra.
+     *
+     * @param aStart the index of the first spectrum
+     * @param aEnd the index after the last spectrum
+     * @param aModifications true for the rows of the modifications, false
+     * for the rows of the domains
+     * @return the formatted rows
+     */
+    private Chunk formatChunk(int aStart, int aEnd, boolean aModifications) {
+        StringBuilder rows = new StringBuilder(256 * (aEnd - aStart));
+        int rowCount = 0;
+        for (int spectrum = aStart; spectrum < aEnd; spectrum++) {
+            int firstPeptide = iResultStore.getFirstPeptide(spectrum);
+            for (int peptide = firstPeptide; peptide < firstPeptide + iResultStore.getPeptideCount(spectrum); peptide++) {
+                int firstDomain = iResultStore.getFirstDomain(peptide);
+                for (int domain = firstDomain; domain < firstDomain + iResultStore.getDomainCount(peptide); domain++) {
+                    if (aModifications) {
+                        rowCount += formatModifications(rows, spectrum, domain);
+                    } else {
+                        formatPsm(rows, spectrum, peptide, domain);
+                        rowCount++;
+                    }
+                }
+            }
+        }
+        return new Chunk(rows.toString().getBytes(UTF_8), rowCount);
+    }
+
+    /**
+     * Formats the row of a domain.
+     *
+     * @param aRows the rows
+     * @param aSpectrum the index of the spectrum
+     * @param aPeptide the index of the peptide
+     * @param aDomain the index of the domain
+     */
+    private void formatPsm(StringBuilder aRows, int aSpectrum, int aPeptide, int aDomain) {
+        aRows.append(iResultStore.getSpectrumNumber(aSpectrum));
+        appendInt(aRows, iResultStore.getSpectrumId(aSpectrum));
+        appendInt(aRows, iResultStore.getPrecursorCharge(aSpectrum));
+        appendDouble(aRows, iResultStore.getPrecursorMh(aSpectrum));
+        appendString(aRows, iResultStore.getRetentionTime(aSpectrum));
+        appendString(aRows, iResultStore.getSpectrumLabel(aSpectrum));
+        appendString(aRows, iResultStore.getDomainId(aDomain));
+        appendString(aRows, iResultStore.getProteinKey(aPeptide));
+        appendInt(aRows, iResultStore.getDomainStart(aDomain));
+        appendInt(aRows, iResultStore.getDomainEnd(aDomain));
+        appendDouble(aRows, iResultStore.getDomainExpect(aDomain));
+        appendDouble(aRows, iResultStore.getDomainMh(aDomain));
+        appendDouble(aRows, iResultStore.getDomainDelta(aDomain));
+        appendDouble(aRows, iResultStore.getDomainHyperScore(aDomain));
+        appendDouble(aRows, iResultStore.getDomainNextScore(aDomain));
+        appendDouble(aRows, iResultStore.getDomainBScore(aDomain));
+        appendInt(aRows, iResultStore.getDomainBIons(aDomain));
+        appendDouble(aRows, iResultStore.getDomainYScore(aDomain));
+        appendInt(aRows, iResultStore.getDomainYIons(aDomain));
+        appendString(aRows, iResultStore.getUpFlankSequence(aDomain));
+        appendString(aRows, iResultStore.getDomainSequence(aDomain));
+        appendString(aRows, iResultStore.getDownFlankSequence(aDomain));
+        appendInt(aRows, iResultStore.getMissedCleavages(aDomain));
+
+        StringBuilder modifications = new StringBuilder();
+        int firstModification = iResultStore.getFirstModification(aDomain);
+        for (int modification = firstModification;
+                modification < firstModification + iResultStore.getModificationCount(aDomain); modification++) {
+            if (modification > firstModification) {
+                modifications.append(';');
+            }
+            modifications.append(iResultStore.getModificationName(modification)).append(':')
+                    .append(iResultStore.getModificationPosition(modification));
+        }
+        appendString(aRows, modifications.toString());
+        aRows.append('\n');
+    }
+
+    /**
+     * Formats the rows of the modifications of a domain.
+     *
+     * @param aRows the rows
+     * @param aSpectrum the index of the spectrum
+     * @param aDomain the index of the domain
+     * @return the number of rows
+     */
+    private int formatModifications(StringBuilder aRows, int aSpectrum, int aDomain) {
+        int firstModification = iResultStore.getFirstModification(aDomain);
+        int modificationCount = iResultStore.getModificationCount(aDomain);
+        for (int modification = firstModification; modification < firstModification + modificationCount; modification++) {
+            aRows.append(iResultStore.getSpectrumNumber(aSpectrum));
+            appendString(aRows, iResultStore.getDomainId(aDomain));
+            appendString(aRows, iResultStore.getDomainSequence(aDomain));
+            appendInt(aRows, iResultStore.getModificationPosition(modification));
+            appendDouble(aRows, iResultStore.getModificationMass(modification));
+            appendString(aRows, iResultStore.getModifiedResidue(modification));
+            appendString(aRows, iResultStore.getSubstitutedAminoAcid(modification));
+            aRows.append('\n');
+        }
+        return modificationCount;
+    }
+
+    /**
+     * Appends the separator and an int value, nothing for a missing value.
+     *
+     * @param aRows the rows
+     * @param aValue the value, XTandemResultStore.NO_VALUE if missing
+     */
+    private void appendInt(StringBuilder aRows, int aValue) {
+        aRows.append(iSeparator);
+        if (aValue != XTandemResultStore.NO_VALUE) {
+            aRows.append(aValue);
+        }
+    }
+
+    /**
+     * Appends the separator and a double value, nothing for a missing value.
+     *
+     * @param aRows the rows
+     * @param aValue the value, NaN if missing
+     */
+    private void appendDouble(StringBuilder aRows, double aValue) {
+        aRows.append(iSeparator);
+        if (!Double.isNaN(aValue)) {
+            aRows.append(aValue);
+        }
+    }
+
+    /**
+     * Appends the separator and a string value, quoted or cleaned if it
+     * holds the separator or line breaks, nothing for a missing value.
+     *
+     * @param aRows the rows
+     * @param aValue the value, null if missing
+     */
+    private void appendString(StringBuilder aRows, String aValue) {
+        aRows.append(iSeparator);
+        if (aValue == null) {
+            return;
+        }
+        boolean special = false;
+        for (int i = 0; i < aValue.length() && !special; i++) {
+            char c = aValue.charAt(i);
+            special = c == iSeparator || c == '\n' || c == '\r' || (c == '"' && iSeparator != TAB);
+        }
+        if (!special) {
+            aRows.append(aValue);
+        } else if (iSeparator == TAB) {
+            for (int i = 0; i < aValue.length(); i++) {
+                char c = aValue.charAt(i);
+                aRows.append(c == TAB || c == '\n' || c == '\r' ? ' ' : c);
+            }
+        } else {
+            aRows.append('"');
+            for (int i = 0; i < aValue.length(); i++) {
+                char c = aValue.charAt(i);
+                if (c == '"') {
+                    aRows.append('"');
+                }
+                aRows.append(c);
+            }
+            aRows.append('"');
+        }
+    }
+
+    /**
+     * The formatted rows of a range of spectra.
+     */
+    private static final class Chunk {
+
+        /**
+         * The rows in UTF-8.
+         */
+        private final byte[] iBytes;
+        /**
+         * The number of rows.
+         */
+        private final int iRows;
+
+        /**
+         * Creates a chunk.
+         *
+         * @param aBytes the rows in UTF-8
+         * @param aRows the number of rows
+         */
+        private Chunk(byte[] aBytes, int aRows) {
+            iBytes = aBytes;
+            iRows = aRows;
+        }
+    }
+}
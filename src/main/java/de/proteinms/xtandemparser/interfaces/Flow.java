@@ -0,0 +1,93 @@
+package de.proteinms.xtandemparser.interfaces;
+
+/**
+ * The interfaces of a flow of items from a publisher to a subscriber with
+ * back pressure, i.e., the publisher only sends as many items as the
+ * subscriber requested. The interfaces and their contracts are the same as
+ * the ones of java.util.concurrent.Flow, which is not available on the Java
+ * version targeted by the parser.
+ */
+public final class Flow {
+
+    /**
+     * The flow interfaces are not instantiated.
+     */
+    private Flow() {
+    }
+
+    /**
+     * A producer of items received by subscribers.
+     *
+     * @param <T> the type of the items
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds a subscriber. The subscriber first receives
+         * {@link Subscriber#onSubscribe(Subscription)}, then the items it
+         * requests, and finally either {@link Subscriber#onComplete()} or
+         * {@link Subscriber#onError(Throwable)}.
+         *
+         * @param aSubscriber the subscriber
+         */
+        void subscribe(Subscriber<? super T> aSubscriber);
+    }
+
+    /**
+     * A receiver of items. The methods of a subscription are called one after
+     * another, never concurrently.
+     *
+     * @param <T> the type of the items
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method with the subscription, no items are
+         * sent before they are requested with it.
+         *
+         * @param aSubscription the subscription
+         */
+        void onSubscribe(Subscription aSubscription);
+
+        /**
+         * Called with the next item.
+         *
+         * @param aItem the item
+         */
+        void onNext(T aItem);
+
+        /**
+         * Called when the subscription failed, no other method is called
+         * afterwards.
+         *
+         * @param aThrowable the error
+         */
+        void onError(Throwable aThrowable);
+
+        /**
+         * Called when all items were sent, no other method is called
+         * afterwards.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and a subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests more items. A request which is not positive fails the
+         * subscription with an {@link IllegalArgumentException}.
+         *
+         * @param aCount the number of additional items
+         */
+        void request(long aCount);
+
+        /**
+         * Cancels the subscription. Items may still be sent until the
+         * publisher notices the cancellation.
+         */
+        void cancel();
+    }
+}
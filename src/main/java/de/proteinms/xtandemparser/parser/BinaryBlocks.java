@@ -0,0 +1,254 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class writes and reads the length prefixed blocks of the binary
+ * format of parsed X!Tandem files. Arrays are written as their length
+ * followed by the values in big endian order, so that they are read back in
+ * bulk from a memory mapped file. String columns are written as a table of
+ * their distinct strings followed by the index of every entry in the table,
+ * the repeated strings are read back as shared instances.
+ */
+public final class BinaryBlocks {
+
+    /**
+     * The charset of the strings.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * The index written for null strings and the length written for null
+     * arrays and maps.
+     */
+    private static final int NULL = -1;
+    /**
+     * The number of bytes converted at once.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Static methods only.
+     */
+    private BinaryBlocks() {
+    }
+
+    /**
+     * Writes the first values of an int array.
+     *
+     * @param aOutput the output
+     * @param aValues the values
+     * @param aCount the number of values to write
+     * @exception IOException if the values could not be written
+     */
+    public static void writeInts(DataOutputStream aOutput, int[] aValues, int aCount) throws IOException {
+        aOutput.writeInt(aCount);
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        for (int i = 0; i < aCount; i += CHUNK_SIZE / 4) {
+            int length = Math.min(CHUNK_SIZE / 4, aCount - i);
+            chunk.clear();
+            chunk.asIntBuffer().put(aValues, i, length);
+            aOutput.write(chunk.array(), 0, length * 4);
+        }
+    }
+
+    /**
+     * Reads an int array.
+     *
+     * @param aInput the input, positioned after the array afterwards
+     * @return the values
+     */
+    public static int[] readInts(ByteBuffer aInput) {
+        int[] values = new int[aInput.getInt()];
+        aInput.asIntBuffer().get(values);
+        aInput.position(aInput.position() + values.length * 4);
+        return values;
+    }
+
+    /**
+     * Writes the first values of a byte array.
+     *
+     * @param aOutput the output
+     * @param aValues the values
+     * @param aCount the number of values to write
+     * @exception IOException if the values could not be written
+     */
+    public static void writeBytes(DataOutputStream aOutput, byte[] aValues, int aCount) throws IOException {
+        aOutput.writeInt(aCount);
+        aOutput.write(aValues, 0, aCount);
+    }
+
+    /**
+     * Reads a byte array.
+     *
+     * @param aInput the input, positioned after the array afterwards
+     * @return the values
+     */
+    public static byte[] readBytes(ByteBuffer aInput) {
+        byte[] values = new byte[aInput.getInt()];
+        aInput.get(values);
+        return values;
+    }
+
+    /**
+     * Writes the first values of a double array.
+     *
+     * @param aOutput the output
+     * @param aValues the values
+     * @param aCount the number of values to write
+     * @exception IOException if the values could not be written
+     */
+    public static void writeDoubles(DataOutputStream aOutput, double[] aValues, int aCount) throws IOException {
+        aOutput.writeInt(aCount);
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        for (int i = 0; i < aCount; i += CHUNK_SIZE / 8) {
+            int length = Math.min(CHUNK_SIZE / 8, aCount - i);
+            chunk.clear();
+            chunk.asDoubleBuffer().put(aValues, i, length);
+            aOutput.write(chunk.array(), 0, length * 8);
+        }
+    }
+
+    /**
+     * Reads a double array.
+     *
+     * @param aInput the input, positioned after the array afterwards
+     * @return the values
+     */
+    public static double[] readDoubles(ByteBuffer aInput) {
+        double[] values = new double[aInput.getInt()];
+        aInput.asDoubleBuffer().get(values);
+        aInput.position(aInput.position() + values.length * 8);
+        return values;
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param aOutput the output
+     * @param aString the string, may be null
+     * @exception IOException if the string could not be written
+     */
+    public static void writeString(DataOutputStream aOutput, String aString) throws IOException {
+        if (aString == null) {
+            aOutput.writeInt(NULL);
+        } else {
+            byte[] bytes = aString.getBytes(UTF_8);
+            aOutput.writeInt(bytes.length);
+            aOutput.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @param aInput the input, positioned after the string afterwards
+     * @return the string, may be null
+     */
+    public static String readString(ByteBuffer aInput) {
+        int length = aInput.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        aInput.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes the first strings of a string array as a table of the distinct
+     * strings and the indices of the strings in the table.
+     *
+     * @param aOutput the output
+     * @param aStrings the strings
+     * @param aCount the number of strings to write
+     * @exception IOException if the strings could not be written
+     */
+    public static void writeStrings(DataOutputStream aOutput, String[] aStrings, int aCount) throws IOException {
+        HashMap<String, Integer> indices = new HashMap<String, Integer>();
+        String[] table = new String[aCount];
+        int[] entries = new int[aCount];
+        for (int i = 0; i < aCount; i++) {
+            if (aStrings[i] == null) {
+                entries[i] = NULL;
+            } else {
+                Integer index = indices.get(aStrings[i]);
+                if (index == null) {
+                    index = indices.size();
+                    indices.put(aStrings[i], index);
+                    table[index] = aStrings[i];
+                }
+                entries[i] = index;
+            }
+        }
+        aOutput.writeInt(indices.size());
+        for (int i = 0; i < indices.size(); i++) {
+            writeString(aOutput, table[i]);
+        }
+        writeInts(aOutput, entries, aCount);
+    }
+
+    /**
+     * Reads a string array written by
+     * {@link #writeStrings(DataOutputStream, String[], int)}.
+     *
+     * @param aInput the input, positioned after the strings afterwards
+     * @return the strings
+     */
+    public static String[] readStrings(ByteBuffer aInput) {
+        String[] table = new String[aInput.getInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = readString(aInput);
+        }
+        int[] entries = readInts(aInput);
+        String[] strings = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != NULL) {
+                strings[i] = table[entries[i]];
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Writes a map of strings.
+     *
+     * @param aOutput the output
+     * @param aMap the map, may be null
+     * @exception IOException if the map could not be written
+     */
+    public static void writeStringMap(DataOutputStream aOutput, Map<String, String> aMap) throws IOException {
+        if (aMap == null) {
+            aOutput.writeInt(NULL);
+            return;
+        }
+        aOutput.writeInt(aMap.size());
+        for (Map.Entry<String, String> entry : aMap.entrySet()) {
+            writeString(aOutput, entry.getKey());
+            writeString(aOutput, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a map of strings.
+     *
+     * @param aInput the input, positioned after the map afterwards
+     * @return the map, null if null was written
+     */
+    public static HashMap<String, String> readStringMap(ByteBuffer aInput) {
+        int size = aInput.getInt();
+        if (size == NULL) {
+            return null;
+        }
+        HashMap<String, String> map = new HashMap<String, String>(Math.max(16, (int) (size / 0.75f) + 1));
+        for (int i = 0; i < size; i++) {
+            String key = readString(aInput);
+            map.put(key, readString(aInput));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,540 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * This class decompresses a gzip compressed stream on separate threads, so
+ * that compressed X!Tandem files can be parsed without decompressing them to
+ * disk first. The decompressed bytes are handed to the reader in chunks
+ * through a bounded queue.
+ * <p>
+ * Files compressed in independent blocks which record their compressed size,
+ * i.e., multi-member gzip files written by bgzip, are decompressed block
+ * parallel on a thread pool. Other gzip files are decompressed by a single
+ * thread ahead of the reader.
+ * <p>
+ * Use {@link #open(InputStream)} to detect the compression from the magic
+ * bytes. bzip2 and xz compressed files are recognized, but there is no
+ * decompressor for them in the JDK, so they are rejected with an
+ * IOException.
+ */
+public class DecompressingInputStream extends InputStream {
+
+    /**
+     * The compression formats recognized from the magic bytes.
+     */
+    public enum Compression {
+
+        /**
+         * Not compressed, or in an unknown format.
+         */
+        NONE,
+        /**
+         * gzip, magic bytes 1f 8b.
+         */
+        GZIP,
+        /**
+         * bzip2, magic bytes "BZh".
+         */
+        BZIP2,
+        /**
+         * xz, magic bytes fd "7zXZ" 00.
+         */
+        XZ
+    }
+    /**
+     * The size of the chunks decompressed ahead of the reader if the file is
+     * not compressed in blocks.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+    /**
+     * The maximum number of chunks or blocks decompressed ahead of the
+     * reader.
+     */
+    private static final int MAX_PENDING_CHUNKS = 64;
+    /**
+     * The size of the fixed part of a gzip member header, including the
+     * length of the extra field.
+     */
+    private static final int GZIP_HEADER_SIZE = 12;
+    /**
+     * The size of a gzip member trailer, the CRC32 and the uncompressed size.
+     */
+    private static final int GZIP_TRAILER_SIZE = 8;
+    /**
+     * The FEXTRA flag of a gzip header.
+     */
+    private static final int GZIP_FEXTRA = 4;
+    /**
+     * The chunk marking the end of the stream.
+     */
+    private static final FutureTask<byte[]> END_OF_STREAM = completed(null);
+    /**
+     * The compressed stream.
+     */
+    private InputStream iSource;
+    /**
+     * The number of threads decompressing blocks in parallel.
+     */
+    private int iThreads;
+    /**
+     * The chunks in stream order, decompressed or being decompressed.
+     */
+    private BlockingQueue<Future<byte[]>> iChunks = new ArrayBlockingQueue<Future<byte[]>>(MAX_PENDING_CHUNKS);
+    /**
+     * The thread reading the compressed stream.
+     */
+    private Thread iReaderThread;
+    /**
+     * The thread pool decompressing the blocks, null until blocks are found.
+     */
+    private volatile ExecutorService iExecutor = null;
+    /**
+     * The chunk currently read, null before the first read.
+     */
+    private byte[] iCurrent = null;
+    /**
+     * The position of the next byte to read in the current chunk.
+     */
+    private int iPosition = 0;
+    /**
+     * True once the end of the stream has been read.
+     */
+    private boolean iEndOfStream = false;
+    /**
+     * True once the stream is closed.
+     */
+    private boolean iClosed = false;
+
+    /**
+     * Returns a stream of the uncompressed content of a stream which may be
+     * compressed. gzip compressed streams are decompressed, uncompressed
+     * streams are returned buffered.
+     *
+     * @param aInputStream the stream, possibly compressed
+     * @return the stream of the uncompressed content
+     *
+     * @exception IOException if the stream could not be read, or is
+     * compressed in a format which cannot be decompressed, in which case it is
+     * closed
+     */
+    public static InputStream open(InputStream aInputStream) throws IOException {
+        InputStream inputStream = aInputStream.markSupported() ? aInputStream : new BufferedInputStream(aInputStream, 1 << 16);
+        Compression compression = detect(inputStream);
+        if (compression == Compression.GZIP) {
+            return new DecompressingInputStream(inputStream, Runtime.getRuntime().availableProcessors());
+        } else if (compression != Compression.NONE) {
+            inputStream.close();
+            throw new IOException(compression + " compressed files are not supported, only gzip compressed ones");
+        }
+        return inputStream;
+    }
+
+    /**
+     * Detects the compression of a stream from its magic bytes. The stream
+     * has to support mark and reset, its position is not changed.
+     *
+     * @param aInputStream the stream
+     * @return the compression, NONE if not compressed
+     *
+     * @exception IOException if the stream could not be read
+     */
+    public static Compression detect(InputStream aInputStream) throws IOException {
+        byte[] magic = new byte[6];
+        aInputStream.mark(magic.length);
+        int length = 0;
+        int read = 0;
+        while (length < magic.length && (read = aInputStream.read(magic, length, magic.length - length)) >= 0) {
+            length += read;
+        }
+        aInputStream.reset();
+
+        if (length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Compression.GZIP;
+        } else if (length >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h') {
+            return Compression.BZIP2;
+        } else if (length >= 6 && (magic[0] & 0xff) == 0xfd && magic[1] == '7' && magic[2] == 'z'
+                && magic[3] == 'X' && magic[4] == 'Z' && magic[5] == 0) {
+            return Compression.XZ;
+        }
+        return Compression.NONE;
+    }
+
+    /**
+     * Starts decompressing a gzip compressed stream.
+     *
+     * @param aSource the gzip compressed stream, has to support mark and
+     * reset
+     * @param aThreads the number of threads decompressing blocks in parallel
+     */
+    public DecompressingInputStream(InputStream aSource, int aThreads) {
+        if (!aSource.markSupported()) {
+            throw new IllegalArgumentException("The stream has to support mark and reset");
+        }
+        if (aThreads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + aThreads);
+        }
+        iSource = aSource;
+        iThreads = aThreads;
+        iReaderThread = new Thread(new Runnable() {
+            public void run() {
+                readChunks();
+            }
+        }, "X!Tandem decompression");
+        iReaderThread.setDaemon(true);
+        iReaderThread.start();
+    }
+
+    /**
+     * Reads the compressed stream and queues its chunks. Runs on the reader
+     * thread.
+     */
+    private void readChunks() {
+        try {
+            try {
+                byte[] block;
+                while ((block = readBlock()) != null) {
+                    if (iExecutor == null) {
+                        iExecutor = Executors.newFixedThreadPool(iThreads, new ThreadFactory() {
+                            public Thread newThread(Runnable aRunnable) {
+                                Thread thread = new Thread(aRunnable, "X!Tandem block decompression");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                    }
+                    final byte[] member = block;
+                    iChunks.put(iExecutor.submit(new Callable<byte[]>() {
+                        public byte[] call() throws IOException {
+                            return inflateMember(member);
+                        }
+                    }));
+                }
+                if (!isAtEnd()) {
+                    // not compressed in blocks from here on
+                    GZIPInputStream gzipInputStream = new GZIPInputStream(iSource, 1 << 16);
+                    while (true) {
+                        byte[] chunk = readChunk(gzipInputStream);
+                        if (chunk == null) {
+                            break;
+                        }
+                        iChunks.put(completed(chunk));
+                    }
+                }
+            } catch (IOException e) {
+                iChunks.put(failed(e));
+                return;
+            }
+            iChunks.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            // the stream is closed
+        }
+    }
+
+    /**
+     * Reads the next gzip member if it records its compressed size in a BC
+     * subfield of its extra field, as written by bgzip.
+     *
+     * @return the whole member, null at the end of the stream or if the next
+     * member does not record its size, in which case the stream is left on
+     * its start
+     *
+     * @exception IOException if the stream could not be read
+     */
+    private byte[] readBlock() throws IOException {
+        iSource.mark(GZIP_HEADER_SIZE + 0xffff);
+        byte[] header = new byte[GZIP_HEADER_SIZE];
+        if (readFully(header, 0, header.length) < header.length
+                || (header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8
+                || (header[3] & GZIP_FEXTRA) == 0) {
+            iSource.reset();
+            return null;
+        }
+        int extraLength = (header[10] & 0xff) | (header[11] & 0xff) << 8;
+        byte[] extra = new byte[extraLength];
+        if (readFully(extra, 0, extraLength) < extraLength) {
+            iSource.reset();
+            return null;
+        }
+
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extraLength;) {
+            int subfieldLength = (extra[i + 2] & 0xff) | (extra[i + 3] & 0xff) << 8;
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2 && i + 6 <= extraLength) {
+                blockSize = ((extra[i + 4] & 0xff) | (extra[i + 5] & 0xff) << 8) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        if (blockSize < GZIP_HEADER_SIZE + extraLength + GZIP_TRAILER_SIZE) {
+            iSource.reset();
+            return null;
+        }
+
+        byte[] block = new byte[blockSize];
+        System.arraycopy(header, 0, block, 0, header.length);
+        System.arraycopy(extra, 0, block, header.length, extraLength);
+        int offset = header.length + extraLength;
+        if (readFully(block, offset, blockSize - offset) < blockSize - offset) {
+            throw new EOFException("Unexpected end of the gzip compressed stream");
+        }
+        return block;
+    }
+
+    /**
+     * Decompresses a gzip member holding a single deflate block, as written by
+     * bgzip.
+     *
+     * @param aMember the whole member
+     * @return the uncompressed bytes
+     *
+     * @exception IOException if the member is corrupt
+     */
+    private static byte[] inflateMember(byte[] aMember) throws IOException {
+        int extraLength = (aMember[10] & 0xff) | (aMember[11] & 0xff) << 8;
+        int dataStart = GZIP_HEADER_SIZE + extraLength;
+        int trailer = aMember.length - GZIP_TRAILER_SIZE;
+        long crc = readUnsignedInt(aMember, trailer);
+        long size = readUnsignedInt(aMember, trailer + 4);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("gzip block of " + size + " bytes too large");
+        }
+
+        byte[] bytes = new byte[(int) size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(aMember, dataStart, trailer - dataStart);
+            int length = 0;
+            while (length < bytes.length) {
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0) {
+                    // finished early, or more input or a dictionary needed
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != bytes.length) {
+                throw new IOException("Corrupt gzip block, " + length + " bytes instead of " + bytes.length);
+            }
+            if (!inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                throw new IOException("Corrupt gzip block, more than " + bytes.length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt gzip block: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        if (checksum.getValue() != crc) {
+            throw new IOException("Corrupt gzip block, CRC mismatch");
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads the next chunk of a stream.
+     *
+     * @param aInputStream the stream
+     * @return the chunk, null at the end of the stream
+     *
+     * @exception IOException if the stream could not be read
+     */
+    private static byte[] readChunk(InputStream aInputStream) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length = 0;
+        int read;
+        while (length < chunk.length && (read = aInputStream.read(chunk, length, chunk.length - length)) >= 0) {
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length < chunk.length) {
+            byte[] shortChunk = new byte[length];
+            System.arraycopy(chunk, 0, shortChunk, 0, length);
+            return shortChunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Reads bytes from the compressed stream until the given number is read
+     * or the stream ends.
+     *
+     * @param aBuffer the buffer
+     * @param aOffset the position to read to
+     * @param aLength the number of bytes to read
+     * @return the number of bytes read
+     *
+     * @exception IOException if the stream could not be read
+     */
+    private int readFully(byte[] aBuffer, int aOffset, int aLength) throws IOException {
+        int length = 0;
+        int read;
+        while (length < aLength && (read = iSource.read(aBuffer, aOffset + length, aLength - length)) >= 0) {
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Returns true if the compressed stream has no more bytes.
+     *
+     * @return true at the end of the stream
+     *
+     * @exception IOException if the stream could not be read
+     */
+    private boolean isAtEnd() throws IOException {
+        iSource.mark(1);
+        boolean atEnd = iSource.read() < 0;
+        iSource.reset();
+        return atEnd;
+    }
+
+    /**
+     * Reads an unsigned little endian int.
+     *
+     * @param aBytes the bytes
+     * @param aOffset the position of the int
+     * @return the value
+     */
+    private static long readUnsignedInt(byte[] aBytes, int aOffset) {
+        return (aBytes[aOffset] & 0xffL) | (aBytes[aOffset + 1] & 0xffL) << 8
+                | (aBytes[aOffset + 2] & 0xffL) << 16 | (aBytes[aOffset + 3] & 0xffL) << 24;
+    }
+
+    /**
+     * Returns a completed chunk.
+     *
+     * @param aChunk the chunk
+     * @return the completed future of the chunk
+     */
+    private static FutureTask<byte[]> completed(final byte[] aChunk) {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+            public byte[] call() {
+                return aChunk;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * Returns a failed chunk.
+     *
+     * @param aException the cause of the failure
+     * @return the failed future
+     */
+    private static FutureTask<byte[]> failed(final IOException aException) {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                throw aException;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * Moves to the next chunk holding unread bytes, waiting for it to be
+     * decompressed.
+     *
+     * @return false at the end of the stream
+     *
+     * @exception IOException if the stream could not be decompressed
+     */
+    private boolean nextChunk() throws IOException {
+        if (iClosed) {
+            throw new IOException("Stream closed");
+        }
+        while (iCurrent == null || iPosition == iCurrent.length) {
+            if (iEndOfStream) {
+                return false;
+            }
+            try {
+                iCurrent = iChunks.take().get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for the decompression");
+            } catch (ExecutionException e) {
+                iEndOfStream = true;
+                iCurrent = null;
+                throw new IOException("Error decompressing the file: " + e.getCause().getMessage(), e.getCause());
+            }
+            iPosition = 0;
+            if (iCurrent == null) {
+                iEndOfStream = true;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return iCurrent[iPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] aBuffer, int aOffset, int aLength) throws IOException {
+        if (aLength == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int length = Math.min(aLength, iCurrent.length - iPosition);
+        System.arraycopy(iCurrent, iPosition, aBuffer, aOffset, length);
+        iPosition += length;
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return iCurrent == null || iClosed ? 0 : iCurrent.length - iPosition;
+    }
+
+    /**
+     * Stops the decompression and closes the compressed stream.
+     *
+     * @exception IOException if the stream could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (iClosed) {
+            return;
+        }
+        iClosed = true;
+        iCurrent = null;
+        iReaderThread.interrupt();
+        try {
+            iReaderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (iExecutor != null) {
+            iExecutor.shutdownNow();
+        }
+        iChunks.clear();
+        iSource.close();
+    }
+}
@@ -0,0 +1,240 @@
+package de.proteinms.xtandemparser.parser;
+
+/**
+ * This class parses the whitespace separated numbers of a GAML:values element
+ * straight into primitive arrays. The characters are scanned in place, no
+ * substrings and no boxed numbers are created. Doubles with up to 15
+ * significant digits and small exponents are computed exactly from their
+ * digits, longer or unusual numbers fall back to
+ * {@link Double#parseDouble(String)}, so the results are always identical to
+ * the ones of the Java parser.
+ */
+public final class GamlValuesScanner {
+
+    /**
+     * The powers of ten which can be represented exactly as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /**
+     * The maximum number of significant digits computed exactly.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * Static methods only.
+     */
+    private GamlValuesScanner() {
+    }
+
+    /**
+     * Returns the number of whitespace separated values in a text.
+     *
+     * @param aText the text
+     * @return the number of values
+     */
+    public static int countValues(CharSequence aText) {
+        int count = 0;
+        boolean inValue = false;
+        for (int i = 0; i < aText.length(); i++) {
+            boolean whitespace = aText.charAt(i) <= ' ';
+            if (!whitespace && !inValue) {
+                count++;
+            }
+            inValue = !whitespace;
+        }
+        return count;
+    }
+
+    /**
+     * Parses the whitespace separated doubles of a text.
+     *
+     * @param aText the text
+     * @return the values
+     * @throws NumberFormatException if a value is not a number
+     */
+    public static double[] parseDoubles(CharSequence aText) {
+        double[] values = new double[countValues(aText)];
+        int length = aText.length();
+        int position = skipWhitespace(aText, 0);
+        for (int v = 0; v < values.length; v++) {
+            int end = position;
+            while (end < length && aText.charAt(end) > ' ') {
+                end++;
+            }
+            values[v] = parseDouble(aText, position, end);
+            position = skipWhitespace(aText, end);
+        }
+        return values;
+    }
+
+    /**
+     * Parses the whitespace separated integers of a text.
+     *
+     * @param aText the text
+     * @return the values
+     * @throws NumberFormatException if a value is not an integer
+     */
+    public static int[] parseInts(CharSequence aText) {
+        int[] values = new int[countValues(aText)];
+        int length = aText.length();
+        int position = skipWhitespace(aText, 0);
+        for (int v = 0; v < values.length; v++) {
+            int end = position;
+            while (end < length && aText.charAt(end) > ' ') {
+                end++;
+            }
+            values[v] = parseInt(aText, position, end);
+            position = skipWhitespace(aText, end);
+        }
+        return values;
+    }
+
+    /**
+     * Parses a double.
+     *
+     * @param aText the text holding the value
+     * @param aStart the index of the first character
+     * @param aEnd the index after the last character
+     * @return the value
+     * @throws NumberFormatException if the value is not a number
+     */
+    public static double parseDouble(CharSequence aText, int aStart, int aEnd) {
+        int i = aStart;
+        boolean negative = false;
+        if (i < aEnd && (aText.charAt(i) == '-' || aText.charAt(i) == '+')) {
+            negative = aText.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean point = false;
+
+        for (; i < aEnd; i++) {
+            char c = aText.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                    if (significantDigits > MAX_EXACT_DIGITS) {
+                        return fallbackDouble(aText, aStart, aEnd);
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) {
+                    exponent--;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+
+        if (digits == 0) {
+            return fallbackDouble(aText, aStart, aEnd);
+        }
+
+        if (i < aEnd) {
+            char c = aText.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return fallbackDouble(aText, aStart, aEnd);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < aEnd && (aText.charAt(i) == '-' || aText.charAt(i) == '+')) {
+                negativeExponent = aText.charAt(i) == '-';
+                i++;
+            }
+            if (i == aEnd || aEnd - i > 3) {
+                return fallbackDouble(aText, aStart, aEnd);
+            }
+            int explicitExponent = 0;
+            for (; i < aEnd; i++) {
+                c = aText.charAt(i);
+                if (c < '0' || c > '9') {
+                    return fallbackDouble(aText, aStart, aEnd);
+                }
+                explicitExponent = explicitExponent * 10 + (c - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        // The mantissa and the power of ten are exact, the product or quotient
+        // is therefore correctly rounded
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return fallbackDouble(aText, aStart, aEnd);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses an int.
+     *
+     * @param aText the text holding the value
+     * @param aStart the index of the first character
+     * @param aEnd the index after the last character
+     * @return the value
+     * @throws NumberFormatException if the value is not an integer
+     */
+    public static int parseInt(CharSequence aText, int aStart, int aEnd) {
+        int i = aStart;
+        boolean negative = false;
+        if (i < aEnd && (aText.charAt(i) == '-' || aText.charAt(i) == '+')) {
+            negative = aText.charAt(i) == '-';
+            i++;
+        }
+        if (i == aEnd || aEnd - i > 9) {
+            return Integer.parseInt(aText.subSequence(aStart, aEnd).toString());
+        }
+        int value = 0;
+        for (; i < aEnd; i++) {
+            char c = aText.charAt(i);
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(aText.subSequence(aStart, aEnd).toString());
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a double with {@link Double#parseDouble(String)}.
+     *
+     * @param aText the text holding the value
+     * @param aStart the index of the first character
+     * @param aEnd the index after the last character
+     * @return the value
+     */
+    private static double fallbackDouble(CharSequence aText, int aStart, int aEnd) {
+        return Double.parseDouble(aText.subSequence(aStart, aEnd).toString());
+    }
+
+    /**
+     * Returns the index of the next character which is not whitespace.
+     *
+     * @param aText the text
+     * @param aStart the index to start from
+     * @return the index of the next non whitespace character, or the length of
+     * the text
+     */
+    private static int skipWhitespace(CharSequence aText, int aStart) {
+        int i = aStart;
+        while (i < aText.length() && aText.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+}
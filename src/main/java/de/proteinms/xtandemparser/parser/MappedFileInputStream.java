@@ -0,0 +1,208 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class reads a file through memory mapped windows of a
+ * {@link FileChannel}, so that the bytes are read straight from the page
+ * cache instead of being copied through the buffers of a
+ * {@link FileInputStream}. Files larger than the address range of a single
+ * mapping, e.g., X!Tandem files of several GB, are mapped one window at a
+ * time.
+ */
+public class MappedFileInputStream extends InputStream {
+
+    /**
+     * The default size of the mapped windows.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 256 << 20;
+    /**
+     * The stream of the file.
+     */
+    private FileInputStream iFileInputStream;
+    /**
+     * The channel of the file.
+     */
+    private FileChannel iChannel;
+    /**
+     * The size of the file.
+     */
+    private long iFileSize;
+    /**
+     * The size of the mapped windows.
+     */
+    private int iWindowSize;
+    /**
+     * The file offset of the current window.
+     */
+    private long iWindowOffset = 0;
+    /**
+     * The current window, null before the first read.
+     */
+    private MappedByteBuffer iWindow = null;
+    /**
+     * The file offset of the mark, -1 if not set.
+     */
+    private long iMark = -1;
+
+    /**
+     * Opens a file with the default window size.
+     *
+     * @param aFile the file to read
+     *
+     * @exception IOException if the file could not be opened
+     */
+    public MappedFileInputStream(File aFile) throws IOException {
+        this(aFile, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a file with the given window size.
+     *
+     * @param aFile the file to read
+     * @param aWindowSize the size of the mapped windows in bytes
+     *
+     * @exception IOException if the file could not be opened
+     */
+    public MappedFileInputStream(File aFile, int aWindowSize) throws IOException {
+        if (aWindowSize <= 0) {
+            throw new IllegalArgumentException("The window size must be positive: " + aWindowSize);
+        }
+        iFileInputStream = new FileInputStream(aFile);
+        iChannel = iFileInputStream.getChannel();
+        iFileSize = iChannel.size();
+        iWindowSize = aWindowSize;
+    }
+
+    /**
+     * Returns the current position in the file.
+     *
+     * @return the position in bytes
+     */
+    public long getPosition() {
+        return iWindow == null ? iWindowOffset : iWindowOffset + iWindow.position();
+    }
+
+    /**
+     * Moves to a position in the file.
+     *
+     * @param aPosition the position in bytes
+     *
+     * @exception IOException if the window could not be mapped
+     */
+    public void seek(long aPosition) throws IOException {
+        if (aPosition < 0 || aPosition > iFileSize) {
+            throw new IOException("Position " + aPosition + " outside of the file of " + iFileSize + " bytes");
+        }
+        if (iWindow != null && aPosition >= iWindowOffset && aPosition <= iWindowOffset + iWindow.limit()) {
+            iWindow.position((int) (aPosition - iWindowOffset));
+        } else {
+            map(aPosition);
+        }
+    }
+
+    /**
+     * Returns the window holding the next byte, mapping the next window if the
+     * current one is exhausted.
+     *
+     * @return the window, null at the end of the file
+     *
+     * @exception IOException if the window could not be mapped
+     */
+    private MappedByteBuffer window() throws IOException {
+        if (iChannel == null) {
+            throw new IOException("Stream closed");
+        }
+        if (iWindow == null) {
+            map(iWindowOffset);
+        } else if (!iWindow.hasRemaining()) {
+            map(iWindowOffset + iWindow.limit());
+        }
+        return iWindow.hasRemaining() ? iWindow : null;
+    }
+
+    /**
+     * Maps the window starting at the given position.
+     *
+     * @param aPosition the position in bytes
+     *
+     * @exception IOException if the window could not be mapped
+     */
+    private void map(long aPosition) throws IOException {
+        long size = Math.min(iWindowSize, iFileSize - aPosition);
+        iWindow = null;
+        iWindow = iChannel.map(FileChannel.MapMode.READ_ONLY, aPosition, size);
+        iWindowOffset = aPosition;
+    }
+
+    @Override
+    public int read() throws IOException {
+        MappedByteBuffer window = window();
+        return window == null ? -1 : window.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] aBuffer, int aOffset, int aLength) throws IOException {
+        if (aLength == 0) {
+            return 0;
+        }
+        MappedByteBuffer window = window();
+        if (window == null) {
+            return -1;
+        }
+        int length = Math.min(aLength, window.remaining());
+        window.get(aBuffer, aOffset, length);
+        return length;
+    }
+
+    @Override
+    public long skip(long aLength) throws IOException {
+        long position = getPosition();
+        long skipped = Math.max(0, Math.min(aLength, iFileSize - position));
+        seek(position + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, iFileSize - getPosition());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int aReadLimit) {
+        iMark = getPosition();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (iMark < 0) {
+            throw new IOException("Mark not set");
+        }
+        seek(iMark);
+    }
+
+    /**
+     * Closes the file. The mapped windows are released by the garbage
+     * collector.
+     *
+     * @exception IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        iWindow = null;
+        if (iChannel != null) {
+            iChannel = null;
+            iFileInputStream.close();
+        }
+    }
+}
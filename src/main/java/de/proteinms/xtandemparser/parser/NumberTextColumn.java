@@ -0,0 +1,334 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class keeps the text of the numbers of a double column of the result
+ * store, so that the raw maps return the numbers as written in the X!Tandem
+ * file, e.g., "8.0e-01" and not "0.8". Instead of the text, the layout of
+ * every number is stored in a byte: the number of fraction digits, and for
+ * the scientific notation the number of exponent digits and the case of the
+ * exponent character. Together with the parsed value this gives back the
+ * text, as long as the number has at most 15 significant digits and no
+ * redundant characters. The few numbers which do not fit, e.g., with leading
+ * zeros, a plus sign or too many digits, are kept as text.
+ */
+final class NumberTextColumn implements Serializable {
+
+    /**
+     * The format of a number without text, e.g., a missing value.
+     */
+    private static final byte NO_FORMAT = 0;
+    /**
+     * The mask of the number of fraction digits plus one.
+     */
+    private static final int FRACTION_DIGITS = 0x1F;
+    /**
+     * The shift of the number of exponent digits, 0 in fixed notation.
+     */
+    private static final int EXPONENT_DIGITS_SHIFT = 5;
+    /**
+     * The mask of the number of exponent digits after shifting.
+     */
+    private static final int EXPONENT_DIGITS = 0x3;
+    /**
+     * The flag of an upper case exponent character.
+     */
+    private static final int UPPER_CASE_EXPONENT = 0x80;
+    /**
+     * The maximum number of significant digits given back exactly from a
+     * double.
+     */
+    private static final int MAX_SIGNIFICANT_DIGITS = 15;
+    /**
+     * The maximum exponent of the numbers in scientific notation, the
+     * smaller numbers lose digits as subnormal doubles.
+     */
+    private static final int MAX_EXPONENT = 300;
+    /**
+     * The context rounding a double to the digits it was parsed from.
+     */
+    private static final MathContext SIGNIFICANT_DIGITS = new MathContext(MAX_SIGNIFICANT_DIGITS, RoundingMode.HALF_EVEN);
+    /**
+     * The formats of the numbers.
+     */
+    private byte[] iFormats;
+    /**
+     * The texts of the numbers without format, null until the first such
+     * number is added.
+     */
+    private String[] iTexts = null;
+
+    /**
+     * Creates a column.
+     *
+     * @param aCapacity the initial capacity
+     */
+    NumberTextColumn(int aCapacity) {
+        iFormats = new byte[aCapacity];
+    }
+
+    /**
+     * Sets the text of a number.
+     *
+     * @param aIndex the index of the number
+     * @param aText the text holding the number
+     * @param aStart the index of the first character
+     * @param aEnd the index after the last character
+     */
+    void set(int aIndex, CharSequence aText, int aStart, int aEnd) {
+        byte format = getFormat(aText, aStart, aEnd);
+        iFormats[aIndex] = format;
+        if (format == NO_FORMAT) {
+            if (iTexts == null) {
+                iTexts = new String[iFormats.length];
+            }
+            iTexts[aIndex] = aText.subSequence(aStart, aEnd).toString();
+        } else if (iTexts != null) {
+            iTexts[aIndex] = null;
+        }
+    }
+
+    /**
+     * Returns the text of a number.
+     *
+     * @param aIndex the index of the number
+     * @param aValue the value of the number
+     * @return the text, formatted with {@link Double#toString(double)} if no
+     * text was set, null if the value is missing and no text was set
+     */
+    String get(int aIndex, double aValue) {
+        if (iTexts != null && iTexts[aIndex] != null) {
+            return iTexts[aIndex];
+        } else if (Double.isNaN(aValue)) {
+            return null;
+        } else if (iFormats[aIndex] == NO_FORMAT) {
+            return Double.toString(aValue);
+        }
+        return format(aValue, iFormats[aIndex]);
+    }
+
+    /**
+     * Returns the format of a number, i.e., the layout which gives back the
+     * text from the parsed value.
+     *
+     * @param aText the text holding the number
+     * @param aStart the index of the first character
+     * @param aEnd the index after the last character
+     * @return the format, NO_FORMAT if the text cannot be given back
+     */
+    static byte getFormat(CharSequence aText, int aStart, int aEnd) {
+        int i = aStart;
+        if (i < aEnd && aText.charAt(i) == '-') {
+            i++;
+        }
+
+        int integerStart = i;
+        int significantDigits = 0;
+        for (; i < aEnd && isDigit(aText.charAt(i)); i++) {
+            if (significantDigits > 0 || aText.charAt(i) != '0') {
+                significantDigits++;
+            }
+        }
+        int integerDigits = i - integerStart;
+        if (integerDigits == 0) {
+            return NO_FORMAT;
+        }
+
+        int fractionDigits = 0;
+        if (i < aEnd && aText.charAt(i) == '.') {
+            i++;
+            for (; i < aEnd && isDigit(aText.charAt(i)); i++) {
+                fractionDigits++;
+                if (significantDigits > 0 || aText.charAt(i) != '0') {
+                    significantDigits++;
+                }
+            }
+            if (fractionDigits == 0) {
+                return NO_FORMAT;
+            }
+        }
+        if (significantDigits > MAX_SIGNIFICANT_DIGITS || fractionDigits + 1 > FRACTION_DIGITS) {
+            return NO_FORMAT;
+        }
+
+        int format = fractionDigits + 1;
+
+        if (i == aEnd) {
+            // fixed notation, without leading zeros
+            if (integerDigits > 1 && aText.charAt(integerStart) == '0') {
+                return NO_FORMAT;
+            }
+            return (byte) format;
+        }
+
+        // scientific notation, with one integer digit which is not zero unless the number is
+        char exponentCharacter = aText.charAt(i++);
+        if ((exponentCharacter != 'e' && exponentCharacter != 'E') || integerDigits != 1
+                || (significantDigits > 0) != (aText.charAt(integerStart) != '0')) {
+            return NO_FORMAT;
+        }
+        if (i == aEnd || (aText.charAt(i) != '-' && aText.charAt(i) != '+')) {
+            return NO_FORMAT;
+        }
+        i++;
+        int exponentDigits = aEnd - i;
+        if (exponentDigits < 1 || exponentDigits > EXPONENT_DIGITS) {
+            return NO_FORMAT;
+        }
+        int exponent = 0;
+        for (; i < aEnd; i++) {
+            if (!isDigit(aText.charAt(i))) {
+                return NO_FORMAT;
+            }
+            exponent = exponent * 10 + aText.charAt(i) - '0';
+        }
+        if (exponent > MAX_EXPONENT || (significantDigits == 0 && exponent != 0)) {
+            return NO_FORMAT;
+        }
+
+        format |= exponentDigits << EXPONENT_DIGITS_SHIFT;
+        if (exponentCharacter == 'E') {
+            format |= UPPER_CASE_EXPONENT;
+        }
+        return (byte) format;
+    }
+
+    /**
+     * Formats a number.
+     *
+     * @param aValue the value
+     * @param aFormat the format, see
+     * {@link #getFormat(CharSequence, int, int)}
+     * @return the text
+     */
+    static String format(double aValue, byte aFormat) {
+        int fractionDigits = (aFormat & FRACTION_DIGITS) - 1;
+        int exponentDigits = (aFormat >> EXPONENT_DIGITS_SHIFT) & EXPONENT_DIGITS;
+
+        StringBuilder text = new StringBuilder();
+        if (aValue < 0 || (aValue == 0 && 1 / aValue < 0)) {
+            text.append('-');
+        }
+
+        BigDecimal value = aValue == 0 ? BigDecimal.ZERO
+                : new BigDecimal(Double.toString(Math.abs(aValue))).round(SIGNIFICANT_DIGITS).stripTrailingZeros();
+
+        if (exponentDigits == 0) {
+            return text.append(value.setScale(fractionDigits, RoundingMode.HALF_EVEN).toPlainString()).toString();
+        }
+
+        int exponent = aValue == 0 ? 0 : value.precision() - value.scale() - 1;
+        text.append(value.movePointLeft(exponent).setScale(fractionDigits, RoundingMode.HALF_EVEN).toPlainString());
+        text.append((aFormat & UPPER_CASE_EXPONENT) != 0 ? 'E' : 'e').append(exponent < 0 ? '-' : '+');
+        String exponentText = Integer.toString(Math.abs(exponent));
+        for (int i = exponentText.length(); i < exponentDigits; i++) {
+            text.append('0');
+        }
+        return text.append(exponentText).toString();
+    }
+
+    /**
+     * Returns true if the character is a decimal digit.
+     *
+     * @param aCharacter the character
+     * @return true if the character is a decimal digit
+     */
+    private static boolean isDigit(char aCharacter) {
+        return aCharacter >= '0' && aCharacter <= '9';
+    }
+
+    /**
+     * Ensures that the column can hold the given number of entries.
+     *
+     * @param aCapacity the required capacity
+     */
+    void ensureCapacity(int aCapacity) {
+        if (aCapacity > iFormats.length) {
+            iFormats = Arrays.copyOf(iFormats, aCapacity);
+            if (iTexts != null) {
+                iTexts = Arrays.copyOf(iTexts, aCapacity);
+            }
+        }
+    }
+
+    /**
+     * Appends the entries of another column, the capacity has to be ensured
+     * before.
+     *
+     * @param aColumn the column to append
+     * @param aCount the number of entries to append
+     * @param aOffset the index of the first appended entry
+     */
+    void append(NumberTextColumn aColumn, int aCount, int aOffset) {
+        System.arraycopy(aColumn.iFormats, 0, iFormats, aOffset, aCount);
+        if (aColumn.iTexts != null) {
+            if (iTexts == null) {
+                iTexts = new String[iFormats.length];
+            }
+            System.arraycopy(aColumn.iTexts, 0, iTexts, aOffset, aCount);
+        } else if (iTexts != null) {
+            Arrays.fill(iTexts, aOffset, aOffset + aCount, null);
+        }
+    }
+
+    /**
+     * Clears the entries of a range, e.g., of the removed entries.
+     *
+     * @param aFrom the index of the first entry
+     * @param aTo the index after the last entry
+     */
+    void clear(int aFrom, int aTo) {
+        Arrays.fill(iFormats, aFrom, aTo, NO_FORMAT);
+        if (iTexts != null) {
+            Arrays.fill(iTexts, aFrom, aTo, null);
+        }
+    }
+
+    /**
+     * Trims the capacity of the column to the given number of entries.
+     *
+     * @param aCount the number of entries
+     */
+    void trimToSize(int aCount) {
+        iFormats = Arrays.copyOf(iFormats, aCount);
+        if (iTexts != null) {
+            iTexts = Arrays.copyOf(iTexts, aCount);
+        }
+    }
+
+    /**
+     * Writes the first entries to the binary format of parsed files.
+     *
+     * @param aOutput the output
+     * @param aCount the number of entries to write
+     * @exception IOException if the entries could not be written
+     */
+    void write(DataOutputStream aOutput, int aCount) throws IOException {
+        BinaryBlocks.writeBytes(aOutput, iFormats, aCount);
+        BinaryBlocks.writeStrings(aOutput, iTexts != null ? iTexts : new String[0], iTexts != null ? aCount : 0);
+    }
+
+    /**
+     * Reads the entries written by {@link #write(DataOutputStream, int)}.
+     *
+     * @param aInput the input, positioned after the entries afterwards
+     * @return the column
+     */
+    static NumberTextColumn read(ByteBuffer aInput) {
+        NumberTextColumn column = new NumberTextColumn(0);
+        column.iFormats = BinaryBlocks.readBytes(aInput);
+        String[] texts = BinaryBlocks.readStrings(aInput);
+        if (texts.length > 0) {
+            column.iTexts = texts;
+        }
+        return column;
+    }
+}
@@ -0,0 +1,313 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class reads a file ahead of the reader on a separate thread. The I/O
+ * thread fills a ring of reusable direct buffers from a {@link FileChannel}
+ * while the reading thread consumes the filled ones, so that the latency of
+ * slow disks and network file systems overlaps with the parsing instead of
+ * stalling it.
+ * <p>
+ * The time the reading thread waited for the I/O thread is counted as stall
+ * time, the time the I/O thread waited for a free buffer is counted as idle
+ * time. A high stall time means the parsing is bound by the I/O, a high idle
+ * time means it is bound by the parsing.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    /**
+     * The default number of buffers.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+    /**
+     * The default size of the buffers.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    /**
+     * The marker queued by the I/O thread at the end of the file or on an
+     * error.
+     */
+    private static final ByteBuffer END_OF_FILE = ByteBuffer.allocate(0);
+    /**
+     * The stream of the file.
+     */
+    private FileInputStream iFileInputStream;
+    /**
+     * The channel of the file.
+     */
+    private FileChannel iChannel;
+    /**
+     * The buffers free to be filled by the I/O thread.
+     */
+    private BlockingQueue<ByteBuffer> iFreeBuffers;
+    /**
+     * The buffers filled by the I/O thread, in file order.
+     */
+    private BlockingQueue<ByteBuffer> iFilledBuffers;
+    /**
+     * The I/O thread.
+     */
+    private Thread iReaderThread;
+    /**
+     * The buffer currently read, null before the first read.
+     */
+    private ByteBuffer iCurrent = null;
+    /**
+     * The error of the I/O thread, null if none.
+     */
+    private volatile IOException iReadError = null;
+    /**
+     * True once the stream is closed.
+     */
+    private boolean iClosed = false;
+    /**
+     * The number of buffers.
+     */
+    private int iBufferCount;
+    /**
+     * The size of the buffers.
+     */
+    private int iBufferSize;
+    /**
+     * The number of times the reading thread waited for a buffer.
+     */
+    private long iStallCount = 0;
+    /**
+     * The time in nanoseconds the reading thread waited for buffers.
+     */
+    private long iStallTime = 0;
+    /**
+     * The time in nanoseconds the I/O thread waited for free buffers.
+     */
+    private volatile long iIdleTime = 0;
+
+    /**
+     * Opens a file with the default number and size of buffers.
+     *
+     * @param aFile the file to read
+     *
+     * @exception IOException if the file could not be opened
+     */
+    public ReadAheadInputStream(File aFile) throws IOException {
+        this(aFile, DEFAULT_BUFFER_COUNT, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a file with the given number and size of buffers. The I/O thread
+     * starts reading immediately.
+     *
+     * @param aFile the file to read
+     * @param aBufferCount the number of buffers, at least two so that one can
+     * be filled while the other one is read
+     * @param aBufferSize the size of the buffers in bytes
+     *
+     * @exception IOException if the file could not be opened
+     */
+    public ReadAheadInputStream(File aFile, int aBufferCount, int aBufferSize) throws IOException {
+        if (aBufferCount < 2) {
+            throw new IllegalArgumentException("At least two buffers are needed: " + aBufferCount);
+        }
+        if (aBufferSize <= 0) {
+            throw new IllegalArgumentException("The buffer size must be positive: " + aBufferSize);
+        }
+        iBufferCount = aBufferCount;
+        iBufferSize = aBufferSize;
+        iFreeBuffers = new ArrayBlockingQueue<ByteBuffer>(aBufferCount);
+        // one more for the end of file marker, the I/O thread never blocks on it
+        iFilledBuffers = new ArrayBlockingQueue<ByteBuffer>(aBufferCount + 1);
+        for (int i = 0; i < aBufferCount; i++) {
+            iFreeBuffers.add(ByteBuffer.allocateDirect(aBufferSize));
+        }
+        iFileInputStream = new FileInputStream(aFile);
+        iChannel = iFileInputStream.getChannel();
+        iReaderThread = new Thread(new Runnable() {
+            public void run() {
+                readAhead();
+            }
+        }, "X!Tandem read-ahead " + aFile.getName());
+        iReaderThread.setDaemon(true);
+        iReaderThread.start();
+    }
+
+    /**
+     * Fills the free buffers until the end of the file. Runs on the I/O
+     * thread.
+     */
+    private void readAhead() {
+        try {
+            while (true) {
+                ByteBuffer buffer = iFreeBuffers.poll();
+                if (buffer == null) {
+                    long start = System.nanoTime();
+                    buffer = iFreeBuffers.take();
+                    iIdleTime += System.nanoTime() - start;
+                }
+                buffer.clear();
+                int read = 0;
+                while (buffer.hasRemaining() && (read = iChannel.read(buffer)) >= 0) {
+                    // fill the whole buffer
+                }
+                buffer.flip();
+                if (buffer.hasRemaining()) {
+                    iFilledBuffers.put(buffer);
+                }
+                if (read < 0) {
+                    iFilledBuffers.put(END_OF_FILE);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // the stream is closed
+        } catch (IOException e) {
+            iReadError = e;
+            iFilledBuffers.offer(END_OF_FILE);
+        }
+    }
+
+    /**
+     * Returns the buffer holding the next byte, waiting for the I/O thread if
+     * no filled buffer is available.
+     *
+     * @return the buffer, null at the end of the file
+     *
+     * @exception IOException if the file could not be read
+     */
+    private ByteBuffer current() throws IOException {
+        if (iClosed) {
+            throw new IOException("Stream closed");
+        }
+        if (iCurrent == END_OF_FILE) {
+            return null;
+        }
+        if (iCurrent != null && iCurrent.hasRemaining()) {
+            return iCurrent;
+        }
+        if (iCurrent != null) {
+            iFreeBuffers.add(iCurrent);
+        }
+        iCurrent = iFilledBuffers.poll();
+        if (iCurrent == null) {
+            long start = System.nanoTime();
+            try {
+                iCurrent = iFilledBuffers.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for the file to be read");
+            } finally {
+                iStallTime += System.nanoTime() - start;
+                iStallCount++;
+            }
+        }
+        if (iCurrent == END_OF_FILE) {
+            if (iReadError != null) {
+                throw new IOException("Error reading the file: " + iReadError.getMessage(), iReadError);
+            }
+            return null;
+        }
+        return iCurrent;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer buffer = current();
+        return buffer == null ? -1 : buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] aBuffer, int aOffset, int aLength) throws IOException {
+        if (aLength == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = current();
+        if (buffer == null) {
+            return -1;
+        }
+        int length = Math.min(aLength, buffer.remaining());
+        buffer.get(aBuffer, aOffset, length);
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return iCurrent == null || iClosed ? 0 : iCurrent.remaining();
+    }
+
+    /**
+     * Returns the number of buffers.
+     *
+     * @return the number of buffers
+     */
+    public int getBufferCount() {
+        return iBufferCount;
+    }
+
+    /**
+     * Returns the size of the buffers.
+     *
+     * @return the size of the buffers in bytes
+     */
+    public int getBufferSize() {
+        return iBufferSize;
+    }
+
+    /**
+     * Returns the number of times the reading thread waited for the I/O
+     * thread.
+     *
+     * @return the number of stalls
+     */
+    public long getStallCount() {
+        return iStallCount;
+    }
+
+    /**
+     * Returns the time the reading thread waited for the I/O thread.
+     *
+     * @return the stall time in nanoseconds
+     */
+    public long getStallTime() {
+        return iStallTime;
+    }
+
+    /**
+     * Returns the time the I/O thread waited for the reading thread to free a
+     * buffer.
+     *
+     * @return the idle time in nanoseconds
+     */
+    public long getIdleTime() {
+        return iIdleTime;
+    }
+
+    /**
+     * Stops the I/O thread and closes the file. The buffers are released by
+     * the garbage collector.
+     *
+     * @exception IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (iClosed) {
+            return;
+        }
+        iClosed = true;
+        iCurrent = null;
+        iReaderThread.interrupt();
+        try {
+            iReaderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        iFilledBuffers.clear();
+        iFreeBuffers.clear();
+        iFileInputStream.close();
+    }
+}
@@ -0,0 +1,130 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class keeps the bytes written to it in memory up to a given size and
+ * in a temporary file beyond, e.g., the model groups of an X!Tandem file
+ * streamed before its parameters are known. The bytes are read back with
+ * {@link #getInputStream()}, the temporary file is deleted by
+ * {@link #close()}.
+ */
+final class SpoolOutputStream extends OutputStream {
+
+    /**
+     * The size of the buffers of the temporary file.
+     */
+    private static final int FILE_BUFFER_SIZE = 1 << 16;
+    /**
+     * The maximum number of bytes kept in memory.
+     */
+    private int iMemoryLimit;
+    /**
+     * The bytes kept in memory, null once spilled to the temporary file.
+     */
+    private ByteArrayOutputStream iMemory = new ByteArrayOutputStream();
+    /**
+     * The temporary file, null until the memory limit is exceeded.
+     */
+    private File iFile = null;
+    /**
+     * The stream writing the temporary file.
+     */
+    private OutputStream iFileOutput = null;
+    /**
+     * The number of bytes written.
+     */
+    private long iSize = 0;
+
+    /**
+     * Creates a spool.
+     *
+     * @param aMemoryLimit the maximum number of bytes kept in memory
+     */
+    SpoolOutputStream(int aMemoryLimit) {
+        iMemoryLimit = aMemoryLimit;
+    }
+
+    @Override
+    public void write(int aByte) throws IOException {
+        ensureCapacity(1).write(aByte);
+        iSize++;
+    }
+
+    @Override
+    public void write(byte[] aBytes, int aOffset, int aLength) throws IOException {
+        ensureCapacity(aLength).write(aBytes, aOffset, aLength);
+        iSize += aLength;
+    }
+
+    /**
+     * Returns the stream the given number of bytes are written to, moving the
+     * bytes to the temporary file once they do not fit in memory anymore.
+     *
+     * @param aLength the number of bytes to write
+     * @return the stream to write to
+     * @exception IOException if the temporary file could not be written
+     */
+    private OutputStream ensureCapacity(int aLength) throws IOException {
+        if (iMemory != null && iMemory.size() + (long) aLength > iMemoryLimit) {
+            iFile = File.createTempFile("xtandem", ".spool");
+            iFileOutput = new BufferedOutputStream(new FileOutputStream(iFile), FILE_BUFFER_SIZE);
+            iMemory.writeTo(iFileOutput);
+            iMemory = null;
+        }
+        return iMemory != null ? iMemory : iFileOutput;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes
+     */
+    long size() {
+        return iSize;
+    }
+
+    /**
+     * Returns a stream reading the bytes written so far. Nothing may be
+     * written while the stream is read.
+     *
+     * @return the stream
+     * @exception IOException if the temporary file could not be read
+     */
+    InputStream getInputStream() throws IOException {
+        if (iFile == null) {
+            return new ByteArrayInputStream(iMemory.toByteArray());
+        }
+        iFileOutput.flush();
+        return new BufferedInputStream(new FileInputStream(iFile), FILE_BUFFER_SIZE);
+    }
+
+    /**
+     * Closes and deletes the temporary file, if any.
+     *
+     * @exception IOException if the temporary file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (iFileOutput != null) {
+                iFileOutput.close();
+            }
+        } finally {
+            if (iFile != null && !iFile.delete()) {
+                iFile.deleteOnExit();
+            }
+            iFileOutput = null;
+            iFile = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package de.proteinms.xtandemparser.parser;
+
+import de.proteinms.xtandemparser.xtandem.AminoAcidSequence;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class stores every distinct string once and numbers the strings in
+ * the order in which they were added. The result store interns the protein
+ * labels, descriptions and FASTA file paths and the spectrum labels with a
+ * dictionary, so that the text repeated for every hit of the same protein is
+ * kept in memory only once. The peptide, domain and flank sequences are
+ * interned the same way as packed {@link AminoAcidSequence}s.
+ * <p>
+ * A dictionary can be shared by several parsers, e.g., all the files of a
+ * project loaded with an {@link de.proteinms.xtandemparser.xtandem.XTandemBatchLoader},
+ * and is safe to use from several threads. Strings are never removed, a
+ * shared dictionary lives as long as the longest living file using it.
+ */
+public class StringDictionary {
+
+    /**
+     * The id returned for null.
+     */
+    public static final int NO_ID = -1;
+    /**
+     * The initial capacity of the string array.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The ids of the strings.
+     */
+    private ConcurrentHashMap<String, Integer> iIds = new ConcurrentHashMap<String, Integer>();
+    /**
+     * The strings by id. Replaced when grown, a string is written before its
+     * id is published in the id map.
+     */
+    private volatile String[] iStrings = new String[INITIAL_CAPACITY];
+    /**
+     * The number of strings.
+     */
+    private int iSize = 0;
+    /**
+     * The stored instances of the sequences.
+     */
+    private ConcurrentHashMap<AminoAcidSequence, AminoAcidSequence> iSequences = new ConcurrentHashMap<AminoAcidSequence, AminoAcidSequence>();
+
+    /**
+     * Returns the stored instance of a string, adding the string if it is not
+     * stored yet.
+     *
+     * @param aString the string, may be null
+     * @return the stored string equal to the given one, null for null
+     */
+    public String intern(String aString) {
+        if (aString == null) {
+            return null;
+        }
+        // the id first, adding the string may replace the array
+        int id = getId(aString);
+        return iStrings[id];
+    }
+
+    /**
+     * Returns the stored instance of a sequence, adding the sequence if it is
+     * not stored yet.
+     *
+     * @param aSequence the sequence, may be null
+     * @return the stored sequence equal to the given one, null for null
+     */
+    public AminoAcidSequence internSequence(String aSequence) {
+        if (aSequence == null) {
+            return null;
+        }
+        AminoAcidSequence sequence = AminoAcidSequence.valueOf(aSequence);
+        AminoAcidSequence stored = iSequences.putIfAbsent(sequence, sequence);
+        return stored != null ? stored : sequence;
+    }
+
+    /**
+     * Returns the id of a string, adding the string if it is not stored yet.
+     *
+     * @param aString the string, may be null
+     * @return the id, {@link #NO_ID} for null
+     */
+    public int getId(String aString) {
+        if (aString == null) {
+            return NO_ID;
+        }
+        Integer id = iIds.get(aString);
+        if (id == null) {
+            id = add(aString);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a string unless another thread added it first.
+     *
+     * @param aString the string
+     * @return the id of the string
+     */
+    private synchronized Integer add(String aString) {
+        Integer id = iIds.get(aString);
+        if (id == null) {
+            String[] strings = iStrings;
+            if (iSize == strings.length) {
+                strings = Arrays.copyOf(strings, strings.length * 2);
+            }
+            strings[iSize] = aString;
+            iStrings = strings;
+            id = iSize++;
+            iIds.put(aString, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the string with the given id.
+     *
+     * @param aId the id
+     * @return the string, null for {@link #NO_ID}
+     */
+    public String getString(int aId) {
+        if (aId == NO_ID) {
+            return null;
+        }
+        return iStrings[aId];
+    }
+
+    /**
+     * Returns the number of distinct strings.
+     *
+     * @return the number of strings
+     */
+    public synchronized int size() {
+        return iSize;
+    }
+
+    /**
+     * Returns the number of distinct sequences.
+     *
+     * @return the number of sequences
+     */
+    public int getSequenceCount() {
+        return iSequences.size();
+    }
+}
@@ -0,0 +1,1806 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+
+/**
+ * This class parses an X!Tandem file straight from its bytes. X!Tandem writes
+ * a small fixed set of ASCII element and attribute names, these are matched
+ * by comparing bytes, and the numeric attributes are parsed from the bytes
+ * without creating strings. Strings are only decoded for the values which are
+ * stored as text.
+ * <p>
+ * The file is read through a buffer and returned group by group, the model
+ * groups are parsed into the result store on the way. Anything this parser
+ * does not handle, e.g., comments, CDATA sections, entities declared in a
+ * DTD, malformed UTF-8 or malformed XML, makes it reject the group, which is
+ * then left unchanged in the result store and has to be parsed from
+ * {@link #getGroupBytes()} by the StAX parser instead. The results of both
+ * parsers are identical.
+ */
+final class XTandemFastParser {
+
+    /**
+     * The initial size of the read buffer. The buffer grows if a single group
+     * does not fit.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * The event for a start tag.
+     */
+    private static final int START_ELEMENT = 1;
+    /**
+     * The event for an end tag.
+     */
+    private static final int END_ELEMENT = 2;
+    /**
+     * The event for character data.
+     */
+    private static final int CHARACTERS = 3;
+    /**
+     * The group kinds.
+     */
+    private static final int NO_GROUP = 0;
+    private static final int MODEL_GROUP = 1;
+    private static final int PARAMETER_GROUP = 2;
+    private static final int OTHER_GROUP = 3;
+    private static final int UNKNOWN_GROUP = 4;
+    /**
+     * The ISO-8859-1 charset, used to decode ASCII text.
+     */
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+    /**
+     * The UTF-8 charset.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /**
+     * The markup delimiters.
+     */
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+    private static final byte[] COMMENT_START = bytes("<!--");
+    private static final byte[] COMMENT_END = bytes("-->");
+    private static final byte[] CDATA_START = bytes("<![CDATA[");
+    private static final byte[] CDATA_END = bytes("]]>");
+    private static final byte[] DECLARATION_START = bytes("<!");
+    private static final byte[] INSTRUCTION_START = bytes("<?");
+    private static final byte[] INSTRUCTION_END = bytes("?>");
+    private static final byte[] TAG_END = bytes(">");
+    /**
+     * The element names.
+     */
+    private static final byte[] GROUP = bytes("group");
+    private static final byte[] PROTEIN = bytes("protein");
+    private static final byte[] PEPTIDE = bytes("peptide");
+    private static final byte[] DOMAIN = bytes("domain");
+    private static final byte[] AA = bytes("aa");
+    private static final byte[] NOTE = bytes("note");
+    private static final byte[] FILE = bytes("file");
+    private static final byte[] GAML_TRACE = bytes("GAML:trace");
+    private static final byte[] GAML_ATTRIBUTE = bytes("GAML:attribute");
+    private static final byte[] GAML_XDATA = bytes("GAML:Xdata");
+    private static final byte[] GAML_YDATA = bytes("GAML:Ydata");
+    private static final byte[] GAML_VALUES = bytes("GAML:values");
+    /**
+     * The attribute names.
+     */
+    private static final byte[] ID = bytes("id");
+    private static final byte[] Z = bytes("z");
+    private static final byte[] EXPECT = bytes("expect");
+    private static final byte[] MH = bytes("mh");
+    private static final byte[] RT = bytes("rt");
+    private static final byte[] LABEL = bytes("label");
+    private static final byte[] SUM_I = bytes("sumI");
+    private static final byte[] MAX_I = bytes("maxI");
+    private static final byte[] F_I = bytes("fI");
+    private static final byte[] TYPE = bytes("type");
+    private static final byte[] UID = bytes("uid");
+    private static final byte[] URL = bytes("URL");
+    private static final byte[] START = bytes("start");
+    private static final byte[] END = bytes("end");
+    private static final byte[] SEQ = bytes("seq");
+    private static final byte[] DELTA = bytes("delta");
+    private static final byte[] HYPERSCORE = bytes("hyperscore");
+    private static final byte[] NEXTSCORE = bytes("nextscore");
+    private static final byte[] B_SCORE = bytes("b_score");
+    private static final byte[] B_IONS = bytes("b_ions");
+    private static final byte[] Y_SCORE = bytes("y_score");
+    private static final byte[] Y_IONS = bytes("y_ions");
+    private static final byte[] PRE = bytes("pre");
+    private static final byte[] POST = bytes("post");
+    private static final byte[] MISSED_CLEAVAGES = bytes("missed_cleavages");
+    private static final byte[] AT = bytes("at");
+    private static final byte[] MODIFIED = bytes("modified");
+    private static final byte[] PM = bytes("pm");
+    /**
+     * The signal for content this parser does not handle. It carries no stack
+     * trace, it is thrown for every rejected group.
+     */
+    private static final UnsupportedContentException UNSUPPORTED = new UnsupportedContentException();
+    /**
+     * The signal for a group running past the end of the buffer, which is then
+     * refilled and the group read again.
+     */
+    private static final UnsupportedContentException UNDERFLOW = new UnsupportedContentException();
+    /**
+     * The stream to read the file from.
+     */
+    private final InputStream iInputStream;
+    /**
+     * The result store to add the identifications to.
+     */
+    private final XTandemResultStore iResultStore;
+    /**
+     * The sections to parse.
+     */
+    private final EnumSet<XTandemSection> iSections;
+    /**
+     * True if only the spectrum identifiers, the peptides sequences,
+     * modifications and matches e-values are loaded.
+     */
+    private final boolean iSkipDetails;
+    /**
+     * The support data map to add the support data to.
+     */
+    private final HashMap<String, String> iSupportDataMap;
+    /**
+     * The spectrum title to spectrum number map.
+     */
+    private final HashMap<String, Integer> iTitle2SpectrumIDMap;
+    /**
+     * The spectrum number to spectrum title map.
+     */
+    private final HashMap<Integer, String> idToSpectrumMap;
+    /**
+     * The strict UTF-8 decoder for text which is not ASCII.
+     */
+    private final CharsetDecoder iDecoder = UTF8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    /**
+     * The keys and values of the support data of the current group, added to
+     * the support data map once the group is parsed.
+     */
+    private final ArrayList<String> iSupportData = new ArrayList<String>();
+    /**
+     * The spectrum titles of the current group, usually one.
+     */
+    private final ArrayList<String> iTitles = new ArrayList<String>();
+    /**
+     * The read buffer.
+     */
+    private byte[] iBytes = new byte[BUFFER_SIZE];
+    /**
+     * The read buffer as characters, used to parse numbers.
+     */
+    private AsciiCharSequence iCharacters = new AsciiCharSequence(iBytes);
+    /**
+     * The position of the next byte to read.
+     */
+    private int iPosition;
+    /**
+     * The position after the last byte in the buffer.
+     */
+    private int iEnd;
+    /**
+     * True if the stream has been read to its end.
+     */
+    private boolean iEndOfStream = false;
+    /**
+     * The bytes before the root element.
+     */
+    private byte[] iProlog;
+    /**
+     * The name of the root element.
+     */
+    private byte[] iRootName;
+    /**
+     * The kind of the current group.
+     */
+    private int iGroupKind = NO_GROUP;
+    /**
+     * True if the current group has been parsed into the result store.
+     */
+    private boolean iGroupParsed;
+    /**
+     * The position of the first byte of the current group.
+     */
+    private int iGroupStart;
+    /**
+     * The position after the last byte of the current group.
+     */
+    private int iGroupEnd;
+    /**
+     * The position of the first byte of the current element or text.
+     */
+    private int iStart;
+    /**
+     * The position after the last byte of the current element name or text.
+     */
+    private int iStop;
+    /**
+     * True if the end of the current empty element has yet to be reported.
+     */
+    private boolean iPendingEnd;
+    /**
+     * The number of attributes of the current element.
+     */
+    private int iAttributeCount;
+    /**
+     * The name start, name end, value start and value end of every attribute
+     * of the current element.
+     */
+    private int[] iAttributes = new int[4 * 32];
+    /**
+     * True for every attribute whose value is plain ASCII without entities,
+     * line breaks or tabs, i.e., the bytes are the value.
+     */
+    private boolean[] iPlainValues = new boolean[32];
+    /**
+     * The number of open elements, including the root element.
+     */
+    private int iDepth;
+    /**
+     * The name start and name end of every open element. The entry of the
+     * root element is not used, the buffer is refilled while it is open.
+     */
+    private int[] iOpenElements = new int[2 * 16];
+
+    /**
+     * Creates a parser reading the given stream and adding to the given store
+     * and maps.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aResultStore the result store to add the identifications to
+     * @param aSections the sections to parse
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded
+     * @param aSupportDataMap the support data map
+     * @param aTitle2SpectrumIDMap the spectrum title to spectrum number map
+     * @param aIdToSpectrumMap the spectrum number to spectrum title map
+     */
+    XTandemFastParser(InputStream aInputStream, XTandemResultStore aResultStore, EnumSet<XTandemSection> aSections,
+            boolean skipDetails, HashMap<String, String> aSupportDataMap, HashMap<String, Integer> aTitle2SpectrumIDMap,
+            HashMap<Integer, String> aIdToSpectrumMap) {
+        iInputStream = aInputStream;
+        iResultStore = aResultStore;
+        iSections = aSections;
+        iSkipDetails = skipDetails;
+        iSupportDataMap = aSupportDataMap;
+        iTitle2SpectrumIDMap = aTitle2SpectrumIDMap;
+        idToSpectrumMap = aIdToSpectrumMap;
+    }
+
+    /**
+     * Returns true if the groups of a document with the given prolog can be
+     * parsed by this parser, i.e., if the document is encoded in UTF-8 or
+     * ASCII and has no document type declaration which could declare
+     * entities or default attributes.
+     *
+     * @param aProlog the bytes before the root element, can be null if
+     * unknown
+     * @return true if the groups can be parsed
+     */
+    static boolean supports(byte[] aProlog) {
+        if (aProlog == null) {
+            return false;
+        }
+        int start = 0;
+        if (aProlog.length >= 3 && (aProlog[0] & 0xff) == 0xef && (aProlog[1] & 0xff) == 0xbb && (aProlog[2] & 0xff) == 0xbf) {
+            start = 3;
+        }
+        for (int i = start; i < aProlog.length; i++) {
+            if (aProlog[i] <= 0) {
+                return false;
+            }
+        }
+        String prolog = new String(aProlog, start, aProlog.length - start, LATIN1);
+        if (prolog.contains("<!DOCTYPE")) {
+            return false;
+        }
+        if (!prolog.startsWith("<?xml")) {
+            return true;
+        }
+        int declarationEnd = prolog.indexOf("?>");
+        int encoding = prolog.indexOf("encoding");
+        if (declarationEnd < 0 || encoding < 0 || encoding > declarationEnd) {
+            return true;
+        }
+        int quote = encoding + "encoding".length();
+        while (quote < declarationEnd && prolog.charAt(quote) != '"' && prolog.charAt(quote) != '\'') {
+            quote++;
+        }
+        int quoteEnd = prolog.indexOf(prolog.charAt(quote), quote + 1);
+        if (quote >= declarationEnd || quoteEnd < 0 || quoteEnd > declarationEnd) {
+            return false;
+        }
+        String name = prolog.substring(quote + 1, quoteEnd);
+        return name.equalsIgnoreCase("UTF-8") || name.equalsIgnoreCase("UTF8")
+                || name.equalsIgnoreCase("US-ASCII") || name.equalsIgnoreCase("ASCII");
+    }
+
+    /**
+     * Reads the prolog and the start tag of the root element. If the file
+     * cannot be parsed by this parser, e.g., because of its encoding or a
+     * document type declaration, false is returned and the whole file has to
+     * be parsed from {@link #getUnreadInputStream()} by the StAX parser.
+     *
+     * @return true if the groups can be read
+     *
+     * @exception IOException if the file could not be read
+     */
+    boolean readProlog() throws IOException {
+        while (true) {
+            try {
+                int i = startsWith(0, BYTE_ORDER_MARK) ? BYTE_ORDER_MARK.length : 0;
+                while (true) {
+                    i = skipWhitespace(i);
+                    if (startsWith(i, COMMENT_START)) {
+                        i = indexOf(COMMENT_END, i + COMMENT_START.length) + COMMENT_END.length;
+                    } else if (startsWith(i, INSTRUCTION_START)) {
+                        i = indexOf(INSTRUCTION_END, i + INSTRUCTION_START.length) + INSTRUCTION_END.length;
+                    } else if (startsWith(i, DECLARATION_START) || iBytes[i] != '<') {
+                        // document type declarations and malformed prologs
+                        throw UNSUPPORTED;
+                    } else {
+                        break;
+                    }
+                }
+                iProlog = Arrays.copyOfRange(iBytes, 0, i);
+                if (!supports(iProlog)) {
+                    return false;
+                }
+                iPosition = i;
+                iDepth = 0;
+                iPendingEnd = false;
+                readStartTag();
+                iRootName = Arrays.copyOfRange(iBytes, iStart, iStop);
+                return true;
+            } catch (UnsupportedContentException e) {
+                if (e != UNDERFLOW) {
+                    return false;
+                }
+                // nothing is discarded, the buffer grows if full
+                iPosition = 0;
+                fill(0);
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes before the root element.
+     *
+     * @return the prolog
+     */
+    byte[] getProlog() {
+        return iProlog;
+    }
+
+    /**
+     * Returns the name of the root element. Only valid if
+     * {@link #readProlog()} returned true.
+     *
+     * @return the name of the root element
+     */
+    String getRootName() {
+        return new String(iRootName, UTF8);
+    }
+
+    /**
+     * Returns the whole file as stream, including the bytes already read.
+     * Only valid if {@link #readProlog()} returned false.
+     *
+     * @return the stream
+     */
+    InputStream getUnreadInputStream() {
+        return new SequenceInputStream(new ByteArrayInputStream(iBytes, 0, iEnd), iInputStream);
+    }
+
+    /**
+     * Moves to the next group, i.e., the next child element of the root
+     * element. A model group is parsed into the result store, unless it holds
+     * content this parser does not handle.
+     *
+     * @param aSpectrumNumber the spectrum number of the group if it is a model
+     * group
+     * @return true if on a group, false at the end of the root element
+     *
+     * @exception IOException if the file could not be read
+     */
+    boolean nextGroup(int aSpectrumNumber) throws IOException {
+        iGroupKind = NO_GROUP;
+        iGroupParsed = false;
+        while (iDepth > 0) {
+            int groupStart = iPosition;
+            try {
+                int event = next();
+                if (event == END_ELEMENT) {
+                    return false;
+                } else if (event == START_ELEMENT) {
+                    if (attributeEqualsIgnoreCase(TYPE, "model")) {
+                        iGroupParsed = parseModelGroup(aSpectrumNumber);
+                        if (!iGroupParsed) {
+                            restart(groupStart);
+                            skipGroup();
+                        }
+                        iGroupKind = MODEL_GROUP;
+                    } else {
+                        iGroupKind = attributeEqualsIgnoreCase(TYPE, "parameters") ? PARAMETER_GROUP : OTHER_GROUP;
+                        restart(groupStart);
+                        skipGroup();
+                    }
+                    iGroupStart = groupStart;
+                    iGroupEnd = iPosition;
+                    return true;
+                }
+                // text between the groups is ignored
+            } catch (UnsupportedContentException e) {
+                restart(groupStart);
+                if (e == UNDERFLOW) {
+                    fill(groupStart);
+                } else {
+                    return skipUnknownGroup();
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the current group is a model group.
+     *
+     * @return true if the current group is a model group
+     */
+    boolean isModelGroup() {
+        return iGroupKind == MODEL_GROUP;
+    }
+
+    /**
+     * Returns true if the current group is a parameter group.
+     *
+     * @return true if the current group is a parameter group
+     */
+    boolean isParameterGroup() {
+        return iGroupKind == PARAMETER_GROUP;
+    }
+
+    /**
+     * Returns true if the kind of the current group is unknown, i.e., its
+     * start tag could not be read. The group has to be parsed by the StAX
+     * parser.
+     *
+     * @return true if the kind of the current group is unknown
+     */
+    boolean isUnknownGroup() {
+        return iGroupKind == UNKNOWN_GROUP;
+    }
+
+    /**
+     * Returns true if the current group has been parsed into the result store.
+     *
+     * @return true if the current group has been parsed
+     */
+    boolean isGroupParsed() {
+        return iGroupParsed;
+    }
+
+    /**
+     * Returns the bytes of the current group.
+     *
+     * @return the bytes of the group
+     */
+    byte[] getGroupBytes() {
+        return Arrays.copyOfRange(iBytes, iGroupStart, iGroupEnd);
+    }
+
+    /**
+     * Parses the model group whose start tag has just been read. If the group
+     * holds anything this parser does not handle, the result store and the
+     * maps are left unchanged and false is returned.
+     *
+     * @param aSpectrumNumber the spectrum number of the group
+     * @return true if the group was parsed, false if it has to be parsed by
+     * the StAX parser
+     *
+     * @exception UnsupportedContentException if the group runs past the end of
+     * the buffer
+     */
+    private boolean parseModelGroup(int aSpectrumNumber) throws UnsupportedContentException {
+        int spectrumCount = iResultStore.getNumberOfSpectra();
+        int peptideCount = iResultStore.getNumberOfPeptides();
+        int domainCount = iResultStore.getNumberOfDomains();
+        int modificationCount = iResultStore.getNumberOfModifications();
+        iSupportData.clear();
+        iTitles.clear();
+
+        try {
+            parseModelGroupElement(aSpectrumNumber);
+        } catch (UnsupportedContentException e) {
+            iResultStore.truncate(spectrumCount, peptideCount, domainCount, modificationCount);
+            iSupportData.clear();
+            iTitles.clear();
+            if (e == UNDERFLOW) {
+                throw e;
+            }
+            return false;
+        }
+
+        for (int i = 0; i < iSupportData.size(); i += 2) {
+            iSupportDataMap.put(iSupportData.get(i), iSupportData.get(i + 1));
+        }
+        iSupportData.clear();
+        for (String title : iTitles) {
+            idToSpectrumMap.put(aSpectrumNumber, title);
+            if (!iSkipDetails) {
+                iTitle2SpectrumIDMap.put(title, aSpectrumNumber);
+            }
+        }
+        iTitles.clear();
+        return true;
+    }
+
+    /**
+     * Moves back to the start of the current group.
+     *
+     * @param aGroupStart the position of the first byte of the group
+     */
+    private void restart(int aGroupStart) {
+        iPosition = aGroupStart;
+        iDepth = 1;
+        iPendingEnd = false;
+    }
+
+    /**
+     * Skips a group whose start tag could not be read and makes it the
+     * current group of unknown kind. If the group does not end, the rest of
+     * the buffer is taken as group and the root element is closed.
+     *
+     * @return true
+     *
+     * @exception IOException if the file could not be read
+     */
+    private boolean skipUnknownGroup() throws IOException {
+        while (true) {
+            int groupStart = iPosition;
+            try {
+                skipGroup();
+            } catch (UnsupportedContentException e) {
+                if (e == UNDERFLOW) {
+                    fill(groupStart);
+                    continue;
+                }
+                iPosition = iEnd;
+                iDepth = 0;
+            }
+            iGroupKind = UNKNOWN_GROUP;
+            iGroupStart = groupStart;
+            iGroupEnd = iPosition;
+            return true;
+        }
+    }
+
+    /**
+     * Skips the group starting at the current position without reading it,
+     * only the nesting of the tags is followed. Comments, CDATA sections,
+     * processing instructions and quoted attribute values are skipped as a
+     * whole.
+     *
+     * @exception UnsupportedContentException if the group runs past the end of
+     * the buffer or the root element ends first
+     */
+    private void skipGroup() throws UnsupportedContentException {
+        int depth = 0;
+        int i = iPosition;
+        do {
+            i = indexOf((byte) '<', i);
+            if (startsWith(i, COMMENT_START)) {
+                i = indexOf(COMMENT_END, i + COMMENT_START.length) + COMMENT_END.length;
+            } else if (startsWith(i, CDATA_START)) {
+                i = indexOf(CDATA_END, i + CDATA_START.length) + CDATA_END.length;
+            } else if (startsWith(i, DECLARATION_START)) {
+                i = indexOf(TAG_END, i) + TAG_END.length;
+            } else if (startsWith(i, INSTRUCTION_START)) {
+                i = indexOf(INSTRUCTION_END, i + INSTRUCTION_START.length) + INSTRUCTION_END.length;
+            } else {
+                boolean endTag = i + 1 < iEnd && iBytes[i + 1] == '/';
+                byte quote = 0;
+                byte last = 0;
+                i++;
+                while (true) {
+                    if (i >= iEnd) {
+                        throw endOfBuffer();
+                    }
+                    byte b = iBytes[i++];
+                    if (quote != 0) {
+                        if (b == quote) {
+                            quote = 0;
+                        }
+                    } else if (b == '"' || b == '\'') {
+                        quote = b;
+                    } else if (b == '>') {
+                        break;
+                    }
+                    if (b > ' ') {
+                        last = b;
+                    }
+                }
+                if (endTag) {
+                    depth--;
+                    if (depth < 0) {
+                        throw UNSUPPORTED;
+                    }
+                } else if (last != '/') {
+                    depth++;
+                }
+            }
+        } while (depth > 0);
+        iPosition = i;
+    }
+
+    /**
+     * Moves the unread bytes from the given position on to the start of the
+     * buffer and reads more bytes from the stream. The buffer grows if it is
+     * full.
+     *
+     * @param aKeep the position of the first byte to keep
+     *
+     * @exception IOException if the file could not be read
+     */
+    private void fill(int aKeep) throws IOException {
+        int kept = iEnd - aKeep;
+        if (kept == iBytes.length) {
+            iBytes = Arrays.copyOf(iBytes, iBytes.length * 2);
+            iCharacters = new AsciiCharSequence(iBytes);
+        } else if (aKeep > 0) {
+            System.arraycopy(iBytes, aKeep, iBytes, 0, kept);
+        }
+        iEnd = kept;
+        iPosition -= aKeep;
+        while (iEnd < iBytes.length) {
+            int read = iInputStream.read(iBytes, iEnd, iBytes.length - iEnd);
+            if (read < 0) {
+                iEndOfStream = true;
+                break;
+            }
+            iEnd += read;
+        }
+    }
+
+    /**
+     * Returns the signal for a read past the end of the buffer.
+     *
+     * @return UNDERFLOW if more bytes can be read from the stream, otherwise
+     * UNSUPPORTED as the file ends unexpectedly
+     */
+    private UnsupportedContentException endOfBuffer() {
+        return iEndOfStream ? UNSUPPORTED : UNDERFLOW;
+    }
+
+    /**
+     * Returns true if the bytes at the given position start with the given
+     * prefix.
+     *
+     * @param aPosition the position
+     * @param aPrefix the prefix
+     * @return true if the bytes start with the prefix
+     *
+     * @exception UnsupportedContentException if the buffer ends first
+     */
+    private boolean startsWith(int aPosition, byte[] aPrefix) throws UnsupportedContentException {
+        for (int i = 0; i < aPrefix.length; i++) {
+            if (aPosition + i >= iEnd) {
+                throw endOfBuffer();
+            }
+            if (iBytes[aPosition + i] != aPrefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of the next occurrence of the given bytes.
+     *
+     * @param aPattern the bytes to find
+     * @param aStart the position to start from
+     * @return the position of the first byte of the occurrence
+     *
+     * @exception UnsupportedContentException if the buffer ends first
+     */
+    private int indexOf(byte[] aPattern, int aStart) throws UnsupportedContentException {
+        for (int i = aStart; i + aPattern.length <= iEnd; i++) {
+            if (iBytes[i] == aPattern[0] && startsWith(i, aPattern)) {
+                return i;
+            }
+        }
+        throw endOfBuffer();
+    }
+
+    /**
+     * Returns the position of the next occurrence of the given byte.
+     *
+     * @param aByte the byte to find
+     * @param aStart the position to start from
+     * @return the position of the byte
+     *
+     * @exception UnsupportedContentException if the buffer ends first
+     */
+    private int indexOf(byte aByte, int aStart) throws UnsupportedContentException {
+        for (int i = aStart; i < iEnd; i++) {
+            if (iBytes[i] == aByte) {
+                return i;
+            }
+        }
+        throw endOfBuffer();
+    }
+
+    /**
+     * Parses a model group, i.e., a single spectrum with its identifications
+     * and support data.
+     *
+     * @param spectraCounter the spectrum number
+     *
+     * @exception UnsupportedContentException if the group holds content this
+     * parser does not handle
+     */
+    private void parseModelGroupElement(int spectraCounter) throws UnsupportedContentException {
+
+        int spectrum = iResultStore.addSpectrum(getIntAttribute(ID), getIntAttribute(Z));
+
+        if (!iSkipDetails && iSections.contains(XTandemSection.SPECTRA)) {
+            iResultStore.setSpectrumDetails(spectrum,
+                    getDoubleAttribute(EXPECT),
+                    getDoubleAttribute(MH),
+                    getAttribute(RT),
+                    getAttribute(LABEL),
+                    getDoubleAttribute(SUM_I),
+                    getDoubleAttribute(MAX_I),
+                    getDoubleAttribute(F_I));
+            putNumberText(EXPECT, XTandemResultStore.SPECTRUM_EXPECT, spectrum);
+            putNumberText(MH, XTandemResultStore.PRECURSOR_MH, spectrum);
+            putNumberText(SUM_I, XTandemResultStore.SUMMED_INTENSITY, spectrum);
+            putNumberText(MAX_I, XTandemResultStore.MAX_INTENSITY, spectrum);
+            putNumberText(F_I, XTandemResultStore.INTENSITY_MULTIPLIER, spectrum);
+        }
+
+        while (nextChildElement()) {
+
+            if (isElement(PROTEIN) && (iSections.contains(XTandemSection.PEPTIDES) || iSections.contains(XTandemSection.DOMAINS)
+                    || iSections.contains(XTandemSection.MODIFICATIONS) || iSections.contains(XTandemSection.PROTEIN_DESCRIPTIONS))) {
+                parseProtein();
+            } else if (isElement(GROUP)) {
+                if (!iSkipDetails && attributeEqualsIgnoreCase(LABEL, "supporting data") && iSections.contains(XTandemSection.HISTOGRAMS)) {
+                    parseSupportingData(spectraCounter);
+                } else if (attributeEqualsIgnoreCase(LABEL, "fragment ion mass spectrum")
+                        && (iSections.contains(XTandemSection.SPECTRA) || iSections.contains(XTandemSection.FRAGMENT_SPECTRA))) {
+                    parseFragmentIonSpectrum(spectraCounter);
+                } else {
+                    skipElement();
+                }
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Parses a protein element of a model group.
+     *
+     * @exception UnsupportedContentException if the element holds content this
+     * parser does not handle
+     */
+    private void parseProtein() throws UnsupportedContentException {
+
+        int peptide = iResultStore.addPeptide(getAttribute(ID), getAttribute(LABEL));
+
+        if (!iSkipDetails && iSections.contains(XTandemSection.PEPTIDES)) {
+            iResultStore.setProteinDetails(peptide,
+                    getIntAttribute(UID),
+                    getDoubleAttribute(EXPECT),
+                    getDoubleAttribute(SUM_I));
+            putNumberText(EXPECT, XTandemResultStore.PROTEIN_EXPECT, peptide);
+            putNumberText(SUM_I, XTandemResultStore.PROTEIN_SUMMED_INTENSITY, peptide);
+        }
+
+        while (nextChildElement()) {
+
+            if (!iSkipDetails && isElement(FILE) && iSections.contains(XTandemSection.PEPTIDES)) {
+                iResultStore.setFastaFilePath(peptide, getAttribute(URL));
+                skipElement();
+            } else if (!iSkipDetails && isElement(NOTE) && attributeEqualsIgnoreCase(LABEL, "description")
+                    && iSections.contains(XTandemSection.PROTEIN_DESCRIPTIONS)) {
+                iResultStore.setProteinDescription(peptide, readText());
+            } else if (isElement(PEPTIDE) && (iSections.contains(XTandemSection.PEPTIDES)
+                    || iSections.contains(XTandemSection.DOMAINS) || iSections.contains(XTandemSection.MODIFICATIONS))) {
+                parsePeptide(peptide);
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Parses a peptide element and its domains.
+     *
+     * @param peptide the index of the peptide in the result store
+     *
+     * @exception UnsupportedContentException if the element holds content this
+     * parser does not handle
+     */
+    private void parsePeptide(int peptide) throws UnsupportedContentException {
+
+        int start = getIntAttribute(START);
+        int end = getIntAttribute(END);
+
+        // The sequence is the text content of the peptide, including the text inside the domains
+        StringBuilder sequence = null;
+        if (!iSkipDetails && iSections.contains(XTandemSection.PEPTIDES)) {
+            sequence = new StringBuilder();
+        }
+
+        boolean parseDomains = iSections.contains(XTandemSection.DOMAINS) || iSections.contains(XTandemSection.MODIFICATIONS);
+
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = next();
+
+            if (event == START_ELEMENT) {
+                if (depth == 1 && parseDomains && isElement(DOMAIN)) {
+                    parseDomain(sequence);
+                } else {
+                    depth++;
+                }
+            } else if (event == END_ELEMENT) {
+                depth--;
+            } else if (sequence != null) {
+                appendText(sequence, iStart, iStop);
+            }
+        }
+
+        if (sequence != null) {
+            iResultStore.setPeptideDetails(peptide, start, end, sequence.toString());
+        }
+    }
+
+    /**
+     * Parses a domain element and its modifications.
+     *
+     * @param peptideText the text content of the peptide, the text inside the
+     * domain is appended to it, can be null
+     *
+     * @exception UnsupportedContentException if the element holds content this
+     * parser does not handle
+     */
+    private void parseDomain(StringBuilder peptideText) throws UnsupportedContentException {
+
+        boolean parseDomain = iSections.contains(XTandemSection.DOMAINS);
+
+        int domain;
+        if (parseDomain) {
+            domain = iResultStore.addDomain(getAttribute(ID),
+                    getIntAttribute(START),
+                    getDoubleAttribute(EXPECT),
+                    getAttribute(SEQ));
+            putNumberText(EXPECT, XTandemResultStore.DOMAIN_EXPECT, domain);
+        } else {
+            domain = iResultStore.addDomain(null, XTandemResultStore.NO_VALUE, Double.NaN, null);
+        }
+
+        if (!iSkipDetails && parseDomain) {
+            iResultStore.setDomainDetails(domain,
+                    getIntAttribute(END),
+                    getDoubleAttribute(MH),
+                    getDoubleAttribute(DELTA),
+                    getDoubleAttribute(HYPERSCORE),
+                    getDoubleAttribute(NEXTSCORE),
+                    getDoubleAttribute(B_SCORE),
+                    getIntAttribute(B_IONS),
+                    getDoubleAttribute(Y_SCORE),
+                    getIntAttribute(Y_IONS),
+                    getAttribute(PRE),
+                    getAttribute(POST),
+                    getIntAttribute(MISSED_CLEAVAGES));
+            putNumberText(MH, XTandemResultStore.DOMAIN_MH, domain);
+            putNumberText(DELTA, XTandemResultStore.DOMAIN_DELTA, domain);
+            putNumberText(HYPERSCORE, XTandemResultStore.DOMAIN_HYPER_SCORE, domain);
+            putNumberText(NEXTSCORE, XTandemResultStore.DOMAIN_NEXT_SCORE, domain);
+            putNumberText(B_SCORE, XTandemResultStore.DOMAIN_B_SCORE, domain);
+            putNumberText(Y_SCORE, XTandemResultStore.DOMAIN_Y_SCORE, domain);
+        }
+
+        boolean parseModifications = iSections.contains(XTandemSection.MODIFICATIONS);
+
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = next();
+
+            if (event == START_ELEMENT) {
+                depth++;
+
+                if (depth == 2 && parseModifications && isElement(AA)) {
+                    // A missing or invalid mass is stored as NaN, as by the StAX parser
+                    int modification = iResultStore.addModification(getIntAttribute(AT), getDoubleAttribute(MODIFIED), getAttribute(TYPE), getAttribute(PM));
+                    putNumberText(MODIFIED, XTandemResultStore.MODIFICATION_MASS, modification);
+                }
+            } else if (event == END_ELEMENT) {
+                depth--;
+            } else if (peptideText != null) {
+                appendText(peptideText, iStart, iStop);
+            }
+        }
+    }
+
+    /**
+     * Parses the supporting data group (GAML histograms) of a model group.
+     *
+     * @param spectraCounter the spectrum number
+     *
+     * @exception UnsupportedContentException if the group holds content this
+     * parser does not handle
+     */
+    private void parseSupportingData(int spectraCounter) throws UnsupportedContentException {
+
+        while (nextChildElement()) {
+
+            if (isElement(GAML_TRACE) && hasAttribute(TYPE)) {
+                if (attributeEqualsIgnoreCase(TYPE, "hyperscore expectation function")) {
+                    parseTrace(spectraCounter, "HYPERLABEL", "XVAL_HYPER", "YVAL_HYPER", "a0", "HYPER_A0", "a1", "HYPER_A1");
+                } else if (attributeEqualsIgnoreCase(TYPE, "convolution survival function")) {
+                    parseTrace(spectraCounter, "CONVOLLABEL", "XVAL_CONVOL", "YVAL_CONVOL", null, null, null, null);
+                } else if (attributeEqualsIgnoreCase(TYPE, "b ion histogram")) {
+                    parseTrace(spectraCounter, "B_IONLABEL", "XVAL_BIONS", "YVAL_BIONS", null, null, null, null);
+                } else if ("y ion histogram".equals(getAttribute(TYPE))) {
+                    parseTrace(spectraCounter, "Y_IONLABEL", "XVAL_YIONS", "YVAL_YIONS", null, null, null, null);
+                } else {
+                    skipElement();
+                }
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Parses the fragment ion mass spectrum group of a model group.
+     *
+     * @param spectraCounter the spectrum number
+     *
+     * @exception UnsupportedContentException if the group holds content this
+     * parser does not handle
+     */
+    private void parseFragmentIonSpectrum(int spectraCounter) throws UnsupportedContentException {
+
+        while (nextChildElement()) {
+
+            if (isElement(NOTE)) {
+                String title = readText().trim();
+                iTitles.add(title);
+                if (!iSkipDetails) {
+                    putSupportData("FRAGIONSPECDESC" + "_s" + spectraCounter, title);
+                } else {
+                    skipRemainingChildren();
+                    return;
+                }
+            } else if (!iSkipDetails && isElement(GAML_TRACE) && iSections.contains(XTandemSection.FRAGMENT_SPECTRA)
+                    && attributeEqualsIgnoreCase(TYPE, "tandem mass spectrum")) {
+                parseTrace(spectraCounter, "SPECTRUMLABEL", "XVAL_FRAGIONMZ", "YVAL_FRAGIONMZ", "M+H", "FRAGIONMZ", "charge", "FRAGIONCHARGE");
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Parses a GAML trace and adds its label, its x and y values and up to two
+     * of its attributes to the support data.
+     *
+     * @param spectraCounter the spectrum number
+     * @param labelKey the key of the trace label
+     * @param xValuesKey the key of the x values
+     * @param yValuesKey the key of the y values
+     * @param firstAttributeType the type of the first attribute to store, can
+     * be null
+     * @param firstAttributeKey the key of the first attribute
+     * @param secondAttributeType the type of the second attribute to store,
+     * can be null
+     * @param secondAttributeKey the key of the second attribute
+     *
+     * @exception UnsupportedContentException if the trace holds content this
+     * parser does not handle
+     */
+    private void parseTrace(int spectraCounter, String labelKey, String xValuesKey, String yValuesKey,
+            String firstAttributeType, String firstAttributeKey, String secondAttributeType, String secondAttributeKey) throws UnsupportedContentException {
+
+        String label = getAttribute(LABEL);
+        if (label != null) {
+            putSupportData(labelKey + "_s" + spectraCounter, label);
+        }
+
+        while (nextChildElement()) {
+
+            if (isElement(GAML_ATTRIBUTE)) {
+                if (firstAttributeType != null && attributeEqualsIgnoreCase(TYPE, firstAttributeType)) {
+                    putSupportData(firstAttributeKey + "_s" + spectraCounter, readText());
+                } else if (secondAttributeType != null && attributeEqualsIgnoreCase(TYPE, secondAttributeType)) {
+                    putSupportData(secondAttributeKey + "_s" + spectraCounter, readText());
+                } else {
+                    skipElement();
+                }
+            } else if (isElement(GAML_XDATA)) {
+                parseValues(xValuesKey + "_s" + spectraCounter);
+            } else if (isElement(GAML_YDATA)) {
+                parseValues(yValuesKey + "_s" + spectraCounter);
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Adds the content of the GAML values of a GAML Xdata or Ydata element to
+     * the support data.
+     *
+     * @param key the key of the values
+     *
+     * @exception UnsupportedContentException if the element holds content this
+     * parser does not handle
+     */
+    private void parseValues(String key) throws UnsupportedContentException {
+        while (nextChildElement()) {
+            if (isElement(GAML_VALUES)) {
+                putSupportData(key, readText());
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Adds a value to the support data of the current group.
+     *
+     * @param aKey the key
+     * @param aValue the value
+     */
+    private void putSupportData(String aKey, String aValue) {
+        iSupportData.add(aKey);
+        iSupportData.add(aValue);
+    }
+
+    /**
+     * Reads the next start tag, end tag or text.
+     *
+     * @return the event
+     *
+     * @exception UnsupportedContentException if the next content is not a
+     * start tag, an end tag or text, or is malformed
+     */
+    private int next() throws UnsupportedContentException {
+        if (iPendingEnd) {
+            iPendingEnd = false;
+            iDepth--;
+            return END_ELEMENT;
+        }
+        if (iPosition >= iEnd) {
+            throw endOfBuffer();
+        }
+        if (iBytes[iPosition] != '<') {
+            iStart = iPosition;
+            while (iPosition < iEnd && iBytes[iPosition] != '<') {
+                iPosition++;
+            }
+            if (iPosition >= iEnd) {
+                // the text may go on
+                throw endOfBuffer();
+            }
+            iStop = iPosition;
+            return CHARACTERS;
+        }
+        if (iPosition + 1 >= iEnd) {
+            throw endOfBuffer();
+        }
+        byte next = iBytes[iPosition + 1];
+        if (next == '/') {
+            readEndTag();
+            return END_ELEMENT;
+        } else if (next == '!' || next == '?') {
+            // comments, CDATA sections and processing instructions
+            throw UNSUPPORTED;
+        }
+        readStartTag();
+        return START_ELEMENT;
+    }
+
+    /**
+     * Reads a start tag and its attributes.
+     *
+     * @exception UnsupportedContentException if the tag is malformed
+     */
+    private void readStartTag() throws UnsupportedContentException {
+        int i = iPosition + 1;
+        iStart = i;
+        i = scanName(i);
+        iStop = i;
+        iAttributeCount = 0;
+
+        while (true) {
+            int attributeStart = skipWhitespace(i);
+            if (attributeStart >= iEnd) {
+                throw endOfBuffer();
+            }
+            byte b = iBytes[attributeStart];
+            if (b == '>') {
+                i = attributeStart + 1;
+                break;
+            } else if (b == '/') {
+                if (attributeStart + 1 >= iEnd) {
+                    throw endOfBuffer();
+                } else if (iBytes[attributeStart + 1] != '>') {
+                    throw UNSUPPORTED;
+                }
+                i = attributeStart + 2;
+                iPendingEnd = true;
+                break;
+            } else if (attributeStart == i) {
+                // attributes have to be separated by whitespace
+                throw UNSUPPORTED;
+            }
+
+            int nameStart = attributeStart;
+            i = scanName(nameStart);
+            int nameEnd = i;
+            i = skipWhitespace(i);
+            if (i >= iEnd) {
+                throw endOfBuffer();
+            } else if (iBytes[i] != '=') {
+                throw UNSUPPORTED;
+            }
+            i = skipWhitespace(i + 1);
+            if (i >= iEnd) {
+                throw endOfBuffer();
+            } else if (iBytes[i] != '"' && iBytes[i] != '\'') {
+                throw UNSUPPORTED;
+            }
+            byte quote = iBytes[i++];
+            int valueStart = i;
+            boolean plain = true;
+            while (i < iEnd && iBytes[i] != quote) {
+                byte c = iBytes[i];
+                if (c == '<') {
+                    throw UNSUPPORTED;
+                } else if (c == '&' || c < ' ') {
+                    // entities, line breaks, tabs and non ASCII bytes
+                    plain = false;
+                }
+                i++;
+            }
+            if (i >= iEnd) {
+                throw endOfBuffer();
+            }
+            addAttribute(nameStart, nameEnd, valueStart, i, plain);
+            i++;
+        }
+
+        if (iDepth * 2 == iOpenElements.length) {
+            int[] openElements = new int[iOpenElements.length * 2];
+            System.arraycopy(iOpenElements, 0, openElements, 0, iOpenElements.length);
+            iOpenElements = openElements;
+        }
+        iOpenElements[iDepth * 2] = iStart;
+        iOpenElements[iDepth * 2 + 1] = iStop;
+        iDepth++;
+        iPosition = i;
+    }
+
+    /**
+     * Reads an end tag and checks that it closes the innermost open element.
+     *
+     * @exception UnsupportedContentException if the tag is malformed or does
+     * not match
+     */
+    private void readEndTag() throws UnsupportedContentException {
+        int nameStart = iPosition + 2;
+        int nameEnd = scanName(nameStart);
+        int i = skipWhitespace(nameEnd);
+        if (i >= iEnd) {
+            throw endOfBuffer();
+        } else if (iBytes[i] != '>' || iDepth == 0) {
+            throw UNSUPPORTED;
+        }
+        iDepth--;
+        if (iDepth == 0) {
+            // the root element, its name is kept as the buffer is refilled
+            if (!Arrays.equals(iRootName, Arrays.copyOfRange(iBytes, nameStart, nameEnd))) {
+                throw UNSUPPORTED;
+            }
+        } else {
+            int openStart = iOpenElements[iDepth * 2];
+            int openEnd = iOpenElements[iDepth * 2 + 1];
+            if (openEnd - openStart != nameEnd - nameStart) {
+                throw UNSUPPORTED;
+            }
+            for (int j = 0; j < nameEnd - nameStart; j++) {
+                if (iBytes[openStart + j] != iBytes[nameStart + j]) {
+                    throw UNSUPPORTED;
+                }
+            }
+        }
+        iStart = nameStart;
+        iStop = nameEnd;
+        iPosition = i + 1;
+    }
+
+    /**
+     * Returns the position after an element or attribute name.
+     *
+     * @param aStart the position of the first byte of the name
+     * @return the position after the name
+     *
+     * @exception UnsupportedContentException if the name is empty or not
+     * ASCII
+     */
+    private int scanName(int aStart) throws UnsupportedContentException {
+        int i = aStart;
+        while (i < iEnd) {
+            byte b = iBytes[i];
+            if (b < 0) {
+                throw UNSUPPORTED;
+            } else if (b <= ' ' || b == '/' || b == '>' || b == '=' || b == '<' || b == '"' || b == '\'') {
+                break;
+            }
+            i++;
+        }
+        if (i >= iEnd) {
+            throw endOfBuffer();
+        } else if (i == aStart) {
+            throw UNSUPPORTED;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the position of the next byte which is not whitespace.
+     *
+     * @param aStart the position to start from
+     * @return the position of the next non whitespace byte, or the end of the
+     * group
+     */
+    private int skipWhitespace(int aStart) {
+        int i = aStart;
+        while (i < iEnd && (iBytes[i] == ' ' || iBytes[i] == '\n' || iBytes[i] == '\r' || iBytes[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Adds an attribute of the current element.
+     *
+     * @param aNameStart the position of the first byte of the name
+     * @param aNameEnd the position after the name
+     * @param aValueStart the position of the first byte of the value
+     * @param aValueEnd the position after the value
+     * @param aPlain true if the bytes of the value are the value
+     */
+    private void addAttribute(int aNameStart, int aNameEnd, int aValueStart, int aValueEnd, boolean aPlain) {
+        if (iAttributeCount == iPlainValues.length) {
+            int[] attributes = new int[iAttributes.length * 2];
+            System.arraycopy(iAttributes, 0, attributes, 0, iAttributes.length);
+            iAttributes = attributes;
+            boolean[] plainValues = new boolean[iPlainValues.length * 2];
+            System.arraycopy(iPlainValues, 0, plainValues, 0, iPlainValues.length);
+            iPlainValues = plainValues;
+        }
+        int offset = iAttributeCount * 4;
+        iAttributes[offset] = aNameStart;
+        iAttributes[offset + 1] = aNameEnd;
+        iAttributes[offset + 2] = aValueStart;
+        iAttributes[offset + 3] = aValueEnd;
+        iPlainValues[iAttributeCount] = aPlain;
+        iAttributeCount++;
+    }
+
+    /**
+     * Returns true if the current element has the given name, ignoring case.
+     *
+     * @param aName the name
+     * @return true if the current element has the given name
+     */
+    private boolean isElement(byte[] aName) {
+        if (iStop - iStart != aName.length) {
+            return false;
+        }
+        for (int i = 0; i < aName.length; i++) {
+            if (toLowerCase(iBytes[iStart + i]) != toLowerCase(aName[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of an attribute of the current element.
+     *
+     * @param aName the name of the attribute
+     * @return the index of the attribute, -1 if missing
+     */
+    private int findAttribute(byte[] aName) {
+        for (int a = 0; a < iAttributeCount; a++) {
+            int nameStart = iAttributes[a * 4];
+            if (iAttributes[a * 4 + 1] - nameStart == aName.length) {
+                int i = 0;
+                while (i < aName.length && iBytes[nameStart + i] == aName[i]) {
+                    i++;
+                }
+                if (i == aName.length) {
+                    return a;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the current element has the given attribute.
+     *
+     * @param aName the name of the attribute
+     * @return true if the attribute is present
+     */
+    private boolean hasAttribute(byte[] aName) {
+        return findAttribute(aName) != -1;
+    }
+
+    /**
+     * Returns the value of an attribute of the current element.
+     *
+     * @param aName the name of the attribute
+     * @return the value, null if missing
+     *
+     * @exception UnsupportedContentException if the value holds content this
+     * parser does not handle
+     */
+    private String getAttribute(byte[] aName) throws UnsupportedContentException {
+        int a = findAttribute(aName);
+        if (a == -1) {
+            return null;
+        }
+        return decode(iAttributes[a * 4 + 2], iAttributes[a * 4 + 3], true);
+    }
+
+    /**
+     * Returns true if an attribute of the current element has the given value,
+     * ignoring case.
+     *
+     * @param aName the name of the attribute
+     * @param aValue the value
+     * @return true if the attribute is present and has the given value
+     *
+     * @exception UnsupportedContentException if the value holds content this
+     * parser does not handle
+     */
+    private boolean attributeEqualsIgnoreCase(byte[] aName, String aValue) throws UnsupportedContentException {
+        int a = findAttribute(aName);
+        if (a == -1) {
+            return false;
+        }
+        int start = iAttributes[a * 4 + 2];
+        int end = iAttributes[a * 4 + 3];
+        if (!iPlainValues[a]) {
+            return decode(start, end, true).equalsIgnoreCase(aValue);
+        }
+        if (end - start != aValue.length()) {
+            return false;
+        }
+        for (int i = 0; i < aValue.length(); i++) {
+            char c = aValue.charAt(i);
+            if (c >= 0x80 || toLowerCase(iBytes[start + i]) != toLowerCase((byte) c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of an attribute of the current element as int.
+     *
+     * @param aName the name of the attribute
+     * @return the value, or XTandemResultStore.NO_VALUE if the attribute is
+     * missing or not an integer
+     *
+     * @exception UnsupportedContentException if the value holds content this
+     * parser does not handle
+     */
+    private int getIntAttribute(byte[] aName) throws UnsupportedContentException {
+        int a = findAttribute(aName);
+        if (a != -1) {
+            try {
+                if (iPlainValues[a]) {
+                    return GamlValuesScanner.parseInt(iCharacters, iAttributes[a * 4 + 2], iAttributes[a * 4 + 3]);
+                }
+                return Integer.parseInt(decode(iAttributes[a * 4 + 2], iAttributes[a * 4 + 3], true));
+            } catch (NumberFormatException e) {
+                // not an integer, handled as missing value
+            }
+        }
+        return XTandemResultStore.NO_VALUE;
+    }
+
+    /**
+     * Returns the value of an attribute of the current element as double.
+     *
+     * @param aName the name of the attribute
+     * @return the value, or NaN if the attribute is missing or not a number
+     *
+     * @exception UnsupportedContentException if the value holds content this
+     * parser does not handle
+     */
+    private double getDoubleAttribute(byte[] aName) throws UnsupportedContentException {
+        int a = findAttribute(aName);
+        if (a != -1) {
+            try {
+                return parseDouble(a);
+            } catch (NumberFormatException e) {
+                // not a number, handled as missing value
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Keeps the text of a double attribute of the current element for the
+     * raw maps, if the attribute is present.
+     *
+     * @param aName the name of the attribute
+     * @param aColumn the text column of the result store
+     * @param aIndex the index of the entry in the result store
+     *
+     * @exception UnsupportedContentException if the value holds content this
+     * parser does not handle
+     */
+    private void putNumberText(byte[] aName, int aColumn, int aIndex) throws UnsupportedContentException {
+        int a = findAttribute(aName);
+        if (a != -1) {
+            int start = iAttributes[a * 4 + 2];
+            int end = iAttributes[a * 4 + 3];
+            if (iPlainValues[a]) {
+                iResultStore.setNumberText(aColumn, aIndex, iCharacters, start, end);
+            } else {
+                String value = decode(start, end, true);
+                iResultStore.setNumberText(aColumn, aIndex, value, 0, value.length());
+            }
+        }
+    }
+
+    /**
+     * Parses the value of an attribute of the current element as double.
+     *
+     * @param aAttribute the index of the attribute
+     * @return the value
+     * @throws NumberFormatException if the value is not a number
+     *
+     * @exception UnsupportedContentException if the value holds content this
+     * parser does not handle
+     */
+    private double parseDouble(int aAttribute) throws UnsupportedContentException {
+        int start = iAttributes[aAttribute * 4 + 2];
+        int end = iAttributes[aAttribute * 4 + 3];
+        if (iPlainValues[aAttribute]) {
+            return GamlValuesScanner.parseDouble(iCharacters, start, end);
+        }
+        return Double.parseDouble(decode(start, end, true));
+    }
+
+    /**
+     * Moves to the start of the next child element of the current element, or
+     * to the end of the current element.
+     *
+     * @return true if on the start of a child element, false if on the end of
+     * the current element
+     *
+     * @exception UnsupportedContentException if the content is not handled
+     */
+    private boolean nextChildElement() throws UnsupportedContentException {
+        while (true) {
+            int event = next();
+            if (event == START_ELEMENT) {
+                return true;
+            } else if (event == END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Skips the current element, leaving the parser on its end.
+     *
+     * @exception UnsupportedContentException if the content is not handled
+     */
+    private void skipElement() throws UnsupportedContentException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Skips the remaining children of the parent of the current element,
+     * leaving the parser on the end of the parent.
+     *
+     * @exception UnsupportedContentException if the content is not handled
+     */
+    private void skipRemainingChildren() throws UnsupportedContentException {
+        while (nextChildElement()) {
+            skipElement();
+        }
+    }
+
+    /**
+     * Returns the text content of the current element, i.e., the text of the
+     * element and all its descendants, leaving the parser on its end.
+     *
+     * @return the text content
+     *
+     * @exception UnsupportedContentException if the content is not handled
+     */
+    private String readText() throws UnsupportedContentException {
+        StringBuilder text = null;
+        String firstText = "";
+        int depth = 1;
+        while (depth > 0) {
+            int event = next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            } else if (text != null) {
+                appendText(text, iStart, iStop);
+            } else if (firstText.length() == 0) {
+                firstText = decode(iStart, iStop, false);
+            } else {
+                text = new StringBuilder(firstText);
+                appendText(text, iStart, iStop);
+            }
+        }
+        return text != null ? text.toString() : firstText;
+    }
+
+    /**
+     * Appends decoded text.
+     *
+     * @param aText the text to append to
+     * @param aStart the position of the first byte
+     * @param aEnd the position after the last byte
+     *
+     * @exception UnsupportedContentException if the text is not handled
+     */
+    private void appendText(StringBuilder aText, int aStart, int aEnd) throws UnsupportedContentException {
+        aText.append(decode(aStart, aEnd, false));
+    }
+
+    /**
+     * Decodes text or an attribute value, replacing the entities and
+     * normalizing the line breaks, and in attribute values the whitespace, as
+     * an XML parser does.
+     *
+     * @param aStart the position of the first byte
+     * @param aEnd the position after the last byte
+     * @param aAttribute true for an attribute value
+     * @return the decoded value
+     *
+     * @exception UnsupportedContentException if the value holds unknown
+     * entities, control characters or malformed UTF-8
+     */
+    private String decode(int aStart, int aEnd, boolean aAttribute) throws UnsupportedContentException {
+        boolean ascii = true;
+        boolean plain = true;
+        for (int i = aStart; i < aEnd; i++) {
+            byte b = iBytes[i];
+            if (b < 0) {
+                ascii = false;
+            } else if (b < ' ') {
+                if (b != '\n' && b != '\r' && b != '\t') {
+                    throw UNSUPPORTED;
+                }
+                if (b == '\r' || aAttribute) {
+                    plain = false;
+                }
+            } else if (b == '&') {
+                plain = false;
+            }
+        }
+
+        String text;
+        if (ascii) {
+            text = new String(iBytes, aStart, aEnd - aStart, LATIN1);
+        } else {
+            try {
+                text = iDecoder.decode(ByteBuffer.wrap(iBytes, aStart, aEnd - aStart)).toString();
+            } catch (CharacterCodingException e) {
+                throw UNSUPPORTED;
+            }
+        }
+        return plain ? text : normalize(text, aAttribute);
+    }
+
+    /**
+     * Replaces the entities and normalizes the line breaks, and in attribute
+     * values the whitespace.
+     *
+     * @param aText the text
+     * @param aAttribute true for an attribute value
+     * @return the normalized text
+     *
+     * @exception UnsupportedContentException if the text holds unknown
+     * entities
+     */
+    private static String normalize(String aText, boolean aAttribute) throws UnsupportedContentException {
+        StringBuilder normalized = new StringBuilder(aText.length());
+        for (int i = 0; i < aText.length(); i++) {
+            char c = aText.charAt(i);
+            if (c == '&') {
+                int end = aText.indexOf(';', i);
+                if (end < 0) {
+                    throw UNSUPPORTED;
+                }
+                appendEntity(normalized, aText.substring(i + 1, end));
+                i = end;
+                continue;
+            }
+            if (c == '\r') {
+                if (i + 1 < aText.length() && aText.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                c = '\n';
+            }
+            if (aAttribute && (c == '\n' || c == '\t')) {
+                c = ' ';
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Appends the replacement of a predefined entity or a character
+     * reference.
+     *
+     * @param aText the text to append to
+     * @param aEntity the name of the entity, without the ampersand and the
+     * semicolon
+     *
+     * @exception UnsupportedContentException if the entity is not predefined
+     * or the character reference is invalid
+     */
+    private static void appendEntity(StringBuilder aText, String aEntity) throws UnsupportedContentException {
+        if (aEntity.equals("lt")) {
+            aText.append('<');
+        } else if (aEntity.equals("gt")) {
+            aText.append('>');
+        } else if (aEntity.equals("amp")) {
+            aText.append('&');
+        } else if (aEntity.equals("quot")) {
+            aText.append('"');
+        } else if (aEntity.equals("apos")) {
+            aText.append('\'');
+        } else if (aEntity.startsWith("#")) {
+            int codePoint;
+            try {
+                if (aEntity.startsWith("#x")) {
+                    codePoint = Integer.parseInt(aEntity.substring(2), 16);
+                } else {
+                    codePoint = Integer.parseInt(aEntity.substring(1));
+                }
+            } catch (NumberFormatException e) {
+                throw UNSUPPORTED;
+            }
+            boolean valid = codePoint == 0x9 || codePoint == 0xa || codePoint == 0xd
+                    || (codePoint >= 0x20 && codePoint <= 0xd7ff)
+                    || (codePoint >= 0xe000 && codePoint <= 0xfffd)
+                    || (codePoint >= 0x10000 && codePoint <= 0x10ffff);
+            if (!valid || aEntity.indexOf('-') >= 0 || aEntity.indexOf('+') >= 0) {
+                throw UNSUPPORTED;
+            }
+            aText.appendCodePoint(codePoint);
+        } else {
+            throw UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Returns the lower case of an ASCII letter.
+     *
+     * @param aByte the byte
+     * @return the lower case letter, or the byte itself if not an upper case
+     * letter
+     */
+    private static byte toLowerCase(byte aByte) {
+        return aByte >= 'A' && aByte <= 'Z' ? (byte) (aByte + ('a' - 'A')) : aByte;
+    }
+
+    /**
+     * Returns the bytes of an ASCII string.
+     *
+     * @param aText the string
+     * @return the bytes
+     */
+    private static byte[] bytes(String aText) {
+        return aText.getBytes(LATIN1);
+    }
+
+    /**
+     * The signal for content the parser does not handle.
+     */
+    private static final class UnsupportedContentException extends Exception {
+
+        /**
+         * Creates the signal.
+         */
+        UnsupportedContentException() {
+            super("Content not supported by the fast parser");
+        }
+
+        /**
+         * The signal is shared, no stack trace is recorded.
+         *
+         * @return this signal
+         */
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * A view of ASCII bytes as characters, used to parse numbers without
+     * creating strings.
+     */
+    private static final class AsciiCharSequence implements CharSequence {
+
+        /**
+         * The bytes.
+         */
+        private final byte[] iBytes;
+
+        /**
+         * Creates a view of the given bytes.
+         *
+         * @param aBytes the bytes
+         */
+        AsciiCharSequence(byte[] aBytes) {
+            iBytes = aBytes;
+        }
+
+        public int length() {
+            return iBytes.length;
+        }
+
+        public char charAt(int aIndex) {
+            return (char) iBytes[aIndex];
+        }
+
+        public CharSequence subSequence(int aStart, int aEnd) {
+            return new String(iBytes, aStart, aEnd - aStart, LATIN1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(iBytes, LATIN1);
+        }
+    }
+}
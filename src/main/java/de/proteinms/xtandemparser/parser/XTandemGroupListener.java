@@ -0,0 +1,20 @@
+package de.proteinms.xtandemparser.parser;
+
+/**
+ * This interface is implemented by the classes receiving the model groups of
+ * an X!Tandem file one by one while the file is parsed, see
+ * {@link XTandemParserOptions#setGroupListener(XTandemGroupListener)}.
+ */
+public interface XTandemGroupListener {
+
+    /**
+     * Called when a model group is parsed. The result store and the support
+     * data map of the parser hold only this group, with the spectrum number
+     * of the group as first spectrum number, and are cleared when the method
+     * returns. The input and perform parameters are already known.
+     *
+     * @param aParser the parser holding the group
+     * @param aSpectrumNumber the spectrum number of the group
+     */
+    void groupParsed(XTandemParser aParser, int aSpectrumNumber);
+}
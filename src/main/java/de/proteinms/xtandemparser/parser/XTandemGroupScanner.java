@@ -0,0 +1,617 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * This class scans the bytes of an X!Tandem file for the top level group
+ * elements, i.e., the model groups and the parameter groups, without parsing
+ * their content. For every group the byte offset and length are returned,
+ * plus the type, the id and, for model groups, the spectrum title.
+ * <p>
+ * The file is expected to be UTF-8 or ASCII encoded, as written by X!Tandem.
+ */
+public class XTandemGroupScanner {
+
+    /**
+     * The size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The label of the group containing the fragment ion mass spectrum.
+     */
+    private static final String FRAGMENT_GROUP_LABEL = "fragment ion mass spectrum";
+    /**
+     * The stream to scan.
+     */
+    private InputStream iInputStream;
+    /**
+     * The read buffer.
+     */
+    private byte[] iBuffer = new byte[BUFFER_SIZE];
+    /**
+     * The position of the next byte in the buffer.
+     */
+    private int iPosition = 0;
+    /**
+     * The number of valid bytes in the buffer.
+     */
+    private int iLimit = 0;
+    /**
+     * The file offset of the first byte in the buffer.
+     */
+    private long iBufferOffset = 0;
+    /**
+     * The bytes before the root element, i.e., the XML declaration and the
+     * processing instructions.
+     */
+    private byte[] iProlog = null;
+    /**
+     * The name of the root element, null until found.
+     */
+    private String iRootName = null;
+    /**
+     * The depth of the current group element.
+     */
+    private int iGroupDepth = 0;
+    /**
+     * The offset of the current group.
+     */
+    private long iGroupOffset = -1;
+    /**
+     * The length of the current group.
+     */
+    private int iGroupLength = 0;
+    /**
+     * The type of the current group.
+     */
+    private String iGroupType = null;
+    /**
+     * The id of the current group.
+     */
+    private String iGroupId = null;
+    /**
+     * The label of the current group.
+     */
+    private String iGroupLabel = null;
+    /**
+     * The spectrum title of the current model group.
+     */
+    private String iTitle = null;
+    /**
+     * Buffer for the tag names and attributes.
+     */
+    private ByteArrayOutputStream iTagBuffer = new ByteArrayOutputStream(256);
+    /**
+     * True if the bytes of the top level groups are kept.
+     */
+    private boolean iCaptureGroups = false;
+    /**
+     * The position in the buffer from which the bytes of the current group
+     * still have to be copied, -1 if not capturing.
+     */
+    private int iCaptureStart = -1;
+    /**
+     * The bytes of the current group, if captured.
+     */
+    private ByteArrayOutputStream iGroupBytes = new ByteArrayOutputStream(1 << 12);
+
+    /**
+     * Creates a scanner reading from the start of an X!Tandem file.
+     *
+     * @param aInputStream the stream to read the file from
+     */
+    public XTandemGroupScanner(InputStream aInputStream) {
+        iInputStream = aInputStream;
+    }
+
+    /**
+     * Creates a scanner reading from the start of an X!Tandem file.
+     *
+     * @param aInputStream the stream to read the file from
+     * @param aCaptureGroups if true the bytes of every top level group are
+     * kept, see {@link #getGroupBytes()}
+     */
+    public XTandemGroupScanner(InputStream aInputStream, boolean aCaptureGroups) {
+        iInputStream = aInputStream;
+        iCaptureGroups = aCaptureGroups;
+    }
+
+    /**
+     * Moves to the next top level group.
+     *
+     * @return true if a group was found, false at the end of the file
+     *
+     * @exception IOException if an IOException occurs
+     */
+    public boolean next() throws IOException {
+
+        iGroupOffset = -1;
+        iGroupLength = 0;
+        iGroupType = null;
+        iGroupId = null;
+        iGroupLabel = null;
+        iTitle = null;
+        iGroupBytes.reset();
+
+        // the depth of the fragment ion mass spectrum group, -1 if outside of it
+        int fragmentDepth = -1;
+
+        int c;
+        while ((c = read()) != -1) {
+
+            if (c != '<') {
+                continue;
+            }
+
+            long tagOffset = iBufferOffset + iPosition - 1;
+            if (iCaptureGroups && iGroupDepth == 0) {
+                iCaptureStart = iPosition - 1;
+            }
+            c = read();
+
+            if (iGroupDepth == 0 && c != -1 && (c == '?' || c == '!' || c == '/')) {
+                iCaptureStart = -1;
+            }
+
+            if (c == '?') {
+                skipTo("?>");
+            } else if (c == '!') {
+                if (lookingAt("--")) {
+                    skipTo("-->");
+                } else if (lookingAt("[CDATA[")) {
+                    skipTo("]]>");
+                } else {
+                    skipTo(">");
+                }
+            } else if (c == '/') {
+                String name = readName(-1);
+                skipTo(">");
+                if (name.equals("group") && iGroupDepth > 0) {
+                    if (iGroupDepth == fragmentDepth) {
+                        fragmentDepth = -1;
+                    }
+                    iGroupDepth--;
+                    if (iGroupDepth == 0) {
+                        iGroupLength = (int) (iBufferOffset + iPosition - iGroupOffset);
+                        endCapture();
+                        return true;
+                    }
+                }
+            } else if (c != -1) {
+
+                String name = readName(c);
+
+                if (iGroupDepth == 0 && !name.equals("group")) {
+                    iCaptureStart = -1;
+                }
+
+                if (iRootName == null) {
+                    iRootName = name;
+                    if (iBufferOffset == 0 && tagOffset < iLimit) {
+                        iProlog = Arrays.copyOf(iBuffer, (int) tagOffset);
+                    }
+                    skipTag();
+                } else if (name.equals("group")) {
+
+                    boolean topLevel = iGroupDepth == 0;
+                    boolean selfClosing;
+
+                    if (topLevel || (iGroupDepth == 1 && "model".equals(iGroupType))) {
+                        String attributes = readTag();
+                        selfClosing = attributes.endsWith("/");
+                        if (topLevel) {
+                            iGroupOffset = tagOffset;
+                            iGroupType = getAttribute(attributes, "type");
+                            iGroupId = getAttribute(attributes, "id");
+                            iGroupLabel = getAttribute(attributes, "label");
+                        } else if (FRAGMENT_GROUP_LABEL.equalsIgnoreCase(getAttribute(attributes, "label"))) {
+                            fragmentDepth = iGroupDepth + 1;
+                        }
+                    } else {
+                        selfClosing = skipTag();
+                    }
+
+                    if (!selfClosing) {
+                        iGroupDepth++;
+                    } else if (topLevel) {
+                        iGroupLength = (int) (iBufferOffset + iPosition - iGroupOffset);
+                        endCapture();
+                        return true;
+                    }
+                } else if (name.equals("note") && fragmentDepth == iGroupDepth && iTitle == null) {
+                    if (!skipTag()) {
+                        iTitle = unescape(readText()).trim();
+                    }
+                } else {
+                    skipTag();
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the bytes before the root element, i.e., the XML declaration and
+     * the processing instructions. Null if not found in the first buffer.
+     *
+     * @return the prolog
+     */
+    public byte[] getProlog() {
+        return iProlog;
+    }
+
+    /**
+     * Returns the name of the root element, "bioml" for an X!Tandem file.
+     * Null if no element was found, e.g., if the file is empty or not XML.
+     *
+     * @return the name of the root element
+     */
+    public String getRootName() {
+        return iRootName;
+    }
+
+    /**
+     * Returns true if the root element found is the bioml element of an
+     * X!Tandem file.
+     *
+     * @return true if the root element is bioml
+     */
+    public boolean isXTandemFile() {
+        return "bioml".equals(iRootName);
+    }
+
+    /**
+     * Returns the byte offset of the current group.
+     *
+     * @return the byte offset
+     */
+    public long getGroupOffset() {
+        return iGroupOffset;
+    }
+
+    /**
+     * Returns the length in bytes of the current group.
+     *
+     * @return the length in bytes
+     */
+    public int getGroupLength() {
+        return iGroupLength;
+    }
+
+    /**
+     * Returns the type of the current group, e.g., model or parameters.
+     *
+     * @return the type, null if not given
+     */
+    public String getGroupType() {
+        return iGroupType;
+    }
+
+    /**
+     * Returns the id of the current group.
+     *
+     * @return the id, null if not given
+     */
+    public String getGroupId() {
+        return iGroupId;
+    }
+
+    /**
+     * Returns the label of the current group.
+     *
+     * @return the label, null if not given
+     */
+    public String getGroupLabel() {
+        return iGroupLabel;
+    }
+
+    /**
+     * Returns the bytes of the current group. Only available if the scanner
+     * was created to capture the groups.
+     *
+     * @return the bytes of the current group
+     */
+    public byte[] getGroupBytes() {
+        return iGroupBytes.toByteArray();
+    }
+
+    /**
+     * Returns the spectrum title of the current model group, i.e., the note of
+     * the fragment ion mass spectrum group.
+     *
+     * @return the spectrum title, null if not given
+     */
+    public String getTitle() {
+        return iTitle;
+    }
+
+    /**
+     * Returns true if the current group is a model group.
+     *
+     * @return true if the current group is a model group
+     */
+    public boolean isModelGroup() {
+        return iGroupType != null && iGroupType.equalsIgnoreCase("model");
+    }
+
+    /**
+     * Returns true if the current group is a parameter group.
+     *
+     * @return true if the current group is a parameter group
+     */
+    public boolean isParameterGroup() {
+        return iGroupType != null && iGroupType.equalsIgnoreCase("parameters");
+    }
+
+    /**
+     * Reads the next byte.
+     *
+     * @return the next byte, -1 at the end of the stream
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private int read() throws IOException {
+        if (iPosition == iLimit) {
+            if (iCaptureStart != -1) {
+                iGroupBytes.write(iBuffer, iCaptureStart, iLimit - iCaptureStart);
+                iCaptureStart = 0;
+            }
+            iBufferOffset += iLimit;
+            iPosition = 0;
+            iLimit = 0;
+            int read;
+            do {
+                read = iInputStream.read(iBuffer, 0, iBuffer.length);
+            } while (read == 0);
+            if (read == -1) {
+                return -1;
+            }
+            iLimit = read;
+        }
+        return iBuffer[iPosition++] & 0xff;
+    }
+
+    /**
+     * Copies the remaining bytes of the current group and stops capturing.
+     */
+    private void endCapture() {
+        if (iCaptureStart != -1) {
+            iGroupBytes.write(iBuffer, iCaptureStart, iPosition - iCaptureStart);
+            iCaptureStart = -1;
+        }
+    }
+
+    /**
+     * Reads the given characters if they are next in the stream.
+     *
+     * @param aText the expected characters
+     * @return true if the characters were found
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private boolean lookingAt(String aText) throws IOException {
+        for (int i = 0; i < aText.length(); i++) {
+            int c = read();
+            if (c != aText.charAt(i)) {
+                if (c != -1) {
+                    iPosition--;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips the stream up to and including the given characters.
+     *
+     * @param aText the characters to skip to
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private void skipTo(String aText) throws IOException {
+        int matched = 0;
+        int c;
+        while (matched < aText.length() && (c = read()) != -1) {
+            if (c == aText.charAt(matched)) {
+                matched++;
+            } else if (c == aText.charAt(0)) {
+                matched = 1;
+            } else {
+                matched = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads an element name.
+     *
+     * @param aFirst the first character of the name, -1 if not yet read
+     * @return the element name
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private String readName(int aFirst) throws IOException {
+        iTagBuffer.reset();
+        int c = aFirst == -1 ? read() : aFirst;
+        while (c != -1 && c != '>' && c != '/' && c > ' ') {
+            iTagBuffer.write(c);
+            c = read();
+        }
+        if (c != -1) {
+            iPosition--;
+        }
+        return iTagBuffer.toString("ISO-8859-1");
+    }
+
+    /**
+     * Skips the rest of a start tag.
+     *
+     * @return true if the tag is self closing
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private boolean skipTag() throws IOException {
+        int quote = -1;
+        int last = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (quote != -1) {
+                if (c == quote) {
+                    quote = -1;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return last == '/';
+            } else if (c > ' ') {
+                last = c;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the rest of a start tag, i.e., the attributes.
+     *
+     * @return the attributes, ending with / if the tag is self closing
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private String readTag() throws IOException {
+        iTagBuffer.reset();
+        int quote = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (quote != -1) {
+                if (c == quote) {
+                    quote = -1;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                break;
+            }
+            iTagBuffer.write(c);
+        }
+        return toString(iTagBuffer).trim();
+    }
+
+    /**
+     * Reads the text up to the next tag.
+     *
+     * @return the text
+     *
+     * @exception IOException if an IOException occurs
+     */
+    private String readText() throws IOException {
+        iTagBuffer.reset();
+        int c;
+        while ((c = read()) != -1 && c != '<') {
+            iTagBuffer.write(c);
+        }
+        if (c != -1) {
+            iPosition--;
+        }
+        return toString(iTagBuffer);
+    }
+
+    /**
+     * Returns the value of an attribute.
+     *
+     * @param aAttributes the attributes of a tag
+     * @param aName the name of the attribute
+     * @return the unescaped value, null if not found
+     */
+    private static String getAttribute(String aAttributes, String aName) {
+        int index = 0;
+        while ((index = aAttributes.indexOf(aName, index)) != -1) {
+            int end = index + aName.length();
+            if ((index == 0 || aAttributes.charAt(index - 1) <= ' ')) {
+                int i = end;
+                while (i < aAttributes.length() && aAttributes.charAt(i) <= ' ') {
+                    i++;
+                }
+                if (i < aAttributes.length() && aAttributes.charAt(i) == '=') {
+                    i++;
+                    while (i < aAttributes.length() && aAttributes.charAt(i) <= ' ') {
+                        i++;
+                    }
+                    if (i < aAttributes.length()) {
+                        char quote = aAttributes.charAt(i);
+                        int valueEnd = aAttributes.indexOf(quote, i + 1);
+                        if (valueEnd != -1) {
+                            return unescape(aAttributes.substring(i + 1, valueEnd));
+                        }
+                    }
+                }
+            }
+            index = end;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the bytes of a buffer as UTF-8.
+     *
+     * @param aBuffer the buffer
+     * @return the decoded string
+     */
+    private static String toString(ByteArrayOutputStream aBuffer) {
+        try {
+            return aBuffer.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replaces the XML entity and character references in a text.
+     *
+     * @param aText the text
+     * @return the unescaped text
+     */
+    static String unescape(String aText) {
+        int index = aText.indexOf('&');
+        if (index == -1) {
+            return aText;
+        }
+        StringBuilder result = new StringBuilder(aText.length());
+        int start = 0;
+        while (index != -1) {
+            int end = aText.indexOf(';', index);
+            if (end == -1) {
+                break;
+            }
+            result.append(aText, start, index);
+            String entity = aText.substring(index + 1, end);
+            if (entity.equals("amp")) {
+                result.append('&');
+            } else if (entity.equals("lt")) {
+                result.append('<');
+            } else if (entity.equals("gt")) {
+                result.append('>');
+            } else if (entity.equals("quot")) {
+                result.append('"');
+            } else if (entity.equals("apos")) {
+                result.append('\'');
+            } else if (entity.startsWith("#x")) {
+                result.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+            } else if (entity.startsWith("#")) {
+                result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+            } else {
+                result.append('&').append(entity).append(';');
+            }
+            start = end + 1;
+            index = aText.indexOf('&', start);
+        }
+        result.append(aText, start, aText.length());
+        return result.toString();
+    }
+}
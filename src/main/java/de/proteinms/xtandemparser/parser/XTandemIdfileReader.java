@@ -134,7 +134,7 @@ public class XTandemIdfileReader extends ExperimentObject implements IdfileReade
 
                 String tempFile = xTandemFile.getInputParameters().getSpectrumPath();
                 String filename = Util.getFileName(tempFile);
-                Integer parsedCharge = new Integer(xTandemFile.getXTandemParser().getRawSpectrumMap().get("z" + spectrumNumber));
+                Integer parsedCharge = xTandemFile.getXTandemParser().getResultStore().getPrecursorCharge(spectrumNumber - 1);
                 Charge charge = new Charge(Charge.PLUS, parsedCharge);
                 String spectrumKey = com.compomics.util.experiment.massspectrometry.Spectrum.getSpectrumKey(filename, spectrumName);
                 SpectrumMatch currentMatch = new SpectrumMatch(spectrumKey);
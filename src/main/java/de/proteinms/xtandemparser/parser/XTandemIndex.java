@@ -0,0 +1,513 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class holds the byte offset and length of every model group of an
+ * X!Tandem file, keyed by spectrum number, spectrum id and spectrum title, plus
+ * the location of the parameter groups. The index is stored in a compact
+ * binary sidecar file next to the X!Tandem file and is rebuilt when the
+ * X!Tandem file changes.
+ */
+public class XTandemIndex {
+
+    /**
+     * The magic number at the start of an index file.
+     */
+    private static final int MAGIC = 0x58544958;
+    /**
+     * The version of the index file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * The extension added to the X!Tandem file name for the index file.
+     */
+    public static final String INDEX_EXTENSION = ".idx";
+    /**
+     * The size of the read and write buffers.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The initial capacity of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The length of the indexed X!Tandem file.
+     */
+    private long iFileLength;
+    /**
+     * The last modification time of the indexed X!Tandem file.
+     */
+    private long iLastModified;
+    /**
+     * The bytes before the root element of the X!Tandem file.
+     */
+    private byte[] iProlog = new byte[0];
+    /**
+     * The number of parameter groups.
+     */
+    private int iParameterGroupCount = 0;
+    /**
+     * The offsets of the parameter groups.
+     */
+    private long[] iParameterGroupOffsets = new long[4];
+    /**
+     * The lengths of the parameter groups.
+     */
+    private int[] iParameterGroupLengths = new int[4];
+    /**
+     * The number of spectra.
+     */
+    private int iSpectrumCount = 0;
+    /**
+     * The offsets of the model groups.
+     */
+    private long[] iGroupOffsets = new long[INITIAL_CAPACITY];
+    /**
+     * The lengths of the model groups.
+     */
+    private int[] iGroupLengths = new int[INITIAL_CAPACITY];
+    /**
+     * The spectrum ids.
+     */
+    private int[] iSpectrumIds = new int[INITIAL_CAPACITY];
+    /**
+     * The spectrum titles.
+     */
+    private String[] iTitles = new String[INITIAL_CAPACITY];
+    /**
+     * The spectrum numbers by spectrum id, built when first requested.
+     */
+    private HashMap<Integer, Integer> iIdToNumberMap = null;
+    /**
+     * The spectrum numbers by spectrum title, built when first requested.
+     */
+    private HashMap<String, Integer> iTitleToNumberMap = null;
+
+    /**
+     * Creates an empty index.
+     */
+    private XTandemIndex() {
+    }
+
+    /**
+     * Returns the index of an X!Tandem file. The index is read from the index
+     * file if it is up to date, otherwise it is built from the X!Tandem file
+     * and written to the index file. If the index file cannot be written, the
+     * index is only kept in memory.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @return the index
+     *
+     * @exception IOException if the X!Tandem file could not be read, is
+     * compressed or has no bioml root element
+     */
+    public static XTandemIndex load(File aXTandemFile) throws IOException {
+        File indexFile = getIndexFile(aXTandemFile);
+        if (indexFile.exists()) {
+            try {
+                XTandemIndex index = read(indexFile);
+                if (index.isValidFor(aXTandemFile)) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // rebuild the index below
+            }
+        }
+        XTandemIndex index = build(aXTandemFile);
+        try {
+            index.write(indexFile);
+        } catch (IOException e) {
+            indexFile.delete();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index file of an X!Tandem file.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @return the index file
+     */
+    public static File getIndexFile(File aXTandemFile) {
+        return new File(aXTandemFile.getPath() + INDEX_EXTENSION);
+    }
+
+    /**
+     * Builds the index of an X!Tandem file by scanning the file for the top
+     * level groups. The offsets are those of the file itself, so compressed
+     * files cannot be indexed.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @return the index
+     *
+     * @exception IOException if the X!Tandem file could not be read, is
+     * compressed or has no bioml root element
+     */
+    public static XTandemIndex build(File aXTandemFile) throws IOException {
+        XTandemIndex index = new XTandemIndex();
+        index.iFileLength = aXTandemFile.length();
+        index.iLastModified = aXTandemFile.lastModified();
+
+        InputStream inputStream = new MappedFileInputStream(aXTandemFile);
+        try {
+            DecompressingInputStream.Compression compression = DecompressingInputStream.detect(inputStream);
+            if (compression != DecompressingInputStream.Compression.NONE) {
+                throw new IOException(compression + " compressed files cannot be indexed, decompress "
+                        + aXTandemFile.getPath() + " first");
+            }
+
+            XTandemGroupScanner scanner = new XTandemGroupScanner(inputStream);
+            boolean rootChecked = false;
+            while (scanner.next()) {
+                if (!rootChecked) {
+                    checkRoot(scanner, aXTandemFile);
+                    rootChecked = true;
+                }
+                if (scanner.isModelGroup()) {
+                    index.addSpectrum(scanner.getGroupOffset(), scanner.getGroupLength(), parseId(scanner.getGroupId()), scanner.getTitle());
+                } else if (scanner.isParameterGroup()) {
+                    index.addParameterGroup(scanner.getGroupOffset(), scanner.getGroupLength());
+                }
+            }
+            if (!rootChecked) {
+                checkRoot(scanner, aXTandemFile);
+            }
+            if (scanner.getProlog() != null) {
+                index.iProlog = scanner.getProlog();
+            }
+        } finally {
+            inputStream.close();
+        }
+        return index;
+    }
+
+    /**
+     * Checks that the root element found by the scanner is the bioml element
+     * of an X!Tandem file, so that no index of 0 spectra is built, e.g., for
+     * an empty file.
+     *
+     * @param aScanner the scanner
+     * @param aXTandemFile the file scanned
+     *
+     * @exception IOException if the root element is not bioml
+     */
+    private static void checkRoot(XTandemGroupScanner aScanner, File aXTandemFile) throws IOException {
+        if (!aScanner.isXTandemFile()) {
+            throw new IOException("Not an X!Tandem file, "
+                    + (aScanner.getRootName() == null ? "no root element" : "root element " + aScanner.getRootName() + " instead of bioml")
+                    + " found: " + aXTandemFile.getPath());
+        }
+    }
+
+    /**
+     * Reads an index from an index file.
+     *
+     * @param aIndexFile the index file
+     * @return the index
+     *
+     * @exception IOException if the index file could not be read or is not
+     * a valid index file
+     */
+    public static XTandemIndex read(File aIndexFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(aIndexFile), BUFFER_SIZE));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an X!Tandem index file: " + aIndexFile.getPath());
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported X!Tandem index version " + version + ": " + aIndexFile.getPath());
+            }
+
+            XTandemIndex index = new XTandemIndex();
+            index.iFileLength = in.readLong();
+            index.iLastModified = in.readLong();
+            index.iProlog = new byte[in.readInt()];
+            in.readFully(index.iProlog);
+
+            int parameterGroupCount = in.readInt();
+            for (int i = 0; i < parameterGroupCount; i++) {
+                index.addParameterGroup(in.readLong(), in.readInt());
+            }
+
+            int spectrumCount = in.readInt();
+            index.ensureCapacity(spectrumCount);
+            for (int i = 0; i < spectrumCount; i++) {
+                long offset = in.readLong();
+                int length = in.readInt();
+                int id = in.readInt();
+                String title = in.readBoolean() ? in.readUTF() : null;
+                index.addSpectrum(offset, length, id, title);
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index to an index file.
+     *
+     * @param aIndexFile the index file
+     *
+     * @exception IOException if the index file could not be written
+     */
+    public void write(File aIndexFile) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aIndexFile), BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(iFileLength);
+            out.writeLong(iLastModified);
+            out.writeInt(iProlog.length);
+            out.write(iProlog);
+
+            out.writeInt(iParameterGroupCount);
+            for (int i = 0; i < iParameterGroupCount; i++) {
+                out.writeLong(iParameterGroupOffsets[i]);
+                out.writeInt(iParameterGroupLengths[i]);
+            }
+
+            out.writeInt(iSpectrumCount);
+            for (int i = 0; i < iSpectrumCount; i++) {
+                out.writeLong(iGroupOffsets[i]);
+                out.writeInt(iGroupLengths[i]);
+                out.writeInt(iSpectrumIds[i]);
+                out.writeBoolean(iTitles[i] != null);
+                if (iTitles[i] != null) {
+                    out.writeUTF(iTitles[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns true if the index was built from the current version of the
+     * given X!Tandem file, i.e., the length and modification time match.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @return true if the index is up to date
+     */
+    public boolean isValidFor(File aXTandemFile) {
+        return aXTandemFile.length() == iFileLength && aXTandemFile.lastModified() == iLastModified;
+    }
+
+    /**
+     * Returns the number of spectra, i.e., of model groups.
+     *
+     * @return the number of spectra
+     */
+    public int getNumberOfSpectra() {
+        return iSpectrumCount;
+    }
+
+    /**
+     * Returns the byte offset of the model group of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the byte offset
+     */
+    public long getGroupOffset(int aSpectrumNumber) {
+        return iGroupOffsets[checkSpectrumNumber(aSpectrumNumber) - 1];
+    }
+
+    /**
+     * Returns the length in bytes of the model group of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the length in bytes
+     */
+    public int getGroupLength(int aSpectrumNumber) {
+        return iGroupLengths[checkSpectrumNumber(aSpectrumNumber) - 1];
+    }
+
+    /**
+     * Returns the id of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the spectrum id, {@link XTandemResultStore#NO_VALUE} if not
+     * given
+     */
+    public int getSpectrumId(int aSpectrumNumber) {
+        return iSpectrumIds[checkSpectrumNumber(aSpectrumNumber) - 1];
+    }
+
+    /**
+     * Returns the title of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the spectrum title, null if not given
+     */
+    public String getTitle(int aSpectrumNumber) {
+        return iTitles[checkSpectrumNumber(aSpectrumNumber) - 1];
+    }
+
+    /**
+     * Returns the spectrum number for a spectrum id.
+     *
+     * @param aSpectrumId the spectrum id
+     * @return the spectrum number, -1 if not found
+     */
+    public int getSpectrumNumberForId(int aSpectrumId) {
+        if (iIdToNumberMap == null) {
+            HashMap<Integer, Integer> map = new HashMap<Integer, Integer>(iSpectrumCount * 2);
+            for (int i = iSpectrumCount - 1; i >= 0; i--) {
+                map.put(iSpectrumIds[i], i + 1);
+            }
+            iIdToNumberMap = map;
+        }
+        Integer number = iIdToNumberMap.get(aSpectrumId);
+        return number != null ? number : -1;
+    }
+
+    /**
+     * Returns the spectrum number for a spectrum title.
+     *
+     * @param aTitle the spectrum title
+     * @return the spectrum number, -1 if not found
+     */
+    public int getSpectrumNumberForTitle(String aTitle) {
+        if (iTitleToNumberMap == null) {
+            HashMap<String, Integer> map = new HashMap<String, Integer>(iSpectrumCount * 2);
+            for (int i = iSpectrumCount - 1; i >= 0; i--) {
+                if (iTitles[i] != null) {
+                    map.put(iTitles[i], i + 1);
+                }
+            }
+            iTitleToNumberMap = map;
+        }
+        Integer number = iTitleToNumberMap.get(aTitle);
+        return number != null ? number : -1;
+    }
+
+    /**
+     * Returns the bytes before the root element of the X!Tandem file, i.e.,
+     * the XML declaration and the processing instructions.
+     *
+     * @return the prolog
+     */
+    public byte[] getProlog() {
+        return iProlog;
+    }
+
+    /**
+     * Returns the number of parameter groups.
+     *
+     * @return the number of parameter groups
+     */
+    public int getNumberOfParameterGroups() {
+        return iParameterGroupCount;
+    }
+
+    /**
+     * Returns the byte offset of a parameter group.
+     *
+     * @param aParameterGroup the index of the parameter group
+     * @return the byte offset
+     */
+    public long getParameterGroupOffset(int aParameterGroup) {
+        return iParameterGroupOffsets[aParameterGroup];
+    }
+
+    /**
+     * Returns the length in bytes of a parameter group.
+     *
+     * @param aParameterGroup the index of the parameter group
+     * @return the length in bytes
+     */
+    public int getParameterGroupLength(int aParameterGroup) {
+        return iParameterGroupLengths[aParameterGroup];
+    }
+
+    /**
+     * Checks that a spectrum number is in the index.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @return the spectrum number
+     */
+    private int checkSpectrumNumber(int aSpectrumNumber) {
+        if (aSpectrumNumber < 1 || aSpectrumNumber > iSpectrumCount) {
+            throw new IndexOutOfBoundsException("Spectrum number " + aSpectrumNumber + " not in [1, " + iSpectrumCount + "]");
+        }
+        return aSpectrumNumber;
+    }
+
+    /**
+     * Adds a model group.
+     *
+     * @param aOffset the byte offset
+     * @param aLength the length in bytes
+     * @param aSpectrumId the spectrum id
+     * @param aTitle the spectrum title
+     */
+    private void addSpectrum(long aOffset, int aLength, int aSpectrumId, String aTitle) {
+        ensureCapacity(iSpectrumCount + 1);
+        iGroupOffsets[iSpectrumCount] = aOffset;
+        iGroupLengths[iSpectrumCount] = aLength;
+        iSpectrumIds[iSpectrumCount] = aSpectrumId;
+        iTitles[iSpectrumCount] = aTitle;
+        iSpectrumCount++;
+    }
+
+    /**
+     * Adds a parameter group.
+     *
+     * @param aOffset the byte offset
+     * @param aLength the length in bytes
+     */
+    private void addParameterGroup(long aOffset, int aLength) {
+        if (iParameterGroupCount == iParameterGroupOffsets.length) {
+            iParameterGroupOffsets = Arrays.copyOf(iParameterGroupOffsets, iParameterGroupCount * 2);
+            iParameterGroupLengths = Arrays.copyOf(iParameterGroupLengths, iParameterGroupCount * 2);
+        }
+        iParameterGroupOffsets[iParameterGroupCount] = aOffset;
+        iParameterGroupLengths[iParameterGroupCount] = aLength;
+        iParameterGroupCount++;
+    }
+
+    /**
+     * Ensures that the spectrum arrays can hold the given number of entries.
+     *
+     * @param aCapacity the required capacity
+     */
+    private void ensureCapacity(int aCapacity) {
+        if (aCapacity > iGroupOffsets.length) {
+            int capacity = Math.max(aCapacity, iGroupOffsets.length * 2);
+            iGroupOffsets = Arrays.copyOf(iGroupOffsets, capacity);
+            iGroupLengths = Arrays.copyOf(iGroupLengths, capacity);
+            iSpectrumIds = Arrays.copyOf(iSpectrumIds, capacity);
+            iTitles = Arrays.copyOf(iTitles, capacity);
+        }
+    }
+
+    /**
+     * Parses a spectrum id.
+     *
+     * @param aId the id attribute of a model group
+     * @return the spectrum id, {@link XTandemResultStore#NO_VALUE} if missing
+     * or not a number
+     */
+    private static int parseId(String aId) {
+        if (aId != null) {
+            try {
+                return Integer.parseInt(aId.trim());
+            } catch (NumberFormatException e) {
+                // not a number
+            }
+        }
+        return XTandemResultStore.NO_VALUE;
+    }
+}
@@ -1,21 +1,36 @@
 package de.proteinms.xtandemparser.parser;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 /**
@@ -29,17 +44,175 @@ public class XTandemParser implements Serializable {
      * Pattern to extract the modification mass number if multiple modification
      * masses are given.
      */
-    private static Pattern resModificationMassPattern = Pattern.compile("label=\"residue, modification mass (\\d+)\"");
+    private static Pattern resModificationMassPattern = Pattern.compile("residue, modification mass (\\d+)");
     /**
      * Pattern to extract the modification mass number if multiple modification
      * masses are given.
      */
-    private static Pattern refPotModificationMassPattern = Pattern.compile("label=\"refine, potential modification mass (\\d+)\"");
+    private static Pattern refPotModificationMassPattern = Pattern.compile("refine, potential modification mass (\\d+)");
     /**
      * Pattern to extract the modification mass number if multiple modification
      * masses are given.
      */
-    private static Pattern refPotModificationMotifPattern = Pattern.compile("label=\"refine, potential modification motif (\\d+)\"");
+    private static Pattern refPotModificationMotifPattern = Pattern.compile("refine, potential modification motif (\\d+)");
+    /**
+     * The size of the buffer used when streaming the xtandem file.
+     */
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    /**
+     * The minimum size in bytes of the chunks of model groups parsed by one
+     * task when parsing in parallel.
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 20;
+    /**
+     * The maximum number of chunks read ahead of the merged results when
+     * parsing in parallel.
+     */
+    private static final int PARALLEL_MAX_PENDING_CHUNKS = 64;
+    /**
+     * The maximum number of bytes of model groups kept in memory while
+     * streaming a file whose parameters are not read yet, the groups beyond
+     * are spooled to a temporary file.
+     */
+    private static final int STREAMING_SPOOL_MEMORY = 8 << 20;
+    /**
+     * The start tag of the root element of the chunks parsed in parallel.
+     */
+    private static final byte[] ROOT_START = "<bioml>".getBytes(Charset.forName("US-ASCII"));
+    /**
+     * The end tag of the root element of the chunks parsed in parallel.
+     */
+    private static final byte[] ROOT_END = "</bioml>".getBytes(Charset.forName("US-ASCII"));
+    /**
+     * The StAX factories creating the readers of the documents, one per thread
+     * as the factories are not guaranteed to be thread safe. Creating a
+     * factory looks up the implementation, which is slow compared to parsing
+     * a single group, e.g., from a random access file.
+     */
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            return factory;
+        }
+    };
+    /**
+     * Map from the lower case label of an input parameter to its key in the
+     * input parameter map.
+     */
+    private static final HashMap<String, String> INPUT_PARAMETER_KEYS = new HashMap<String, String>();
+    /**
+     * Map from the lower case label of a performance parameter to its key in
+     * the performance parameter map.
+     */
+    private static final HashMap<String, String> PERFORM_PARAMETER_KEYS = new HashMap<String, String>();
+
+    static {
+        INPUT_PARAMETER_KEYS.put("list path, default parameters", "DEFAULTPARAMPATH");
+        INPUT_PARAMETER_KEYS.put("list path, taxonomy information", "TAXONOMYINFOPATH");
+        INPUT_PARAMETER_KEYS.put("output, histogram column width", "HISTOCOLWIDTH");
+        INPUT_PARAMETER_KEYS.put("output, histograms", "HISTOEXIST");
+        INPUT_PARAMETER_KEYS.put("output, logpath", "LOGPATH");
+        INPUT_PARAMETER_KEYS.put("output, maximum valid expectation value", "MAXVALIDEXPECT");
+        INPUT_PARAMETER_KEYS.put("output, message", "OUTPUTMESSAGE");
+        INPUT_PARAMETER_KEYS.put("output, one sequence copy", "ONESEQCOPY");
+        INPUT_PARAMETER_KEYS.put("output, parameters", "OUTPUTPARAMS");
+        INPUT_PARAMETER_KEYS.put("output, path", "OUTPUTPATH");
+        INPUT_PARAMETER_KEYS.put("output, path hashing", "OUTPUTPATHHASH");
+        INPUT_PARAMETER_KEYS.put("output, performance", "OUTPUTPERFORMANCE");
+        INPUT_PARAMETER_KEYS.put("output, proteins", "OUTPUTPROTEINS");
+        INPUT_PARAMETER_KEYS.put("output, results", "OUTPUTRESULTS");
+        INPUT_PARAMETER_KEYS.put("output, sequence path", "OUTPUTSEQPATH");
+        INPUT_PARAMETER_KEYS.put("output, sequences", "OUTPUTSEQUENCES");
+        INPUT_PARAMETER_KEYS.put("output, sort results by", "OUTPUTSORTRESULTS");
+        INPUT_PARAMETER_KEYS.put("output, spectra", "OUTPUTSPECTRA");
+        INPUT_PARAMETER_KEYS.put("output, xsl path", "OUTPUTSXSLPATH");
+        INPUT_PARAMETER_KEYS.put("protein, c-terminal residue modification mass", "C_TERMRESMODMASS");
+        INPUT_PARAMETER_KEYS.put("protein, n-terminal residue modification mass", "N_TERMRESMODMASS");
+        INPUT_PARAMETER_KEYS.put("protein, cleavage c-terminal mass change", "C_TERMCLEAVMASSCHANGE");
+        INPUT_PARAMETER_KEYS.put("protein, cleavage n-terminal mass change", "N_TERMCLEAVMASSCHANGE");
+        INPUT_PARAMETER_KEYS.put("protein, cleavage site", "CLEAVAGESITE");
+        INPUT_PARAMETER_KEYS.put("protein, homolog management", "HOMOLOGMANAGE");
+        INPUT_PARAMETER_KEYS.put("protein, modified residue mass file", "MODRESMASSFILE");
+        INPUT_PARAMETER_KEYS.put("protein, taxon", "TAXON");
+        INPUT_PARAMETER_KEYS.put("refine", "REFINE");
+        INPUT_PARAMETER_KEYS.put("refine, maximum valid expectation value", "REFINEMAXVALIDEXPECT");
+        INPUT_PARAMETER_KEYS.put("refine, modification mass", "REFINEMODMASS");
+        INPUT_PARAMETER_KEYS.put("refine, point mutations", "POINTMUTATIONS");
+        INPUT_PARAMETER_KEYS.put("refine, potential c-terminus modifications", "POTC_TERMMODS");
+        INPUT_PARAMETER_KEYS.put("refine, potential n-terminus modifications", "POTN_TERMMODS");
+        INPUT_PARAMETER_KEYS.put("refine, potential modification mass", "POTMODMASS");
+        INPUT_PARAMETER_KEYS.put("refine, potential modification motif", "POTMODMOTIF");
+        INPUT_PARAMETER_KEYS.put("refine, sequence path", "REFINESEQPATH");
+        INPUT_PARAMETER_KEYS.put("refine, spectrum synthesis", "REFINESPECSYTNH");
+        INPUT_PARAMETER_KEYS.put("refine, tic percent", "REFINETIC");
+        INPUT_PARAMETER_KEYS.put("refine, unanticipated cleavage", "REFINEUNANTICLEAV");
+        INPUT_PARAMETER_KEYS.put("refine, use potential modifications for full refinement", "POTMODSFULLREFINE");
+        INPUT_PARAMETER_KEYS.put("residue, modification mass", "RESIDUEMODMASS");
+        INPUT_PARAMETER_KEYS.put("residue, potential modification mass", "RESIDUEPOTMODMASS");
+        INPUT_PARAMETER_KEYS.put("residue, potential modification motif", "RESIDUEPOTMODMOTIV");
+        INPUT_PARAMETER_KEYS.put("scoring, a ions", "SCORING_AIONS");
+        INPUT_PARAMETER_KEYS.put("scoring, b ions", "SCORING_BIONS");
+        INPUT_PARAMETER_KEYS.put("scoring, c ions", "SCORING_CIONS");
+        INPUT_PARAMETER_KEYS.put("scoring, cyclic permutation", "SCORINGCYCLPERM");
+        INPUT_PARAMETER_KEYS.put("scoring, include reverse", "SCORINGINCREV");
+        INPUT_PARAMETER_KEYS.put("scoring, maximum missed cleavage sites", "SCORINGMISSCLEAV");
+        INPUT_PARAMETER_KEYS.put("scoring, minimum ion count", "SCORINGMINIONCOUNT");
+        INPUT_PARAMETER_KEYS.put("scoring, pluggable scoring", "SCORINGPLUGSCORING");
+        INPUT_PARAMETER_KEYS.put("scoring, x ions", "SCORING_XIONS");
+        INPUT_PARAMETER_KEYS.put("scoring, y ions", "SCORING_YIONS");
+        INPUT_PARAMETER_KEYS.put("scoring, z ions", "SCORING_ZIONS");
+        INPUT_PARAMETER_KEYS.put("scoring, algorithm", "SCORING_ALGORITHM");
+        INPUT_PARAMETER_KEYS.put("spectrum, dynamic range", "SPECDYNRANGE");
+        INPUT_PARAMETER_KEYS.put("spectrum, fragment mass type", "SPECFRAGMASSTYPE");
+        INPUT_PARAMETER_KEYS.put("spectrum, fragment monoisotopic mass error", "SPECMONOISOMASSERROR");
+        INPUT_PARAMETER_KEYS.put("spectrum, fragment monoisotopic mass error units", "SPECMONOISOMASSERRORUNITS");
+        INPUT_PARAMETER_KEYS.put("spectrum, maximum parent charge", "SPECMAXPRECURSORCHANGE");
+        INPUT_PARAMETER_KEYS.put("spectrum, minimum fragment mz", "SPECMINFRAGMZ");
+        INPUT_PARAMETER_KEYS.put("spectrum, minimum parent m+h", "SPECMINPRECURSORMZ");
+        INPUT_PARAMETER_KEYS.put("spectrum, minimum peaks", "SPECMINPEAKS");
+        INPUT_PARAMETER_KEYS.put("spectrum, parent monoisotopic mass error minus", "SPECPARENTMASSERRORMINUS");
+        INPUT_PARAMETER_KEYS.put("spectrum, parent monoisotopic mass error plus", "SPECPARENTMASSERRORPLUS");
+        INPUT_PARAMETER_KEYS.put("spectrum, parent monoisotopic mass error units", "SPECPARENTMASSERRORUNITS");
+        INPUT_PARAMETER_KEYS.put("spectrum, parent monoisotopic mass isotope error", "SPECPARENTMASSISOERROR");
+        INPUT_PARAMETER_KEYS.put("spectrum, sequence batch size", "SPECBATCHSIZE");
+        INPUT_PARAMETER_KEYS.put("spectrum, threads", "SPECTHREADS");
+        INPUT_PARAMETER_KEYS.put("spectrum, total peaks", "SPECTOTALPEAK");
+        INPUT_PARAMETER_KEYS.put("spectrum, use noise suppression", "SPECUSENOISECOMP");
+
+        PERFORM_PARAMETER_KEYS.put("list path, sequence source #1", "SEQSRC1");
+        PERFORM_PARAMETER_KEYS.put("list path, sequence source #2", "SEQSRC2");
+        PERFORM_PARAMETER_KEYS.put("list path, sequence source #3", "SEQSRC3");
+        PERFORM_PARAMETER_KEYS.put("list path, sequence source description #1", "SEQSRCDESC1");
+        PERFORM_PARAMETER_KEYS.put("list path, sequence source description #2", "SEQSRCDESC2");
+        PERFORM_PARAMETER_KEYS.put("list path, sequence source description #3", "SEQSRCDESC3");
+        PERFORM_PARAMETER_KEYS.put("modelling, estimated false positives", "ESTFP");
+        PERFORM_PARAMETER_KEYS.put("modelling, spectrum noise suppression ratio", "NOISESUPP");
+        PERFORM_PARAMETER_KEYS.put("modelling, total peptides used", "TOTALPEPUSED");
+        PERFORM_PARAMETER_KEYS.put("modelling, total proteins used", "TOTALPROTUSED");
+        PERFORM_PARAMETER_KEYS.put("modelling, total spectra assigned", "TOTALSPECASS");
+        PERFORM_PARAMETER_KEYS.put("modelling, total spectra used", "TOTALSPECUSED");
+        PERFORM_PARAMETER_KEYS.put("modelling, total unique assigned", "TOTALUNIQUEASS");
+        PERFORM_PARAMETER_KEYS.put("process, start time", "PROCSTART");
+        PERFORM_PARAMETER_KEYS.put("process, version", "PROCVER");
+        PERFORM_PARAMETER_KEYS.put("quality values", "QUALVAL");
+        PERFORM_PARAMETER_KEYS.put("refining, # input models", "INPUTMOD");
+        PERFORM_PARAMETER_KEYS.put("refining, # input spectra", "INPUTSPEC");
+        PERFORM_PARAMETER_KEYS.put("refining, # partial cleavage", "PARTCLEAV");
+        PERFORM_PARAMETER_KEYS.put("refining, # point mutations", "POINTMUT");
+        PERFORM_PARAMETER_KEYS.put("refining, # potential c-terminii", "POTC_TERM");
+        PERFORM_PARAMETER_KEYS.put("refining, # potential n-terminii", "POTN_TERM");
+        PERFORM_PARAMETER_KEYS.put("refining, # unanticipated cleavage", "UNANTICLEAV");
+        PERFORM_PARAMETER_KEYS.put("timing, initial modelling total (sec)", "INITMODELTOTALTIME");
+        PERFORM_PARAMETER_KEYS.put("timing, initial modelling/spectrum (sec)", "INITMODELSPECTIME");
+        PERFORM_PARAMETER_KEYS.put("timing, load sequence models (sec)", "LOADSEQMODELTIME");
+        PERFORM_PARAMETER_KEYS.put("timing, refinement/spectrum (sec)", "REFINETIME");
+    }
+
     /**
      * This variable holds the total number of spectra in the xtandem file.
      */
@@ -53,19 +226,23 @@ public class XTandemParser implements Serializable {
      */
     private HashMap<String, String> iPerformParamMap = null;
     /**
-     * This map contains the key/value pairs of the modification information.
+     * This map contains the key/value pairs of the modification information. It is
+     * built from the result store when first requested.
      */
     private HashMap<String, String> iRawModMap = null;
     /**
-     * This map contains the key/value pairs of the spectra information.
+     * This map contains the key/value pairs of the spectra information. It is
+     * built from the result store when first requested.
      */
     private HashMap<String, String> iRawSpectrumMap = null;
     /**
-     * This map contains the key/value pairs of the protein information.
+     * This map contains the key/value pairs of the protein information. It is
+     * built from the result store when first requested.
      */
     private HashMap<String, String> iRawProteinMap = null;
     /**
-     * This map contains the key/value pairs of the peptide information.
+     * This map contains the key/value pairs of the peptide information. It is
+     * built from the result store when first requested.
      */
     private HashMap<String, String> iRawPeptideMap = null;
     /**
@@ -73,7 +250,8 @@ public class XTandemParser implements Serializable {
      */
     private HashMap<String, String> iSupportDataMap = null;
     /**
-     * This list contains a list with all the protein ids.
+     * This list contains a list with all the protein ids. It is built from the
+     * result store when first requested.
      */
     private ArrayList<String> iProteinKeyList = null;
     /**
@@ -84,6 +262,62 @@ public class XTandemParser implements Serializable {
      * X!Tandem id to spectrum title map
      */
     private HashMap<Integer, String> idToSpectrumMap;
+    /**
+     * True if the a ions were used for scoring.
+     */
+    private boolean iAIonFlag = false;
+    /**
+     * True if the b ions were used for scoring.
+     */
+    private boolean iBIonFlag = false;
+    /**
+     * True if the c ions were used for scoring.
+     */
+    private boolean iCIonFlag = false;
+    /**
+     * True if the x ions were used for scoring.
+     */
+    private boolean iXIonFlag = false;
+    /**
+     * True if the y ions were used for scoring.
+     */
+    private boolean iYIonFlag = false;
+    /**
+     * True if the z ions were used for scoring.
+     */
+    private boolean iZIonFlag = false;
+    /**
+     * True if only the spectrum identifiers, the peptides sequences,
+     * modifications and matches e-values were loaded.
+     */
+    private boolean iSkipDetails = false;
+    /**
+     * The sections of the file which were parsed.
+     */
+    private EnumSet<XTandemSection> iSections = null;
+    /**
+     * The result store holding the identifications.
+     */
+    private XTandemResultStore iResultStore = null;
+    /**
+     * The number of times the parser waited for the file to be read ahead.
+     */
+    private long iReadStallCount = 0;
+    /**
+     * The time in nanoseconds the parser waited for the file to be read
+     * ahead.
+     */
+    private long iReadStallTime = 0;
+    /**
+     * The listener the model groups are streamed to, null if the groups are
+     * kept.
+     */
+    private XTandemGroupListener iGroupListener = null;
+    /**
+     * The dictionary interning the repeated strings given by the caller, null
+     * to use a dictionary of this file only.
+     */
+    private StringDictionary iStringDictionary = null;
 
     /**
      * Constructor for parsing a result file stored locally.
@@ -113,1422 +347,1759 @@ public class XTandemParser implements Serializable {
      * occurs
      */
     public XTandemParser(File aFile, boolean skipDetails) throws IOException, SAXException, ParserConfigurationException {
-        this.parseXTandemFile(aFile, skipDetails);
+        this(aFile, skipDetailsOptions(skipDetails));
     }
 
     /**
-     * In this method the X!Tandem file gets parsed.
+     * Constructor for parsing a result file stored locally with the given
+     * options, see {@link XTandemParserOptions}. gzip compressed files are
+     * recognized from their magic bytes and decompressed on separate threads
+     * (see {@link DecompressingInputStream}). The results can be accessed as
+     * an X!Tandem file with
+     * {@link de.proteinms.xtandemparser.xtandem.XTandemFile#XTandemFile(XTandemParser, String)}.
      *
-     * @param aInputFile the file which will be parsed
-     * @param skipDetails if true only the spectrum identifiers, the peptides
-     * sequences, modifications and matches e-values will be loaded. Plus the
-     * input and performance parameters.
+     * @param aFile the input XML file
+     * @param aOptions the options
      *
      * @exception IOException if an IOException occurs
      * @exception SAXException if a SAXException occurs
      * @throws ParserConfigurationException if a ParserConfigurationException
      * occurs
      */
-    private void parseXTandemFile(File aInputFile, boolean skipDetails) throws IOException, SAXException, ParserConfigurationException {
-
-        NodeList idNodes, proteinNodes, peptideNodes, nodes, parameterNodes, supportDataNodes, xDataNodes, yDataNodes;
-        NodeList hyperNodes, convolNodes, aIonNodes, bIonNodes, cIonNodes, xIonNodes, yIonNodes, zIonNodes, fragIonNodes;
-        DocumentBuilderFactory dbf;
-        DocumentBuilder db;
-        Document dom;
-        Element docEle;
-
-        // Modifications: Specific to residues within a domain
-        String modificationName;
-        double modificationMass;
-        NamedNodeMap modificationMap;
+    public XTandemParser(File aFile, XTandemParserOptions aOptions) throws IOException, SAXException, ParserConfigurationException {
+        checkOptions(aOptions);
+        this.parse(openFile(aFile, aOptions), aOptions);
+    }
 
-        // Get the document builder factory
-        dbf = DocumentBuilderFactory.newInstance();
+    /**
+     * Constructor for parsing a result file read from a stream with the given
+     * options, see {@link XTandemParserOptions}. gzip compressed files are
+     * recognized and decompressed as for files, so archived files do not have
+     * to be decompressed to disk first. The options reading files through
+     * memory mapped windows or ahead on a separate thread do not apply to
+     * streams. The model groups can be streamed to a listener as for files,
+     * see {@link XTandemParserOptions#setGroupListener(XTandemGroupListener)}.
+     * The stream is closed.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aOptions the options
+     *
+     * @exception IOException if the stream could not be read, or is
+     * compressed in a format which cannot be decompressed
+     * @exception SAXException if a SAXException occurs
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public XTandemParser(InputStream aInputStream, XTandemParserOptions aOptions) throws IOException, SAXException, ParserConfigurationException {
+        checkOptions(aOptions);
+        this.parse(aInputStream, aOptions);
+    }
 
-        dbf.setValidating(false);
-        dbf.setAttribute("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-        dbf.setAttribute("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        dbf.setAttribute("http://xml.org/sax/features/validation", false);
+    /**
+     * Returns the options of the constructors taking the skipDetails flag.
+     *
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded
+     * @return the options
+     */
+    private static XTandemParserOptions skipDetailsOptions(boolean skipDetails) {
+        XTandemParserOptions options = new XTandemParserOptions();
+        if (skipDetails) {
+            options.setSections(XTandemSection.identifications());
+            options.setSkipDetails(true);
+        }
+        return options;
+    }
 
-        // Using factory to get an instance of document builder
-        db = dbf.newDocumentBuilder();
+    /**
+     * Checks that the options can be combined.
+     *
+     * @param aOptions the options
+     */
+    private static void checkOptions(XTandemParserOptions aOptions) {
+        if (aOptions.getGroupListener() != null && aOptions.isParallel()) {
+            throw new IllegalArgumentException("The model groups cannot be streamed to a listener while parsing on several threads");
+        }
+        if (aOptions.isMemoryMapped() && aOptions.getReadAheadBuffers() > 0) {
+            throw new IllegalArgumentException("A file cannot be both memory mapped and read ahead");
+        }
+    }
 
-        // Parse using builder to get DOM representation of the XML file
-        dom = db.parse(aInputFile);
+    /**
+     * Opens a result file stored locally as given by the options.
+     *
+     * @param aFile the input XML file
+     * @param aOptions the options
+     * @return the stream of the file, still compressed if the file is
+     *
+     * @exception IOException if the file could not be opened
+     */
+    private static InputStream openFile(File aFile, XTandemParserOptions aOptions) throws IOException {
+        if (aOptions.isMemoryMapped()) {
+            return new MappedFileInputStream(aFile);
+        } else if (aOptions.getReadAheadBuffers() > 0) {
+            return new ReadAheadInputStream(aFile, aOptions.getReadAheadBuffers(), aOptions.getReadAheadBufferSize());
+        }
+        return new BufferedInputStream(new FileInputStream(aFile), STREAM_BUFFER_SIZE);
+    }
 
-        // Get the root elememt
-        docEle = dom.getDocumentElement();
+    /**
+     * Parses a result file as given by the options. gzip compressed files are
+     * decompressed. The stream is closed.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aOptions the options
+     *
+     * @exception IOException if the stream could not be read, or is
+     * compressed in a format which cannot be decompressed
+     * @exception SAXException if the X!Tandem file could not be parsed
+     */
+    private void parse(InputStream aInputStream, XTandemParserOptions aOptions) throws IOException, SAXException {
+        iStringDictionary = aOptions.getStringDictionary();
+        InputStream inputStream = aInputStream;
+        try {
+            inputStream = DecompressingInputStream.open(aInputStream);
+            if (aOptions.isParallel()) {
+                ExecutorService executor = aOptions.getExecutor();
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(aOptions.getThreads());
+                }
+                try {
+                    this.parseXTandemStreamParallel(inputStream, aOptions, executor);
+                } finally {
+                    if (executor != aOptions.getExecutor()) {
+                        executor.shutdownNow();
+                    }
+                }
+            } else if (aOptions.getGroupListener() != null) {
+                this.parseXTandemStreaming(inputStream, aOptions);
+            } else if (aOptions.isFastMode()) {
+                this.parseXTandemStreamFast(inputStream, aOptions.getSections(), aOptions.isSkipDetails(), aOptions.getFirstSpectrumNumber());
+            } else {
+                this.parseXTandemStream(inputStream, aOptions.getSections(), aOptions.isSkipDetails(), aOptions.getFirstSpectrumNumber());
+            }
+        } finally {
+            if (aInputStream instanceof ReadAheadInputStream) {
+                iReadStallCount = ((ReadAheadInputStream) aInputStream).getStallCount();
+                iReadStallTime = ((ReadAheadInputStream) aInputStream).getStallTime();
+            }
+            inputStream.close();
+        }
+    }
 
-        // Get all the nodes
-        nodes = docEle.getChildNodes();
+    /**
+     * Constructor for a parser holding one chunk of a file parsed in
+     * parallel.
+     */
+    private XTandemParser() {
+    }
 
-        // Initialize the maps
+    /**
+     * Initializes the maps and lists which are filled while parsing.
+     */
+    private void initMaps() {
         iInputParamMap = new HashMap<String, String>();
         iPerformParamMap = new HashMap<String, String>();
-        iRawModMap = new HashMap<String, String>();
-        iRawSpectrumMap = new HashMap<String, String>();
-        iRawPeptideMap = new HashMap<String, String>();
-        iRawProteinMap = new HashMap<String, String>();
         iSupportDataMap = new HashMap<String, String>();
         iTitle2SpectrumIDMap = new HashMap<String, Integer>();
         idToSpectrumMap = new HashMap<Integer, String>();
+    }
 
-        // List of all the protein ids
-        iProteinKeyList = new ArrayList<String>();
-        boolean aIonFlag = false;
-        boolean bIonFlag = false;
-        boolean cIonFlag = false;
-        boolean xIonFlag = false;
-        boolean yIonFlag = false;
-        boolean zIonFlag = false;
-
-        int spectraCounter = 0;
-
-        // Parse the parameters first
-        for (int i = 0; i < nodes.getLength(); i++) {
-            if (nodes.item(i).getAttributes() != null) {
-                if (nodes.item(i).getAttributes().getNamedItem("type") != null) {
-                    // Parse the input parameters
-                    if (nodes.item(i).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("parameters")
-                            && (nodes.item(i).getAttributes().getNamedItem("label").getNodeValue().equalsIgnoreCase("input parameters")
-                            || nodes.item(i).getAttributes().getNamedItem("label").getNodeValue().equalsIgnoreCase("unused input parameters"))) {
-                        parameterNodes = nodes.item(i).getChildNodes();
-
-                        // Iterate over all the parameter nodes
-                        for (int m = 0; m < parameterNodes.getLength(); m++) {
-                            if (parameterNodes.item(m).getAttributes() != null) {
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, path\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECTRUMPATH", parameterNodes.item(m).getTextContent());
-                                        break;
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, default parameters\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("DEFAULTPARAMPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, taxonomy information\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("TAXONOMYINFOPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, histogram column width\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("HISTOCOLWIDTH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, histograms\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("HISTOEXIST", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, logpath\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("LOGPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, maximum valid expectation value\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("MAXVALIDEXPECT", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, message\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTMESSAGE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, one sequence copy\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("ONESEQCOPY", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, parameters\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTPARAMS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, path\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, path hashing\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTPATHHASH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, performance\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTPERFORMANCE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, proteins\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTPROTEINS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, results\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTRESULTS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, sequence path\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTSEQPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, sequences\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTSEQUENCES", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, sort results by\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTSORTRESULTS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, spectra\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTSPECTRA", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"output, xsl path\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("OUTPUTSXSLPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, C-terminal residue modification mass\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("C_TERMRESMODMASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, N-terminal residue modification mass\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("N_TERMRESMODMASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, cleavage C-terminal mass change\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("C_TERMCLEAVMASSCHANGE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, cleavage N-terminal mass change\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("N_TERMCLEAVMASSCHANGE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, cleavage site\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("CLEAVAGESITE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, homolog management\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("HOMOLOGMANAGE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, modified residue mass file\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("MODRESMASSFILE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"protein, taxon\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("TAXON", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, maximum valid expectation value\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINEMAXVALIDEXPECT", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, modification mass\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINEMODMASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, point mutations\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POINTMUTATIONS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, potential C-terminus modifications\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTC_TERMMODS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, potential N-terminus modifications\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTN_TERMMODS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, potential modification mass\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTMODMASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                // parse refine, potential modification mass [1-n]
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().toLowerCase().startsWith(
-                                        "label=\"refine, potential modification mass ")) {
-                                    // get the mod number
-                                    Matcher matcher = refPotModificationMassPattern.matcher(parameterNodes.item(m).getAttributes().getNamedItem("label").toString().toLowerCase());
-
-                                    if (matcher.find() && !parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTMODMASS_" + matcher.group(1), parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, potential modification motif\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTMODMOTIF", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                // parse refine, potential modification motif [1-n]
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().toLowerCase().startsWith(
-                                        "label=\"refine, potential modification motif ")) {
-                                    // get the mod number
-                                    Matcher matcher = refPotModificationMotifPattern.matcher(parameterNodes.item(m).getAttributes().getNamedItem("label").toString().toLowerCase());
-
-                                    if (matcher.find() && !parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTMODMOTIF_" + matcher.group(1), parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, sequence path\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINESEQPATH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, spectrum synthesis\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINESPECSYTNH", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, tic percent\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINETIC", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, unanticipated cleavage\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("REFINEUNANTICLEAV", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refine, use potential modifications for full refinement\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("POTMODSFULLREFINE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"residue, modification mass\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("RESIDUEMODMASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                // parse residue, modification mass [1-n]
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().toLowerCase().startsWith(
-                                        "label=\"residue, modification mass ")) {
-                                    // get the mod number
-                                    Matcher matcher = resModificationMassPattern.matcher(parameterNodes.item(m).getAttributes().getNamedItem("label").toString().toLowerCase());
-
-                                    if (matcher.find() && !parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("RESIDUEMODMASS_" + matcher.group(1), parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"residue, potential modification mass\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("RESIDUEPOTMODMASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"residue, potential modification motif\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("RESIDUEPOTMODMOTIV", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, a ions\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_AIONS", parameterNodes.item(m).getTextContent());
-                                        if (parameterNodes.item(m).getTextContent().equals("yes")) {
-                                            aIonFlag = true;
-                                        }
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, b ions\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_BIONS", parameterNodes.item(m).getTextContent());
-                                        if (parameterNodes.item(m).getTextContent().equals("yes")) {
-                                            bIonFlag = true;
-                                        }
-
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, c ions\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_CIONS", parameterNodes.item(m).getTextContent());
-                                        if (parameterNodes.item(m).getTextContent().equals("yes")) {
-                                            cIonFlag = true;
-                                        }
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, cyclic permutation\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORINGCYCLPERM", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, include reverse\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORINGINCREV", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, maximum missed cleavage sites\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORINGMISSCLEAV", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, minimum ion count\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORINGMINIONCOUNT", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, pluggable scoring\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORINGPLUGSCORING", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, x ions\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_XIONS", parameterNodes.item(m).getTextContent());
-                                        if (parameterNodes.item(m).getTextContent().equals("yes")) {
-                                            xIonFlag = true;
-                                        }
-
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, y ions\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_YIONS", parameterNodes.item(m).getTextContent());
-                                        if (parameterNodes.item(m).getTextContent().equals("yes")) {
-                                            yIonFlag = true;
-                                        }
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, z ions\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_ZIONS", parameterNodes.item(m).getTextContent());
-                                        if (parameterNodes.item(m).getTextContent().equals("yes")) {
-                                            zIonFlag = true;
-                                        }
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"scoring, algorithm\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SCORING_ALGORITHM", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, dynamic range\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECDYNRANGE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, fragment mass type\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECFRAGMASSTYPE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, fragment monoisotopic mass error\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECMONOISOMASSERROR", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, fragment monoisotopic mass error units\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECMONOISOMASSERRORUNITS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, maximum parent charge\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECMAXPRECURSORCHANGE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, minimum fragment mz\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECMINFRAGMZ", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, minimum parent m+h\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECMINPRECURSORMZ", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, minimum peaks\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECMINPEAKS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, parent monoisotopic mass error minus\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECPARENTMASSERRORMINUS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, parent monoisotopic mass error plus\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECPARENTMASSERRORPLUS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, parent monoisotopic mass error units\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECPARENTMASSERRORUNITS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, parent monoisotopic mass isotope error\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECPARENTMASSISOERROR", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, sequence batch size\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECBATCHSIZE", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, threads\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECTHREADS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, total peaks\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECTOTALPEAK", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"spectrum, use noise suppression\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iInputParamMap.put("SPECUSENOISECOMP", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                            }
-                        }
-                    }
-
-                    // Parse the performance parameters
-                    if (nodes.item(i).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("parameters")
-                            && nodes.item(i).getAttributes().getNamedItem("label").getNodeValue().equalsIgnoreCase("performance parameters")) {
-                        parameterNodes = nodes.item(i).getChildNodes();
-
-                        // Iterate over all the parameter nodes
-                        for (int m = 0; m < parameterNodes.getLength(); m++) {
-                            if (parameterNodes.item(m).getAttributes() != null) {
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, sequence source #1\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("SEQSRC1", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, sequence source #2\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("SEQSRC2", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, sequence source #3\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("SEQSRC3", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, sequence source description #1\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("SEQSRCDESC1", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, sequence source description #2\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("SEQSRCDESC2", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"list path, sequence source description #3\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("SEQSRCDESC3", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, estimated false positives\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("ESTFP", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, spectrum noise suppression ratio\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("NOISESUPP", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, total peptides used\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("TOTALPEPUSED", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, total proteins used\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("TOTALPROTUSED", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, total spectra assigned\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("TOTALSPECASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, total spectra used\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("TOTALSPECUSED", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"modelling, total unique assigned\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("TOTALUNIQUEASS", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"process, start time\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("PROCSTART", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"process, version\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("PROCVER", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"quality values\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("QUALVAL", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # input models\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("INPUTMOD", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # input spectra\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("INPUTSPEC", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # partial cleavage\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("PARTCLEAV", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # point mutations\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("POINTMUT", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # potential C-terminii\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("POTC_TERM", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # potential N-terminii\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("POTN_TERM", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"refining, # unanticipated cleavage\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("UNANTICLEAV", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"timing, initial modelling total (sec)\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("INITMODELTOTALTIME", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"timing, initial modelling/spectrum (sec)\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("INITMODELSPECTIME", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"timing, load sequence models (sec)\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("LOADSEQMODELTIME", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                                if (parameterNodes.item(m).getAttributes().getNamedItem("label").toString().equalsIgnoreCase(
-                                        "label=\"timing, refinement/spectrum (sec)\"")) {
-                                    if (!parameterNodes.item(m).getTextContent().equals("")) {
-                                        iPerformParamMap.put("REFINETIME", parameterNodes.item(m).getTextContent());
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+    /**
+     * Sets the flag of the ion type if the given input parameter says that
+     * it was used for scoring.
+     *
+     * @param aKey the key of the input parameter
+     * @param aValue the value of the input parameter
+     */
+    private void setIonFlag(String aKey, String aValue) {
+        if (aValue.equals("yes")) {
+            if (aKey.equals("SCORING_AIONS")) {
+                iAIonFlag = true;
+            } else if (aKey.equals("SCORING_BIONS")) {
+                iBIonFlag = true;
+            } else if (aKey.equals("SCORING_CIONS")) {
+                iCIonFlag = true;
+            } else if (aKey.equals("SCORING_XIONS")) {
+                iXIonFlag = true;
+            } else if (aKey.equals("SCORING_YIONS")) {
+                iYIonFlag = true;
+            } else if (aKey.equals("SCORING_ZIONS")) {
+                iZIonFlag = true;
             }
         }
+    }
 
-        // Iterate over all the nodes
-        for (int i = 0; i < nodes.getLength(); i++) {
-            if (nodes.item(i).getAttributes() != null) {
-                if (nodes.item(i).getAttributes().getNamedItem("type") != null) {
-
-                    // The model group contains all information about a single peptide identification
-                    if (nodes.item(i).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("model")) {
-                        spectraCounter++;
-
-                        // id is the number associated with the mass spectrum that was identified
-                        if (nodes.item(i).getAttributes().getNamedItem("id") != null) {
-                            iRawSpectrumMap.put("id" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("id").getNodeValue());
-                        }
-                        // z is the parent/precursor ion charge
-                        if (nodes.item(i).getAttributes().getNamedItem("z") != null) {
-                            iRawSpectrumMap.put("z" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("z").getNodeValue());
-                        }
-                        if (!skipDetails) {
-                            // expect is the expectation value for the top ranked protein identfied with this spectrum
-                            if (nodes.item(i).getAttributes().getNamedItem("expect") != null) {
-                                iRawSpectrumMap.put("expect" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("expect").getNodeValue());
-                            }
-                            // mh is the parent/precursor ion mass from the spectrum
-                            if (nodes.item(i).getAttributes().getNamedItem("mh") != null) {
-                                iRawSpectrumMap.put("mh" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("mh").getNodeValue());
-                            }
-                            // rt is the parent/precursor retention time
-                            if (nodes.item(i).getAttributes().getNamedItem("rt") != null) {
-                                iRawSpectrumMap.put("rt" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("rt").getNodeValue());
-                            }
-                            // label is the text from the protein sequence FASTA file description line for the top ranked protein identified
-                            if (nodes.item(i).getAttributes().getNamedItem("label") != null) {
-                                iRawSpectrumMap.put("label" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("label").getNodeValue());
-                            }
-                            // sumI is the log10-value of the sum of all of the fragment ion intensities
-                            if (nodes.item(i).getAttributes().getNamedItem("sumI") != null) {
-                                iRawSpectrumMap.put("sumI" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("sumI").getNodeValue());
-                            }
-                            // maxI is the maximum fragment ion intensity
-                            if (nodes.item(i).getAttributes().getNamedItem("maxI") != null) {
-                                iRawSpectrumMap.put("maxI" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("maxI").getNodeValue());
-                            }
-                            // fI is a multiplier to convert the normalized spectrum back to the original intensity values
-                            if (nodes.item(i).getAttributes().getNamedItem("fI") != null) {
-                                iRawSpectrumMap.put("fI" + spectraCounter, nodes.item(i).getAttributes().getNamedItem("fI").getNodeValue());
-                            }
-                        }
-                    }
-                }
-            }
-
-            // the number of spectra.
-            iNumberOfSpectra = spectraCounter;
-
-            // Get the identifications
-            idNodes = nodes.item(i).getChildNodes();
-
-            int p_counter = 0;
-            // Iterate over all the child nodes
-            for (int j = 0; j < idNodes.getLength(); j++) {
-
-                if (idNodes.item(j).getNodeName().equalsIgnoreCase("protein")) {
-                    p_counter++;
-                    // the identifier of this particular identification (spectrum#).(id#)
-                    String protID = idNodes.item(j).getAttributes().getNamedItem("id").getNodeValue();
-
-                    // Since the ID is not unique to the protein, we will use the label to reference it. That will be dirty for some files.
-                    String proteinKey = idNodes.item(j).getAttributes().getNamedItem("label").getNodeValue();
-                    if (!skipDetails) {
-                        iProteinKeyList.add(proteinKey);
-
-                        // a unique number of this protein, calculated by the search engine. Well unique. Most often yes.
-                        iRawProteinMap.put("uid" + proteinKey, idNodes.item(j).getAttributes().getNamedItem("uid").getNodeValue());
-
-                        // the log10 value of the expection value of the protein
-                        iRawProteinMap.put("expect" + proteinKey, idNodes.item(j).getAttributes().getNamedItem("expect").getNodeValue());
-
-                        // the description line from the FASTA file
-                        iRawProteinMap.put("label" + proteinKey, idNodes.item(j).getAttributes().getNamedItem("label").getNodeValue());
-
-                        // the sum of all of the fragment ions that identify this protein
-                        iRawProteinMap.put("sumI" + proteinKey, idNodes.item(j).getAttributes().getNamedItem("sumI").getNodeValue());
-                    }
-
-                    proteinNodes = idNodes.item(j).getChildNodes();
-
-                    // Iterate over all the protein nodes
-                    for (int k = 0; k < proteinNodes.getLength(); k++) {
-                        if (!skipDetails) {
-                            if (proteinNodes.item(k).getNodeName().equalsIgnoreCase("file")) {
-                                // the path used to the original fasta file
-                                iRawPeptideMap.put("URL" + "_s" + spectraCounter + "_p" + p_counter, proteinNodes.item(k).getAttributes().getNamedItem("URL").getNodeValue());
-                            }
-
-                            if (proteinNodes.item(k).getNodeName().equalsIgnoreCase("note") && proteinNodes.item(k).getAttributes().getNamedItem("label") != null
-                                    && proteinNodes.item(k).getAttributes().getNamedItem("label").getNodeValue().equalsIgnoreCase("description")) {
-                                // the protein description (xml tag: note label="description")
-                                String test = proteinNodes.item(k).getTextContent();
-                                iRawProteinMap.put("description" + proteinKey, test);
-                            }
-
-                        }
-                        // the the sum of all the fragment ions that identify this protein
-                        if (proteinNodes.item(k).getNodeName().equalsIgnoreCase("peptide")) {
-                            iRawPeptideMap.put("s" + spectraCounter + "_p" + p_counter, protID);
-                            if (!skipDetails) {
-                                iRawPeptideMap.put("start" + "_s" + spectraCounter + "_p"
-                                        + p_counter, proteinNodes.item(k).getAttributes().getNamedItem("start").getNodeValue());
-                                iRawPeptideMap.put("end" + "_s" + spectraCounter + "_p"
-                                        + p_counter, proteinNodes.item(k).getAttributes().getNamedItem("end").getNodeValue());
-                                iRawPeptideMap.put("seq" + "_s" + spectraCounter + "_p"
-                                        + p_counter, proteinNodes.item(k).getTextContent());
-                            }
+    /**
+     * Adds an input parameter to the input parameter map.
+     *
+     * @param aLabel the label of the parameter note
+     * @param aValue the text content of the parameter note
+     * @return true if the spectrum path was found, in which case the rest of
+     * the parameter group is not parsed
+     */
+    private boolean putInputParameter(String aLabel, String aValue) {
 
-                            peptideNodes = proteinNodes.item(k).getChildNodes();
+        if (aValue.equals("")) {
+            return false;
+        }
 
-                            // Domain counter
-                            int dCount = 1;
+        String label = aLabel.toLowerCase();
 
-                            // Iterate over all the peptide nodes
-                            for (int m = 0; m < peptideNodes.getLength(); m++) {
+        if (label.equals("spectrum, path")) {
+            iInputParamMap.put("SPECTRUMPATH", aValue);
+            return true;
+        }
 
-                                // Get the domain entries
-                                if (peptideNodes.item(m).getNodeName().equalsIgnoreCase("domain")) {
+        String key = INPUT_PARAMETER_KEYS.get(label);
 
-                                    // Get the domainid
-                                    String domainKey = "s" + spectraCounter + "_p" + p_counter + "_d" + dCount;
+        if (key != null) {
+            iInputParamMap.put(key, aValue);
 
-                                    // verify that the same domain key is not already in use
-                                    while (iRawPeptideMap.containsKey("proteinkey" + "_" + domainKey)) {
-                                        domainKey = "s" + spectraCounter + "_p" + p_counter + "_d" + ++dCount;
-                                    }
+            // Check which ions were used for scoring
+            setIonFlag(key, aValue);
+        } else {
+            // parse refine, potential modification mass [1-n]
+            Matcher matcher = refPotModificationMassPattern.matcher(label);
+            if (matcher.matches()) {
+                iInputParamMap.put("POTMODMASS_" + matcher.group(1), aValue);
+            }
 
-                                    iRawPeptideMap.put("domainid" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("id").getNodeValue());
+            // parse refine, potential modification motif [1-n]
+            matcher = refPotModificationMotifPattern.matcher(label);
+            if (matcher.matches()) {
+                iInputParamMap.put("POTMODMOTIF_" + matcher.group(1), aValue);
+            }
 
-                                    // the start position of the peptide
-                                    iRawPeptideMap.put("domainstart" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("start").getNodeValue());
+            // parse residue, modification mass [1-n]
+            matcher = resModificationMassPattern.matcher(label);
+            if (matcher.matches()) {
+                iInputParamMap.put("RESIDUEMODMASS_" + matcher.group(1), aValue);
+            }
+        }
 
-                                    if (!skipDetails) {
+        return false;
+    }
 
-                                        // Store the protein key a la Thilo. There should be only one protein key per domain.
-                                        iRawPeptideMap.put("proteinkey" + "_" + domainKey, proteinKey);
+    /**
+     * Adds a performance parameter to the performance parameter map.
+     *
+     * @param aLabel the label of the parameter note
+     * @param aValue the text content of the parameter note
+     */
+    private void putPerformParameter(String aLabel, String aValue) {
+        String key = PERFORM_PARAMETER_KEYS.get(aLabel.toLowerCase());
+        if (key != null && !aValue.equals("")) {
+            iPerformParamMap.put(key, aValue);
+        }
+    }
 
-                                        // the end position of the peptide
-                                        iRawPeptideMap.put("domainend" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("end").getNodeValue());
+    /**
+     * In this method the X!Tandem file gets parsed in one forward pass using a
+     * StAX pull parser. Only the model group currently read is held in memory,
+     * the identifications are added to the result store.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aSections the sections to parse
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded from the
+     * given sections
+     * @param aFirstSpectrumNumber the spectrum number of the first model group
+     *
+     * @exception SAXException if the X!Tandem file could not be parsed
+     */
+    private void parseXTandemStream(InputStream aInputStream, EnumSet<XTandemSection> aSections, boolean skipDetails, int aFirstSpectrumNumber) throws SAXException {
+        initParse(aSections, skipDetails, aFirstSpectrumNumber);
+        parseDocument(aInputStream, aFirstSpectrumNumber - 1);
+        finishParse();
+    }
 
-                                        // the mass + a proton
-                                        iRawPeptideMap.put("mh" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("mh").getNodeValue());
+    /**
+     * Parses an X!Tandem file in fast mode. The groups are read by an
+     * {@link XTandemFastParser}, which parses the model groups on the way.
+     * Model groups it does not handle are parsed with StAX, as is the whole
+     * file if it is not supported at all, and the parameter groups are
+     * parsed with StAX at the end.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aSections the sections to parse
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded from the
+     * given sections
+     * @param aFirstSpectrumNumber the spectrum number of the first model group
+     *
+     * @exception IOException if the file could not be read
+     * @exception SAXException if the X!Tandem file could not be parsed
+     */
+    private void parseXTandemStreamFast(InputStream aInputStream, EnumSet<XTandemSection> aSections, boolean skipDetails, int aFirstSpectrumNumber) throws IOException, SAXException {
+        initParse(aSections, skipDetails, aFirstSpectrumNumber);
+        parseGroupsFast(aInputStream, aFirstSpectrumNumber - 1);
+        finishParse();
+    }
 
-                                        // the mass delta
-                                        iRawPeptideMap.put("delta" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("delta").getNodeValue());
+    /**
+     * Parses the groups of an X!Tandem file in fast mode, see
+     * {@link #parseXTandemStreamFast(InputStream, EnumSet, boolean, int)}.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aSpectraCounter the number of the spectrum before the first model
+     * group of the file
+     * @return the number of the last spectrum of the file
+     *
+     * @exception IOException if the file could not be read
+     * @exception SAXException if the X!Tandem file could not be parsed
+     */
+    private int parseGroupsFast(InputStream aInputStream, int aSpectraCounter) throws IOException, SAXException {
 
-                                        // the hyper score
-                                        iRawPeptideMap.put("hyperscore" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("hyperscore").getNodeValue());
+        XTandemFastParser fastParser = new XTandemFastParser(aInputStream, iResultStore, iSections, iSkipDetails,
+                iSupportDataMap, iTitle2SpectrumIDMap, idToSpectrumMap);
 
-                                        // the next score
-                                        iRawPeptideMap.put("nextscore" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("nextscore").getNodeValue());
+        if (!fastParser.readProlog()) {
+            return parseDocument(fastParser.getUnreadInputStream(), aSpectraCounter);
+        }
+        checkRoot(fastParser.getRootName());
 
-                                        if (xIonFlag) {
-                                            // the x score
-                                            iRawPeptideMap.put("x_score" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("y_score").getNodeValue());
+        byte[] prolog = fastParser.getProlog();
+        ByteArrayOutputStream parameterGroups = new ByteArrayOutputStream();
+        int spectraCounter = aSpectraCounter;
 
-                                            // the x ion number
-                                            iRawPeptideMap.put("x_ions" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("y_ions").getNodeValue());
-                                        }
+        while (fastParser.nextGroup(spectraCounter + 1)) {
 
-                                        if (yIonFlag) {
-                                            // the y score
-                                            iRawPeptideMap.put("y_score" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("y_score").getNodeValue());
+            if (fastParser.isModelGroup()) {
+                spectraCounter++;
+                if (!fastParser.isGroupParsed()) {
+                    parseDocument(new ByteArrayInputStream(toDocument(prolog, fastParser.getGroupBytes())), spectraCounter - 1);
+                } else if (iGroupListener != null) {
+                    groupParsed(spectraCounter);
+                }
+            } else if (fastParser.isParameterGroup()) {
+                if (iSections.contains(XTandemSection.PARAMETERS)) {
+                    parameterGroups.write(fastParser.getGroupBytes());
+                }
+            } else if (fastParser.isUnknownGroup()) {
+                spectraCounter = parseDocument(new ByteArrayInputStream(toDocument(prolog, fastParser.getGroupBytes())), spectraCounter);
+            }
+        }
 
-                                            // the y ion number
-                                            iRawPeptideMap.put("y_ions" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("y_ions").getNodeValue());
-                                        }
+        if (parameterGroups.size() > 0) {
+            parseDocument(new ByteArrayInputStream(toDocument(prolog, parameterGroups.toByteArray())), spectraCounter);
+        }
 
-                                        if (zIonFlag) {
-                                            // the z score
-                                            iRawPeptideMap.put("z_score" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("y_score").getNodeValue());
+        return spectraCounter;
+    }
 
-                                            // the z ion number
-                                            iRawPeptideMap.put("z_ions" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("y_ions").getNodeValue());
-                                        }
+    /**
+     * Parses an X!Tandem file in one pass and streams its model groups to the
+     * listener. X!Tandem writes the parameter groups after the model groups,
+     * while the modifications of the model groups need the parameters: the
+     * model groups read before the parameters are spooled, in memory up to
+     * {@link #STREAMING_SPOOL_MEMORY} bytes and in a temporary file beyond,
+     * and parsed once the parameter groups are read. The model groups
+     * following the parameter groups are parsed one by one.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from,
+     * decompressed
+     * @param aOptions the options
+     *
+     * @exception IOException if the file could not be read, or the spool
+     * could not be written
+     * @exception SAXException if the X!Tandem file could not be parsed, e.g.,
+     * if it has no bioml root element
+     */
+    private void parseXTandemStreaming(InputStream aInputStream, XTandemParserOptions aOptions) throws IOException, SAXException {
 
-                                        if (aIonFlag) {
-                                            // the a score
-                                            iRawPeptideMap.put("a_score" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("b_score").getNodeValue());
+        iGroupListener = aOptions.getGroupListener();
+        initParse(aOptions.getSections(), aOptions.isSkipDetails(), aOptions.getFirstSpectrumNumber());
 
-                                            // the a ion number
-                                            iRawPeptideMap.put("a_ions" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("b_ions").getNodeValue());
-                                        }
+        // The parameter groups are parsed on their own, whatever the sections
+        iSections.remove(XTandemSection.PARAMETERS);
 
-                                        if (bIonFlag) {
-                                            // the b score
-                                            iRawPeptideMap.put("b_score" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("b_score").getNodeValue());
+        ByteArrayOutputStream parameterGroups = new ByteArrayOutputStream();
+        SpoolOutputStream spool = new SpoolOutputStream(STREAMING_SPOOL_MEMORY);
+        byte[] prolog = null;
+        boolean parametersKnown = false;
+        int spectraCounter = aOptions.getFirstSpectrumNumber() - 1;
 
-                                            // the b ion number
-                                            iRawPeptideMap.put("b_ions" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("b_ions").getNodeValue());
-                                        }
+        try {
+            XTandemGroupScanner scanner = new XTandemGroupScanner(aInputStream, true);
 
-                                        if (cIonFlag) {
-                                            // the c score
-                                            iRawPeptideMap.put("c_score" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("b_score").getNodeValue());
+            while (scanner.next()) {
 
-                                            // the c ion number
-                                            iRawPeptideMap.put("c_ions" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("b_ions").getNodeValue());
-                                        }
+                if (prolog == null) {
+                    checkRoot(scanner.getRootName());
+                    prolog = scanner.getProlog() != null ? scanner.getProlog() : new byte[0];
+                }
 
-                                        // the upstream flanking sequence
-                                        iRawPeptideMap.put("pre" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("pre").getNodeValue());
+                if (scanner.isParameterGroup()) {
+                    if (parametersKnown) {
+                        parseParameterGroups(prolog, scanner.getGroupBytes());
+                    } else {
+                        parameterGroups.write(scanner.getGroupBytes());
+                    }
+                } else if (scanner.isModelGroup()) {
+                    if (!parametersKnown && parameterGroups.size() > 0) {
+                        parseParameterGroups(prolog, parameterGroups.toByteArray());
+                        parametersKnown = true;
+                        spectraCounter = parseStreamedGroups(prolog, spool, spectraCounter, aOptions.isFastMode());
+                    }
+                    if (parametersKnown) {
+                        spectraCounter = parseGroups(new ByteArrayInputStream(toDocument(prolog, scanner.getGroupBytes())),
+                                spectraCounter, aOptions.isFastMode());
+                    } else {
+                        spool.write(scanner.getGroupBytes());
+                    }
+                }
+            }
 
-                                        // the downstream flanking sequence
-                                        iRawPeptideMap.put("post" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("post").getNodeValue());
+            if (prolog == null) {
+                checkRoot(scanner.getRootName());
+            }
+            if (!parametersKnown) {
+                if (parameterGroups.size() > 0) {
+                    parseParameterGroups(prolog, parameterGroups.toByteArray());
+                }
+                parseStreamedGroups(prolog, spool, spectraCounter, aOptions.isFastMode());
+            }
+        } finally {
+            spool.close();
+        }
 
-                                        // the number of missed cleavages
-                                        iRawPeptideMap.put("missed_cleavages" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("missed_cleavages").getNodeValue());
-                                    }
+        finishParse();
+    }
 
-                                    // the expectation value
-                                    iRawPeptideMap.put("expect" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("expect").getNodeValue());
+    /**
+     * Parses parameter groups, whatever the sections to parse.
+     *
+     * @param aProlog the prolog of the file
+     * @param aGroups the parameter groups
+     *
+     * @exception SAXException if the groups could not be parsed
+     */
+    private void parseParameterGroups(byte[] aProlog, byte[] aGroups) throws SAXException {
+        iSections.add(XTandemSection.PARAMETERS);
+        try {
+            parseDocument(new ByteArrayInputStream(toDocument(aProlog, aGroups)), 0);
+        } finally {
+            iSections.remove(XTandemSection.PARAMETERS);
+        }
+    }
 
-                                    // the domain sequence
-                                    iRawPeptideMap.put("domainseq" + "_" + domainKey, peptideNodes.item(m).getAttributes().getNamedItem("seq").getNodeValue());
+    /**
+     * Parses the model groups spooled while the parameters were not known.
+     *
+     * @param aProlog the prolog of the file
+     * @param aSpool the spooled model groups
+     * @param aSpectraCounter the number of the spectrum before the first
+     * spooled model group
+     * @param aFastMode if true the model groups are parsed in fast mode
+     * @return the number of the last spooled spectrum
+     *
+     * @exception IOException if the spool could not be read
+     * @exception SAXException if the groups could not be parsed
+     */
+    private int parseStreamedGroups(byte[] aProlog, SpoolOutputStream aSpool, int aSpectraCounter, boolean aFastMode) throws IOException, SAXException {
+        if (aSpool.size() == 0) {
+            return aSpectraCounter;
+        }
+        InputStream document = new SequenceInputStream(new SequenceInputStream(
+                new SequenceInputStream(new ByteArrayInputStream(aProlog), new ByteArrayInputStream(ROOT_START)),
+                aSpool.getInputStream()), new ByteArrayInputStream(ROOT_END));
+        try {
+            return parseGroups(document, aSpectraCounter, aFastMode);
+        } finally {
+            document.close();
+        }
+    }
 
-                                    int modCounter = 0;
-                                    for (int n = 0; n < peptideNodes.item(m).getChildNodes().getLength(); n++) {
+    /**
+     * Parses the groups of an X!Tandem document in fast mode or not.
+     *
+     * @param aInputStream the stream to read the document from
+     * @param aSpectraCounter the number of the spectrum before the first model
+     * group of the document
+     * @param aFastMode if true the model groups are parsed in fast mode
+     * @return the number of the last spectrum of the document
+     *
+     * @exception IOException if the document could not be read
+     * @exception SAXException if the document could not be parsed
+     */
+    private int parseGroups(InputStream aInputStream, int aSpectraCounter, boolean aFastMode) throws IOException, SAXException {
+        return aFastMode ? parseGroupsFast(aInputStream, aSpectraCounter) : parseDocument(aInputStream, aSpectraCounter);
+    }
 
-                                        // Get the specific modifications (aa)
-                                        if (peptideNodes.item(m).getChildNodes().item(n).getNodeName().equalsIgnoreCase("aa")) {
-                                            modCounter++;
+    /**
+     * Parses an X!Tandem file on several threads. The calling thread splits
+     * the file at the model groups into chunks of about
+     * {@link #PARALLEL_CHUNK_SIZE} bytes and numbers the spectra, the chunks
+     * are parsed by the executor into separate parsers whose results are
+     * merged in file order. The parameter groups are parsed on the calling
+     * thread.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aOptions the options
+     * @param aExecutor the executor parsing the chunks
+     *
+     * @exception IOException if the file could not be read
+     * @exception SAXException if the X!Tandem file could not be parsed, e.g.,
+     * if it has no bioml root element
+     */
+    private void parseXTandemStreamParallel(InputStream aInputStream, XTandemParserOptions aOptions, ExecutorService aExecutor) throws IOException, SAXException {
 
-                                            modificationMap = peptideNodes.item(m).getChildNodes().item(n).getAttributes();
-                                            modificationName = modificationMap.getNamedItem("type").getNodeValue();
+        initParse(aOptions.getSections(), aOptions.isSkipDetails(), aOptions.getFirstSpectrumNumber());
 
-                                            // use the old calculation with domainStart!
-                                            //modificationMap.getNamedItem("at").getNodeValue()) - domainStart + 1)
-                                            iRawModMap.put("at" + "_" + domainKey + "_m" + modCounter, modificationMap.getNamedItem("at").getNodeValue());
+        // The parameters are parsed here, the chunks only hold model groups
+        final EnumSet<XTandemSection> chunkSections = EnumSet.copyOf(iSections);
+        chunkSections.remove(XTandemSection.PARAMETERS);
 
-                                            // modified is the residue mass change caused by the modification
-                                            modificationMass = Double.parseDouble(modificationMap.getNamedItem("modified").getNodeValue());
-                                            iRawModMap.put("modified" + "_" + domainKey + "_m" + modCounter, modificationMap.getNamedItem("modified").getNodeValue());
+        LinkedList<Future<XTandemParser>> pendingChunks = new LinkedList<Future<XTandemParser>>();
+        ByteArrayOutputStream parameterGroups = new ByteArrayOutputStream();
+        ByteArrayOutputStream chunk = null;
+        byte[] prolog = null;
+        int chunkFirstSpectrum = aOptions.getFirstSpectrumNumber();
+        int spectraCounter = chunkFirstSpectrum - 1;
 
-                                            modificationName = modificationMass + "@" + modificationName;
+        try {
+            XTandemGroupScanner scanner = new XTandemGroupScanner(aInputStream, true);
 
-                                            // type is the single letter abbreviation for the modified residue
-                                            iRawModMap.put("name" + "_" + domainKey + "_m" + modCounter, modificationName);
+            while (scanner.next()) {
 
-                                            // get the substituted amino acid (if any)
-                                            if (modificationMap.getNamedItem("pm") != null) {
-                                                iRawModMap.put("pm" + "_" + domainKey + "_m" + modCounter, modificationMap.getNamedItem("pm").getNodeValue());
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+                if (prolog == null) {
+                    checkRoot(scanner.getRootName());
+                    prolog = scanner.getProlog() != null ? scanner.getProlog() : new byte[0];
                 }
 
-                // Go to the group node inside the other group node (support)
-                if (idNodes.item(j).getNodeName().equalsIgnoreCase("group")) {
-                    if (!skipDetails) {
-                        // Start parsing the support data part (GAML histograms)
-                        if (idNodes.item(j).getAttributes().getNamedItem("label").getNodeValue().equalsIgnoreCase("supporting data")) {
-                            supportDataNodes = idNodes.item(j).getChildNodes();
-                            // Iterate over all the support data nodes
-                            for (int a = 0; a < supportDataNodes.getLength(); a++) {
-                                if (supportDataNodes.item(a).getNodeName().equalsIgnoreCase("GAML:trace")) {
-                                    // Parse the hyperscore expectation function values
-                                    if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase(
-                                            "hyperscore expectation function")) {
-                                        iSupportDataMap.put("HYPERLABEL" + "_s" + spectraCounter,
-                                                supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-
-                                        hyperNodes = supportDataNodes.item(a).getChildNodes();
-                                        // Iterate over the hyperscore nodes
-                                        for (int b = 0; b < hyperNodes.getLength(); b++) {
-                                            if (hyperNodes.item(b).getNodeName().equalsIgnoreCase("GAML:attribute")) {
-                                                // Get the a0 value
-                                                if (hyperNodes.item(b).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("a0")) {
-                                                    iSupportDataMap.put("HYPER_A0" + "_s" + spectraCounter, hyperNodes.item(b).getTextContent());
-                                                }
-                                                // Get the a1 value
-                                                if (hyperNodes.item(b).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("a1")) {
-                                                    iSupportDataMap.put("HYPER_A1" + "_s" + spectraCounter, hyperNodes.item(b).getTextContent());
-                                                }
-                                            }
-                                            // Get the Xdata
-                                            if (hyperNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                xDataNodes = hyperNodes.item(b).getChildNodes();
-                                                for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                    if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                        iSupportDataMap.put("XVAL_HYPER" + "_s" + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                    }
-                                                }
-                                            }
-                                            // Get the Ydata
-                                            if (hyperNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                yDataNodes = hyperNodes.item(b).getChildNodes();
-                                                for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                    if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                        iSupportDataMap.put("YVAL_HYPER" + "_s" + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    // Parse the convolution survival funtion values
-                                    if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase(
-                                            "convolution survival function")) {
-                                        iSupportDataMap.put("CONVOLLABEL" + "_s" + spectraCounter,
-                                                supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                        supportDataNodes.item(a).getChildNodes();
-
-                                        convolNodes = supportDataNodes.item(a).getChildNodes();
-                                        // Iterate over the convolution nodes
-                                        for (int b = 0; b < convolNodes.getLength(); b++) {
-                                            // Get the Xdata
-                                            if (convolNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                xDataNodes = convolNodes.item(b).getChildNodes();
-                                                for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                    if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                        iSupportDataMap.put("XVAL_CONVOL" + "_s" + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                    }
-                                                }
-                                            }
-                                            // Get the Ydata
-                                            if (convolNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                yDataNodes = convolNodes.item(b).getChildNodes();
-                                                for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                    if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                        iSupportDataMap.put("YVAL_CONVOL" + "_s" + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    // Parse the a ion histogram values
-                                    if (aIonFlag) {
-                                        if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("b ion histogram")) {
-                                            iSupportDataMap.put("A_IONLABEL" + "_s" + spectraCounter,
-                                                    supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                            supportDataNodes.item(a).getChildNodes();
-
-                                            aIonNodes = supportDataNodes.item(a).getChildNodes();
-
-                                            // Iterate over the a ion nodes
-                                            for (int b = 0; b < aIonNodes.getLength(); b++) {
-                                                // Get the Xdata
-                                                if (aIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                    xDataNodes = aIonNodes.item(b).getChildNodes();
-                                                    for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                        if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("XVAL_AIONS" + "_s" + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                                // Get the Ydata
-                                                if (aIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                    yDataNodes = aIonNodes.item(b).getChildNodes();
-                                                    for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                        if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("YVAL_AIONS" + "_s"
-                                                                    + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    // Parse the b ion histogram values
-                                    if (bIonFlag) {
-                                        if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("b ion histogram")) {
-                                            iSupportDataMap.put("B_IONLABEL" + "_s" + spectraCounter,
-                                                    supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                            supportDataNodes.item(a).getChildNodes();
-
-                                            bIonNodes = supportDataNodes.item(a).getChildNodes();
-
-                                            // Iterate over the b ion nodes
-                                            for (int b = 0; b < bIonNodes.getLength(); b++) {
-                                                // Get the Xdata
-                                                if (bIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                    xDataNodes = bIonNodes.item(b).getChildNodes();
-                                                    for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                        if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("XVAL_BIONS" + "_s"
-                                                                    + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                                // Get the Ydata
-                                                if (bIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                    yDataNodes = bIonNodes.item(b).getChildNodes();
-                                                    for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                        if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("YVAL_BIONS" + "_s"
-                                                                    + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    // Parse the c ion histogram values
-                                    if (cIonFlag) {
-                                        if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("b ion histogram")) {
-                                            iSupportDataMap.put("C_IONLABEL" + "_s" + spectraCounter,
-                                                    supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                            supportDataNodes.item(a).getChildNodes();
-
-                                            cIonNodes = supportDataNodes.item(a).getChildNodes();
-
-                                            // Iterate over the a ion nodes
-                                            for (int b = 0; b < cIonNodes.getLength(); b++) {
-                                                // Get the Xdata
-                                                if (cIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                    xDataNodes = cIonNodes.item(b).getChildNodes();
-                                                    for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                        if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("XVAL_CIONS" + "_s"
-                                                                    + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                                // Get the Ydata
-                                                if (cIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                    yDataNodes = cIonNodes.item(b).getChildNodes();
-                                                    for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                        if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("YVAL_CIONS" + "_s"
-                                                                    + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    if (xIonFlag) {
-                                        // Parse the x ion histogram values
-                                        if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equals("y ion histogram")) {
-                                            iSupportDataMap.put("X_IONLABEL" + "_s" + spectraCounter,
-                                                    supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                            supportDataNodes.item(a).getChildNodes();
-
-                                            xIonNodes = supportDataNodes.item(a).getChildNodes();
-                                            // Iterate over the y ion nodes
-                                            for (int b = 0; b < xIonNodes.getLength(); b++) {
-                                                // Get the Xdata
-                                                if (xIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                    xDataNodes = xIonNodes.item(b).getChildNodes();
-                                                    for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                        if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("XVAL_XIONS" + "_s"
-                                                                    + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                                // Get the Ydata
-                                                if (xIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                    yDataNodes = xIonNodes.item(b).getChildNodes();
-                                                    for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                        if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("YVAL_XIONS" + "_s"
-                                                                    + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    if (yIonFlag) {
-                                        // Parse the y ion histogram values
-                                        if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equals("y ion histogram")) {
-                                            iSupportDataMap.put("Y_IONLABEL" + "_s" + spectraCounter,
-                                                    supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                            supportDataNodes.item(a).getChildNodes();
-
-                                            yIonNodes = supportDataNodes.item(a).getChildNodes();
-                                            // Iterate over the y ion nodes
-                                            for (int b = 0; b < yIonNodes.getLength(); b++) {
-                                                // Get the Xdata
-                                                if (yIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                    xDataNodes = yIonNodes.item(b).getChildNodes();
-                                                    for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                        if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("XVAL_YIONS" + "_s"
-                                                                    + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                                // Get the Ydata
-                                                if (yIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                    yDataNodes = yIonNodes.item(b).getChildNodes();
-                                                    for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                        if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("YVAL_YIONS" + "_s"
-                                                                    + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    if (zIonFlag) {
-                                        // Parse the x ion histogram values
-                                        if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equals("y ion histogram")) {
-                                            iSupportDataMap.put("Z_IONLABEL" + "_s" + spectraCounter,
-                                                    supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                            supportDataNodes.item(a).getChildNodes();
-
-                                            zIonNodes = supportDataNodes.item(a).getChildNodes();
-                                            // Iterate over the y ion nodes
-                                            for (int b = 0; b < zIonNodes.getLength(); b++) {
-                                                // Get the Xdata
-                                                if (zIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                    xDataNodes = zIonNodes.item(b).getChildNodes();
-                                                    for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                        if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("XVAL_ZIONS" + "_s"
-                                                                    + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                                // Get the Ydata
-                                                if (zIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                    yDataNodes = zIonNodes.item(b).getChildNodes();
-                                                    for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                        if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                            iSupportDataMap.put("YVAL_ZIONS" + "_s"
-                                                                    + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
+                if (scanner.isModelGroup()) {
+                    if (chunk == null) {
+                        chunk = new ByteArrayOutputStream(PARALLEL_CHUNK_SIZE + (PARALLEL_CHUNK_SIZE >> 2));
+                        chunk.write(prolog);
+                        chunk.write(ROOT_START);
+                        chunkFirstSpectrum = spectraCounter + 1;
                     }
-                    if (idNodes.item(j).getAttributes().getNamedItem("label").getNodeValue().equalsIgnoreCase("fragment ion mass spectrum")) {
-
-                        supportDataNodes = idNodes.item(j).getChildNodes();
-                        // Iterate over all the support data nodes
-                        for (int a = 0; a < supportDataNodes.getLength(); a++) {
-                            if (supportDataNodes.item(a).getNodeName().equalsIgnoreCase("note")) {
-                                String title = supportDataNodes.item(a).getTextContent().trim();
-                                idToSpectrumMap.put(spectraCounter, title);
-                                if (!skipDetails) {
-                                    iSupportDataMap.put("FRAGIONSPECDESC" + "_s" + spectraCounter, title);
-                                    iTitle2SpectrumIDMap.put(title, spectraCounter);
-                                } else {
-                                    break;
-                                }
-                            }
-                            if (!skipDetails) {
-                                if (supportDataNodes.item(a).getNodeName().equalsIgnoreCase("GAML:trace")) {
-                                    // Parse the tandem mass spectrum values
-                                    if (supportDataNodes.item(a).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("tandem mass spectrum")) {
-                                        iSupportDataMap.put("SPECTRUMLABEL" + "_s" + spectraCounter,
-                                                supportDataNodes.item(a).getAttributes().getNamedItem("label").getNodeValue());
-                                        supportDataNodes.item(a).getChildNodes();
-
-                                        fragIonNodes = supportDataNodes.item(a).getChildNodes();
-                                        // Iterate over the fragment ion nodes
-                                        for (int b = 0; b < fragIonNodes.getLength(); b++) {
-                                            if (fragIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:attribute")) {
-                                                // Get the a0 value
-                                                if (fragIonNodes.item(b).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("M+H")) {
-                                                    iSupportDataMap.put("FRAGIONMZ" + "_s"
-                                                            + spectraCounter, fragIonNodes.item(b).getTextContent());
-                                                }
-                                                // Get the a1 value
-                                                if (fragIonNodes.item(b).getAttributes().getNamedItem("type").getNodeValue().equalsIgnoreCase("charge")) {
-                                                    iSupportDataMap.put("FRAGIONCHARGE" + "_s"
-                                                            + spectraCounter, fragIonNodes.item(b).getTextContent());
-                                                }
-                                            }
-                                            // Get the Xdata
-                                            if (fragIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Xdata")) {
-                                                xDataNodes = fragIonNodes.item(b).getChildNodes();
-                                                for (int d = 0; d < xDataNodes.getLength(); d++) {
-                                                    if (xDataNodes.item(d).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                        iSupportDataMap.put("XVAL_FRAGIONMZ" + "_s"
-                                                                + spectraCounter, xDataNodes.item(d).getTextContent());
-                                                    }
-                                                }
-                                            }
-                                            // Get the Ydata
-                                            if (fragIonNodes.item(b).getNodeName().equalsIgnoreCase("GAML:Ydata")) {
-                                                yDataNodes = fragIonNodes.item(b).getChildNodes();
-                                                for (int e = 0; e < yDataNodes.getLength(); e++) {
-                                                    if (yDataNodes.item(e).getNodeName().equalsIgnoreCase("GAML:values")) {
-                                                        iSupportDataMap.put("YVAL_FRAGIONMZ" + "_s"
-                                                                + spectraCounter, yDataNodes.item(e).getTextContent());
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
+                    spectraCounter++;
+                    chunk.write(scanner.getGroupBytes());
+
+                    if (chunk.size() >= PARALLEL_CHUNK_SIZE) {
+                        chunk.write(ROOT_END);
+                        pendingChunks.add(submitChunk(aExecutor, chunk.toByteArray(), chunkSections, aOptions.isFastMode(), chunkFirstSpectrum));
+                        chunk = null;
+                        while (pendingChunks.size() > PARALLEL_MAX_PENDING_CHUNKS) {
+                            mergeChunk(pendingChunks.removeFirst());
                         }
                     }
+                } else if (scanner.isParameterGroup() && iSections.contains(XTandemSection.PARAMETERS)) {
+                    parameterGroups.write(scanner.getGroupBytes());
                 }
             }
+
+            if (prolog == null) {
+                checkRoot(scanner.getRootName());
+            }
+            if (chunk != null) {
+                chunk.write(ROOT_END);
+                pendingChunks.add(submitChunk(aExecutor, chunk.toByteArray(), chunkSections, aOptions.isFastMode(), chunkFirstSpectrum));
+            }
+            while (!pendingChunks.isEmpty()) {
+                mergeChunk(pendingChunks.removeFirst());
+            }
+        } finally {
+            for (Future<XTandemParser> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(true);
+            }
+        }
+
+        if (parameterGroups.size() > 0) {
+            parseDocument(new ByteArrayInputStream(toDocument(prolog, parameterGroups.toByteArray())), spectraCounter);
         }
+
+        finishParse();
     }
 
     /**
-     * Returns the total number of spectra.
+     * Checks that the root element of a document is the bioml element of an
+     * X!Tandem file, so that, e.g., an empty file or a file in an unknown
+     * format does not silently yield no spectra. Applies to every mode of
+     * parsing.
      *
-     * @return iNumberOfSpectra
+     * @param aRootName the name of the root element, null if there is none
+     *
+     * @exception SAXException if the root element is not bioml
      */
-    public int getNumberOfSpectra() {
-        return iNumberOfSpectra;
+    private static void checkRoot(String aRootName) throws SAXException {
+        if (!"bioml".equals(aRootName)) {
+            throw new SAXException("Not an X!Tandem file, "
+                    + (aRootName == null ? "no root element" : "root element " + aRootName + " instead of bioml")
+                    + " found");
+        }
     }
 
     /**
-     * Returns the raw spectrum map.
+     * Returns an X!Tandem document holding the given groups.
      *
-     * @return iRawSpectrumMap
+     * @param aProlog the prolog of the file
+     * @param aGroups the groups
+     * @return the document
      */
-    public HashMap<String, String> getRawSpectrumMap() {
-        return iRawSpectrumMap;
+    private static byte[] toDocument(byte[] aProlog, byte[] aGroups) {
+        byte[] document = new byte[aProlog.length + ROOT_START.length + aGroups.length + ROOT_END.length];
+        int position = 0;
+        System.arraycopy(aProlog, 0, document, position, aProlog.length);
+        position += aProlog.length;
+        System.arraycopy(ROOT_START, 0, document, position, ROOT_START.length);
+        position += ROOT_START.length;
+        System.arraycopy(aGroups, 0, document, position, aGroups.length);
+        position += aGroups.length;
+        System.arraycopy(ROOT_END, 0, document, position, ROOT_END.length);
+        return document;
     }
 
     /**
-     * Returns the raw peptide map.
+     * Submits a chunk of model groups to be parsed by the executor.
      *
-     * @return iRawPeptideMap
+     * @param aExecutor the executor
+     * @param aChunk the chunk, an X!Tandem document holding only model groups
+     * @param aSections the sections to parse
+     * @param aFastMode if true the model groups are parsed in fast mode
+     * @param aFirstSpectrumNumber the spectrum number of the first model group
+     * @return the future parser holding the chunk
      */
-    public HashMap<String, String> getRawPeptideMap() {
-        return iRawPeptideMap;
+    private Future<XTandemParser> submitChunk(ExecutorService aExecutor, final byte[] aChunk, final EnumSet<XTandemSection> aSections,
+            final boolean aFastMode, final int aFirstSpectrumNumber) {
+        final boolean skipDetails = iSkipDetails;
+        return aExecutor.submit(new Callable<XTandemParser>() {
+            public XTandemParser call() throws IOException, SAXException {
+                XTandemParser chunkParser = new XTandemParser();
+                chunkParser.iStringDictionary = iResultStore.getStringDictionary();
+                chunkParser.initParse(aSections, skipDetails, aFirstSpectrumNumber);
+                if (aFastMode) {
+                    chunkParser.parseGroupsFast(new ByteArrayInputStream(aChunk), aFirstSpectrumNumber - 1);
+                } else {
+                    chunkParser.parseDocument(new ByteArrayInputStream(aChunk), aFirstSpectrumNumber - 1);
+                }
+                return chunkParser;
+            }
+        });
     }
 
     /**
-     * Returns the raw protein map.
+     * Waits for a chunk to be parsed and appends its results.
      *
-     * @return iRawProteinMap
+     * @param aChunk the future parser holding the chunk
+     *
+     * @exception SAXException if the chunk could not be parsed
      */
-    public HashMap<String, String> getRawProteinMap() {
-        return iRawProteinMap;
+    private void mergeChunk(Future<XTandemParser> aChunk) throws SAXException {
+        XTandemParser chunkParser;
+        try {
+            chunkParser = aChunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Interrupted while parsing the X!Tandem file", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SAXException) {
+                throw (SAXException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new SAXException("Error parsing the X!Tandem file: " + e.getMessage(), e);
+        }
+        iResultStore.append(chunkParser.iResultStore);
+        iSupportDataMap.putAll(chunkParser.iSupportDataMap);
+        iTitle2SpectrumIDMap.putAll(chunkParser.iTitle2SpectrumIDMap);
+        idToSpectrumMap.putAll(chunkParser.idToSpectrumMap);
     }
 
     /**
-     * Returns the protein id list.
+     * Prepares the parser for reading a file.
      *
-     * @return iProteinIDList ArrayList with the protein keys
+     * @param aSections the sections to parse
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded from the
+     * given sections
+     * @param aFirstSpectrumNumber the spectrum number of the first model group
      */
-    public ArrayList<String> getProteinIDList() {
-        return iProteinKeyList;
+    private void initParse(EnumSet<XTandemSection> aSections, boolean skipDetails, int aFirstSpectrumNumber) {
+        initMaps();
+        iSkipDetails = skipDetails;
+        iSections = EnumSet.copyOf(aSections);
+        iResultStore = new XTandemResultStore();
+        iResultStore.setFirstSpectrumNumber(aFirstSpectrumNumber);
+        if (iStringDictionary != null) {
+            iResultStore.setStringDictionary(iStringDictionary);
+        } else if (iGroupListener == null) {
+            // The streamed groups are dropped, interning them would only grow the dictionary
+            iResultStore.setStringDictionary(new StringDictionary());
+        }
     }
 
     /**
-     * Returns the raw modification map.
+     * Parses the groups of an X!Tandem document.
      *
-     * @return iRawModMap
+     * @param aInputStream the stream to read the document from
+     * @param aSpectraCounter the number of the spectrum before the first model
+     * group of the document
+     * @return the number of the last spectrum of the document
+     *
+     * @exception SAXException if the document could not be parsed
      */
-    public HashMap<String, String> getRawModMap() {
+    private int parseDocument(InputStream aInputStream, int aSpectraCounter) throws SAXException {
+
+        int spectraCounter = aSpectraCounter;
+
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(aInputStream);
+
+            try {
+                // Move to the root element
+                while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+                }
+                checkRoot(reader.isStartElement() ? getElementName(reader) : null);
+
+                // Iterate over the children of the root element
+                while (nextChildElement(reader)) {
+
+                    String type = reader.getAttributeValue(null, "type");
+
+                    if (type != null && type.equalsIgnoreCase("model")) {
+                        // The model group contains all information about a single peptide identification
+                        spectraCounter++;
+                        parseModelGroup(reader, spectraCounter, iSkipDetails);
+                        if (iGroupListener != null) {
+                            groupParsed(spectraCounter);
+                        }
+                    } else if (type != null && type.equalsIgnoreCase("parameters") && iSections.contains(XTandemSection.PARAMETERS)) {
+                        parseParameterGroup(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new SAXException("Error parsing the X!Tandem file: " + e.getMessage(), e);
+        }
+
+        return spectraCounter;
+    }
+
+    /**
+     * Completes the parsing of a file once all groups are read.
+     */
+    private void finishParse() {
+
+        if (iGroupListener != null) {
+            // The streamed groups are counted and completed one by one
+            iResultStore.trimToSize();
+            return;
+        }
+
+        // the number of spectra.
+        iNumberOfSpectra = iResultStore.getNumberOfSpectra();
+        iResultStore.trimToSize();
+
+        // The dictionary of this file only is not needed anymore, the strings stay shared
+        if (iStringDictionary == null) {
+            iResultStore.setStringDictionary(null);
+        }
+
+        // The parameters are at the end of the file, add the ion histograms now
+        if (!iSkipDetails && iSections.contains(XTandemSection.HISTOGRAMS)) {
+            addIonHistograms();
+        }
+    }
+
+    /**
+     * Hands a streamed model group to the listener and drops it afterwards.
+     * The parameters are already known, so the ion histograms of the group
+     * are added first.
+     *
+     * @param aSpectrumNumber the spectrum number of the group
+     */
+    private void groupParsed(int aSpectrumNumber) {
+
+        if (!iSkipDetails && iSections.contains(XTandemSection.HISTOGRAMS)) {
+            addIonHistograms(aSpectrumNumber);
+        }
+
+        iNumberOfSpectra++;
+        iGroupListener.groupParsed(this, aSpectrumNumber);
+
+        iResultStore.truncate(0, 0, 0, 0);
+        iResultStore.setFirstSpectrumNumber(aSpectrumNumber + 1);
+        iSupportDataMap.clear();
+        iTitle2SpectrumIDMap.clear();
+        idToSpectrumMap.clear();
+        iRawSpectrumMap = null;
+        iRawProteinMap = null;
+        iRawPeptideMap = null;
+        iRawModMap = null;
+        iProteinKeyList = null;
+    }
+
+    /**
+     * Parses a model group, i.e., a single spectrum with its identifications
+     * and support data.
+     *
+     * @param reader the reader positioned on the start of the group element
+     * @param spectraCounter the spectrum number
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseModelGroup(XMLStreamReader reader, int spectraCounter, boolean skipDetails) throws XMLStreamException {
+
+        // id is the number associated with the mass spectrum that was identified
+        // z is the parent/precursor ion charge
+        int spectrum = iResultStore.addSpectrum(getIntAttribute(reader, "id"), getIntAttribute(reader, "z"));
+
+        if (!skipDetails && iSections.contains(XTandemSection.SPECTRA)) {
+            // expect is the expectation value for the top ranked protein identfied with this spectrum
+            // mh is the parent/precursor ion mass from the spectrum
+            // rt is the parent/precursor retention time
+            // label is the text from the protein sequence FASTA file description line for the top ranked protein identified
+            // sumI is the log10-value of the sum of all of the fragment ion intensities
+            // maxI is the maximum fragment ion intensity
+            // fI is a multiplier to convert the normalized spectrum back to the original intensity values
+            iResultStore.setSpectrumDetails(spectrum,
+                    getDoubleAttribute(reader, "expect"),
+                    getDoubleAttribute(reader, "mh"),
+                    reader.getAttributeValue(null, "rt"),
+                    reader.getAttributeValue(null, "label"),
+                    getDoubleAttribute(reader, "sumI"),
+                    getDoubleAttribute(reader, "maxI"),
+                    getDoubleAttribute(reader, "fI"));
+            putNumberText(reader, "expect", XTandemResultStore.SPECTRUM_EXPECT, spectrum);
+            putNumberText(reader, "mh", XTandemResultStore.PRECURSOR_MH, spectrum);
+            putNumberText(reader, "sumI", XTandemResultStore.SUMMED_INTENSITY, spectrum);
+            putNumberText(reader, "maxI", XTandemResultStore.MAX_INTENSITY, spectrum);
+            putNumberText(reader, "fI", XTandemResultStore.INTENSITY_MULTIPLIER, spectrum);
+        }
+
+        while (nextChildElement(reader)) {
+            String name = getElementName(reader);
+
+            if (name.equalsIgnoreCase("protein") && (iSections.contains(XTandemSection.PEPTIDES) || iSections.contains(XTandemSection.DOMAINS)
+                    || iSections.contains(XTandemSection.MODIFICATIONS) || iSections.contains(XTandemSection.PROTEIN_DESCRIPTIONS))) {
+                parseProtein(reader, skipDetails);
+            } else if (name.equalsIgnoreCase("group")) {
+                // Go to the group node inside the other group node (support)
+                String label = reader.getAttributeValue(null, "label");
+                if (!skipDetails && label != null && label.equalsIgnoreCase("supporting data") && iSections.contains(XTandemSection.HISTOGRAMS)) {
+                    parseSupportingData(reader, spectraCounter);
+                } else if (label != null && label.equalsIgnoreCase("fragment ion mass spectrum")
+                        && (iSections.contains(XTandemSection.SPECTRA) || iSections.contains(XTandemSection.FRAGMENT_SPECTRA))) {
+                    parseFragmentIonSpectrum(reader, spectraCounter, skipDetails);
+                } else {
+                    skipElement(reader);
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Parses a protein element of a model group.
+     *
+     * @param reader the reader positioned on the start of the protein element
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseProtein(XMLStreamReader reader, boolean skipDetails) throws XMLStreamException {
+
+        // the identifier of this particular identification (spectrum#).(id#)
+        // Since the ID is not unique to the protein, we will use the label to reference it. That will be dirty for some files.
+        int peptide = iResultStore.addPeptide(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "label"));
+
+        if (!skipDetails && iSections.contains(XTandemSection.PEPTIDES)) {
+            // a unique number of this protein, calculated by the search engine. Well unique. Most often yes.
+            // the log10 value of the expection value of the protein
+            // the sum of all of the fragment ions that identify this protein
+            iResultStore.setProteinDetails(peptide,
+                    getIntAttribute(reader, "uid"),
+                    getDoubleAttribute(reader, "expect"),
+                    getDoubleAttribute(reader, "sumI"));
+            putNumberText(reader, "expect", XTandemResultStore.PROTEIN_EXPECT, peptide);
+            putNumberText(reader, "sumI", XTandemResultStore.PROTEIN_SUMMED_INTENSITY, peptide);
+        }
+
+        while (nextChildElement(reader)) {
+            String name = getElementName(reader);
+
+            if (!skipDetails && name.equalsIgnoreCase("file") && iSections.contains(XTandemSection.PEPTIDES)) {
+                // the path used to the original fasta file
+                iResultStore.setFastaFilePath(peptide, reader.getAttributeValue(null, "URL"));
+                skipElement(reader);
+            } else if (!skipDetails && name.equalsIgnoreCase("note") && reader.getAttributeValue(null, "label") != null
+                    && reader.getAttributeValue(null, "label").equalsIgnoreCase("description")
+                    && iSections.contains(XTandemSection.PROTEIN_DESCRIPTIONS)) {
+                // the protein description (xml tag: note label="description")
+                iResultStore.setProteinDescription(peptide, readText(reader));
+            } else if (name.equalsIgnoreCase("peptide") && (iSections.contains(XTandemSection.PEPTIDES)
+                    || iSections.contains(XTandemSection.DOMAINS) || iSections.contains(XTandemSection.MODIFICATIONS))) {
+                parsePeptide(reader, peptide, skipDetails);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Parses a peptide element and its domains.
+     *
+     * @param reader the reader positioned on the start of the peptide element
+     * @param peptide the index of the peptide in the result store
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parsePeptide(XMLStreamReader reader, int peptide, boolean skipDetails) throws XMLStreamException {
+
+        int start = getIntAttribute(reader, "start");
+        int end = getIntAttribute(reader, "end");
+
+        // The sequence is the text content of the peptide, including the text inside the domains
+        StringBuilder sequence = null;
+        if (!skipDetails && iSections.contains(XTandemSection.PEPTIDES)) {
+            sequence = new StringBuilder();
+        }
+
+        boolean parseDomains = iSections.contains(XTandemSection.DOMAINS) || iSections.contains(XTandemSection.MODIFICATIONS);
+
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 1 && parseDomains && getElementName(reader).equalsIgnoreCase("domain")) {
+                    parseDomain(reader, skipDetails, sequence);
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (sequence != null && isText(event)) {
+                sequence.append(reader.getText());
+            }
+        }
+
+        if (sequence != null) {
+            iResultStore.setPeptideDetails(peptide, start, end, sequence.toString());
+        }
+    }
+
+    /**
+     * Parses a domain element and its modifications.
+     *
+     * @param reader the reader positioned on the start of the domain element
+     * @param skipDetails if true only the spectrum identifiers, the peptides
+     * sequences, modifications and matches e-values will be loaded
+     * @param peptideText the text content of the peptide, the text inside the
+     * domain is appended to it, can be null
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseDomain(XMLStreamReader reader, boolean skipDetails, StringBuilder peptideText) throws XMLStreamException {
+
+        boolean parseDomain = iSections.contains(XTandemSection.DOMAINS);
+
+        // the start position of the peptide
+        int domain;
+        if (parseDomain) {
+            domain = iResultStore.addDomain(reader.getAttributeValue(null, "id"),
+                    getIntAttribute(reader, "start"),
+                    getDoubleAttribute(reader, "expect"),
+                    reader.getAttributeValue(null, "seq"));
+            putNumberText(reader, "expect", XTandemResultStore.DOMAIN_EXPECT, domain);
+        } else {
+            domain = iResultStore.addDomain(null, XTandemResultStore.NO_VALUE, Double.NaN, null);
+        }
+
+        if (!skipDetails && parseDomain) {
+            // the b and y scores and ion numbers, the other ion types are derived from these
+            iResultStore.setDomainDetails(domain,
+                    getIntAttribute(reader, "end"),
+                    getDoubleAttribute(reader, "mh"),
+                    getDoubleAttribute(reader, "delta"),
+                    getDoubleAttribute(reader, "hyperscore"),
+                    getDoubleAttribute(reader, "nextscore"),
+                    getDoubleAttribute(reader, "b_score"),
+                    getIntAttribute(reader, "b_ions"),
+                    getDoubleAttribute(reader, "y_score"),
+                    getIntAttribute(reader, "y_ions"),
+                    reader.getAttributeValue(null, "pre"),
+                    reader.getAttributeValue(null, "post"),
+                    getIntAttribute(reader, "missed_cleavages"));
+            putNumberText(reader, "mh", XTandemResultStore.DOMAIN_MH, domain);
+            putNumberText(reader, "delta", XTandemResultStore.DOMAIN_DELTA, domain);
+            putNumberText(reader, "hyperscore", XTandemResultStore.DOMAIN_HYPER_SCORE, domain);
+            putNumberText(reader, "nextscore", XTandemResultStore.DOMAIN_NEXT_SCORE, domain);
+            putNumberText(reader, "b_score", XTandemResultStore.DOMAIN_B_SCORE, domain);
+            putNumberText(reader, "y_score", XTandemResultStore.DOMAIN_Y_SCORE, domain);
+        }
+
+        boolean parseModifications = iSections.contains(XTandemSection.MODIFICATIONS);
+
+        int depth = 1;
+
+        while (depth > 0) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+
+                // Get the specific modifications (aa)
+                if (depth == 2 && parseModifications && getElementName(reader).equalsIgnoreCase("aa")) {
+                    // at is the position of the modified residue
+                    // modified is the residue mass change caused by the modification
+                    // type is the single letter abbreviation for the modified residue
+                    // pm is the substituted amino acid (if any)
+                    int modification = iResultStore.addModification(getIntAttribute(reader, "at"),
+                            getDoubleAttribute(reader, "modified"),
+                            reader.getAttributeValue(null, "type"),
+                            reader.getAttributeValue(null, "pm"));
+                    putNumberText(reader, "modified", XTandemResultStore.MODIFICATION_MASS, modification);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (peptideText != null && isText(event)) {
+                peptideText.append(reader.getText());
+            }
+        }
+    }
+
+    /**
+     * Parses the supporting data group (GAML histograms) of a model group.
+     *
+     * @param reader the reader positioned on the start of the group element
+     * @param spectraCounter the spectrum number
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseSupportingData(XMLStreamReader reader, int spectraCounter) throws XMLStreamException {
+
+        while (nextChildElement(reader)) {
+
+            String type = reader.getAttributeValue(null, "type");
+
+            if (getElementName(reader).equalsIgnoreCase("GAML:trace") && type != null) {
+                if (type.equalsIgnoreCase("hyperscore expectation function")) {
+                    // Parse the hyperscore expectation function values
+                    parseTrace(reader, spectraCounter, "HYPERLABEL", "XVAL_HYPER", "YVAL_HYPER", "a0", "HYPER_A0", "a1", "HYPER_A1");
+                } else if (type.equalsIgnoreCase("convolution survival function")) {
+                    // Parse the convolution survival funtion values
+                    parseTrace(reader, spectraCounter, "CONVOLLABEL", "XVAL_CONVOL", "YVAL_CONVOL", null, null, null, null);
+                } else if (type.equalsIgnoreCase("b ion histogram")) {
+                    // Parse the b ion histogram values, the a and c ions are added when the parameters are known
+                    parseTrace(reader, spectraCounter, "B_IONLABEL", "XVAL_BIONS", "YVAL_BIONS", null, null, null, null);
+                } else if (type.equals("y ion histogram")) {
+                    // Parse the y ion histogram values, the x and z ions are added when the parameters are known
+                    parseTrace(reader, spectraCounter, "Y_IONLABEL", "XVAL_YIONS", "YVAL_YIONS", null, null, null, null);
+                } else {
+                    skipElement(reader);
+                }
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Parses the fragment ion mass spectrum group of a model group.
+     *
+     * @param reader the reader positioned on the start of the group element
+     * @param spectraCounter the spectrum number
+     * @param skipDetails if true only the spectrum title is parsed
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseFragmentIonSpectrum(XMLStreamReader reader, int spectraCounter, boolean skipDetails) throws XMLStreamException {
+
+        while (nextChildElement(reader)) {
+            String name = getElementName(reader);
+
+            if (name.equalsIgnoreCase("note")) {
+                String title = readText(reader).trim();
+                idToSpectrumMap.put(spectraCounter, title);
+                if (!skipDetails) {
+                    iSupportDataMap.put("FRAGIONSPECDESC" + "_s" + spectraCounter, title);
+                    iTitle2SpectrumIDMap.put(title, spectraCounter);
+                } else {
+                    skipRemainingChildren(reader);
+                    return;
+                }
+            } else if (!skipDetails && name.equalsIgnoreCase("GAML:trace") && iSections.contains(XTandemSection.FRAGMENT_SPECTRA)
+                    && reader.getAttributeValue(null, "type") != null
+                    && reader.getAttributeValue(null, "type").equalsIgnoreCase("tandem mass spectrum")) {
+                // Parse the tandem mass spectrum values
+                parseTrace(reader, spectraCounter, "SPECTRUMLABEL", "XVAL_FRAGIONMZ", "YVAL_FRAGIONMZ", "M+H", "FRAGIONMZ", "charge", "FRAGIONCHARGE");
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Parses a GAML trace and adds its label, its x and y values and up to two
+     * of its attributes to the support data map.
+     *
+     * @param reader the reader positioned on the start of the trace element
+     * @param spectraCounter the spectrum number
+     * @param labelKey the key of the trace label
+     * @param xValuesKey the key of the x values
+     * @param yValuesKey the key of the y values
+     * @param firstAttributeType the type of the first attribute to store, can
+     * be null
+     * @param firstAttributeKey the key of the first attribute
+     * @param secondAttributeType the type of the second attribute to store,
+     * can be null
+     * @param secondAttributeKey the key of the second attribute
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseTrace(XMLStreamReader reader, int spectraCounter, String labelKey, String xValuesKey, String yValuesKey,
+            String firstAttributeType, String firstAttributeKey, String secondAttributeType, String secondAttributeKey) throws XMLStreamException {
+
+        putAttribute(reader, "label", iSupportDataMap, labelKey + "_s" + spectraCounter);
+
+        while (nextChildElement(reader)) {
+            String name = getElementName(reader);
+
+            if (name.equalsIgnoreCase("GAML:attribute")) {
+                String type = reader.getAttributeValue(null, "type");
+                if (type != null && type.equalsIgnoreCase(firstAttributeType)) {
+                    iSupportDataMap.put(firstAttributeKey + "_s" + spectraCounter, readText(reader));
+                } else if (type != null && type.equalsIgnoreCase(secondAttributeType)) {
+                    iSupportDataMap.put(secondAttributeKey + "_s" + spectraCounter, readText(reader));
+                } else {
+                    skipElement(reader);
+                }
+            } else if (name.equalsIgnoreCase("GAML:Xdata")) {
+                parseValues(reader, xValuesKey + "_s" + spectraCounter);
+            } else if (name.equalsIgnoreCase("GAML:Ydata")) {
+                parseValues(reader, yValuesKey + "_s" + spectraCounter);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Adds the content of the GAML values of a GAML Xdata or Ydata element to
+     * the support data map.
+     *
+     * @param reader the reader positioned on the start of the data element
+     * @param key the key of the values
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseValues(XMLStreamReader reader, String key) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if (getElementName(reader).equalsIgnoreCase("GAML:values")) {
+                iSupportDataMap.put(key, readText(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Parses a parameter group.
+     *
+     * @param reader the reader positioned on the start of the group element
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private void parseParameterGroup(XMLStreamReader reader) throws XMLStreamException {
+
+        String groupLabel = reader.getAttributeValue(null, "label");
+
+        boolean inputParameters = groupLabel != null
+                && (groupLabel.equalsIgnoreCase("input parameters") || groupLabel.equalsIgnoreCase("unused input parameters"));
+        boolean performParameters = groupLabel != null && groupLabel.equalsIgnoreCase("performance parameters");
+
+        while (nextChildElement(reader)) {
+            String label = reader.getAttributeValue(null, "label");
+
+            if (label != null && inputParameters) {
+                if (putInputParameter(label, readText(reader))) {
+                    skipRemainingChildren(reader);
+                    return;
+                }
+            } else if (label != null && performParameters) {
+                putPerformParameter(label, readText(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Adds the ion histograms for the ion types used for scoring. X!Tandem
+     * only reports b and y ion histograms, the a and c ions use the b
+     * histogram and the x and z ions use the y histogram.
+     */
+    private void addIonHistograms() {
+        for (int s = 0; s < iNumberOfSpectra; s++) {
+            addIonHistograms(iResultStore.getSpectrumNumber(s));
+        }
+    }
+
+    /**
+     * Adds the ion histograms of a spectrum, see {@link #addIonHistograms()}.
+     *
+     * @param aSpectrumNumber the spectrum number
+     */
+    private void addIonHistograms(int aSpectrumNumber) {
+        String suffix = "_s" + aSpectrumNumber;
+        copyValues(iSupportDataMap, "B_IONLABEL" + suffix, iAIonFlag, "A_IONLABEL" + suffix, iBIonFlag, iCIonFlag, "C_IONLABEL" + suffix);
+        copyValues(iSupportDataMap, "XVAL_BIONS" + suffix, iAIonFlag, "XVAL_AIONS" + suffix, iBIonFlag, iCIonFlag, "XVAL_CIONS" + suffix);
+        copyValues(iSupportDataMap, "YVAL_BIONS" + suffix, iAIonFlag, "YVAL_AIONS" + suffix, iBIonFlag, iCIonFlag, "YVAL_CIONS" + suffix);
+        copyValues(iSupportDataMap, "Y_IONLABEL" + suffix, iXIonFlag, "X_IONLABEL" + suffix, iYIonFlag, iZIonFlag, "Z_IONLABEL" + suffix);
+        copyValues(iSupportDataMap, "XVAL_YIONS" + suffix, iXIonFlag, "XVAL_XIONS" + suffix, iYIonFlag, iZIonFlag, "XVAL_ZIONS" + suffix);
+        copyValues(iSupportDataMap, "YVAL_YIONS" + suffix, iXIonFlag, "YVAL_XIONS" + suffix, iYIonFlag, iZIonFlag, "YVAL_ZIONS" + suffix);
+    }
+
+    /**
+     * Copies the value stored under the given key to the keys of the two
+     * related ion types if these were used for scoring, and removes the
+     * original value if its own ion type was not used for scoring.
+     *
+     * @param map the map containing the values
+     * @param key the key of the value
+     * @param firstFlag true if the first related ion type was used for scoring
+     * @param firstKey the key for the first related ion type
+     * @param keepFlag true if the ion type of the given key was used for
+     * scoring
+     * @param secondFlag true if the second related ion type was used for
+     * scoring
+     * @param secondKey the key for the second related ion type
+     */
+    private void copyValues(HashMap<String, String> map, String key, boolean firstFlag, String firstKey,
+            boolean keepFlag, boolean secondFlag, String secondKey) {
+
+        String value = keepFlag ? map.get(key) : map.remove(key);
+
+        if (value != null) {
+            if (firstFlag) {
+                map.put(firstKey, value);
+            }
+            if (secondFlag) {
+                map.put(secondKey, value);
+            }
+        }
+    }
+
+    /**
+     * Adds the value of an attribute of the current element to the given map,
+     * if the attribute is present.
+     *
+     * @param reader the reader positioned on a start element
+     * @param attributeName the name of the attribute
+     * @param map the map to add the value to
+     * @param key the key to use
+     */
+    private static void putAttribute(XMLStreamReader reader, String attributeName, HashMap<String, String> map, String key) {
+        String value = reader.getAttributeValue(null, attributeName);
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Keeps the text of a double attribute of the current element for the
+     * raw maps, if the attribute is present.
+     *
+     * @param reader the reader positioned on a start element
+     * @param attributeName the name of the attribute
+     * @param column the text column of the result store
+     * @param index the index of the entry in the result store
+     */
+    private void putNumberText(XMLStreamReader reader, String attributeName, int column, int index) {
+        String value = reader.getAttributeValue(null, attributeName);
+        if (value != null) {
+            iResultStore.setNumberText(column, index, value, 0, value.length());
+        }
+    }
+
+    /**
+     * Returns the value of an attribute of the current element as int.
+     *
+     * @param reader the reader positioned on a start element
+     * @param attributeName the name of the attribute
+     * @return the value, or XTandemResultStore.NO_VALUE if the attribute is
+     * missing or not an integer
+     */
+    private static int getIntAttribute(XMLStreamReader reader, String attributeName) {
+        String value = reader.getAttributeValue(null, attributeName);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                // not an integer, handled as missing value
+            }
+        }
+        return XTandemResultStore.NO_VALUE;
+    }
+
+    /**
+     * Returns the value of an attribute of the current element as double.
+     *
+     * @param reader the reader positioned on a start element
+     * @param attributeName the name of the attribute
+     * @return the value, or NaN if the attribute is missing or not a number
+     */
+    private static double getDoubleAttribute(XMLStreamReader reader, String attributeName) {
+        String value = reader.getAttributeValue(null, attributeName);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                // not a number, handled as missing value
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the qualified name of the current element, e.g., GAML:trace.
+     *
+     * @param reader the reader positioned on a start element
+     * @return the qualified name of the element
+     */
+    private static String getElementName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.length() == 0) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    /**
+     * Returns true if the given event contains character data.
+     *
+     * @param event the event
+     * @return true if the given event contains character data
+     */
+    private static boolean isText(int event) {
+        return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE;
+    }
+
+    /**
+     * Moves the reader to the start of the next child element of the current
+     * element, or to the end of the current element.
+     *
+     * @param reader the reader
+     * @return true if the reader is on the start of a child element, false if
+     * it is on the end of the current element
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the current element, leaving the reader on its end.
+     *
+     * @param reader the reader positioned on a start element
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Skips the remaining children of the parent of the current element,
+     * leaving the reader on the end of the parent.
+     *
+     * @param reader the reader positioned on the end of a child element
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private static void skipRemainingChildren(XMLStreamReader reader) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            skipElement(reader);
+        }
+    }
+
+    /**
+     * Returns the text content of the current element, i.e., the text of the
+     * element and all its descendants, leaving the reader on its end.
+     *
+     * @param reader the reader positioned on a start element
+     * @return the text content
+     *
+     * @exception XMLStreamException if an XMLStreamException occurs
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = null;
+        String firstText = "";
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (isText(event)) {
+                if (text != null) {
+                    text.append(reader.getText());
+                } else if (firstText.length() == 0) {
+                    firstText = reader.getText();
+                } else {
+                    text = new StringBuilder(firstText).append(reader.getText());
+                }
+            }
+        }
+        return text != null ? text.toString() : firstText;
+    }
+
+    /**
+     * Builds the raw spectrum map from the result store.
+     */
+    private void buildRawSpectrumMap() {
+        iRawSpectrumMap = new HashMap<String, String>();
+        for (int s = 0; s < iResultStore.getNumberOfSpectra(); s++) {
+            int spectrumNumber = iResultStore.getSpectrumNumber(s);
+            putValue(iRawSpectrumMap, "id" + spectrumNumber, iResultStore.getSpectrumId(s));
+            putValue(iRawSpectrumMap, "z" + spectrumNumber, iResultStore.getPrecursorCharge(s));
+            putValue(iRawSpectrumMap, "expect" + spectrumNumber, iResultStore.getNumberText(XTandemResultStore.SPECTRUM_EXPECT, s, iResultStore.getSpectrumExpect(s)));
+            putValue(iRawSpectrumMap, "mh" + spectrumNumber, iResultStore.getNumberText(XTandemResultStore.PRECURSOR_MH, s, iResultStore.getPrecursorMh(s)));
+            putValue(iRawSpectrumMap, "rt" + spectrumNumber, iResultStore.getRetentionTime(s));
+            putValue(iRawSpectrumMap, "label" + spectrumNumber, iResultStore.getSpectrumLabel(s));
+            putValue(iRawSpectrumMap, "sumI" + spectrumNumber, iResultStore.getNumberText(XTandemResultStore.SUMMED_INTENSITY, s, iResultStore.getSummedIntensity(s)));
+            putValue(iRawSpectrumMap, "maxI" + spectrumNumber, iResultStore.getNumberText(XTandemResultStore.MAX_INTENSITY, s, iResultStore.getMaxIntensity(s)));
+            putValue(iRawSpectrumMap, "fI" + spectrumNumber, iResultStore.getNumberText(XTandemResultStore.INTENSITY_MULTIPLIER, s, iResultStore.getIntensityMultiplier(s)));
+        }
+    }
+
+    /**
+     * Builds the raw protein map and the protein key list from the result
+     * store.
+     */
+    private void buildRawProteinMap() {
+        iRawProteinMap = new HashMap<String, String>();
+        iProteinKeyList = new ArrayList<String>();
+        if (!iSkipDetails) {
+            for (int p = 0; p < iResultStore.getNumberOfPeptides(); p++) {
+                String proteinKey = iResultStore.getProteinKey(p);
+                iProteinKeyList.add(proteinKey);
+                putValue(iRawProteinMap, "uid" + proteinKey, iResultStore.getProteinUid(p));
+                putValue(iRawProteinMap, "expect" + proteinKey, iResultStore.getNumberText(XTandemResultStore.PROTEIN_EXPECT, p, iResultStore.getProteinExpect(p)));
+                putValue(iRawProteinMap, "label" + proteinKey, proteinKey);
+                putValue(iRawProteinMap, "sumI" + proteinKey, iResultStore.getNumberText(XTandemResultStore.PROTEIN_SUMMED_INTENSITY, p, iResultStore.getProteinSummedIntensity(p)));
+                putValue(iRawProteinMap, "description" + proteinKey, iResultStore.getProteinDescription(p));
+            }
+        }
+    }
+
+    /**
+     * Builds the raw peptide map and the raw modification map from the result
+     * store.
+     */
+    private void buildRawPeptideMap() {
+        iRawPeptideMap = new HashMap<String, String>();
+        iRawModMap = new HashMap<String, String>();
+        for (int s = 0; s < iResultStore.getNumberOfSpectra(); s++) {
+            int firstPeptide = iResultStore.getFirstPeptide(s);
+            for (int pCount = 1; pCount <= iResultStore.getPeptideCount(s); pCount++) {
+                int p = firstPeptide + pCount - 1;
+                String peptideKey = "s" + iResultStore.getSpectrumNumber(s) + "_p" + pCount;
+                putValue(iRawPeptideMap, peptideKey, iResultStore.getProteinId(p));
+                putValue(iRawPeptideMap, "start" + "_" + peptideKey, iResultStore.getPeptideStart(p));
+                putValue(iRawPeptideMap, "end" + "_" + peptideKey, iResultStore.getPeptideEnd(p));
+                putValue(iRawPeptideMap, "seq" + "_" + peptideKey, iResultStore.getPeptideSequence(p));
+                putValue(iRawPeptideMap, "URL" + "_" + peptideKey, iResultStore.getFastaFilePath(p));
+
+                int firstDomain = iResultStore.getFirstDomain(p);
+                for (int dCount = 1; dCount <= iResultStore.getDomainCount(p); dCount++) {
+                    int d = firstDomain + dCount - 1;
+                    String domainKey = peptideKey + "_d" + dCount;
+                    putValue(iRawPeptideMap, "domainid" + "_" + domainKey, iResultStore.getDomainId(d));
+                    putValue(iRawPeptideMap, "domainstart" + "_" + domainKey, iResultStore.getDomainStart(d));
+                    if (!iSkipDetails) {
+                        putValue(iRawPeptideMap, "proteinkey" + "_" + domainKey, iResultStore.getProteinKey(p));
+                    }
+                    putValue(iRawPeptideMap, "domainend" + "_" + domainKey, iResultStore.getDomainEnd(d));
+                    putValue(iRawPeptideMap, "mh" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_MH, d, iResultStore.getDomainMh(d)));
+                    putValue(iRawPeptideMap, "delta" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_DELTA, d, iResultStore.getDomainDelta(d)));
+                    putValue(iRawPeptideMap, "hyperscore" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_HYPER_SCORE, d, iResultStore.getDomainHyperScore(d)));
+                    putValue(iRawPeptideMap, "nextscore" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_NEXT_SCORE, d, iResultStore.getDomainNextScore(d)));
+
+                    // X!Tandem only reports b and y scores, the a and c ions use the b values and the x and z ions use the y values
+                    if (iAIonFlag) {
+                        putValue(iRawPeptideMap, "a_score" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_B_SCORE, d, iResultStore.getDomainBScore(d)));
+                        putValue(iRawPeptideMap, "a_ions" + "_" + domainKey, iResultStore.getDomainBIons(d));
+                    }
+                    if (iBIonFlag) {
+                        putValue(iRawPeptideMap, "b_score" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_B_SCORE, d, iResultStore.getDomainBScore(d)));
+                        putValue(iRawPeptideMap, "b_ions" + "_" + domainKey, iResultStore.getDomainBIons(d));
+                    }
+                    if (iCIonFlag) {
+                        putValue(iRawPeptideMap, "c_score" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_B_SCORE, d, iResultStore.getDomainBScore(d)));
+                        putValue(iRawPeptideMap, "c_ions" + "_" + domainKey, iResultStore.getDomainBIons(d));
+                    }
+                    if (iXIonFlag) {
+                        putValue(iRawPeptideMap, "x_score" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_Y_SCORE, d, iResultStore.getDomainYScore(d)));
+                        putValue(iRawPeptideMap, "x_ions" + "_" + domainKey, iResultStore.getDomainYIons(d));
+                    }
+                    if (iYIonFlag) {
+                        putValue(iRawPeptideMap, "y_score" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_Y_SCORE, d, iResultStore.getDomainYScore(d)));
+                        putValue(iRawPeptideMap, "y_ions" + "_" + domainKey, iResultStore.getDomainYIons(d));
+                    }
+                    if (iZIonFlag) {
+                        putValue(iRawPeptideMap, "z_score" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_Y_SCORE, d, iResultStore.getDomainYScore(d)));
+                        putValue(iRawPeptideMap, "z_ions" + "_" + domainKey, iResultStore.getDomainYIons(d));
+                    }
+
+                    putValue(iRawPeptideMap, "pre" + "_" + domainKey, iResultStore.getUpFlankSequence(d));
+                    putValue(iRawPeptideMap, "post" + "_" + domainKey, iResultStore.getDownFlankSequence(d));
+                    putValue(iRawPeptideMap, "missed_cleavages" + "_" + domainKey, iResultStore.getMissedCleavages(d));
+                    putValue(iRawPeptideMap, "expect" + "_" + domainKey, iResultStore.getNumberText(XTandemResultStore.DOMAIN_EXPECT, d, iResultStore.getDomainExpect(d)));
+                    putValue(iRawPeptideMap, "domainseq" + "_" + domainKey, iResultStore.getDomainSequence(d));
+
+                    int firstModification = iResultStore.getFirstModification(d);
+                    for (int mCount = 1; mCount <= iResultStore.getModificationCount(d); mCount++) {
+                        int m = firstModification + mCount - 1;
+                        String modKey = domainKey + "_m" + mCount;
+                        putValue(iRawModMap, "at" + "_" + modKey, iResultStore.getModificationPosition(m));
+                        putValue(iRawModMap, "modified" + "_" + modKey, iResultStore.getNumberText(XTandemResultStore.MODIFICATION_MASS, m, iResultStore.getModificationMass(m)));
+                        putValue(iRawModMap, "name" + "_" + modKey, iResultStore.getModificationName(m));
+                        putValue(iRawModMap, "pm" + "_" + modKey, iResultStore.getSubstitutedAminoAcid(m));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a value to a raw map if it is not null.
+     *
+     * @param map the map to add the value to
+     * @param key the key to use
+     * @param value the value
+     */
+    private static void putValue(HashMap<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Adds an int value to a raw map if it is not missing.
+     *
+     * @param map the map to add the value to
+     * @param key the key to use
+     * @param value the value
+     */
+    private static void putValue(HashMap<String, String> map, String key, int value) {
+        if (value != XTandemResultStore.NO_VALUE) {
+            map.put(key, Integer.toString(value));
+        }
+    }
+
+    /**
+     * Writes the parsed results to the binary format of parsed files: the
+     * result store, the parameters, the given support data and the spectrum
+     * title maps. The raw maps are not written, they are built from the
+     * result store again.
+     *
+     * @param aOutput the output
+     * @param aSupportDataMap the support data to write, e.g., without the
+     * values kept elsewhere
+     * @exception IOException if the results could not be written
+     */
+    public void writeBinary(DataOutputStream aOutput, HashMap<String, String> aSupportDataMap) throws IOException {
+        aOutput.writeInt(iNumberOfSpectra);
+        iResultStore.write(aOutput);
+        BinaryBlocks.writeStringMap(aOutput, iInputParamMap);
+        BinaryBlocks.writeStringMap(aOutput, iPerformParamMap);
+        BinaryBlocks.writeStringMap(aOutput, aSupportDataMap);
+
+        HashMap<String, Integer> title2SpectrumIdMap = iTitle2SpectrumIDMap != null ? iTitle2SpectrumIDMap : new HashMap<String, Integer>();
+        String[] titles = new String[title2SpectrumIdMap.size()];
+        int[] spectrumIds = new int[titles.length];
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : title2SpectrumIdMap.entrySet()) {
+            titles[index] = entry.getKey();
+            spectrumIds[index++] = entry.getValue();
+        }
+        BinaryBlocks.writeStrings(aOutput, titles, titles.length);
+        BinaryBlocks.writeInts(aOutput, spectrumIds, spectrumIds.length);
+
+        HashMap<Integer, String> idToSpectrumMap = this.idToSpectrumMap != null ? this.idToSpectrumMap : new HashMap<Integer, String>();
+        int[] ids = new int[idToSpectrumMap.size()];
+        String[] spectra = new String[ids.length];
+        index = 0;
+        for (Map.Entry<Integer, String> entry : idToSpectrumMap.entrySet()) {
+            ids[index] = entry.getKey();
+            spectra[index++] = entry.getValue();
+        }
+        BinaryBlocks.writeInts(aOutput, ids, ids.length);
+        BinaryBlocks.writeStrings(aOutput, spectra, spectra.length);
+    }
+
+    /**
+     * Reads the results written by
+     * {@link #writeBinary(DataOutputStream, HashMap)} into a parser, as if
+     * the X!Tandem file had been parsed.
+     *
+     * @param aInput the input, positioned after the results afterwards
+     * @return the parser holding the results
+     */
+    public static XTandemParser readBinary(ByteBuffer aInput) {
+        XTandemParser parser = new XTandemParser();
+        parser.iSections = XTandemSection.all();
+        parser.iNumberOfSpectra = aInput.getInt();
+        parser.iResultStore = XTandemResultStore.read(aInput);
+        parser.iInputParamMap = BinaryBlocks.readStringMap(aInput);
+        for (Map.Entry<String, String> entry : parser.iInputParamMap.entrySet()) {
+            parser.setIonFlag(entry.getKey(), entry.getValue());
+        }
+        parser.iPerformParamMap = BinaryBlocks.readStringMap(aInput);
+        parser.iSupportDataMap = BinaryBlocks.readStringMap(aInput);
+
+        String[] titles = BinaryBlocks.readStrings(aInput);
+        int[] spectrumIds = BinaryBlocks.readInts(aInput);
+        parser.iTitle2SpectrumIDMap = new HashMap<String, Integer>();
+        for (int i = 0; i < titles.length; i++) {
+            parser.iTitle2SpectrumIDMap.put(titles[i], spectrumIds[i]);
+        }
+
+        int[] ids = BinaryBlocks.readInts(aInput);
+        String[] spectra = BinaryBlocks.readStrings(aInput);
+        parser.idToSpectrumMap = new HashMap<Integer, String>();
+        for (int i = 0; i < ids.length; i++) {
+            parser.idToSpectrumMap.put(ids[i], spectra[i]);
+        }
+        return parser;
+    }
+
+    /**
+     * Returns the total number of spectra.
+     *
+     * @return iNumberOfSpectra
+     */
+    public int getNumberOfSpectra() {
+        return iNumberOfSpectra;
+    }
+
+    /**
+     * Returns the result store holding the spectra, peptides, domains and
+     * modifications.
+     *
+     * @return iResultStore
+     */
+    public XTandemResultStore getResultStore() {
+        return iResultStore;
+    }
+
+    /**
+     * Returns the number of times the parser waited for the file to be read,
+     * if the file was read ahead.
+     *
+     * @return iReadStallCount, 0 if the file was not read ahead
+     */
+    public long getReadStallCount() {
+        return iReadStallCount;
+    }
+
+    /**
+     * Returns the time the parser waited for the file to be read, if the file
+     * was read ahead.
+     *
+     * @return iReadStallTime in nanoseconds, 0 if the file was not read ahead
+     */
+    public long getReadStallTime() {
+        return iReadStallTime;
+    }
+
+    /**
+     * Returns the raw spectrum map, built from the result store when first
+     * requested. The values are the texts of the X!Tandem file.
+     *
+     * @return iRawSpectrumMap
+     */
+    public HashMap<String, String> getRawSpectrumMap() {
+        if (iRawSpectrumMap == null) {
+            buildRawSpectrumMap();
+        }
+        return iRawSpectrumMap;
+    }
+
+    /**
+     * Returns the raw peptide map, built from the result store when first
+     * requested. The values are the texts of the X!Tandem file.
+     *
+     * @return iRawPeptideMap
+     */
+    public HashMap<String, String> getRawPeptideMap() {
+        if (iRawPeptideMap == null) {
+            buildRawPeptideMap();
+        }
+        return iRawPeptideMap;
+    }
+
+    /**
+     * Returns the raw protein map, built from the result store when first
+     * requested. The values are the texts of the X!Tandem file.
+     *
+     * @return iRawProteinMap
+     */
+    public HashMap<String, String> getRawProteinMap() {
+        if (iRawProteinMap == null) {
+            buildRawProteinMap();
+        }
+        return iRawProteinMap;
+    }
+
+    /**
+     * Returns the protein id list.
+     *
+     * @return iProteinIDList ArrayList with the protein keys
+     */
+    public ArrayList<String> getProteinIDList() {
+        if (iProteinKeyList == null) {
+            buildRawProteinMap();
+        }
+        return iProteinKeyList;
+    }
+
+    /**
+     * Returns the raw modification map, built from the result store when
+     * first requested. The values are the texts of the X!Tandem file.
+     *
+     * @return iRawModMap
+     */
+    public HashMap<String, String> getRawModMap() {
+        if (iRawModMap == null) {
+            buildRawPeptideMap();
+        }
         return iRawModMap;
     }
 
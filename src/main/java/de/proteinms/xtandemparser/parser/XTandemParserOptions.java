@@ -0,0 +1,310 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * This class holds the options of an {@link XTandemParser}: which parts of
+ * the file are parsed, how the file is read and on how many threads. The
+ * options combine freely, except that the model groups cannot be streamed to
+ * a listener while parsing on several threads. The defaults parse all the
+ * sections with StAX from a buffered stream on the calling thread.
+ */
+public class XTandemParserOptions {
+
+    /**
+     * The sections to parse.
+     */
+    private EnumSet<XTandemSection> iSections = XTandemSection.all();
+    /**
+     * True if only the spectrum identifiers, the peptides sequences,
+     * modifications and matches e-values are loaded from the sections.
+     */
+    private boolean iSkipDetails = false;
+    /**
+     * True if the model groups are parsed in fast mode.
+     */
+    private boolean iFastMode = false;
+    /**
+     * True if files are read through memory mapped windows.
+     */
+    private boolean iMemoryMapped = false;
+    /**
+     * The number of buffers files are read ahead with, 0 to read without a
+     * separate thread.
+     */
+    private int iReadAheadBuffers = 0;
+    /**
+     * The size in bytes of the buffers files are read ahead with.
+     */
+    private int iReadAheadBufferSize = 0;
+    /**
+     * The number of threads parsing the model groups.
+     */
+    private int iThreads = 1;
+    /**
+     * The executor parsing the model groups, null to parse on a thread pool
+     * of the given number of threads.
+     */
+    private ExecutorService iExecutor = null;
+    /**
+     * The dictionary interning the repeated strings, null to use a
+     * dictionary of the file only.
+     */
+    private StringDictionary iStringDictionary = null;
+    /**
+     * The listener the model groups are streamed to, null to keep the
+     * groups.
+     */
+    private XTandemGroupListener iGroupListener = null;
+    /**
+     * The spectrum number of the first model group.
+     */
+    private int iFirstSpectrumNumber = 1;
+
+    /**
+     * Returns the sections to parse.
+     *
+     * @return the sections to parse
+     */
+    public EnumSet<XTandemSection> getSections() {
+        return iSections;
+    }
+
+    /**
+     * Sets the sections to parse. The other sections are skipped while
+     * reading the file.
+     *
+     * @param aSections the sections to parse
+     */
+    public void setSections(EnumSet<XTandemSection> aSections) {
+        iSections = EnumSet.copyOf(aSections);
+    }
+
+    /**
+     * Returns true if the details are skipped.
+     *
+     * @return true if the details are skipped
+     */
+    public boolean isSkipDetails() {
+        return iSkipDetails;
+    }
+
+    /**
+     * Sets whether the details are skipped. If true only the spectrum
+     * identifiers, the peptides sequences, modifications and matches e-values
+     * are loaded from the sections.
+     *
+     * @param aSkipDetails true if the details are skipped
+     */
+    public void setSkipDetails(boolean aSkipDetails) {
+        iSkipDetails = aSkipDetails;
+    }
+
+    /**
+     * Returns true if the model groups are parsed in fast mode.
+     *
+     * @return true if the model groups are parsed in fast mode
+     */
+    public boolean isFastMode() {
+        return iFastMode;
+    }
+
+    /**
+     * Sets whether the model groups are parsed in fast mode. In fast mode the
+     * model groups are parsed straight from their bytes by an
+     * {@link XTandemFastParser}, which matches the X!Tandem element and
+     * attribute names by comparing bytes and parses the numbers without
+     * creating strings. Groups holding anything the fast parser does not
+     * handle, and files not encoded in UTF-8, are parsed with StAX as usual.
+     * The results are the same in both modes.
+     *
+     * @param aFastMode true if the model groups are parsed in fast mode
+     */
+    public void setFastMode(boolean aFastMode) {
+        iFastMode = aFastMode;
+    }
+
+    /**
+     * Returns true if files are read through memory mapped windows.
+     *
+     * @return true if files are read through memory mapped windows
+     */
+    public boolean isMemoryMapped() {
+        return iMemoryMapped;
+    }
+
+    /**
+     * Sets whether files are read through memory mapped windows (see
+     * {@link MappedFileInputStream}) instead of a buffered stream. Mapping is
+     * faster for very large files on fast disks and shares the page cache
+     * between processes reading the same file. Cannot be combined with
+     * reading ahead.
+     *
+     * @param aMemoryMapped true if files are read through memory mapped
+     * windows
+     */
+    public void setMemoryMapped(boolean aMemoryMapped) {
+        iMemoryMapped = aMemoryMapped;
+    }
+
+    /**
+     * Returns the number of buffers files are read ahead with.
+     *
+     * @return the number of buffers, 0 if files are not read ahead
+     */
+    public int getReadAheadBuffers() {
+        return iReadAheadBuffers;
+    }
+
+    /**
+     * Returns the size of the buffers files are read ahead with.
+     *
+     * @return the size of the buffers in bytes
+     */
+    public int getReadAheadBufferSize() {
+        return iReadAheadBufferSize;
+    }
+
+    /**
+     * Sets files to be read ahead on a separate thread (see
+     * {@link ReadAheadInputStream}). The reads then overlap with the parsing,
+     * which helps on cold caches, slow disks and network file systems. The
+     * time the parser waited for the reads is available from
+     * {@link XTandemParser#getReadStallTime()}. Cannot be combined with
+     * memory mapping.
+     *
+     * @param aBuffers the number of buffers read ahead, at least two, or 0
+     * to read without a separate thread
+     * @param aBufferSize the size of the buffers in bytes
+     */
+    public void setReadAhead(int aBuffers, int aBufferSize) {
+        iReadAheadBuffers = aBuffers;
+        iReadAheadBufferSize = aBufferSize;
+    }
+
+    /**
+     * Returns the number of threads parsing the model groups.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return iThreads;
+    }
+
+    /**
+     * Sets the number of threads parsing the model groups. With more than one
+     * thread the file is split into chunks of model groups on the calling
+     * thread, the chunks are parsed on a fixed thread pool of the given size
+     * and merged in file order.
+     *
+     * @param aThreads the number of threads, at least one
+     */
+    public void setThreads(int aThreads) {
+        if (aThreads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + aThreads);
+        }
+        iThreads = aThreads;
+    }
+
+    /**
+     * Returns the executor parsing the model groups.
+     *
+     * @return the executor, null if not set
+     */
+    public ExecutorService getExecutor() {
+        return iExecutor;
+    }
+
+    /**
+     * Sets the executor parsing the chunks of model groups, which are then
+     * split and merged as with several threads. The executor is not shut
+     * down.
+     *
+     * @param aExecutor the executor, null to parse on the given number of
+     * threads
+     */
+    public void setExecutor(ExecutorService aExecutor) {
+        iExecutor = aExecutor;
+    }
+
+    /**
+     * Returns true if the model groups are parsed on several threads.
+     *
+     * @return true if the model groups are parsed on several threads
+     */
+    public boolean isParallel() {
+        return iExecutor != null || iThreads > 1;
+    }
+
+    /**
+     * Returns the dictionary interning the repeated strings.
+     *
+     * @return the dictionary, null if not set
+     */
+    public StringDictionary getStringDictionary() {
+        return iStringDictionary;
+    }
+
+    /**
+     * Sets the dictionary interning the repeated strings. Sharing a dictionary
+     * between the files of a project keeps the protein descriptions and
+     * sequences found in several files in memory only once.
+     *
+     * @param aStringDictionary the dictionary, null to use a dictionary of
+     * the file only
+     */
+    public void setStringDictionary(StringDictionary aStringDictionary) {
+        iStringDictionary = aStringDictionary;
+    }
+
+    /**
+     * Returns the listener the model groups are streamed to.
+     *
+     * @return the listener, null if not set
+     */
+    public XTandemGroupListener getGroupListener() {
+        return iGroupListener;
+    }
+
+    /**
+     * Sets the listener the model groups are streamed to. Every model group
+     * is handed to the listener as soon as it is parsed and dropped
+     * afterwards, so the memory used does not grow with the size of the file:
+     * the result store and the support data map only ever hold the current
+     * group, and {@link XTandemParser#getNumberOfSpectra()} returns the number
+     * of groups streamed. The parameters are always parsed, whether the
+     * sections contain {@link XTandemSection#PARAMETERS} or not, as the ion
+     * histograms and the modifications of a group can only be completed with
+     * them. As X!Tandem writes the parameter groups at the end of the file,
+     * the model groups read before them are spooled, in memory up to a few
+     * megabytes and in a temporary file beyond, and handed to the listener
+     * once the parameters are read. Files and streams are both read in one
+     * pass. Cannot be combined with parsing on several threads.
+     *
+     * @param aGroupListener the listener, null to keep the groups
+     */
+    public void setGroupListener(XTandemGroupListener aGroupListener) {
+        iGroupListener = aGroupListener;
+    }
+
+    /**
+     * Returns the spectrum number of the first model group.
+     *
+     * @return the spectrum number of the first model group
+     */
+    public int getFirstSpectrumNumber() {
+        return iFirstSpectrumNumber;
+    }
+
+    /**
+     * Sets the spectrum number of the first model group, e.g., when parsing
+     * a part of a file holding only some of the model groups.
+     *
+     * @param aFirstSpectrumNumber the spectrum number of the first model
+     * group
+     */
+    public void setFirstSpectrumNumber(int aFirstSpectrumNumber) {
+        iFirstSpectrumNumber = aFirstSpectrumNumber;
+    }
+}
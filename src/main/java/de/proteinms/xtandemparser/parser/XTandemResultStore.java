@@ -0,0 +1,1623 @@
+package de.proteinms.xtandemparser.parser;
+
+import de.proteinms.xtandemparser.xtandem.AminoAcidSequence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * This class holds the identification results of an X!Tandem file in a
+ * columnar layout: every field is stored in a primitive or string array which
+ * is indexed by the ordinal of the spectrum, peptide, domain or modification.
+ * The sequences are stored packed, every distinct sequence once.
+ * The children of an entry are stored consecutively, the index of the first
+ * child is kept in an offset array.
+ * <p>
+ * Spectra are indexed from 0, i.e., the spectrum number used in the rest of the
+ * API is the index plus the number of the first spectrum, which is one unless
+ * only a part of the file was parsed. Missing double values are stored as NaN, missing
+ * int values as {@link #NO_VALUE} and missing strings as null.
+ */
+public class XTandemResultStore implements Serializable {
+
+    /**
+     * The value stored for int fields which are not given in the file.
+     */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+    /**
+     * The initial capacity of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The text column of the spectrum expectation values.
+     */
+    static final int SPECTRUM_EXPECT = 0;
+    /**
+     * The text column of the precursor masses.
+     */
+    static final int PRECURSOR_MH = 1;
+    /**
+     * The text column of the summed fragment ion intensities.
+     */
+    static final int SUMMED_INTENSITY = 2;
+    /**
+     * The text column of the maximum fragment ion intensities.
+     */
+    static final int MAX_INTENSITY = 3;
+    /**
+     * The text column of the intensity multipliers.
+     */
+    static final int INTENSITY_MULTIPLIER = 4;
+    /**
+     * The text column of the protein expectation values.
+     */
+    static final int PROTEIN_EXPECT = 5;
+    /**
+     * The text column of the summed intensities of the proteins.
+     */
+    static final int PROTEIN_SUMMED_INTENSITY = 6;
+    /**
+     * The text column of the domain expectation values.
+     */
+    static final int DOMAIN_EXPECT = 7;
+    /**
+     * The text column of the calculated peptide masses.
+     */
+    static final int DOMAIN_MH = 8;
+    /**
+     * The text column of the mass deltas.
+     */
+    static final int DOMAIN_DELTA = 9;
+    /**
+     * The text column of the hyper scores.
+     */
+    static final int DOMAIN_HYPER_SCORE = 10;
+    /**
+     * The text column of the next scores.
+     */
+    static final int DOMAIN_NEXT_SCORE = 11;
+    /**
+     * The text column of the b ion scores.
+     */
+    static final int DOMAIN_B_SCORE = 12;
+    /**
+     * The text column of the y ion scores.
+     */
+    static final int DOMAIN_Y_SCORE = 13;
+    /**
+     * The text column of the modification masses.
+     */
+    static final int MODIFICATION_MASS = 14;
+    /**
+     * The first text column of the spectra, peptides, domains and
+     * modifications, and the number of text columns.
+     */
+    private static final int[] FIRST_TEXT_COLUMNS = {SPECTRUM_EXPECT, PROTEIN_EXPECT, DOMAIN_EXPECT, MODIFICATION_MASS, MODIFICATION_MASS + 1};
+    /**
+     * The number of the first spectrum.
+     */
+    private int iFirstSpectrumNumber = 1;
+    /**
+     * The number of spectra.
+     */
+    private int iSpectrumCount = 0;
+    /**
+     * The spectrum ids.
+     */
+    private int[] iSpectrumIds = new int[INITIAL_CAPACITY];
+    /**
+     * The precursor charges.
+     */
+    private int[] iPrecursorCharges = new int[INITIAL_CAPACITY];
+    /**
+     * The expectation values of the spectra.
+     */
+    private double[] iSpectrumExpects = new double[INITIAL_CAPACITY];
+    /**
+     * The precursor masses.
+     */
+    private double[] iPrecursorMhs = new double[INITIAL_CAPACITY];
+    /**
+     * The precursor retention times.
+     */
+    private String[] iRetentionTimes = new String[INITIAL_CAPACITY];
+    /**
+     * The spectrum labels.
+     */
+    private String[] iSpectrumLabels = new String[INITIAL_CAPACITY];
+    /**
+     * The summed fragment ion intensities.
+     */
+    private double[] iSummedIntensities = new double[INITIAL_CAPACITY];
+    /**
+     * The maximum fragment ion intensities.
+     */
+    private double[] iMaxIntensities = new double[INITIAL_CAPACITY];
+    /**
+     * The intensity multipliers.
+     */
+    private double[] iIntensityMultipliers = new double[INITIAL_CAPACITY];
+    /**
+     * The index of the first peptide of each spectrum.
+     */
+    private int[] iFirstPeptides = new int[INITIAL_CAPACITY];
+    /**
+     * The number of peptides.
+     */
+    private int iPeptideCount = 0;
+    /**
+     * The protein ids, e.g. 171.1.
+     */
+    private String[] iProteinIds = new String[INITIAL_CAPACITY];
+    /**
+     * The protein keys, i.e., the protein labels.
+     */
+    private String[] iProteinKeys = new String[INITIAL_CAPACITY];
+    /**
+     * The protein uids.
+     */
+    private int[] iProteinUids = new int[INITIAL_CAPACITY];
+    /**
+     * The protein expectation values.
+     */
+    private double[] iProteinExpects = new double[INITIAL_CAPACITY];
+    /**
+     * The summed intensities of the proteins.
+     */
+    private double[] iProteinSummedIntensities = new double[INITIAL_CAPACITY];
+    /**
+     * The protein descriptions.
+     */
+    private String[] iProteinDescriptions = new String[INITIAL_CAPACITY];
+    /**
+     * The FASTA file paths.
+     */
+    private String[] iFastaFilePaths = new String[INITIAL_CAPACITY];
+    /**
+     * The peptide start positions.
+     */
+    private int[] iPeptideStarts = new int[INITIAL_CAPACITY];
+    /**
+     * The peptide end positions.
+     */
+    private int[] iPeptideEnds = new int[INITIAL_CAPACITY];
+    /**
+     * The peptide sequences as given in the file.
+     */
+    private AminoAcidSequence[] iPeptideSequences = new AminoAcidSequence[INITIAL_CAPACITY];
+    /**
+     * The index of the first domain of each peptide.
+     */
+    private int[] iFirstDomains = new int[INITIAL_CAPACITY];
+    /**
+     * The number of domains.
+     */
+    private int iDomainCount = 0;
+    /**
+     * The domain ids.
+     */
+    private String[] iDomainIds = new String[INITIAL_CAPACITY];
+    /**
+     * The domain start positions.
+     */
+    private int[] iDomainStarts = new int[INITIAL_CAPACITY];
+    /**
+     * The domain end positions.
+     */
+    private int[] iDomainEnds = new int[INITIAL_CAPACITY];
+    /**
+     * The domain expectation values.
+     */
+    private double[] iDomainExpects = new double[INITIAL_CAPACITY];
+    /**
+     * The calculated peptide masses + a proton.
+     */
+    private double[] iDomainMhs = new double[INITIAL_CAPACITY];
+    /**
+     * The mass deltas.
+     */
+    private double[] iDomainDeltas = new double[INITIAL_CAPACITY];
+    /**
+     * The hyper scores.
+     */
+    private double[] iDomainHyperScores = new double[INITIAL_CAPACITY];
+    /**
+     * The next scores.
+     */
+    private double[] iDomainNextScores = new double[INITIAL_CAPACITY];
+    /**
+     * The b ion scores.
+     */
+    private double[] iDomainBScores = new double[INITIAL_CAPACITY];
+    /**
+     * The number of b ions.
+     */
+    private int[] iDomainBIons = new int[INITIAL_CAPACITY];
+    /**
+     * The y ion scores.
+     */
+    private double[] iDomainYScores = new double[INITIAL_CAPACITY];
+    /**
+     * The number of y ions.
+     */
+    private int[] iDomainYIons = new int[INITIAL_CAPACITY];
+    /**
+     * The upstream flanking sequences.
+     */
+    private AminoAcidSequence[] iUpFlankSequences = new AminoAcidSequence[INITIAL_CAPACITY];
+    /**
+     * The downstream flanking sequences.
+     */
+    private AminoAcidSequence[] iDownFlankSequences = new AminoAcidSequence[INITIAL_CAPACITY];
+    /**
+     * The domain sequences.
+     */
+    private AminoAcidSequence[] iDomainSequences = new AminoAcidSequence[INITIAL_CAPACITY];
+    /**
+     * The numbers of missed cleavages.
+     */
+    private int[] iMissedCleavages = new int[INITIAL_CAPACITY];
+    /**
+     * The index of the first modification of each domain.
+     */
+    private int[] iFirstModifications = new int[INITIAL_CAPACITY];
+    /**
+     * The number of modifications.
+     */
+    private int iModificationCount = 0;
+    /**
+     * The positions of the modifications.
+     */
+    private int[] iModificationPositions = new int[INITIAL_CAPACITY];
+    /**
+     * The modification masses.
+     */
+    private double[] iModificationMasses = new double[INITIAL_CAPACITY];
+    /**
+     * The modified residues.
+     */
+    private String[] iModifiedResidues = new String[INITIAL_CAPACITY];
+    /**
+     * The substituted amino acids, null if not a point mutation.
+     */
+    private String[] iSubstitutedAminoAcids = new String[INITIAL_CAPACITY];
+    /**
+     * The texts of the double columns as written in the file, indexed by the
+     * text column constants.
+     */
+    private NumberTextColumn[] iNumberTexts = newNumberTexts(INITIAL_CAPACITY);
+    /**
+     * The dictionary interning the repeated strings while parsing, null to
+     * keep the strings as given.
+     */
+    private transient StringDictionary iStringDictionary = null;
+
+    /**
+     * Adds a spectrum.
+     *
+     * @param aSpectrumId the spectrum id
+     * @param aPrecursorCharge the precursor charge
+     * @return the index of the spectrum
+     */
+    int addSpectrum(int aSpectrumId, int aPrecursorCharge) {
+        ensureSpectrumCapacity(iSpectrumCount + 1);
+        int index = iSpectrumCount++;
+        iSpectrumIds[index] = aSpectrumId;
+        iPrecursorCharges[index] = aPrecursorCharge;
+        iSpectrumExpects[index] = Double.NaN;
+        iPrecursorMhs[index] = Double.NaN;
+        iSummedIntensities[index] = Double.NaN;
+        iMaxIntensities[index] = Double.NaN;
+        iIntensityMultipliers[index] = Double.NaN;
+        iFirstPeptides[index] = iPeptideCount;
+        return index;
+    }
+
+    /**
+     * Sets the details of a spectrum.
+     *
+     * @param aIndex the index of the spectrum
+     * @param aExpect the expectation value
+     * @param aPrecursorMh the precursor mass
+     * @param aRetentionTime the precursor retention time
+     * @param aLabel the label
+     * @param aSummedIntensity the summed fragment ion intensity
+     * @param aMaxIntensity the maximum fragment ion intensity
+     * @param aIntensityMultiplier the intensity multiplier
+     */
+    void setSpectrumDetails(int aIndex, double aExpect, double aPrecursorMh, String aRetentionTime, String aLabel,
+            double aSummedIntensity, double aMaxIntensity, double aIntensityMultiplier) {
+        iSpectrumExpects[aIndex] = aExpect;
+        iPrecursorMhs[aIndex] = aPrecursorMh;
+        iRetentionTimes[aIndex] = aRetentionTime;
+        iSpectrumLabels[aIndex] = intern(aLabel);
+        iSummedIntensities[aIndex] = aSummedIntensity;
+        iMaxIntensities[aIndex] = aMaxIntensity;
+        iIntensityMultipliers[aIndex] = aIntensityMultiplier;
+    }
+
+    /**
+     * Adds a peptide to the last added spectrum. In X!Tandem files every
+     * protein element of a spectrum contains one peptide, the protein values
+     * are therefore stored with the peptide.
+     *
+     * @param aProteinId the protein id
+     * @param aProteinKey the protein key
+     * @return the index of the peptide
+     */
+    int addPeptide(String aProteinId, String aProteinKey) {
+        ensurePeptideCapacity(iPeptideCount + 1);
+        int index = iPeptideCount++;
+        iProteinIds[index] = aProteinId;
+        iProteinKeys[index] = intern(aProteinKey);
+        iProteinUids[index] = NO_VALUE;
+        iProteinExpects[index] = Double.NaN;
+        iProteinSummedIntensities[index] = Double.NaN;
+        iPeptideStarts[index] = NO_VALUE;
+        iPeptideEnds[index] = NO_VALUE;
+        iFirstDomains[index] = iDomainCount;
+        return index;
+    }
+
+    /**
+     * Sets the protein details of a peptide.
+     *
+     * @param aIndex the index of the peptide
+     * @param aUid the protein uid
+     * @param aExpect the protein expectation value
+     * @param aSummedIntensity the summed intensity of the protein
+     */
+    void setProteinDetails(int aIndex, int aUid, double aExpect, double aSummedIntensity) {
+        iProteinUids[aIndex] = aUid;
+        iProteinExpects[aIndex] = aExpect;
+        iProteinSummedIntensities[aIndex] = aSummedIntensity;
+    }
+
+    /**
+     * Sets the protein description of a peptide.
+     *
+     * @param aIndex the index of the peptide
+     * @param aDescription the protein description
+     */
+    void setProteinDescription(int aIndex, String aDescription) {
+        iProteinDescriptions[aIndex] = intern(aDescription);
+    }
+
+    /**
+     * Sets the FASTA file path of a peptide.
+     *
+     * @param aIndex the index of the peptide
+     * @param aFastaFilePath the FASTA file path
+     */
+    void setFastaFilePath(int aIndex, String aFastaFilePath) {
+        iFastaFilePaths[aIndex] = intern(aFastaFilePath);
+    }
+
+    /**
+     * Sets the details of a peptide.
+     *
+     * @param aIndex the index of the peptide
+     * @param aStart the start position
+     * @param aEnd the end position
+     * @param aSequence the sequence
+     */
+    void setPeptideDetails(int aIndex, int aStart, int aEnd, String aSequence) {
+        iPeptideStarts[aIndex] = aStart;
+        iPeptideEnds[aIndex] = aEnd;
+        iPeptideSequences[aIndex] = internSequence(aSequence);
+    }
+
+    /**
+     * Adds a domain to the last added peptide.
+     *
+     * @param aDomainId the domain id
+     * @param aStart the start position
+     * @param aExpect the expectation value
+     * @param aSequence the domain sequence
+     * @return the index of the domain
+     */
+    int addDomain(String aDomainId, int aStart, double aExpect, String aSequence) {
+        ensureDomainCapacity(iDomainCount + 1);
+        int index = iDomainCount++;
+        iDomainIds[index] = aDomainId;
+        iDomainStarts[index] = aStart;
+        iDomainExpects[index] = aExpect;
+        iDomainSequences[index] = internSequence(aSequence);
+        iDomainEnds[index] = NO_VALUE;
+        iDomainMhs[index] = Double.NaN;
+        iDomainDeltas[index] = Double.NaN;
+        iDomainHyperScores[index] = Double.NaN;
+        iDomainNextScores[index] = Double.NaN;
+        iDomainBScores[index] = Double.NaN;
+        iDomainBIons[index] = NO_VALUE;
+        iDomainYScores[index] = Double.NaN;
+        iDomainYIons[index] = NO_VALUE;
+        iMissedCleavages[index] = NO_VALUE;
+        iFirstModifications[index] = iModificationCount;
+        return index;
+    }
+
+    /**
+     * Sets the details of a domain.
+     *
+     * @param aIndex the index of the domain
+     * @param aEnd the end position
+     * @param aMh the calculated peptide mass + a proton
+     * @param aDelta the mass delta
+     * @param aHyperScore the hyper score
+     * @param aNextScore the next score
+     * @param aBScore the b ion score
+     * @param aBIons the number of b ions
+     * @param aYScore the y ion score
+     * @param aYIons the number of y ions
+     * @param aUpFlankSequence the upstream flanking sequence
+     * @param aDownFlankSequence the downstream flanking sequence
+     * @param aMissedCleavages the number of missed cleavages
+     */
+    void setDomainDetails(int aIndex, int aEnd, double aMh, double aDelta, double aHyperScore, double aNextScore,
+            double aBScore, int aBIons, double aYScore, int aYIons, String aUpFlankSequence, String aDownFlankSequence,
+            int aMissedCleavages) {
+        iDomainEnds[aIndex] = aEnd;
+        iDomainMhs[aIndex] = aMh;
+        iDomainDeltas[aIndex] = aDelta;
+        iDomainHyperScores[aIndex] = aHyperScore;
+        iDomainNextScores[aIndex] = aNextScore;
+        iDomainBScores[aIndex] = aBScore;
+        iDomainBIons[aIndex] = aBIons;
+        iDomainYScores[aIndex] = aYScore;
+        iDomainYIons[aIndex] = aYIons;
+        iUpFlankSequences[aIndex] = internSequence(aUpFlankSequence);
+        iDownFlankSequences[aIndex] = internSequence(aDownFlankSequence);
+        iMissedCleavages[aIndex] = aMissedCleavages;
+    }
+
+    /**
+     * Adds a modification to the last added domain.
+     *
+     * @param aPosition the position of the modified residue
+     * @param aMass the mass change caused by the modification
+     * @param aModifiedResidue the modified residue
+     * @param aSubstitutedAminoAcid the substituted amino acid, null if not a
+     * point mutation
+     * @return the index of the modification
+     */
+    int addModification(int aPosition, double aMass, String aModifiedResidue, String aSubstitutedAminoAcid) {
+        ensureModificationCapacity(iModificationCount + 1);
+        int index = iModificationCount++;
+        iModificationPositions[index] = aPosition;
+        iModificationMasses[index] = aMass;
+        iModifiedResidues[index] = intern(aModifiedResidue);
+        iSubstitutedAminoAcids[index] = intern(aSubstitutedAminoAcid);
+        return index;
+    }
+
+    /**
+     * Sets the text of a double value as written in the file, see
+     * {@link NumberTextColumn}.
+     *
+     * @param aColumn the text column, e.g., {@link #SPECTRUM_EXPECT}
+     * @param aIndex the index of the spectrum, peptide, domain or
+     * modification
+     * @param aText the text holding the value
+     * @param aStart the index of the first character
+     * @param aEnd the index after the last character
+     */
+    void setNumberText(int aColumn, int aIndex, CharSequence aText, int aStart, int aEnd) {
+        iNumberTexts[aColumn].set(aIndex, aText, aStart, aEnd);
+    }
+
+    /**
+     * Returns the text of a double value as written in the file.
+     *
+     * @param aColumn the text column, e.g., {@link #SPECTRUM_EXPECT}
+     * @param aIndex the index of the spectrum, peptide, domain or
+     * modification
+     * @param aValue the value
+     * @return the text, formatted from the value if no text was set, null if
+     * the value is missing
+     */
+    String getNumberText(int aColumn, int aIndex, double aValue) {
+        return iNumberTexts[aColumn].get(aIndex, aValue);
+    }
+
+    /**
+     * Creates the text columns.
+     *
+     * @param aCapacity the initial capacity
+     * @return the text columns
+     */
+    private static NumberTextColumn[] newNumberTexts(int aCapacity) {
+        NumberTextColumn[] numberTexts = new NumberTextColumn[FIRST_TEXT_COLUMNS[FIRST_TEXT_COLUMNS.length - 1]];
+        for (int c = 0; c < numberTexts.length; c++) {
+            numberTexts[c] = new NumberTextColumn(aCapacity);
+        }
+        return numberTexts;
+    }
+
+    /**
+     * Returns the number of spectra.
+     *
+     * @return the number of spectra
+     */
+    public int getNumberOfSpectra() {
+        return iSpectrumCount;
+    }
+
+    /**
+     * Returns the spectrum number of a spectrum, i.e., its position in the
+     * file starting from one.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the spectrum number
+     */
+    public int getSpectrumNumber(int aSpectrum) {
+        return iFirstSpectrumNumber + aSpectrum;
+    }
+
+    /**
+     * Sets the number of the first spectrum in the store.
+     *
+     * @param aFirstSpectrumNumber the number of the first spectrum
+     */
+    void setFirstSpectrumNumber(int aFirstSpectrumNumber) {
+        iFirstSpectrumNumber = aFirstSpectrumNumber;
+    }
+
+    /**
+     * Sets the dictionary interning the protein labels, descriptions and
+     * FASTA file paths, the sequences, the spectrum labels and the modified
+     * residues added afterwards.
+     *
+     * @param aStringDictionary the dictionary, null to keep the strings as
+     * given
+     */
+    void setStringDictionary(StringDictionary aStringDictionary) {
+        iStringDictionary = aStringDictionary;
+    }
+
+    /**
+     * Returns the dictionary interning the repeated strings.
+     *
+     * @return the dictionary, null if the strings are kept as given or the
+     * store was deserialized
+     */
+    public StringDictionary getStringDictionary() {
+        return iStringDictionary;
+    }
+
+    /**
+     * Interns a string with the dictionary, if any.
+     *
+     * @param aString the string, may be null
+     * @return the stored string equal to the given one
+     */
+    private String intern(String aString) {
+        return iStringDictionary == null ? aString : iStringDictionary.intern(aString);
+    }
+
+    /**
+     * Packs a sequence, sharing the instance with the dictionary, if any.
+     *
+     * @param aSequence the sequence, may be null
+     * @return the stored sequence equal to the given one
+     */
+    private AminoAcidSequence internSequence(String aSequence) {
+        return iStringDictionary == null ? AminoAcidSequence.valueOf(aSequence) : iStringDictionary.internSequence(aSequence);
+    }
+
+    /**
+     * Returns the spectrum id.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the spectrum id
+     */
+    public int getSpectrumId(int aSpectrum) {
+        return iSpectrumIds[aSpectrum];
+    }
+
+    /**
+     * Returns the precursor charge.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the precursor charge
+     */
+    public int getPrecursorCharge(int aSpectrum) {
+        return iPrecursorCharges[aSpectrum];
+    }
+
+    /**
+     * Returns the expectation value of the top ranked identification of the
+     * spectrum.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the expectation value
+     */
+    public double getSpectrumExpect(int aSpectrum) {
+        return iSpectrumExpects[aSpectrum];
+    }
+
+    /**
+     * Returns the precursor mass.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the precursor mass
+     */
+    public double getPrecursorMh(int aSpectrum) {
+        return iPrecursorMhs[aSpectrum];
+    }
+
+    /**
+     * Returns the precursor retention time.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the precursor retention time
+     */
+    public String getRetentionTime(int aSpectrum) {
+        return iRetentionTimes[aSpectrum];
+    }
+
+    /**
+     * Returns the label of the spectrum.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the label
+     */
+    public String getSpectrumLabel(int aSpectrum) {
+        return iSpectrumLabels[aSpectrum];
+    }
+
+    /**
+     * Returns the log10 value of the sum of the fragment ion intensities.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the summed intensity
+     */
+    public double getSummedIntensity(int aSpectrum) {
+        return iSummedIntensities[aSpectrum];
+    }
+
+    /**
+     * Returns the maximum fragment ion intensity.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the maximum fragment ion intensity
+     */
+    public double getMaxIntensity(int aSpectrum) {
+        return iMaxIntensities[aSpectrum];
+    }
+
+    /**
+     * Returns the multiplier to convert the normalized spectrum back to the
+     * original intensity values.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the intensity multiplier
+     */
+    public double getIntensityMultiplier(int aSpectrum) {
+        return iIntensityMultipliers[aSpectrum];
+    }
+
+    /**
+     * Returns the index of the first peptide of a spectrum.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the index of the first peptide
+     */
+    public int getFirstPeptide(int aSpectrum) {
+        return iFirstPeptides[aSpectrum];
+    }
+
+    /**
+     * Returns the number of peptides of a spectrum.
+     *
+     * @param aSpectrum the index of the spectrum
+     * @return the number of peptides
+     */
+    public int getPeptideCount(int aSpectrum) {
+        int end = aSpectrum + 1 < iSpectrumCount ? iFirstPeptides[aSpectrum + 1] : iPeptideCount;
+        return end - iFirstPeptides[aSpectrum];
+    }
+
+    /**
+     * Returns the total number of peptides.
+     *
+     * @return the number of peptides
+     */
+    public int getNumberOfPeptides() {
+        return iPeptideCount;
+    }
+
+    /**
+     * Returns the id of the protein of a peptide, e.g. 171.1.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the protein id
+     */
+    public String getProteinId(int aPeptide) {
+        return iProteinIds[aPeptide];
+    }
+
+    /**
+     * Returns the key of the protein of a peptide, i.e., the protein label.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the protein key
+     */
+    public String getProteinKey(int aPeptide) {
+        return iProteinKeys[aPeptide];
+    }
+
+    /**
+     * Returns the uid of the protein of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the protein uid
+     */
+    public int getProteinUid(int aPeptide) {
+        return iProteinUids[aPeptide];
+    }
+
+    /**
+     * Returns the expectation value of the protein of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the protein expectation value
+     */
+    public double getProteinExpect(int aPeptide) {
+        return iProteinExpects[aPeptide];
+    }
+
+    /**
+     * Returns the summed intensity of the protein of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the summed intensity
+     */
+    public double getProteinSummedIntensity(int aPeptide) {
+        return iProteinSummedIntensities[aPeptide];
+    }
+
+    /**
+     * Returns the description of the protein of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the protein description
+     */
+    public String getProteinDescription(int aPeptide) {
+        return iProteinDescriptions[aPeptide];
+    }
+
+    /**
+     * Returns the FASTA file path of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the FASTA file path
+     */
+    public String getFastaFilePath(int aPeptide) {
+        return iFastaFilePaths[aPeptide];
+    }
+
+    /**
+     * Returns the start position of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the start position
+     */
+    public int getPeptideStart(int aPeptide) {
+        return iPeptideStarts[aPeptide];
+    }
+
+    /**
+     * Returns the end position of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the end position
+     */
+    public int getPeptideEnd(int aPeptide) {
+        return iPeptideEnds[aPeptide];
+    }
+
+    /**
+     * Returns the sequence of a peptide as given in the file, i.e., not
+     * trimmed.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the sequence
+     */
+    public String getPeptideSequence(int aPeptide) {
+        return AminoAcidSequence.toString(iPeptideSequences[aPeptide]);
+    }
+
+    /**
+     * Returns the packed sequence of a peptide as given in the file, i.e.,
+     * not trimmed. The instance is shared by all the peptides with this
+     * sequence.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the packed sequence
+     */
+    public AminoAcidSequence getPackedPeptideSequence(int aPeptide) {
+        return iPeptideSequences[aPeptide];
+    }
+
+    /**
+     * Returns the index of the first domain of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the index of the first domain
+     */
+    public int getFirstDomain(int aPeptide) {
+        return iFirstDomains[aPeptide];
+    }
+
+    /**
+     * Returns the number of domains of a peptide.
+     *
+     * @param aPeptide the index of the peptide
+     * @return the number of domains
+     */
+    public int getDomainCount(int aPeptide) {
+        int end = aPeptide + 1 < iPeptideCount ? iFirstDomains[aPeptide + 1] : iDomainCount;
+        return end - iFirstDomains[aPeptide];
+    }
+
+    /**
+     * Returns the total number of domains.
+     *
+     * @return the number of domains
+     */
+    public int getNumberOfDomains() {
+        return iDomainCount;
+    }
+
+    /**
+     * Returns the domain id, (spectrum#).(id#).(domain#).
+     *
+     * @param aDomain the index of the domain
+     * @return the domain id
+     */
+    public String getDomainId(int aDomain) {
+        return iDomainIds[aDomain];
+    }
+
+    /**
+     * Returns the start position of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the start position
+     */
+    public int getDomainStart(int aDomain) {
+        return iDomainStarts[aDomain];
+    }
+
+    /**
+     * Returns the end position of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the end position
+     */
+    public int getDomainEnd(int aDomain) {
+        return iDomainEnds[aDomain];
+    }
+
+    /**
+     * Returns the expectation value of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the expectation value
+     */
+    public double getDomainExpect(int aDomain) {
+        return iDomainExpects[aDomain];
+    }
+
+    /**
+     * Returns the calculated peptide mass + a proton of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the calculated peptide mass + a proton
+     */
+    public double getDomainMh(int aDomain) {
+        return iDomainMhs[aDomain];
+    }
+
+    /**
+     * Returns the spectrum mh minus the calculated mh of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the mass delta
+     */
+    public double getDomainDelta(int aDomain) {
+        return iDomainDeltas[aDomain];
+    }
+
+    /**
+     * Returns the hyper score of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the hyper score
+     */
+    public double getDomainHyperScore(int aDomain) {
+        return iDomainHyperScores[aDomain];
+    }
+
+    /**
+     * Returns the next score of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the next score
+     */
+    public double getDomainNextScore(int aDomain) {
+        return iDomainNextScores[aDomain];
+    }
+
+    /**
+     * Returns the b ion score of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the b ion score
+     */
+    public double getDomainBScore(int aDomain) {
+        return iDomainBScores[aDomain];
+    }
+
+    /**
+     * Returns the number of b ions of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the number of b ions
+     */
+    public int getDomainBIons(int aDomain) {
+        return iDomainBIons[aDomain];
+    }
+
+    /**
+     * Returns the y ion score of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the y ion score
+     */
+    public double getDomainYScore(int aDomain) {
+        return iDomainYScores[aDomain];
+    }
+
+    /**
+     * Returns the number of y ions of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the number of y ions
+     */
+    public int getDomainYIons(int aDomain) {
+        return iDomainYIons[aDomain];
+    }
+
+    /**
+     * Returns the upstream flanking sequence of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the upstream flanking sequence
+     */
+    public String getUpFlankSequence(int aDomain) {
+        return AminoAcidSequence.toString(iUpFlankSequences[aDomain]);
+    }
+
+    /**
+     * Returns the packed upstream flanking sequence of a domain. The instance is shared by
+     * all the domains with this sequence.
+     *
+     * @param aDomain the index of the domain
+     * @return the packed upstream flanking sequence
+     */
+    public AminoAcidSequence getPackedUpFlankSequence(int aDomain) {
+        return iUpFlankSequences[aDomain];
+    }
+
+    /**
+     * Returns the downstream flanking sequence of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the downstream flanking sequence
+     */
+    public String getDownFlankSequence(int aDomain) {
+        return AminoAcidSequence.toString(iDownFlankSequences[aDomain]);
+    }
+
+    /**
+     * Returns the packed downstream flanking sequence of a domain. The instance is shared by
+     * all the domains with this sequence.
+     *
+     * @param aDomain the index of the domain
+     * @return the packed downstream flanking sequence
+     */
+    public AminoAcidSequence getPackedDownFlankSequence(int aDomain) {
+        return iDownFlankSequences[aDomain];
+    }
+
+    /**
+     * Returns the sequence of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the domain sequence
+     */
+    public String getDomainSequence(int aDomain) {
+        return AminoAcidSequence.toString(iDomainSequences[aDomain]);
+    }
+
+    /**
+     * Returns the packed sequence of a domain. The instance is shared by all
+     * the domains with this sequence.
+     *
+     * @param aDomain the index of the domain
+     * @return the packed domain sequence
+     */
+    public AminoAcidSequence getPackedDomainSequence(int aDomain) {
+        return iDomainSequences[aDomain];
+    }
+
+    /**
+     * Returns the number of missed cleavages of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the number of missed cleavages
+     */
+    public int getMissedCleavages(int aDomain) {
+        return iMissedCleavages[aDomain];
+    }
+
+    /**
+     * Returns the index of the first modification of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the index of the first modification
+     */
+    public int getFirstModification(int aDomain) {
+        return iFirstModifications[aDomain];
+    }
+
+    /**
+     * Returns the number of modifications of a domain.
+     *
+     * @param aDomain the index of the domain
+     * @return the number of modifications
+     */
+    public int getModificationCount(int aDomain) {
+        int end = aDomain + 1 < iDomainCount ? iFirstModifications[aDomain + 1] : iModificationCount;
+        return end - iFirstModifications[aDomain];
+    }
+
+    /**
+     * Returns the total number of modifications.
+     *
+     * @return the number of modifications
+     */
+    public int getNumberOfModifications() {
+        return iModificationCount;
+    }
+
+    /**
+     * Returns the position of the modified residue.
+     *
+     * @param aModification the index of the modification
+     * @return the position of the modified residue
+     */
+    public int getModificationPosition(int aModification) {
+        return iModificationPositions[aModification];
+    }
+
+    /**
+     * Returns the residue mass change caused by the modification.
+     *
+     * @param aModification the index of the modification
+     * @return the modification mass
+     */
+    public double getModificationMass(int aModification) {
+        return iModificationMasses[aModification];
+    }
+
+    /**
+     * Returns the single letter abbreviation of the modified residue.
+     *
+     * @param aModification the index of the modification
+     * @return the modified residue
+     */
+    public String getModifiedResidue(int aModification) {
+        return iModifiedResidues[aModification];
+    }
+
+    /**
+     * Returns the substituted amino acid of a point mutation.
+     *
+     * @param aModification the index of the modification
+     * @return the substituted amino acid, null if not a point mutation
+     */
+    public String getSubstitutedAminoAcid(int aModification) {
+        return iSubstitutedAminoAcids[aModification];
+    }
+
+    /**
+     * Returns the name of the modification, i.e., mass@residue.
+     *
+     * @param aModification the index of the modification
+     * @return the modification name
+     */
+    public String getModificationName(int aModification) {
+        return iModificationMasses[aModification] + "@" + iModifiedResidues[aModification];
+    }
+
+    /**
+     * Appends the entries of another store, e.g., of a part of the file parsed
+     * on another thread. The spectra of the other store are added after the
+     * spectra of this store.
+     *
+     * @param aResultStore the store to append
+     */
+    void append(XTandemResultStore aResultStore) {
+        ensureSpectrumCapacity(iSpectrumCount + aResultStore.iSpectrumCount);
+        ensurePeptideCapacity(iPeptideCount + aResultStore.iPeptideCount);
+        ensureDomainCapacity(iDomainCount + aResultStore.iDomainCount);
+        ensureModificationCapacity(iModificationCount + aResultStore.iModificationCount);
+
+        System.arraycopy(aResultStore.iSpectrumIds, 0, iSpectrumIds, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iPrecursorCharges, 0, iPrecursorCharges, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iSpectrumExpects, 0, iSpectrumExpects, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iPrecursorMhs, 0, iPrecursorMhs, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iRetentionTimes, 0, iRetentionTimes, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iSpectrumLabels, 0, iSpectrumLabels, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iSummedIntensities, 0, iSummedIntensities, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iMaxIntensities, 0, iMaxIntensities, iSpectrumCount, aResultStore.iSpectrumCount);
+        System.arraycopy(aResultStore.iIntensityMultipliers, 0, iIntensityMultipliers, iSpectrumCount, aResultStore.iSpectrumCount);
+        for (int i = 0; i < aResultStore.iSpectrumCount; i++) {
+            iFirstPeptides[iSpectrumCount + i] = aResultStore.iFirstPeptides[i] + iPeptideCount;
+        }
+
+        System.arraycopy(aResultStore.iProteinIds, 0, iProteinIds, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iProteinKeys, 0, iProteinKeys, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iProteinUids, 0, iProteinUids, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iProteinExpects, 0, iProteinExpects, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iProteinSummedIntensities, 0, iProteinSummedIntensities, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iProteinDescriptions, 0, iProteinDescriptions, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iFastaFilePaths, 0, iFastaFilePaths, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iPeptideStarts, 0, iPeptideStarts, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iPeptideEnds, 0, iPeptideEnds, iPeptideCount, aResultStore.iPeptideCount);
+        System.arraycopy(aResultStore.iPeptideSequences, 0, iPeptideSequences, iPeptideCount, aResultStore.iPeptideCount);
+        for (int i = 0; i < aResultStore.iPeptideCount; i++) {
+            iFirstDomains[iPeptideCount + i] = aResultStore.iFirstDomains[i] + iDomainCount;
+        }
+
+        System.arraycopy(aResultStore.iDomainIds, 0, iDomainIds, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainStarts, 0, iDomainStarts, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainEnds, 0, iDomainEnds, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainExpects, 0, iDomainExpects, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainMhs, 0, iDomainMhs, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainDeltas, 0, iDomainDeltas, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainHyperScores, 0, iDomainHyperScores, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainNextScores, 0, iDomainNextScores, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainBScores, 0, iDomainBScores, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainBIons, 0, iDomainBIons, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainYScores, 0, iDomainYScores, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainYIons, 0, iDomainYIons, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iUpFlankSequences, 0, iUpFlankSequences, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDownFlankSequences, 0, iDownFlankSequences, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iDomainSequences, 0, iDomainSequences, iDomainCount, aResultStore.iDomainCount);
+        System.arraycopy(aResultStore.iMissedCleavages, 0, iMissedCleavages, iDomainCount, aResultStore.iDomainCount);
+        for (int i = 0; i < aResultStore.iDomainCount; i++) {
+            iFirstModifications[iDomainCount + i] = aResultStore.iFirstModifications[i] + iModificationCount;
+        }
+
+        System.arraycopy(aResultStore.iModificationPositions, 0, iModificationPositions, iModificationCount, aResultStore.iModificationCount);
+        System.arraycopy(aResultStore.iModificationMasses, 0, iModificationMasses, iModificationCount, aResultStore.iModificationCount);
+        System.arraycopy(aResultStore.iModifiedResidues, 0, iModifiedResidues, iModificationCount, aResultStore.iModificationCount);
+        System.arraycopy(aResultStore.iSubstitutedAminoAcids, 0, iSubstitutedAminoAcids, iModificationCount, aResultStore.iModificationCount);
+
+        int[] counts = {iSpectrumCount, iPeptideCount, iDomainCount, iModificationCount};
+        int[] appendedCounts = {aResultStore.iSpectrumCount, aResultStore.iPeptideCount, aResultStore.iDomainCount, aResultStore.iModificationCount};
+        for (int entity = 0; entity < counts.length; entity++) {
+            for (int c = FIRST_TEXT_COLUMNS[entity]; c < FIRST_TEXT_COLUMNS[entity + 1]; c++) {
+                iNumberTexts[c].append(aResultStore.iNumberTexts[c], appendedCounts[entity], counts[entity]);
+            }
+        }
+
+        iSpectrumCount += aResultStore.iSpectrumCount;
+        iPeptideCount += aResultStore.iPeptideCount;
+        iDomainCount += aResultStore.iDomainCount;
+        iModificationCount += aResultStore.iModificationCount;
+    }
+
+    /**
+     * Removes the entries added after the store held the given numbers of
+     * entries, e.g., the entries of a group whose parsing was abandoned.
+     *
+     * @param aSpectrumCount the number of spectra to keep
+     * @param aPeptideCount the number of peptides to keep
+     * @param aDomainCount the number of domains to keep
+     * @param aModificationCount the number of modifications to keep
+     */
+    void truncate(int aSpectrumCount, int aPeptideCount, int aDomainCount, int aModificationCount) {
+        Arrays.fill(iRetentionTimes, aSpectrumCount, iSpectrumCount, null);
+        Arrays.fill(iSpectrumLabels, aSpectrumCount, iSpectrumCount, null);
+
+        Arrays.fill(iProteinIds, aPeptideCount, iPeptideCount, null);
+        Arrays.fill(iProteinKeys, aPeptideCount, iPeptideCount, null);
+        Arrays.fill(iProteinDescriptions, aPeptideCount, iPeptideCount, null);
+        Arrays.fill(iFastaFilePaths, aPeptideCount, iPeptideCount, null);
+        Arrays.fill(iPeptideSequences, aPeptideCount, iPeptideCount, null);
+
+        Arrays.fill(iDomainIds, aDomainCount, iDomainCount, null);
+        Arrays.fill(iUpFlankSequences, aDomainCount, iDomainCount, null);
+        Arrays.fill(iDownFlankSequences, aDomainCount, iDomainCount, null);
+        Arrays.fill(iDomainSequences, aDomainCount, iDomainCount, null);
+
+        Arrays.fill(iModifiedResidues, aModificationCount, iModificationCount, null);
+        Arrays.fill(iSubstitutedAminoAcids, aModificationCount, iModificationCount, null);
+
+        int[] counts = {iSpectrumCount, iPeptideCount, iDomainCount, iModificationCount};
+        int[] keptCounts = {aSpectrumCount, aPeptideCount, aDomainCount, aModificationCount};
+        for (int entity = 0; entity < counts.length; entity++) {
+            for (int c = FIRST_TEXT_COLUMNS[entity]; c < FIRST_TEXT_COLUMNS[entity + 1]; c++) {
+                iNumberTexts[c].clear(keptCounts[entity], counts[entity]);
+            }
+        }
+
+        iSpectrumCount = aSpectrumCount;
+        iPeptideCount = aPeptideCount;
+        iDomainCount = aDomainCount;
+        iModificationCount = aModificationCount;
+    }
+
+    /**
+     * Trims the capacity of the arrays to the number of stored entries.
+     */
+    void trimToSize() {
+        iSpectrumIds = Arrays.copyOf(iSpectrumIds, iSpectrumCount);
+        iPrecursorCharges = Arrays.copyOf(iPrecursorCharges, iSpectrumCount);
+        iSpectrumExpects = Arrays.copyOf(iSpectrumExpects, iSpectrumCount);
+        iPrecursorMhs = Arrays.copyOf(iPrecursorMhs, iSpectrumCount);
+        iRetentionTimes = Arrays.copyOf(iRetentionTimes, iSpectrumCount);
+        iSpectrumLabels = Arrays.copyOf(iSpectrumLabels, iSpectrumCount);
+        iSummedIntensities = Arrays.copyOf(iSummedIntensities, iSpectrumCount);
+        iMaxIntensities = Arrays.copyOf(iMaxIntensities, iSpectrumCount);
+        iIntensityMultipliers = Arrays.copyOf(iIntensityMultipliers, iSpectrumCount);
+        iFirstPeptides = Arrays.copyOf(iFirstPeptides, iSpectrumCount);
+
+        iProteinIds = Arrays.copyOf(iProteinIds, iPeptideCount);
+        iProteinKeys = Arrays.copyOf(iProteinKeys, iPeptideCount);
+        iProteinUids = Arrays.copyOf(iProteinUids, iPeptideCount);
+        iProteinExpects = Arrays.copyOf(iProteinExpects, iPeptideCount);
+        iProteinSummedIntensities = Arrays.copyOf(iProteinSummedIntensities, iPeptideCount);
+        iProteinDescriptions = Arrays.copyOf(iProteinDescriptions, iPeptideCount);
+        iFastaFilePaths = Arrays.copyOf(iFastaFilePaths, iPeptideCount);
+        iPeptideStarts = Arrays.copyOf(iPeptideStarts, iPeptideCount);
+        iPeptideEnds = Arrays.copyOf(iPeptideEnds, iPeptideCount);
+        iPeptideSequences = Arrays.copyOf(iPeptideSequences, iPeptideCount);
+        iFirstDomains = Arrays.copyOf(iFirstDomains, iPeptideCount);
+
+        iDomainIds = Arrays.copyOf(iDomainIds, iDomainCount);
+        iDomainStarts = Arrays.copyOf(iDomainStarts, iDomainCount);
+        iDomainEnds = Arrays.copyOf(iDomainEnds, iDomainCount);
+        iDomainExpects = Arrays.copyOf(iDomainExpects, iDomainCount);
+        iDomainMhs = Arrays.copyOf(iDomainMhs, iDomainCount);
+        iDomainDeltas = Arrays.copyOf(iDomainDeltas, iDomainCount);
+        iDomainHyperScores = Arrays.copyOf(iDomainHyperScores, iDomainCount);
+        iDomainNextScores = Arrays.copyOf(iDomainNextScores, iDomainCount);
+        iDomainBScores = Arrays.copyOf(iDomainBScores, iDomainCount);
+        iDomainBIons = Arrays.copyOf(iDomainBIons, iDomainCount);
+        iDomainYScores = Arrays.copyOf(iDomainYScores, iDomainCount);
+        iDomainYIons = Arrays.copyOf(iDomainYIons, iDomainCount);
+        iUpFlankSequences = Arrays.copyOf(iUpFlankSequences, iDomainCount);
+        iDownFlankSequences = Arrays.copyOf(iDownFlankSequences, iDomainCount);
+        iDomainSequences = Arrays.copyOf(iDomainSequences, iDomainCount);
+        iMissedCleavages = Arrays.copyOf(iMissedCleavages, iDomainCount);
+        iFirstModifications = Arrays.copyOf(iFirstModifications, iDomainCount);
+
+        iModificationPositions = Arrays.copyOf(iModificationPositions, iModificationCount);
+        iModificationMasses = Arrays.copyOf(iModificationMasses, iModificationCount);
+        iModifiedResidues = Arrays.copyOf(iModifiedResidues, iModificationCount);
+        iSubstitutedAminoAcids = Arrays.copyOf(iSubstitutedAminoAcids, iModificationCount);
+
+        int[] counts = {iSpectrumCount, iPeptideCount, iDomainCount, iModificationCount};
+        for (int entity = 0; entity < counts.length; entity++) {
+            for (int c = FIRST_TEXT_COLUMNS[entity]; c < FIRST_TEXT_COLUMNS[entity + 1]; c++) {
+                iNumberTexts[c].trimToSize(counts[entity]);
+            }
+        }
+    }
+
+    /**
+     * Writes the entries to the binary format of parsed files.
+     *
+     * @param aOutput the output
+     * @exception IOException if the entries could not be written
+     */
+    void write(DataOutputStream aOutput) throws IOException {
+        aOutput.writeInt(iFirstSpectrumNumber);
+        aOutput.writeInt(iSpectrumCount);
+        aOutput.writeInt(iPeptideCount);
+        aOutput.writeInt(iDomainCount);
+        aOutput.writeInt(iModificationCount);
+
+        BinaryBlocks.writeInts(aOutput, iSpectrumIds, iSpectrumCount);
+        BinaryBlocks.writeInts(aOutput, iPrecursorCharges, iSpectrumCount);
+        BinaryBlocks.writeDoubles(aOutput, iSpectrumExpects, iSpectrumCount);
+        BinaryBlocks.writeDoubles(aOutput, iPrecursorMhs, iSpectrumCount);
+        BinaryBlocks.writeStrings(aOutput, iRetentionTimes, iSpectrumCount);
+        BinaryBlocks.writeStrings(aOutput, iSpectrumLabels, iSpectrumCount);
+        BinaryBlocks.writeDoubles(aOutput, iSummedIntensities, iSpectrumCount);
+        BinaryBlocks.writeDoubles(aOutput, iMaxIntensities, iSpectrumCount);
+        BinaryBlocks.writeDoubles(aOutput, iIntensityMultipliers, iSpectrumCount);
+        BinaryBlocks.writeInts(aOutput, iFirstPeptides, iSpectrumCount);
+
+        BinaryBlocks.writeStrings(aOutput, iProteinIds, iPeptideCount);
+        BinaryBlocks.writeStrings(aOutput, iProteinKeys, iPeptideCount);
+        BinaryBlocks.writeInts(aOutput, iProteinUids, iPeptideCount);
+        BinaryBlocks.writeDoubles(aOutput, iProteinExpects, iPeptideCount);
+        BinaryBlocks.writeDoubles(aOutput, iProteinSummedIntensities, iPeptideCount);
+        BinaryBlocks.writeStrings(aOutput, iProteinDescriptions, iPeptideCount);
+        BinaryBlocks.writeStrings(aOutput, iFastaFilePaths, iPeptideCount);
+        BinaryBlocks.writeInts(aOutput, iPeptideStarts, iPeptideCount);
+        BinaryBlocks.writeInts(aOutput, iPeptideEnds, iPeptideCount);
+        writeSequences(aOutput, iPeptideSequences, iPeptideCount);
+        BinaryBlocks.writeInts(aOutput, iFirstDomains, iPeptideCount);
+
+        BinaryBlocks.writeStrings(aOutput, iDomainIds, iDomainCount);
+        BinaryBlocks.writeInts(aOutput, iDomainStarts, iDomainCount);
+        BinaryBlocks.writeInts(aOutput, iDomainEnds, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainExpects, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainMhs, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainDeltas, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainHyperScores, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainNextScores, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainBScores, iDomainCount);
+        BinaryBlocks.writeInts(aOutput, iDomainBIons, iDomainCount);
+        BinaryBlocks.writeDoubles(aOutput, iDomainYScores, iDomainCount);
+        BinaryBlocks.writeInts(aOutput, iDomainYIons, iDomainCount);
+        writeSequences(aOutput, iUpFlankSequences, iDomainCount);
+        writeSequences(aOutput, iDownFlankSequences, iDomainCount);
+        writeSequences(aOutput, iDomainSequences, iDomainCount);
+        BinaryBlocks.writeInts(aOutput, iMissedCleavages, iDomainCount);
+        BinaryBlocks.writeInts(aOutput, iFirstModifications, iDomainCount);
+
+        BinaryBlocks.writeInts(aOutput, iModificationPositions, iModificationCount);
+        BinaryBlocks.writeDoubles(aOutput, iModificationMasses, iModificationCount);
+        BinaryBlocks.writeStrings(aOutput, iModifiedResidues, iModificationCount);
+        BinaryBlocks.writeStrings(aOutput, iSubstitutedAminoAcids, iModificationCount);
+
+        int[] counts = {iSpectrumCount, iPeptideCount, iDomainCount, iModificationCount};
+        for (int entity = 0; entity < counts.length; entity++) {
+            for (int c = FIRST_TEXT_COLUMNS[entity]; c < FIRST_TEXT_COLUMNS[entity + 1]; c++) {
+                iNumberTexts[c].write(aOutput, counts[entity]);
+            }
+        }
+    }
+
+    /**
+     * Reads the entries written by {@link #write(DataOutputStream)}. The
+     * strings repeated in a column are shared, and so are the sequences of
+     * all the sequence columns.
+     *
+     * @param aInput the input, positioned after the entries afterwards
+     * @return the result store
+     */
+    static XTandemResultStore read(ByteBuffer aInput) {
+        XTandemResultStore resultStore = new XTandemResultStore();
+        HashMap<String, AminoAcidSequence> sequences = new HashMap<String, AminoAcidSequence>();
+        resultStore.iFirstSpectrumNumber = aInput.getInt();
+        resultStore.iSpectrumCount = aInput.getInt();
+        resultStore.iPeptideCount = aInput.getInt();
+        resultStore.iDomainCount = aInput.getInt();
+        resultStore.iModificationCount = aInput.getInt();
+
+        resultStore.iSpectrumIds = BinaryBlocks.readInts(aInput);
+        resultStore.iPrecursorCharges = BinaryBlocks.readInts(aInput);
+        resultStore.iSpectrumExpects = BinaryBlocks.readDoubles(aInput);
+        resultStore.iPrecursorMhs = BinaryBlocks.readDoubles(aInput);
+        resultStore.iRetentionTimes = BinaryBlocks.readStrings(aInput);
+        resultStore.iSpectrumLabels = BinaryBlocks.readStrings(aInput);
+        resultStore.iSummedIntensities = BinaryBlocks.readDoubles(aInput);
+        resultStore.iMaxIntensities = BinaryBlocks.readDoubles(aInput);
+        resultStore.iIntensityMultipliers = BinaryBlocks.readDoubles(aInput);
+        resultStore.iFirstPeptides = BinaryBlocks.readInts(aInput);
+
+        resultStore.iProteinIds = BinaryBlocks.readStrings(aInput);
+        resultStore.iProteinKeys = BinaryBlocks.readStrings(aInput);
+        resultStore.iProteinUids = BinaryBlocks.readInts(aInput);
+        resultStore.iProteinExpects = BinaryBlocks.readDoubles(aInput);
+        resultStore.iProteinSummedIntensities = BinaryBlocks.readDoubles(aInput);
+        resultStore.iProteinDescriptions = BinaryBlocks.readStrings(aInput);
+        resultStore.iFastaFilePaths = BinaryBlocks.readStrings(aInput);
+        resultStore.iPeptideStarts = BinaryBlocks.readInts(aInput);
+        resultStore.iPeptideEnds = BinaryBlocks.readInts(aInput);
+        resultStore.iPeptideSequences = readSequences(aInput, sequences);
+        resultStore.iFirstDomains = BinaryBlocks.readInts(aInput);
+
+        resultStore.iDomainIds = BinaryBlocks.readStrings(aInput);
+        resultStore.iDomainStarts = BinaryBlocks.readInts(aInput);
+        resultStore.iDomainEnds = BinaryBlocks.readInts(aInput);
+        resultStore.iDomainExpects = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainMhs = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainDeltas = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainHyperScores = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainNextScores = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainBScores = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainBIons = BinaryBlocks.readInts(aInput);
+        resultStore.iDomainYScores = BinaryBlocks.readDoubles(aInput);
+        resultStore.iDomainYIons = BinaryBlocks.readInts(aInput);
+        resultStore.iUpFlankSequences = readSequences(aInput, sequences);
+        resultStore.iDownFlankSequences = readSequences(aInput, sequences);
+        resultStore.iDomainSequences = readSequences(aInput, sequences);
+        resultStore.iMissedCleavages = BinaryBlocks.readInts(aInput);
+        resultStore.iFirstModifications = BinaryBlocks.readInts(aInput);
+
+        resultStore.iModificationPositions = BinaryBlocks.readInts(aInput);
+        resultStore.iModificationMasses = BinaryBlocks.readDoubles(aInput);
+        resultStore.iModifiedResidues = BinaryBlocks.readStrings(aInput);
+        resultStore.iSubstitutedAminoAcids = BinaryBlocks.readStrings(aInput);
+
+        for (int c = 0; c < resultStore.iNumberTexts.length; c++) {
+            resultStore.iNumberTexts[c] = NumberTextColumn.read(aInput);
+        }
+        return resultStore;
+    }
+
+    /**
+     * Writes the first sequences of a sequence column as strings, see
+     * {@link BinaryBlocks#writeStrings(DataOutputStream, String[], int)}.
+     *
+     * @param aOutput the output
+     * @param aSequences the sequences
+     * @param aCount the number of sequences to write
+     * @exception IOException if the sequences could not be written
+     */
+    private static void writeSequences(DataOutputStream aOutput, AminoAcidSequence[] aSequences, int aCount) throws IOException {
+        // the sequences are shared, unpack every instance once
+        IdentityHashMap<AminoAcidSequence, String> texts = new IdentityHashMap<AminoAcidSequence, String>();
+        String[] strings = new String[aCount];
+        for (int i = 0; i < aCount; i++) {
+            if (aSequences[i] != null) {
+                String text = texts.get(aSequences[i]);
+                if (text == null) {
+                    text = aSequences[i].toString();
+                    texts.put(aSequences[i], text);
+                }
+                strings[i] = text;
+            }
+        }
+        BinaryBlocks.writeStrings(aOutput, strings, aCount);
+    }
+
+    /**
+     * Reads a sequence column written by
+     * {@link #writeSequences(DataOutputStream, AminoAcidSequence[], int)}.
+     *
+     * @param aInput the input, positioned after the sequences afterwards
+     * @param aSequences the sequences read so far by string, the sequences
+     * read are added
+     * @return the sequences
+     */
+    private static AminoAcidSequence[] readSequences(ByteBuffer aInput, HashMap<String, AminoAcidSequence> aSequences) {
+        String[] strings = BinaryBlocks.readStrings(aInput);
+        AminoAcidSequence[] sequences = new AminoAcidSequence[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            if (strings[i] != null) {
+                AminoAcidSequence sequence = aSequences.get(strings[i]);
+                if (sequence == null) {
+                    sequence = AminoAcidSequence.valueOf(strings[i]);
+                    aSequences.put(strings[i], sequence);
+                }
+                sequences[i] = sequence;
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Ensures that the arrays of the spectra can hold the given number of
+     * entries.
+     *
+     * @param aCapacity the required capacity
+     */
+    private void ensureSpectrumCapacity(int aCapacity) {
+        if (aCapacity > iSpectrumIds.length) {
+            int capacity = Math.max(aCapacity, Math.max(INITIAL_CAPACITY, iSpectrumCount * 2));
+            iSpectrumIds = Arrays.copyOf(iSpectrumIds, capacity);
+            iPrecursorCharges = Arrays.copyOf(iPrecursorCharges, capacity);
+            iSpectrumExpects = Arrays.copyOf(iSpectrumExpects, capacity);
+            iPrecursorMhs = Arrays.copyOf(iPrecursorMhs, capacity);
+            iRetentionTimes = Arrays.copyOf(iRetentionTimes, capacity);
+            iSpectrumLabels = Arrays.copyOf(iSpectrumLabels, capacity);
+            iSummedIntensities = Arrays.copyOf(iSummedIntensities, capacity);
+            iMaxIntensities = Arrays.copyOf(iMaxIntensities, capacity);
+            iIntensityMultipliers = Arrays.copyOf(iIntensityMultipliers, capacity);
+            iFirstPeptides = Arrays.copyOf(iFirstPeptides, capacity);
+            ensureTextCapacity(0, capacity);
+        }
+    }
+
+    /**
+     * Ensures that the arrays of the peptides can hold the given number of
+     * entries.
+     *
+     * @param aCapacity the required capacity
+     */
+    private void ensurePeptideCapacity(int aCapacity) {
+        if (aCapacity > iProteinIds.length) {
+            int capacity = Math.max(aCapacity, Math.max(INITIAL_CAPACITY, iPeptideCount * 2));
+            iProteinIds = Arrays.copyOf(iProteinIds, capacity);
+            iProteinKeys = Arrays.copyOf(iProteinKeys, capacity);
+            iProteinUids = Arrays.copyOf(iProteinUids, capacity);
+            iProteinExpects = Arrays.copyOf(iProteinExpects, capacity);
+            iProteinSummedIntensities = Arrays.copyOf(iProteinSummedIntensities, capacity);
+            iProteinDescriptions = Arrays.copyOf(iProteinDescriptions, capacity);
+            iFastaFilePaths = Arrays.copyOf(iFastaFilePaths, capacity);
+            iPeptideStarts = Arrays.copyOf(iPeptideStarts, capacity);
+            iPeptideEnds = Arrays.copyOf(iPeptideEnds, capacity);
+            iPeptideSequences = Arrays.copyOf(iPeptideSequences, capacity);
+            iFirstDomains = Arrays.copyOf(iFirstDomains, capacity);
+            ensureTextCapacity(1, capacity);
+        }
+    }
+
+    /**
+     * Ensures that the arrays of the domains can hold the given number of
+     * entries.
+     *
+     * @param aCapacity the required capacity
+     */
+    private void ensureDomainCapacity(int aCapacity) {
+        if (aCapacity > iDomainIds.length) {
+            int capacity = Math.max(aCapacity, Math.max(INITIAL_CAPACITY, iDomainCount * 2));
+            iDomainIds = Arrays.copyOf(iDomainIds, capacity);
+            iDomainStarts = Arrays.copyOf(iDomainStarts, capacity);
+            iDomainEnds = Arrays.copyOf(iDomainEnds, capacity);
+            iDomainExpects = Arrays.copyOf(iDomainExpects, capacity);
+            iDomainMhs = Arrays.copyOf(iDomainMhs, capacity);
+            iDomainDeltas = Arrays.copyOf(iDomainDeltas, capacity);
+            iDomainHyperScores = Arrays.copyOf(iDomainHyperScores, capacity);
+            iDomainNextScores = Arrays.copyOf(iDomainNextScores, capacity);
+            iDomainBScores = Arrays.copyOf(iDomainBScores, capacity);
+            iDomainBIons = Arrays.copyOf(iDomainBIons, capacity);
+            iDomainYScores = Arrays.copyOf(iDomainYScores, capacity);
+            iDomainYIons = Arrays.copyOf(iDomainYIons, capacity);
+            iUpFlankSequences = Arrays.copyOf(iUpFlankSequences, capacity);
+            iDownFlankSequences = Arrays.copyOf(iDownFlankSequences, capacity);
+            iDomainSequences = Arrays.copyOf(iDomainSequences, capacity);
+            iMissedCleavages = Arrays.copyOf(iMissedCleavages, capacity);
+            iFirstModifications = Arrays.copyOf(iFirstModifications, capacity);
+            ensureTextCapacity(2, capacity);
+        }
+    }
+
+    /**
+     * Ensures that the arrays of the modifications can hold the given number of
+     * entries.
+     *
+     * @param aCapacity the required capacity
+     */
+    private void ensureModificationCapacity(int aCapacity) {
+        if (aCapacity > iModificationPositions.length) {
+            int capacity = Math.max(aCapacity, Math.max(INITIAL_CAPACITY, iModificationCount * 2));
+            iModificationPositions = Arrays.copyOf(iModificationPositions, capacity);
+            iModificationMasses = Arrays.copyOf(iModificationMasses, capacity);
+            iModifiedResidues = Arrays.copyOf(iModifiedResidues, capacity);
+            iSubstitutedAminoAcids = Arrays.copyOf(iSubstitutedAminoAcids, capacity);
+            ensureTextCapacity(3, capacity);
+        }
+    }
+
+    /**
+     * Ensures that the text columns of the spectra, peptides, domains or
+     * modifications can hold the given number of entries.
+     *
+     * @param aEntity 0 for the spectra, 1 for the peptides, 2 for the domains
+     * and 3 for the modifications
+     * @param aCapacity the required capacity
+     */
+    private void ensureTextCapacity(int aEntity, int aCapacity) {
+        for (int c = FIRST_TEXT_COLUMNS[aEntity]; c < FIRST_TEXT_COLUMNS[aEntity + 1]; c++) {
+            iNumberTexts[c].ensureCapacity(aCapacity);
+        }
+    }
+}
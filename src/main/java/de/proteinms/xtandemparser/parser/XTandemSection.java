@@ -0,0 +1,72 @@
+package de.proteinms.xtandemparser.parser;
+
+import java.util.EnumSet;
+
+/**
+ * The sections of an X!Tandem file which can be requested from the parser.
+ * Sections which are not requested are skipped while reading the file.
+ * <p>
+ * The spectrum, peptide and domain entries are created whenever one of their
+ * child sections is requested, their own values are only read if their
+ * section is requested. The spectrum ids and precursor charges are always
+ * read.
+ */
+public enum XTandemSection {
+
+    /**
+     * The spectrum values: expectation value, precursor mass, retention time,
+     * label and intensities, plus the spectrum titles.
+     */
+    SPECTRA,
+    /**
+     * The peptide values: protein ids, start, end, sequence and FASTA file.
+     */
+    PEPTIDES,
+    /**
+     * The domains, i.e., the peptide to spectrum matches.
+     */
+    DOMAINS,
+    /**
+     * The modifications of the domains.
+     */
+    MODIFICATIONS,
+    /**
+     * The protein descriptions.
+     */
+    PROTEIN_DESCRIPTIONS,
+    /**
+     * The supporting data histograms: hyperscore expectation function,
+     * convolution survival function and the ion histograms.
+     */
+    HISTOGRAMS,
+    /**
+     * The fragment ion mass spectra, plus the spectrum titles.
+     */
+    FRAGMENT_SPECTRA,
+    /**
+     * The input and performance parameters.
+     */
+    PARAMETERS;
+
+    /**
+     * Returns all the sections.
+     *
+     * @return all the sections
+     */
+    public static EnumSet<XTandemSection> all() {
+        return EnumSet.allOf(XTandemSection.class);
+    }
+
+    /**
+     * Returns the sections of the identifications: the spectra, the peptides,
+     * the domains, the modifications and the parameters. Unlike the
+     * skipDetails option of the parser, which in addition skips the details
+     * inside these sections, e.g., the intensities of the spectra and the
+     * scores of the domains, the sections are loaded in full.
+     *
+     * @return the sections of the identifications
+     */
+    public static EnumSet<XTandemSection> identifications() {
+        return EnumSet.of(SPECTRA, PEPTIDES, DOMAINS, MODIFICATIONS, PARAMETERS);
+    }
+}
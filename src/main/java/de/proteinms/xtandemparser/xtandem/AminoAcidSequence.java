@@ -0,0 +1,321 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class holds an amino acid sequence packed into 5 bits per residue, 12
+ * residues in every long word. The alphabet holds the one letter codes A to
+ * Z, the brackets X!Tandem uses for the protein termini in the flanking
+ * sequences, and the white space found in the protein sequences. A sequence
+ * with any other character is kept as a string.
+ * <p>
+ * The codes are ordered like the characters, so that sequences compare like
+ * their strings. The string is created on demand by {@link #toString()}.
+ * Sequences are immutable, the result store keeps every distinct sequence
+ * once and the domains and peptides point at the stored instance.
+ */
+public class AminoAcidSequence implements Comparable<AminoAcidSequence>, Serializable {
+
+    /**
+     * The code returned for a residue of a sequence kept as a string.
+     */
+    public static final int NO_CODE = -1;
+    /**
+     * The residues by code, in the order of the characters.
+     */
+    private static final char[] RESIDUES = "\t\n\r ABCDEFGHIJKLMNOPQRSTUVWXYZ[]".toCharArray();
+    /**
+     * The codes by character, NO_CODE for the characters outside of the
+     * alphabet.
+     */
+    private static final int[] CODES = new int[128];
+    /**
+     * The number of bits per residue.
+     */
+    private static final int BITS_PER_RESIDUE = 5;
+    /**
+     * The number of residues per word.
+     */
+    private static final int RESIDUES_PER_WORD = 12;
+    /**
+     * The mask of a residue.
+     */
+    private static final long RESIDUE_MASK = (1L << BITS_PER_RESIDUE) - 1;
+    /**
+     * The empty sequence.
+     */
+    private static final AminoAcidSequence EMPTY = new AminoAcidSequence("");
+    /**
+     * The sequences of a single residue by code.
+     */
+    private static final AminoAcidSequence[] SINGLE_RESIDUES = new AminoAcidSequence[RESIDUES.length];
+
+    static {
+        Arrays.fill(CODES, NO_CODE);
+        for (int i = 0; i < RESIDUES.length; i++) {
+            CODES[RESIDUES[i]] = i;
+        }
+        for (int i = 0; i < RESIDUES.length; i++) {
+            SINGLE_RESIDUES[i] = new AminoAcidSequence(String.valueOf(RESIDUES[i]));
+        }
+    }
+    /**
+     * The packed residues, the first residue in the highest bits of the first
+     * word, the unused bits are zero. Null if the sequence is kept as a string.
+     */
+    private long[] iWords;
+    /**
+     * The number of residues.
+     */
+    private int iLength;
+    /**
+     * The sequence with a character outside of the alphabet, null if packed.
+     */
+    private String iText;
+
+    /**
+     * Creates a sequence.
+     *
+     * @param aSequence the sequence
+     */
+    public AminoAcidSequence(String aSequence) {
+        iLength = aSequence.length();
+        long[] words = new long[(iLength + RESIDUES_PER_WORD - 1) / RESIDUES_PER_WORD];
+        for (int i = 0; i < iLength; i++) {
+            char residue = aSequence.charAt(i);
+            int code = residue < CODES.length ? CODES[residue] : NO_CODE;
+            if (code == NO_CODE) {
+                iText = aSequence;
+                return;
+            }
+            words[i / RESIDUES_PER_WORD] |= (long) code << getShift(i);
+        }
+        iWords = words;
+    }
+
+    /**
+     * Returns the sequence of a string. The empty sequence and the sequences
+     * of a single residue are shared instances, see
+     * {@link de.proteinms.xtandemparser.parser.StringDictionary#internSequence(String)}
+     * to share the longer sequences.
+     *
+     * @param aSequence the sequence, may be null
+     * @return the sequence, null for null
+     */
+    public static AminoAcidSequence valueOf(String aSequence) {
+        if (aSequence == null) {
+            return null;
+        }
+        if (aSequence.length() == 0) {
+            return EMPTY;
+        }
+        if (aSequence.length() == 1) {
+            char residue = aSequence.charAt(0);
+            if (residue < CODES.length && CODES[residue] != NO_CODE) {
+                return SINGLE_RESIDUES[CODES[residue]];
+            }
+        }
+        return new AminoAcidSequence(aSequence);
+    }
+
+    /**
+     * Returns the string of a sequence.
+     *
+     * @param aSequence the sequence, may be null
+     * @return the string, null for null
+     */
+    public static String toString(AminoAcidSequence aSequence) {
+        if (aSequence == null) {
+            return null;
+        }
+        return aSequence.toString();
+    }
+
+    /**
+     * Returns the position of a residue in its word.
+     *
+     * @param aIndex the index of the residue
+     * @return the shift of the residue bits
+     */
+    private static int getShift(int aIndex) {
+        return (RESIDUES_PER_WORD - 1 - aIndex % RESIDUES_PER_WORD) * BITS_PER_RESIDUE;
+    }
+
+    /**
+     * Returns the number of residues.
+     *
+     * @return the length
+     */
+    public int length() {
+        return iLength;
+    }
+
+    /**
+     * Returns the code of a residue.
+     *
+     * @param aIndex the index of the residue
+     * @return the code, {@link #NO_CODE} if the sequence is kept as a string
+     */
+    public int getCode(int aIndex) {
+        if (aIndex < 0 || aIndex >= iLength) {
+            throw new IndexOutOfBoundsException("Residue " + aIndex + " of a sequence of length " + iLength);
+        }
+        if (iWords == null) {
+            return NO_CODE;
+        }
+        return (int) (iWords[aIndex / RESIDUES_PER_WORD] >>> getShift(aIndex) & RESIDUE_MASK);
+    }
+
+    /**
+     * Returns a residue.
+     *
+     * @param aIndex the index of the residue
+     * @return the one letter code of the residue
+     */
+    public char charAt(int aIndex) {
+        int code = getCode(aIndex);
+        if (code == NO_CODE) {
+            return iText.charAt(aIndex);
+        }
+        return RESIDUES[code];
+    }
+
+    /**
+     * Returns the masses of the residues indexed by their code, see
+     * {@link #getMass(int, double[])}.
+     *
+     * @param aMasses the masses by one letter code, e.g., the masses of the
+     * X!Tandem file
+     * @return the masses by code, NaN for the residues without a mass
+     */
+    public static double[] getMassesByCode(Map<String, Double> aMasses) {
+        double[] masses = new double[RESIDUES.length];
+        for (int i = 0; i < RESIDUES.length; i++) {
+            Double mass = aMasses.get(String.valueOf(RESIDUES[i]));
+            masses[i] = mass != null ? mass : Double.NaN;
+        }
+        return masses;
+    }
+
+    /**
+     * Returns the mass of a residue.
+     *
+     * @param aIndex the index of the residue
+     * @param aMassesByCode the masses by code, see
+     * {@link #getMassesByCode(Map)}
+     * @return the mass, NaN if unknown
+     */
+    public double getMass(int aIndex, double[] aMassesByCode) {
+        int code = getCode(aIndex);
+        if (code == NO_CODE) {
+            return Double.NaN;
+        }
+        return aMassesByCode[code];
+    }
+
+    /**
+     * Returns the sequence without the leading and trailing white space, as
+     * {@link String#trim()}.
+     *
+     * @return the trimmed sequence, this sequence if there is nothing to trim
+     */
+    public AminoAcidSequence trim() {
+        int start = 0;
+        int end = iLength;
+        while (start < end && charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == 0 && end == iLength) {
+            return this;
+        }
+        return valueOf(toString().substring(start, end));
+    }
+
+    /**
+     * Returns true if the sequence starts with the given prefix. Packed
+     * sequences are compared by whole words.
+     *
+     * @param aPrefix the prefix
+     * @return true if the sequence starts with the prefix
+     */
+    public boolean startsWith(AminoAcidSequence aPrefix) {
+        if (aPrefix.iLength > iLength) {
+            return false;
+        }
+        if (iWords == null || aPrefix.iWords == null) {
+            return toString().startsWith(aPrefix.toString());
+        }
+        int fullWords = aPrefix.iLength / RESIDUES_PER_WORD;
+        for (int i = 0; i < fullWords; i++) {
+            if (iWords[i] != aPrefix.iWords[i]) {
+                return false;
+            }
+        }
+        int rest = aPrefix.iLength % RESIDUES_PER_WORD;
+        if (rest == 0) {
+            return true;
+        }
+        long mask = -1L << getShift(rest - 1);
+        return (iWords[fullWords] & mask) == aPrefix.iWords[fullWords];
+    }
+
+    public int compareTo(AminoAcidSequence aSequence) {
+        if (iWords == null || aSequence.iWords == null) {
+            return toString().compareTo(aSequence.toString());
+        }
+        // the unused bits are zero and the highest bits of a word are never
+        // set, so the words compare like the residues they hold
+        int words = Math.min(iWords.length, aSequence.iWords.length);
+        for (int i = 0; i < words; i++) {
+            if (iWords[i] != aSequence.iWords[i]) {
+                return iWords[i] < aSequence.iWords[i] ? -1 : 1;
+            }
+        }
+        return iLength - aSequence.iLength;
+    }
+
+    @Override
+    public boolean equals(Object aObject) {
+        if (this == aObject) {
+            return true;
+        }
+        if (!(aObject instanceof AminoAcidSequence)) {
+            return false;
+        }
+        AminoAcidSequence sequence = (AminoAcidSequence) aObject;
+        if (iLength != sequence.iLength) {
+            return false;
+        }
+        if (iWords == null || sequence.iWords == null) {
+            // a sequence is packed if and only if all its residues are in the
+            // alphabet
+            return iText != null && iText.equals(sequence.iText);
+        }
+        return Arrays.equals(iWords, sequence.iWords);
+    }
+
+    @Override
+    public int hashCode() {
+        if (iWords == null) {
+            return iText.hashCode();
+        }
+        return 31 * Arrays.hashCode(iWords) + iLength;
+    }
+
+    @Override
+    public String toString() {
+        if (iWords == null) {
+            return iText;
+        }
+        char[] residues = new char[iLength];
+        for (int i = 0; i < iLength; i++) {
+            residues[i] = RESIDUES[(int) (iWords[i / RESIDUES_PER_WORD] >>> getShift(i) & RESIDUE_MASK)];
+        }
+        return new String(residues);
+    }
+}
@@ -49,17 +49,17 @@ public class Domain {
      */
     private double iDomainNextScore = 0;
     /**
-     * This String holds the upstream flanking sequence
+     * This sequence holds the upstream flanking sequence
      */
-    private String iUpFlankSequence = null;
+    private AminoAcidSequence iUpFlankSequence = null;
     /**
-     * This String holds the downstream flanking sequence
+     * This sequence holds the downstream flanking sequence
      */
-    private String iDownFlankSequence = null;
+    private AminoAcidSequence iDownFlankSequence = null;
     /**
-     * This String presents the sequence of the domain
+     * This sequence presents the sequence of the domain
      */
-    private String iDomainSequence = null;
+    private AminoAcidSequence iDomainSequence = null;
     /**
      * Contains the total of missed cleavages
      */
@@ -233,6 +233,15 @@ public class Domain {
      * @return iUpFlankSequence the upstream flanking sequence
      */
     public String getUpFlankSequence() {
+        return AminoAcidSequence.toString(iUpFlankSequence);
+    }
+
+    /**
+     * Returns the packed upstream flanking sequence of the peptide.
+     *
+     * @return the upstream flanking sequence
+     */
+    public AminoAcidSequence getPackedUpFlankSequence() {
         return iUpFlankSequence;
     }
 
@@ -242,6 +251,16 @@ public class Domain {
      * @param aUpFlankSequence the upstream flanking sequence
      */
     public void setUpFlankSequence(String aUpFlankSequence) {
+        this.iUpFlankSequence = AminoAcidSequence.valueOf(aUpFlankSequence);
+    }
+
+    /**
+     * Sets the packed upstream flanking sequence of the peptide, e.g., the instance shared by the
+     * result store.
+     *
+     * @param aUpFlankSequence the upstream flanking sequence of the peptide
+     */
+    public void setPackedUpFlankSequence(AminoAcidSequence aUpFlankSequence) {
         this.iUpFlankSequence = aUpFlankSequence;
     }
 
@@ -251,6 +270,15 @@ public class Domain {
      * @return iDownFlankSequence the downstream flanking sequence
      */
     public String getDownFlankSequence() {
+        return AminoAcidSequence.toString(iDownFlankSequence);
+    }
+
+    /**
+     * Returns the packed downstream flanking sequence of the peptide.
+     *
+     * @return the downstream flanking sequence
+     */
+    public AminoAcidSequence getPackedDownFlankSequence() {
         return iDownFlankSequence;
     }
 
@@ -260,6 +288,16 @@ public class Domain {
      * @param aDownFlankSequence the downstream flanking sequence
      */
     public void setDownFlankSequence(String aDownFlankSequence) {
+        this.iDownFlankSequence = AminoAcidSequence.valueOf(aDownFlankSequence);
+    }
+
+    /**
+     * Sets the packed downstream flanking sequence of the peptide, e.g., the instance shared by the
+     * result store.
+     *
+     * @param aDownFlankSequence the downstream flanking sequence of the peptide
+     */
+    public void setPackedDownFlankSequence(AminoAcidSequence aDownFlankSequence) {
         this.iDownFlankSequence = aDownFlankSequence;
     }
 
@@ -269,6 +307,16 @@ public class Domain {
      * @return iDomainSequence the domain sequence
      */
     public String getDomainSequence() {
+        return AminoAcidSequence.toString(iDomainSequence);
+    }
+
+    /**
+     * Returns the packed domain sequence, e.g., to group the domains by
+     * sequence without creating the strings.
+     *
+     * @return the domain sequence
+     */
+    public AminoAcidSequence getPackedDomainSequence() {
         return iDomainSequence;
     }
 
@@ -278,6 +326,16 @@ public class Domain {
      * @param aDomainSequence the domain sequence
      */
     public void setDomainSequence(String aDomainSequence) {
+        this.iDomainSequence = AminoAcidSequence.valueOf(aDomainSequence);
+    }
+
+    /**
+     * Sets the packed domain sequence, e.g., the instance shared by the
+     * result store.
+     *
+     * @param aDomainSequence the domain sequence
+     */
+    public void setPackedDomainSequence(AminoAcidSequence aDomainSequence) {
         this.iDomainSequence = aDomainSequence;
     }
 
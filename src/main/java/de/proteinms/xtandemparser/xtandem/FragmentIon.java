@@ -85,26 +85,40 @@ public class FragmentIon implements Ion {
     /**
      * This method compares the theoretical mass peak with the experimental one
      * and tells if it's a match using a specific mass error tolerance and
-     * calculating the theoretical/ experimental mass error.
+     * calculating the theoretical/ experimental mass error. Of several peaks
+     * inside the tolerance the most intense one is used. To match several ions
+     * against the same peaks, use a {@link PeakMatcher} instead, which sorts
+     * the peaks only once.
      *
      * @param aPeaks the mass peak array
      * @param aMassError the mass error
      * @return matchFlag boolean
      */
     public boolean isMatch(Peak[] aPeaks, double aMassError) {
+        return isMatch(new PeakMatcher(aPeaks), aMassError);
+    }
+
+    /**
+     * This method compares the theoretical mass peak with the peaks of a
+     * matcher and tells if it's a match using a specific mass error tolerance
+     * and calculating the theoretical/ experimental mass error. Of several
+     * peaks inside the tolerance the one chosen by the matcher is used.
+     *
+     * @param aPeakMatcher the matcher holding the peaks
+     * @param aMassError the mass error
+     * @return matchFlag boolean
+     */
+    public boolean isMatch(PeakMatcher aPeakMatcher, double aMassError) {
 
-        boolean matchFlag = false;
+        int peak = aPeakMatcher.findPeak(iMz, aMassError);
 
-        for (int i = 0; i < aPeaks.length; i++) {
-            if (-aMassError <= (aPeaks[i].getMZ() - iMz) && (aPeaks[i].getMZ() - iMz) <= aMassError) {
-                iTheoreticalExperimentalMassError = aPeaks[i].getMZ() - iMz;
-                matchFlag = true;
-                iIntensity = aPeaks[i].getIntensity();
-                break;
-            }
+        if (peak == -1) {
+            return false;
         }
 
-        return matchFlag;
+        iTheoreticalExperimentalMassError = aPeakMatcher.getMz(peak) - iMz;
+        iIntensity = aPeakMatcher.getIntensity(peak);
+        return true;
     }
 
     /**
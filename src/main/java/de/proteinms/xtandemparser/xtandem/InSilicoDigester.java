@@ -19,7 +19,7 @@ public class InSilicoDigester {
     /**
      * This variable contains the peptide sequence.
      */
-    private final String iSequence;
+    private final AminoAcidSequence iSequence;
     /**
      * Contains the peptide object which should be digested.
      */
@@ -104,6 +104,14 @@ public class InSilicoDigester {
      * The domain (identification) variable.
      */
     private Domain iDomain;
+    /**
+     * The peaks last matched against.
+     */
+    private Peak[] iLastPeaks = null;
+    /**
+     * The matcher holding the peaks last matched against.
+     */
+    private PeakMatcher iLastPeakMatcher = null;
 
     /**
      * Constructor get a peptide object, the modification map, the input
@@ -120,7 +128,7 @@ public class InSilicoDigester {
     public InSilicoDigester(Peptide aPeptide, Domain aDomain, ModificationMap aModMap, HashMap aMasses, int aCharge, double aFragmentMassError) {
         iPeptide = aPeptide;
         iDomain = aDomain;
-        iSequence = aDomain.getDomainSequence();
+        iSequence = aDomain.getPackedDomainSequence();
         iModMap = aModMap;
         iMasses = aMasses;
         iPeptideCharge = aCharge;
@@ -153,48 +161,41 @@ public class InSilicoDigester {
      * acid position is the index.
      */
     double[] calculatePeptideMasses() {
-        double mass;
         double[] peptideMasses = new double[iSequence.length()];
-        for (int i = 0; i < iSequence.length(); i++) {
-            mass = 0.0;
 
-            // Add the fixed modifications masses (N and C term included)
-            List<Modification> fixModList = iModMap.getFixedModifications(iDomain.getDomainKey());
-            if (fixModList.size() > 0) {
-                for (Modification fixMod : fixModList) {
-                    int modIndex = (Integer.parseInt(fixMod.getLocation()) - iDomain.getDomainStart());
-                    if (modIndex == i) {
-                        mass += fixMod.getMass();
-                    }
-                }
-            }
-
-            // Add the the variable modification masses (N and C term included)
-            List<Modification> varModList = iModMap.getVariableModifications(iDomain.getDomainKey());
-            if (varModList.size() > 0) {
-                for (Modification varMod : varModList) {
-                    int modIndex = (Integer.parseInt(varMod.getLocation()) - iDomain.getDomainStart());
-                    if (modIndex == i) {
-                        mass += varMod.getMass();
-                    }
-                }
-            }
+        // Add the fixed and the variable modification masses (N and C term included)
+        addModificationMasses(peptideMasses, iModMap.getFixedModifications(iDomain.getDomainKey()));
+        addModificationMasses(peptideMasses, iModMap.getVariableModifications(iDomain.getDomainKey()));
 
-            // For each amino acid add the specific mass
-            String aa = String.valueOf(iSequence.charAt(i));
+        // For each amino acid add the specific mass
+        double[] residueMasses = AminoAcidSequence.getMassesByCode(iMasses);
+        for (int i = 0; i < iSequence.length(); i++) {
+            double mass = iSequence.getMass(i, residueMasses);
 
-            if (!iMasses.containsKey(aa)) {
-                throw new IllegalArgumentException("\'" + aa + "\' is an unknown amino acid! Complete peptide sequence: \'" + iSequence + "\'. Please check your X!Tandem file.");
+            if (Double.isNaN(mass)) {
+                throw new IllegalArgumentException("\'" + iSequence.charAt(i) + "\' is an unknown amino acid! Complete peptide sequence: \'" + iSequence + "\'. Please check your X!Tandem file.");
             }
-
-            mass += iMasses.get(aa);
-
-            // Add each specific mass to the array
-            peptideMasses[i] = mass;
+            peptideMasses[i] += mass;
         }
         return peptideMasses;
     }
 
+    /**
+     * Adds the masses of modifications to the masses of the modified amino
+     * acids. Modifications outside of the domain are ignored.
+     *
+     * @param aPeptideMasses the amino acid masses of the domain sequence
+     * @param aModifications the modifications
+     */
+    private void addModificationMasses(double[] aPeptideMasses, List<Modification> aModifications) {
+        for (Modification modification : aModifications) {
+            int modIndex = Integer.parseInt(modification.getLocation()) - iDomain.getDomainStart();
+            if (modIndex >= 0 && modIndex < aPeptideMasses.length) {
+                aPeptideMasses[modIndex] += modification.getMass();
+            }
+        }
+    }
+
     /**
      * This method calculates the theoretical masses of the ions of the peptide.
      * The fragment ion are stored as objects, for example yIons[0] is the y1
@@ -207,53 +208,50 @@ public class InSilicoDigester {
         double nitrogenMass = Masses.Nitrogen;
         double carbonMass = Masses.Carbon;
         double c_termMass = iMasses.get("C_term");
-
-        // Calculate ions masses for each charge
         int length = iSequence.length();
-        if (iSequence.compareTo("LHYFNAR") == 0) {
-            int a = 0;
+
+        // The b ion masses are the sums of the amino acid masses from the N
+        // terminal end, the y ion masses the ones from the C terminal end
+        double[] bMasses = new double[length];
+        double[] yMasses = new double[length];
+        double bMass = 0.0;
+        double yMass = 0.0;
+        for (int i = 0; i < length; i++) {
+            bMass += peptideMasses[i];
+            yMass += peptideMasses[(length - 1) - i];
+            bMasses[i] = bMass;
+            // Add two extra hydrogen on the N terminal end and one hydroxyl at the C terminal end
+            yMasses[i] = yMass + c_termMass + hydrogenMass;
         }
-        int cptb = 0;
-        int cpty = 0;
+
+        // Calculate ions masses for each charge
+        int cpt = 0;
         for (int charge = 1; charge <= iPeptideCharge; charge++) {
             iMH[charge - 1] = new FragmentIon((iDomain.getDomainMh() + (charge - 1) * hydrogenMass) / charge, FragmentIon.MH_ION, 0, charge, iFragmentMassError);
             iMHH2O[charge - 1] = new FragmentIon((iDomain.getDomainMh() - oxygenMass - 2 * hydrogenMass + (charge - 1) * hydrogenMass) / charge, FragmentIon.MHH2O_ION, 0, charge, iFragmentMassError);
             iMHNH3[charge - 1] = new FragmentIon((iDomain.getDomainMh() - nitrogenMass - 3 * hydrogenMass + (charge - 1) * hydrogenMass) / charge, FragmentIon.MHNH3_ION, 0, charge, iFragmentMassError);
 
+            double protons = charge * hydrogenMass;
             for (int i = 0; i < length; i++) {
-                double bMass = 0.0;
-                double yMass = 0.0;
+                bMass = bMasses[i];
+                yMass = yMasses[i];
 
-                // Each peptide mass is added to the b ion mass
-                for (int j = 0; j <= i; j++) {
-                    bMass += peptideMasses[j];
-                }
                 // Create an instance for each fragment ion
-                if (charge <= iPeptideCharge) {
-                    iAIons[cptb] = new FragmentIon((bMass - oxygenMass - carbonMass + charge * hydrogenMass) / charge, FragmentIon.A_ION, i + 1, charge, iFragmentMassError);
-                    iANH3Ions[cptb] = new FragmentIon((bMass - oxygenMass - carbonMass - nitrogenMass - 3 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.ANH3_ION, i + 1, charge, iFragmentMassError);
-                    iAH2OIons[cptb] = new FragmentIon((bMass - 2 * oxygenMass - carbonMass - 2 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.AH2O_ION, i + 1, charge, iFragmentMassError);
-                    iBIons[cptb] = new FragmentIon((bMass + charge * hydrogenMass) / charge, FragmentIon.B_ION, i + 1, charge, iFragmentMassError);
-                    iBNH3Ions[cptb] = new FragmentIon((bMass - nitrogenMass - 3 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.BNH3_ION, i + 1, charge, iFragmentMassError);
-                    iBH2OIons[cptb] = new FragmentIon((bMass - oxygenMass - 2 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.BH2O_ION, i + 1, charge, iFragmentMassError);
-                    iCIons[cptb] = new FragmentIon((bMass + nitrogenMass + 3 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.C_ION, i + 1, charge, iFragmentMassError);
-                    cptb++;
-                }
-
-                // Each peptide mass is added to the y ion mass, taking the reverse direction (from the C terminal end)
-                for (int j = 0; j <= i; j++) {
-                    yMass += peptideMasses[(length - 1) - j];
-                }
-                // Add two extra hydrogen on the N terminal end and one hydroxyl at the C terminal end
-                yMass = yMass + c_termMass + hydrogenMass;
+                iAIons[cpt] = new FragmentIon((bMass - oxygenMass - carbonMass + protons) / charge, FragmentIon.A_ION, i + 1, charge, iFragmentMassError);
+                iANH3Ions[cpt] = new FragmentIon((bMass - oxygenMass - carbonMass - nitrogenMass - 3 * hydrogenMass + protons) / charge, FragmentIon.ANH3_ION, i + 1, charge, iFragmentMassError);
+                iAH2OIons[cpt] = new FragmentIon((bMass - 2 * oxygenMass - carbonMass - 2 * hydrogenMass + protons) / charge, FragmentIon.AH2O_ION, i + 1, charge, iFragmentMassError);
+                iBIons[cpt] = new FragmentIon((bMass + protons) / charge, FragmentIon.B_ION, i + 1, charge, iFragmentMassError);
+                iBNH3Ions[cpt] = new FragmentIon((bMass - nitrogenMass - 3 * hydrogenMass + protons) / charge, FragmentIon.BNH3_ION, i + 1, charge, iFragmentMassError);
+                iBH2OIons[cpt] = new FragmentIon((bMass - oxygenMass - 2 * hydrogenMass + protons) / charge, FragmentIon.BH2O_ION, i + 1, charge, iFragmentMassError);
+                iCIons[cpt] = new FragmentIon((bMass + nitrogenMass + 3 * hydrogenMass + protons) / charge, FragmentIon.C_ION, i + 1, charge, iFragmentMassError);
 
                 // Create an instance of the fragment y ion
-                iXIons[cpty] = new FragmentIon((yMass + carbonMass + oxygenMass - 2 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.X_ION, i + 1, charge, iFragmentMassError);
-                iYIons[cpty] = new FragmentIon((yMass + charge * hydrogenMass) / charge, FragmentIon.Y_ION, i + 1, charge, iFragmentMassError);
-                iYNH3Ions[cpty] = new FragmentIon((yMass - nitrogenMass - 3 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.YNH3_ION, i + 1, charge, iFragmentMassError);
-                iYH2OIons[cpty] = new FragmentIon((yMass - 2 * hydrogenMass - oxygenMass + charge * hydrogenMass) / charge, FragmentIon.YH2O_ION, i + 1, charge, iFragmentMassError);
-                iZIons[cpty] = new FragmentIon((yMass - nitrogenMass - 2 * hydrogenMass + charge * hydrogenMass) / charge, FragmentIon.Z_ION, i + 1, charge, iFragmentMassError);
-                cpty++;
+                iXIons[cpt] = new FragmentIon((yMass + carbonMass + oxygenMass - 2 * hydrogenMass + protons) / charge, FragmentIon.X_ION, i + 1, charge, iFragmentMassError);
+                iYIons[cpt] = new FragmentIon((yMass + protons) / charge, FragmentIon.Y_ION, i + 1, charge, iFragmentMassError);
+                iYNH3Ions[cpt] = new FragmentIon((yMass - nitrogenMass - 3 * hydrogenMass + protons) / charge, FragmentIon.YNH3_ION, i + 1, charge, iFragmentMassError);
+                iYH2OIons[cpt] = new FragmentIon((yMass - 2 * hydrogenMass - oxygenMass + protons) / charge, FragmentIon.YH2O_ION, i + 1, charge, iFragmentMassError);
+                iZIons[cpt] = new FragmentIon((yMass - nitrogenMass - 2 * hydrogenMass + protons) / charge, FragmentIon.Z_ION, i + 1, charge, iFragmentMassError);
+                cpt++;
             }
         }
     }
@@ -267,12 +265,29 @@ public class InSilicoDigester {
      * @return matchedIons vector containing all the matched fragment ions
      */
     public Vector getMatchedIons(int ionType, Peak[] aPeaks) {
+        // The peaks are usually matched for all ion types, sort them only once
+        if (aPeaks != iLastPeaks) {
+            iLastPeakMatcher = new PeakMatcher(aPeaks);
+            iLastPeaks = aPeaks;
+        }
+        return getMatchedIons(ionType, iLastPeakMatcher);
+    }
+
+    /**
+     * This method tries to match the theoretical masses of the ions with the
+     * masses of the experimental peaks held by a matcher.
+     *
+     * @param ionType the ion type
+     * @param aPeakMatcher the matcher holding the experimental peaks
+     * @return matchedIons vector containing all the matched fragment ions
+     */
+    public Vector<FragmentIon> getMatchedIons(int ionType, PeakMatcher aPeakMatcher) {
         Vector<FragmentIon> matchedIons = new Vector<FragmentIon>();
         FragmentIon[] theoreticIons = getTheoreticIons(ionType);
 
         for (FragmentIon fragIon : theoreticIons) {
             if (fragIon != null) {
-                if (fragIon.isMatch(aPeaks, iFragmentMassError)) {
+                if (fragIon.isMatch(aPeakMatcher, iFragmentMassError)) {
                     matchedIons.add(fragIon);
                 }
             }
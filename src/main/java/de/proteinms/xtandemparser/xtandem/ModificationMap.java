@@ -1,6 +1,7 @@
 package de.proteinms.xtandemparser.xtandem;
 
 import de.proteinms.xtandemparser.interfaces.Modification;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -46,6 +47,20 @@ public class ModificationMap implements Serializable {
         iPeptideMap = aPeptideMap;
     }
 
+    /**
+     * The constructor builds the fixed and variable modification maps from the
+     * given result store and the input parameters.
+     *
+     * @param aResultStore the result store from the parser
+     * @param aPeptideMap the peptide map
+     * @param aInputParams the input parameters from the parser
+     */
+    public ModificationMap(XTandemResultStore aResultStore, PeptideMap aPeptideMap, InputParams aInputParams) {
+        iInputParams = aInputParams;
+        buildModificationMaps(aResultStore);
+        iPeptideMap = aPeptideMap;
+    }
+
     /**
      * This method checks for fixed or variable modifications and builds the
      * maps.
@@ -68,10 +83,9 @@ public class ModificationMap implements Serializable {
                     // Get the domainID
                     List<Domain> domainList = peptideMap.getPeptideByIndex(i, j).getDomains();
                     for (int d = 1; d <= domainList.size(); d++) {
-                        // The counter for the peptides
+                        // The counter for the modifications, [fixed, variable]
+                        int[] modCounters = {1, 1};
                         int m_counter = 1;
-                        int m_counter_variable = 1;
-                        int m_counter_fixed = 1;
                         String domainID = domainList.get(d - 1).getDomainKey();
                         int domainStart = domainList.get(d - 1).getDomainStart();
                         int domainEnd = domainList.get(d - 1).getDomainEnd();
@@ -92,57 +106,122 @@ public class ModificationMap implements Serializable {
                                 aminoAcidSubstituted = rawModMap.get("pm" + modKey).toString();
                             }
 
-                            // Check for fixed modification
-                            if (isFixedModificationInput(modMass, modifiedResidue, new Integer(modLocation) == domainStart, new Integer(modLocation) == domainEnd)) {
+                            addModification(domainID, modCounters, modName, modMass, modLocation, modifiedResidue, aminoAcidSubstituted,
+                                    new Integer(modLocation) == domainStart, new Integer(modLocation) == domainEnd);
 
-                                // Get a specific id for the modification (domainID)_m(modifcation#)
-                                String modID = (domainID + "_m" + m_counter_fixed);
-
-                                // Create an instance of a fixed modification.
-                                FixedModification fixedMod = new FixedModification(modName, modMass, modLocation, m_counter_fixed,
-                                        aminoAcidSubstituted != null, aminoAcidSubstituted);
+                            m_counter++;
+                            modKey = "_s" + i + "_p" + j + "_d" + d + "_m" + m_counter;
+                        }
+                    }
+                }
+            }
+        }
+    }
 
-                                // Put the modification into the map, value is the mod id.
-                                iFixedModificationMap.put(modID, fixedMod);
-                                m_counter_fixed++;
+    /**
+     * This method checks for fixed or variable modifications and builds the
+     * maps from the result store.
+     *
+     * @param aResultStore the result store from the parser
+     */
+    private void buildModificationMaps(XTandemResultStore aResultStore) {
 
-                            } else if (isVariableModificationInput(modMass, modifiedResidue, new Integer(modLocation) == domainStart, new Integer(modLocation) == domainEnd)) {
+        // Initialize the modification hash maps
+        iFixedModificationMap = new HashMap<String, Modification>();
+        iVarModificationMap = new HashMap<String, Modification>();
 
-                                // Get a specific id for the modification (domainID)_m(modifcation#)
-                                String modID = (domainID + "_m" + m_counter_variable);
+        for (int s = 0; s < aResultStore.getNumberOfSpectra(); s++) {
 
-                                // The rest will be assumed to be variable modifications.
-                                VariableModification varMod = new VariableModification(modName, modMass, modLocation, m_counter_variable,
-                                        aminoAcidSubstituted != null, aminoAcidSubstituted);
+            int firstPeptide = aResultStore.getFirstPeptide(s);
 
-                                // Put the modification into the map, value is the mod id.
-                                iVarModificationMap.put(modID, varMod);
-                                m_counter_variable++;
+            for (int j = 1; j <= aResultStore.getPeptideCount(s); j++) {
 
-                            } else {
+                int p = firstPeptide + j - 1;
+                int firstDomain = aResultStore.getFirstDomain(p);
 
-                                // not found as fixed or variable, assumed variable. means that it's in the residue, modification mass [1-n]
-                                // Get a specific id for the modification (domainID)_m(modifcation#)
-                                String modID = (domainID + "_m" + m_counter_variable);
+                for (int d = 1; d <= aResultStore.getDomainCount(p); d++) {
 
-                                // The rest will be assumed to be variable modifications.
-                                VariableModification varMod = new VariableModification(modName, modMass, modLocation, m_counter_variable,
-                                        aminoAcidSubstituted != null, aminoAcidSubstituted);
+                    int domain = firstDomain + d - 1;
 
-                                // Put the modification into the map, value is the mod id.
-                                iVarModificationMap.put(modID, varMod);
-                                m_counter_variable++;
-                            }
+                    // The counter for the modifications, [fixed, variable]
+                    int[] modCounters = {1, 1};
+                    String domainID = "s" + aResultStore.getSpectrumNumber(s) + "_p" + j + "_d" + d;
+                    int domainStart = aResultStore.getDomainStart(domain);
+                    int domainEnd = aResultStore.getDomainEnd(domain);
+                    int firstModification = aResultStore.getFirstModification(domain);
 
-                            m_counter++;
-                            modKey = "_s" + i + "_p" + j + "_d" + d + "_m" + m_counter;
-                        }
+                    for (int m = firstModification; m < firstModification + aResultStore.getModificationCount(domain); m++) {
+                        int modPosition = aResultStore.getModificationPosition(m);
+                        addModification(domainID, modCounters, aResultStore.getModificationName(m), aResultStore.getModificationMass(m),
+                                Integer.toString(modPosition), aResultStore.getModifiedResidue(m), aResultStore.getSubstitutedAminoAcid(m),
+                                modPosition == domainStart, modPosition == domainEnd);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Adds a modification to the fixed or the variable modification map.
+     *
+     * @param domainID the domain key
+     * @param modCounters the fixed and variable modification counters of the
+     * domain, updated by this method
+     * @param modName the modification name
+     * @param modMass the modification mass
+     * @param modLocation the modification location
+     * @param modifiedResidue the modified residue
+     * @param aminoAcidSubstituted the substituted amino acid, null if not a
+     * point mutation
+     * @param nTerm if the modification is at the n term
+     * @param cTerm if the modification is at the c term
+     */
+    private void addModification(String domainID, int[] modCounters, String modName, double modMass, String modLocation,
+            String modifiedResidue, String aminoAcidSubstituted, boolean nTerm, boolean cTerm) {
+
+        // Check for fixed modification
+        if (isFixedModificationInput(modMass, modifiedResidue, nTerm, cTerm)) {
+
+            // Get a specific id for the modification (domainID)_m(modifcation#)
+            String modID = (domainID + "_m" + modCounters[0]);
+
+            // Create an instance of a fixed modification.
+            FixedModification fixedMod = new FixedModification(modName, modMass, modLocation, modCounters[0],
+                    aminoAcidSubstituted != null, aminoAcidSubstituted);
+
+            // Put the modification into the map, value is the mod id.
+            iFixedModificationMap.put(modID, fixedMod);
+            modCounters[0]++;
+
+        } else if (isVariableModificationInput(modMass, modifiedResidue, nTerm, cTerm)) {
+
+            // Get a specific id for the modification (domainID)_m(modifcation#)
+            String modID = (domainID + "_m" + modCounters[1]);
+
+            // The rest will be assumed to be variable modifications.
+            VariableModification varMod = new VariableModification(modName, modMass, modLocation, modCounters[1],
+                    aminoAcidSubstituted != null, aminoAcidSubstituted);
+
+            // Put the modification into the map, value is the mod id.
+            iVarModificationMap.put(modID, varMod);
+            modCounters[1]++;
+
+        } else {
+
+            // not found as fixed or variable, assumed variable. means that it's in the residue, modification mass [1-n]
+            // Get a specific id for the modification (domainID)_m(modifcation#)
+            String modID = (domainID + "_m" + modCounters[1]);
+
+            // The rest will be assumed to be variable modifications.
+            VariableModification varMod = new VariableModification(modName, modMass, modLocation, modCounters[1],
+                    aminoAcidSubstituted != null, aminoAcidSubstituted);
+
+            // Put the modification into the map, value is the mod id.
+            iVarModificationMap.put(modID, varMod);
+            modCounters[1]++;
+        }
+    }
+
     /**
      * Checks if a given modification mass is given in the fixed modification
      * input parameter section: --> label="residue, modification mass">
@@ -0,0 +1,540 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.parser.BinaryBlocks;
+import de.proteinms.xtandemparser.parser.GamlValuesScanner;
+
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * This class keeps the histograms and the fragment ion spectra of an X!Tandem
+ * file outside of the Java heap, in a single direct byte buffer with an offset
+ * table by spectrum number. The raw values are removed from the support data
+ * map when they are moved into the buffer, so they neither take up heap space
+ * nor have to be traced by the garbage collector.
+ * <p>
+ * The memory is freed by {@link #close()}, not by the garbage collector. The
+ * buffers returned by the getters are views of that memory and must not be
+ * used after the store is closed.
+ */
+public class OffHeapSupportData {
+
+    /**
+     * The hyperscore expectation function histogram.
+     */
+    public static final int HYPERSCORE = 0;
+    /**
+     * The convolution survival function histogram.
+     */
+    public static final int CONVOLUTION = 1;
+    /**
+     * The a ion histogram.
+     */
+    public static final int A_IONS = 2;
+    /**
+     * The b ion histogram.
+     */
+    public static final int B_IONS = 3;
+    /**
+     * The c ion histogram.
+     */
+    public static final int C_IONS = 4;
+    /**
+     * The x ion histogram.
+     */
+    public static final int X_IONS = 5;
+    /**
+     * The y ion histogram.
+     */
+    public static final int Y_IONS = 6;
+    /**
+     * The z ion histogram.
+     */
+    public static final int Z_IONS = 7;
+    /**
+     * The prefixes of the raw keys of the values, the x and y values of the
+     * histograms followed by the fragment ion m/z and intensity values.
+     */
+    private static final String[] VALUE_KEY_PREFIXES = {
+        "XVAL_HYPER", "YVAL_HYPER", "XVAL_CONVOL", "YVAL_CONVOL", "XVAL_AIONS", "YVAL_AIONS",
+        "XVAL_BIONS", "YVAL_BIONS", "XVAL_CIONS", "YVAL_CIONS", "XVAL_XIONS", "YVAL_XIONS",
+        "XVAL_YIONS", "YVAL_YIONS", "XVAL_ZIONS", "YVAL_ZIONS", "XVAL_FRAGIONMZ", "YVAL_FRAGIONMZ"
+    };
+    /**
+     * The number of integer value arrays, the histograms.
+     */
+    private static final int INT_ARRAYS = 16;
+    /**
+     * The length written for a missing array.
+     */
+    private static final int MISSING = -1;
+    /**
+     * The size of the header of a spectrum, the array lengths padded to 8
+     * bytes.
+     */
+    private static final int HEADER_SIZE = align(VALUE_KEY_PREFIXES.length * 4);
+    /**
+     * The initial capacity of the buffer.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    /**
+     * The buffer, null once closed.
+     */
+    private ByteBuffer iBuffer;
+    /**
+     * The spectrum numbers in ascending order.
+     */
+    private int[] iSpectrumNumbers;
+    /**
+     * The offsets of the spectra in the buffer.
+     */
+    private int[] iOffsets;
+
+    /**
+     * Moves the histograms and fragment ion spectra of all spectra from the
+     * raw support map into a new off-heap store. The labels and single values
+     * stay in the map.
+     *
+     * @param aSupportDataMap the raw support map
+     */
+    OffHeapSupportData(HashMap<String, String> aSupportDataMap) {
+        TreeSet<Integer> spectrumNumbers = new TreeSet<Integer>();
+        for (String key : aSupportDataMap.keySet()) {
+            int suffix = key.lastIndexOf("_s");
+            if (suffix > 0 && isValueKeyPrefix(key.substring(0, suffix))) {
+                spectrumNumbers.add(Integer.valueOf(key.substring(suffix + 2)));
+            }
+        }
+
+        iSpectrumNumbers = new int[spectrumNumbers.size()];
+        iOffsets = new int[spectrumNumbers.size()];
+        ByteBuffer buffer = allocate(INITIAL_CAPACITY);
+        int index = 0;
+        for (int spectrumNumber : spectrumNumbers) {
+            iSpectrumNumbers[index] = spectrumNumber;
+            iOffsets[index] = buffer.position();
+            buffer = write(buffer, aSupportDataMap, spectrumNumber);
+            index++;
+        }
+
+        // Trim the buffer unless most of it is used
+        if (buffer.capacity() - buffer.position() > buffer.capacity() / 8) {
+            buffer = copy(buffer, buffer.position());
+        }
+        iBuffer = buffer;
+    }
+
+    /**
+     * Creates a store of values written before, e.g., mapped from a file.
+     *
+     * @param aBuffer the buffer holding the values
+     * @param aSpectrumNumbers the spectrum numbers in ascending order
+     * @param aOffsets the offsets of the spectra in the buffer
+     */
+    OffHeapSupportData(ByteBuffer aBuffer, int[] aSpectrumNumbers, int[] aOffsets) {
+        iBuffer = aBuffer;
+        iSpectrumNumbers = aSpectrumNumbers;
+        iOffsets = aOffsets;
+    }
+
+    /**
+     * Writes the offset table and the content of the buffer. The content is
+     * read back by mapping it into a buffer of the byte order written before
+     * it.
+     *
+     * @param aOutput the output
+     * @exception IOException if the values could not be written
+     */
+    synchronized void write(DataOutputStream aOutput) throws IOException {
+        if (iBuffer == null) {
+            throw new IllegalStateException("The off-heap support data is closed");
+        }
+        BinaryBlocks.writeInts(aOutput, iSpectrumNumbers, iSpectrumNumbers.length);
+        BinaryBlocks.writeInts(aOutput, iOffsets, iOffsets.length);
+        aOutput.writeBoolean(iBuffer.order() == ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer content = iBuffer.duplicate();
+        content.clear();
+        aOutput.writeInt(content.remaining());
+        byte[] chunk = new byte[8192];
+        while (content.hasRemaining()) {
+            int length = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, length);
+            aOutput.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Reads a store written by {@link #write(DataOutputStream)} from a
+     * stream, e.g., when an X!Tandem file is deserialized, into a new direct
+     * buffer.
+     *
+     * @param aInput the input
+     * @return the store
+     * @exception IOException if the values could not be read
+     */
+    static OffHeapSupportData read(DataInput aInput) throws IOException {
+        int[] spectrumNumbers = readInts(aInput);
+        int[] offsets = readInts(aInput);
+        ByteOrder order = aInput.readBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(aInput.readInt()).order(order);
+        byte[] chunk = new byte[8192];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            aInput.readFully(chunk, 0, length);
+            buffer.put(chunk, 0, length);
+        }
+        buffer.clear();
+        return new OffHeapSupportData(buffer, spectrumNumbers, offsets);
+    }
+
+    /**
+     * Reads an int array written by
+     * {@link BinaryBlocks#writeInts(DataOutputStream, int[], int)}.
+     *
+     * @param aInput the input
+     * @return the values
+     * @exception IOException if the values could not be read
+     */
+    private static int[] readInts(DataInput aInput) throws IOException {
+        int[] values = new int[aInput.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = aInput.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Returns true if the given string is the prefix of the raw key of
+     * values.
+     *
+     * @param aPrefix the prefix
+     * @return true for values
+     */
+    private static boolean isValueKeyPrefix(String aPrefix) {
+        for (String prefix : VALUE_KEY_PREFIXES) {
+            if (prefix.equals(aPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the values of a spectrum at the position of the buffer and
+     * removes them from the raw support map.
+     *
+     * @param aBuffer the buffer
+     * @param aSupportDataMap the raw support map
+     * @param aSpectrumNumber the spectrum number
+     * @return the buffer, a larger one if it was full
+     */
+    private static ByteBuffer write(ByteBuffer aBuffer, HashMap<String, String> aSupportDataMap, int aSpectrumNumber) {
+        int[][] intValues = new int[INT_ARRAYS][];
+        double[][] doubleValues = new double[VALUE_KEY_PREFIXES.length - INT_ARRAYS][];
+        long size = HEADER_SIZE;
+        for (int i = 0; i < VALUE_KEY_PREFIXES.length; i++) {
+            String values = aSupportDataMap.remove(VALUE_KEY_PREFIXES[i] + "_s" + aSpectrumNumber);
+            if (values != null) {
+                if (i < INT_ARRAYS) {
+                    intValues[i] = GamlValuesScanner.parseInts(values);
+                    size += intValues[i].length * 4L;
+                } else {
+                    doubleValues[i - INT_ARRAYS] = GamlValuesScanner.parseDoubles(values);
+                    size += doubleValues[i - INT_ARRAYS].length * 8L;
+                }
+            }
+        }
+        // the double arrays and the next spectrum start 8 byte aligned
+        size = align(size) + 8;
+
+        ByteBuffer buffer = aBuffer;
+        if (buffer.remaining() < size) {
+            long capacity = Math.max((long) buffer.capacity() * 2, buffer.position() + size);
+            if (capacity > Integer.MAX_VALUE) {
+                if (buffer.position() + size > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("The support data is too large to be kept off-heap");
+                }
+                capacity = Integer.MAX_VALUE;
+            }
+            buffer = copy(buffer, (int) capacity);
+        }
+
+        int start = buffer.position();
+        for (int i = 0; i < VALUE_KEY_PREFIXES.length; i++) {
+            int length = MISSING;
+            if (i < INT_ARRAYS && intValues[i] != null) {
+                length = intValues[i].length;
+            } else if (i >= INT_ARRAYS && doubleValues[i - INT_ARRAYS] != null) {
+                length = doubleValues[i - INT_ARRAYS].length;
+            }
+            buffer.putInt(length);
+        }
+        buffer.position(start + HEADER_SIZE);
+        for (int[] values : intValues) {
+            if (values != null) {
+                buffer.asIntBuffer().put(values);
+                buffer.position(buffer.position() + values.length * 4);
+            }
+        }
+        buffer.position(align(buffer.position()));
+        for (double[] values : doubleValues) {
+            if (values != null) {
+                buffer.asDoubleBuffer().put(values);
+                buffer.position(buffer.position() + values.length * 8);
+            }
+        }
+        buffer.position(align(buffer.position()));
+        return buffer;
+    }
+
+    /**
+     * Rounds a size up to a multiple of 8 bytes.
+     *
+     * @param aSize the size
+     * @return the aligned size
+     */
+    private static int align(int aSize) {
+        return (aSize + 7) & ~7;
+    }
+
+    /**
+     * Rounds a size up to a multiple of 8 bytes.
+     *
+     * @param aSize the size
+     * @return the aligned size
+     */
+    private static long align(long aSize) {
+        return (aSize + 7) & ~7L;
+    }
+
+    /**
+     * Allocates a direct buffer in native byte order.
+     *
+     * @param aCapacity the capacity
+     * @return the buffer
+     */
+    private static ByteBuffer allocate(int aCapacity) {
+        return ByteBuffer.allocateDirect(aCapacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies the content of a buffer up to its position into a new buffer and
+     * frees the old one.
+     *
+     * @param aBuffer the buffer
+     * @param aCapacity the capacity of the new buffer
+     * @return the new buffer, positioned after the content
+     */
+    private static ByteBuffer copy(ByteBuffer aBuffer, int aCapacity) {
+        ByteBuffer buffer = allocate(aCapacity);
+        ByteBuffer content = aBuffer.duplicate();
+        content.flip();
+        buffer.put(content);
+        free(aBuffer);
+        return buffer;
+    }
+
+    /**
+     * Frees the memory of a direct buffer right away. Java has no public API
+     * for it, the cleaner of the buffer is run with Unsafe.invokeCleaner on
+     * Java 9 and later and with the cleaner of the buffer before. If neither
+     * is available the memory is freed once the buffer is garbage collected.
+     *
+     * @param aBuffer the buffer, not a view of another buffer
+     */
+    static void free(ByteBuffer aBuffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), aBuffer);
+            } else {
+                Method cleanerMethod = aBuffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(aBuffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            // left to the garbage collector
+        }
+    }
+
+    /**
+     * Returns the offset of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @return the offset, -1 if the spectrum has no values
+     */
+    private int getOffset(int aSpectrumNumber) {
+        if (iBuffer == null) {
+            throw new IllegalStateException("The off-heap support data is closed");
+        }
+        int index = Arrays.binarySearch(iSpectrumNumbers, aSpectrumNumber);
+        return index >= 0 ? iOffsets[index] : -1;
+    }
+
+    /**
+     * Returns a view of an array of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @param aArray the index of the array in the raw key prefixes
+     * @return the view positioned on the array, null if the array is missing
+     */
+    private ByteBuffer getArray(int aSpectrumNumber, int aArray) {
+        int offset = getOffset(aSpectrumNumber);
+        if (offset < 0 || iBuffer.getInt(offset + aArray * 4) == MISSING) {
+            return null;
+        }
+        int position = offset + HEADER_SIZE;
+        for (int i = 0; i < aArray; i++) {
+            if (i == INT_ARRAYS) {
+                position = align(position);
+            }
+            int length = iBuffer.getInt(offset + i * 4);
+            if (length != MISSING) {
+                position += length * (i < INT_ARRAYS ? 4 : 8);
+            }
+        }
+        if (aArray >= INT_ARRAYS) {
+            position = align(position);
+        }
+        int size = iBuffer.getInt(offset + aArray * 4) * (aArray < INT_ARRAYS ? 4 : 8);
+        ByteBuffer view = iBuffer.duplicate();
+        view.limit(position + size).position(position);
+        return view.slice().order(iBuffer.order());
+    }
+
+    /**
+     * Returns true if the store holds values of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @return true if the spectrum has values
+     */
+    public synchronized boolean contains(int aSpectrumNumber) {
+        return getOffset(aSpectrumNumber) >= 0;
+    }
+
+    /**
+     * Returns the x values of a histogram.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @param aHistogram the histogram, e.g., {@link #HYPERSCORE}
+     * @return a read-only view of the values, null if not given
+     */
+    public synchronized IntBuffer getXValues(int aSpectrumNumber, int aHistogram) {
+        ByteBuffer array = getArray(aSpectrumNumber, aHistogram * 2);
+        return array != null ? array.asReadOnlyBuffer().order(array.order()).asIntBuffer() : null;
+    }
+
+    /**
+     * Returns the y values of a histogram.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @param aHistogram the histogram, e.g., {@link #HYPERSCORE}
+     * @return a read-only view of the values, null if not given
+     */
+    public synchronized IntBuffer getYValues(int aSpectrumNumber, int aHistogram) {
+        ByteBuffer array = getArray(aSpectrumNumber, aHistogram * 2 + 1);
+        return array != null ? array.asReadOnlyBuffer().order(array.order()).asIntBuffer() : null;
+    }
+
+    /**
+     * Returns the m/z values of the fragment ion spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @return a read-only view of the values, null if not given
+     */
+    public synchronized DoubleBuffer getXValuesFragIonMass2Charge(int aSpectrumNumber) {
+        ByteBuffer array = getArray(aSpectrumNumber, INT_ARRAYS);
+        return array != null ? array.asReadOnlyBuffer().order(array.order()).asDoubleBuffer() : null;
+    }
+
+    /**
+     * Returns the intensities of the fragment ion spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @return a read-only view of the values, null if not given
+     */
+    public synchronized DoubleBuffer getYValuesFragIonMass2Charge(int aSpectrumNumber) {
+        ByteBuffer array = getArray(aSpectrumNumber, INT_ARRAYS + 1);
+        return array != null ? array.asReadOnlyBuffer().order(array.order()).asDoubleBuffer() : null;
+    }
+
+    /**
+     * Copies the values of a spectrum into its support data.
+     *
+     * @param aSupportData the support data built from the raw support map
+     * @param aSpectrumNumber the spectrum number
+     */
+    synchronized void copyValues(SupportData aSupportData, int aSpectrumNumber) {
+        if (getOffset(aSpectrumNumber) < 0) {
+            return;
+        }
+        int[][] intValues = new int[INT_ARRAYS][];
+        for (int i = 0; i < INT_ARRAYS; i++) {
+            ByteBuffer array = getArray(aSpectrumNumber, i);
+            if (array != null) {
+                intValues[i] = new int[array.remaining() / 4];
+                array.asIntBuffer().get(intValues[i]);
+            }
+        }
+        double[][] doubleValues = new double[2][];
+        for (int i = 0; i < 2; i++) {
+            ByteBuffer array = getArray(aSpectrumNumber, INT_ARRAYS + i);
+            if (array != null) {
+                doubleValues[i] = new double[array.remaining() / 8];
+                array.asDoubleBuffer().get(doubleValues[i]);
+            }
+        }
+        aSupportData.setValues(intValues, doubleValues[0], doubleValues[1]);
+    }
+
+    /**
+     * Returns the number of bytes of memory used outside of the heap.
+     *
+     * @return the size in bytes, 0 once closed
+     */
+    public synchronized long getSize() {
+        return iBuffer != null ? iBuffer.capacity() : 0;
+    }
+
+    /**
+     * Returns true once the store is closed.
+     *
+     * @return true if closed
+     */
+    public synchronized boolean isClosed() {
+        return iBuffer == null;
+    }
+
+    /**
+     * Frees the memory of the store. The views returned before must not be
+     * used anymore.
+     */
+    public synchronized void close() {
+        if (iBuffer != null) {
+            ByteBuffer buffer = iBuffer;
+            iBuffer = null;
+            free(buffer);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.interfaces.Peak;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class matches theoretical m/z values against the peaks of a spectrum.
+ * The peaks are sorted by m/z once into primitive arrays, the candidates of a
+ * theoretical m/z are then found by binary search. Of the peaks inside the
+ * mass error tolerance either the most intense or the closest one is
+ * returned.
+ */
+public class PeakMatcher {
+
+    /**
+     * The rules for choosing one of several peaks inside the tolerance.
+     */
+    public enum Selection {
+
+        /**
+         * The peak with the highest intensity, the closest one of equally
+         * intense peaks.
+         */
+        MOST_INTENSE,
+        /**
+         * The peak with the smallest m/z error, the most intense one of
+         * equally close peaks.
+         */
+        CLOSEST
+    }
+    /**
+     * The m/z values of the peaks in ascending order.
+     */
+    private final double[] iMz;
+    /**
+     * The intensities of the peaks, in the order of the m/z values.
+     */
+    private final double[] iIntensities;
+    /**
+     * The rule for choosing one of several matching peaks.
+     */
+    private final Selection iSelection;
+
+    /**
+     * Creates a matcher for the given peaks choosing the most intense peak.
+     *
+     * @param aPeaks the peaks
+     */
+    public PeakMatcher(Peak[] aPeaks) {
+        this(aPeaks, Selection.MOST_INTENSE);
+    }
+
+    /**
+     * Creates a matcher for the given peaks.
+     *
+     * @param aPeaks the peaks
+     * @param aSelection the rule for choosing one of several matching peaks
+     */
+    public PeakMatcher(Peak[] aPeaks, Selection aSelection) {
+        double[] mz = new double[aPeaks.length];
+        double[] intensities = new double[aPeaks.length];
+        for (int i = 0; i < aPeaks.length; i++) {
+            mz[i] = aPeaks[i].getMZ();
+            intensities[i] = aPeaks[i].getIntensity();
+        }
+        iSelection = aSelection;
+        if (isSorted(mz)) {
+            iMz = mz;
+            iIntensities = intensities;
+        } else {
+            iMz = new double[mz.length];
+            iIntensities = new double[mz.length];
+            sort(mz, intensities, iMz, iIntensities);
+        }
+    }
+
+    /**
+     * Creates a matcher for the given m/z and intensity values choosing the
+     * most intense peak. The arrays are not changed.
+     *
+     * @param aMz the m/z values of the peaks
+     * @param aIntensities the intensities of the peaks
+     */
+    public PeakMatcher(double[] aMz, double[] aIntensities) {
+        this(aMz, aIntensities, Selection.MOST_INTENSE);
+    }
+
+    /**
+     * Creates a matcher for the given m/z and intensity values. The arrays are
+     * not changed.
+     *
+     * @param aMz the m/z values of the peaks
+     * @param aIntensities the intensities of the peaks
+     * @param aSelection the rule for choosing one of several matching peaks
+     */
+    public PeakMatcher(double[] aMz, double[] aIntensities, Selection aSelection) {
+        if (aMz.length != aIntensities.length) {
+            throw new IllegalArgumentException("Got " + aMz.length + " m/z values but " + aIntensities.length + " intensities");
+        }
+        iSelection = aSelection;
+        if (isSorted(aMz)) {
+            iMz = aMz;
+            iIntensities = aIntensities;
+        } else {
+            iMz = new double[aMz.length];
+            iIntensities = new double[aMz.length];
+            sort(aMz, aIntensities, iMz, iIntensities);
+        }
+    }
+
+    /**
+     * Returns the peak matching a theoretical m/z.
+     *
+     * @param aMz the theoretical m/z
+     * @param aMassError the mass error tolerance
+     * @return the index of the matching peak, -1 if no peak is inside the
+     * tolerance
+     */
+    public int findPeak(double aMz, double aMassError) {
+        // the first peak with m/z >= aMz - aMassError
+        int low = 0;
+        int high = iMz.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (iMz[middle] - aMz < -aMassError) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int best = -1;
+        for (int i = low; i < iMz.length && iMz[i] - aMz <= aMassError; i++) {
+            if (best == -1 || isBetter(i, best, aMz)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of peaks.
+     *
+     * @return the number of peaks
+     */
+    public int getNumberOfPeaks() {
+        return iMz.length;
+    }
+
+    /**
+     * Returns the m/z of a peak.
+     *
+     * @param aIndex the index of the peak
+     * @return the m/z
+     */
+    public double getMz(int aIndex) {
+        return iMz[aIndex];
+    }
+
+    /**
+     * Returns the intensity of a peak.
+     *
+     * @param aIndex the index of the peak
+     * @return the intensity
+     */
+    public double getIntensity(int aIndex) {
+        return iIntensities[aIndex];
+    }
+
+    /**
+     * Returns the rule for choosing one of several matching peaks.
+     *
+     * @return the selection rule
+     */
+    public Selection getSelection() {
+        return iSelection;
+    }
+
+    /**
+     * Returns true if a peak is a better match than another one.
+     *
+     * @param aPeak the index of the peak
+     * @param aOther the index of the other peak
+     * @param aMz the theoretical m/z
+     * @return true if the peak is the better match
+     */
+    private boolean isBetter(int aPeak, int aOther, double aMz) {
+        double error = Math.abs(iMz[aPeak] - aMz);
+        double otherError = Math.abs(iMz[aOther] - aMz);
+        if (iSelection == Selection.MOST_INTENSE) {
+            return iIntensities[aPeak] > iIntensities[aOther]
+                    || (iIntensities[aPeak] == iIntensities[aOther] && error < otherError);
+        }
+        return error < otherError
+                || (error == otherError && iIntensities[aPeak] > iIntensities[aOther]);
+    }
+
+    /**
+     * Returns true if the values are in ascending order.
+     *
+     * @param aValues the values
+     * @return true if the values are sorted
+     */
+    private static boolean isSorted(double[] aValues) {
+        for (int i = 1; i < aValues.length; i++) {
+            if (aValues[i] < aValues[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the peaks by m/z.
+     *
+     * @param aMz the m/z values
+     * @param aIntensities the intensities
+     * @param aSortedMz the array receiving the sorted m/z values
+     * @param aSortedIntensities the array receiving the intensities in the
+     * order of the sorted m/z values
+     */
+    private static void sort(final double[] aMz, double[] aIntensities, double[] aSortedMz, double[] aSortedIntensities) {
+        Integer[] order = new Integer[aMz.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer aFirst, Integer aSecond) {
+                return Double.compare(aMz[aFirst], aMz[aSecond]);
+            }
+        });
+        for (int i = 0; i < order.length; i++) {
+            aSortedMz[i] = aMz[order[i]];
+            aSortedIntensities[i] = aIntensities[order[i]];
+        }
+    }
+}
@@ -26,9 +26,9 @@ public class Peptide implements Serializable {
      */
     private int iEnd = 0;
     /**
-     * This String contains the peptide sequence.
+     * This sequence contains the peptide sequence.
      */
-    private String iSequence = null;
+    private AminoAcidSequence iSequence = null;
     /**
      * This String contains the original FASTA file path.
      */
@@ -55,7 +55,7 @@ public class Peptide implements Serializable {
         iPeptideID = aPeptideID;
         iStart = aStart;
         iEnd = aEnd;
-        iSequence = aSequence;
+        iSequence = AminoAcidSequence.valueOf(aSequence);
     }
 
     /**
@@ -136,6 +136,15 @@ public class Peptide implements Serializable {
      * @return iSequence the protein sequence
      */
     public String getSequence() {
+        return AminoAcidSequence.toString(iSequence);
+    }
+
+    /**
+     * Returns the packed protein sequence of the peptide.
+     *
+     * @return the protein sequence
+     */
+    public AminoAcidSequence getPackedSequence() {
         return iSequence;
     }
 
@@ -145,6 +154,16 @@ public class Peptide implements Serializable {
      * @param aSequence the protein sequence
      */
     public void setSequence(String aSequence) {
+        this.iSequence = AminoAcidSequence.valueOf(aSequence);
+    }
+
+    /**
+     * Sets the packed protein sequence of the peptide, e.g., an instance
+     * shared by all the peptides of the protein.
+     *
+     * @param aSequence the protein sequence
+     */
+    public void setPackedSequence(AminoAcidSequence aSequence) {
         this.iSequence = aSequence;
     }
 
@@ -1,9 +1,13 @@
 package de.proteinms.xtandemparser.xtandem;
 
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class holds the peptide information in a map.
@@ -29,6 +33,15 @@ public class PeptideMap implements Serializable {
         buildPeptideMap(aRawPeptideMap, aProteinMap, aNumberOfSpectra);
     }
 
+    /**
+     * Builds the peptide map from the result store of the parser.
+     *
+     * @param aResultStore the result store
+     */
+    public PeptideMap(XTandemResultStore aResultStore) {
+        buildPeptideMap(aResultStore);
+    }
+
     /**
      * Constructs the 2-dim hash map, the first dimension is the map with the
      * spectrum-number as key and another hash map as value. The second
@@ -158,6 +171,137 @@ public class PeptideMap implements Serializable {
         return iSpectrumAndPeptideMap;
     }
 
+    /**
+     * Constructs the 2-dim hash map from the result store, see
+     * buildPeptideMap(HashMap, ProteinMap, int).
+     *
+     * @param aResultStore the result store
+     * @return the spectrum and peptides map
+     */
+    private HashMap buildPeptideMap(XTandemResultStore aResultStore) {
+
+        int numberOfSpectra = aResultStore.getNumberOfSpectra();
+
+        // First dimension of the map, which contains the spectra as key and the peptide hash maps as values
+        iSpectrumAndPeptideMap = new HashMap(numberOfSpectra);
+
+        // The trimmed protein sequences by stored sequence, shared by the peptides of a protein
+        IdentityHashMap<AminoAcidSequence, AminoAcidSequence> trimmedSequences = new IdentityHashMap<AminoAcidSequence, AminoAcidSequence>();
+
+        for (int s = 0; s < numberOfSpectra; s++) {
+
+            // Hashmap for the peptide objects
+            HashMap<String, Peptide> lPeptideMap = new HashMap<String, Peptide>();
+
+            for (Peptide peptide : buildPeptides(aResultStore, s, trimmedSequences)) {
+                // Put the peptide into the map, value is the domain id.
+                lPeptideMap.put(peptide.getPeptideID(), peptide);
+            }
+            iSpectrumAndPeptideMap.put("s" + aResultStore.getSpectrumNumber(s), lPeptideMap);
+        }
+        return iSpectrumAndPeptideMap;
+    }
+
+    /**
+     * Builds the peptides of a spectrum from the result store, in the order
+     * in which they occur in the xml file.
+     *
+     * @param aResultStore the result store
+     * @param aSpectrum the index of the spectrum in the result store
+     * @param aTrimmedSequences the trimmed protein sequences by stored
+     * sequence, shared by the peptides of the same protein
+     * @return the peptides
+     */
+    static ArrayList<Peptide> buildPeptides(XTandemResultStore aResultStore, int aSpectrum,
+            Map<AminoAcidSequence, AminoAcidSequence> aTrimmedSequences) {
+
+        int spectrumNumber = aResultStore.getSpectrumNumber(aSpectrum);
+        ArrayList<Peptide> peptides = new ArrayList<Peptide>(aResultStore.getPeptideCount(aSpectrum));
+
+        int firstPeptide = aResultStore.getFirstPeptide(aSpectrum);
+
+        for (int pCount = 1; pCount <= aResultStore.getPeptideCount(aSpectrum); pCount++) {
+
+            int p = firstPeptide + pCount - 1;
+
+            // The peptide id is consists of s + spectrum# + _p + peptide#
+            String peptideID = ("s" + spectrumNumber + "_p" + pCount);
+            int peptideStart = 0, peptideEnd = 0;
+            if (aResultStore.getPeptideStart(p) != XTandemResultStore.NO_VALUE) {
+                peptideStart = aResultStore.getPeptideStart(p);
+            }
+            if (aResultStore.getPeptideEnd(p) != XTandemResultStore.NO_VALUE) {
+                peptideEnd = aResultStore.getPeptideEnd(p);
+            }
+            AminoAcidSequence sequence = aResultStore.getPackedPeptideSequence(p);
+            if (sequence != null) {
+                AminoAcidSequence trimmed = aTrimmedSequences.get(sequence);
+                if (trimmed == null) {
+                    trimmed = sequence.trim();
+                    aTrimmedSequences.put(sequence, trimmed);
+                }
+                sequence = trimmed;
+            }
+
+            // Create an instance of a peptide.
+            Peptide peptide = new Peptide(peptideID, peptideStart, peptideEnd, "");
+            if (sequence != null) {
+                peptide.setPackedSequence(sequence);
+            }
+            // Set the domain values
+            peptide.setSpectrumNumber(spectrumNumber);
+            // set the fasta filename
+            peptide.setFastaFilePath(aResultStore.getFastaFilePath(p));
+
+            // List of the domains
+            int firstDomain = aResultStore.getFirstDomain(p);
+            int domainCount = aResultStore.getDomainCount(p);
+            List<Domain> domainList = new ArrayList<Domain>(domainCount);
+
+            for (int dCount = 1; dCount <= domainCount; dCount++) {
+                int d = firstDomain + dCount - 1;
+                Domain domain = new Domain();
+                domain.setDomainKey(peptideID + "_d" + dCount);
+                domain.setDomainID(aResultStore.getDomainId(d));
+                domain.setProteinKey(aResultStore.getProteinKey(p));
+                if (aResultStore.getDomainStart(d) != XTandemResultStore.NO_VALUE) {
+                    domain.setDomainStart(aResultStore.getDomainStart(d));
+                }
+                if (aResultStore.getDomainEnd(d) != XTandemResultStore.NO_VALUE) {
+                    domain.setDomainEnd(aResultStore.getDomainEnd(d));
+                }
+                if (!Double.isNaN(aResultStore.getDomainExpect(d))) {
+                    domain.setDomainExpect(aResultStore.getDomainExpect(d));
+                }
+                if (!Double.isNaN(aResultStore.getDomainMh(d))) {
+                    domain.setDomainMh(aResultStore.getDomainMh(d));
+                }
+                if (!Double.isNaN(aResultStore.getDomainDelta(d))) {
+                    domain.setDomainDeltaMh(aResultStore.getDomainDelta(d));
+                }
+                if (!Double.isNaN(aResultStore.getDomainHyperScore(d))) {
+                    domain.setDomainHyperScore(aResultStore.getDomainHyperScore(d));
+                }
+                if (!Double.isNaN(aResultStore.getDomainNextScore(d))) {
+                    domain.setDomainNextScore(aResultStore.getDomainNextScore(d));
+                }
+                domain.setPackedUpFlankSequence(aResultStore.getPackedUpFlankSequence(d));
+                domain.setPackedDownFlankSequence(aResultStore.getPackedDownFlankSequence(d));
+                domain.setPackedDomainSequence(aResultStore.getPackedDomainSequence(d));
+                if (aResultStore.getMissedCleavages(d) != XTandemResultStore.NO_VALUE) {
+                    domain.setMissedCleavages(aResultStore.getMissedCleavages(d));
+                }
+                domainList.add(domain);
+            }
+
+            // Set the domains for the peptide
+            peptide.setDomains(domainList);
+
+            peptides.add(peptide);
+        }
+        return peptides;
+    }
+
     /**
      * Returns the 2-dim spectrum and peptide map.
      *
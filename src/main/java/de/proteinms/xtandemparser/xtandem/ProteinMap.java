@@ -1,5 +1,7 @@
 package de.proteinms.xtandemparser.xtandem;
 
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,6 +31,17 @@ public class ProteinMap implements Serializable {
         }
     }
 
+    /**
+     * The constructor gets the result store from the xtandem parser.
+     *
+     * @param aResultStore the result store
+     */
+    public ProteinMap(XTandemResultStore aResultStore) {
+        if (aResultStore != null) {
+            initMap(aResultStore);
+        }
+    }
+
     /**
      * This method initializes the protein map from a given raw map.
      *
@@ -74,6 +87,48 @@ public class ProteinMap implements Serializable {
         }
     }
 
+    /**
+     * This method initializes the protein map from the result store.
+     *
+     * @param aResultStore the result store
+     */
+    private void initMap(XTandemResultStore aResultStore) {
+        iProteinMap = new HashMap<String, Protein>();
+
+        // Iterate over the proteins of all spectra
+        for (int p = 0; p < aResultStore.getNumberOfPeptides(); p++) {
+
+            // Get the proteinID
+            String proteinID = aResultStore.getProteinKey(p);
+
+            // Get the rest of the protein parameters for the protein map.
+            String proteinUID = null;
+            if (aResultStore.getProteinUid(p) != XTandemResultStore.NO_VALUE) {
+                proteinUID = Integer.toString(aResultStore.getProteinUid(p));
+            }
+            String proteinDescription = aResultStore.getProteinDescription(p);
+            if (proteinDescription == null) {
+                proteinDescription = proteinID;
+            }
+
+            Double expectValue = null;
+            if (!Double.isNaN(aResultStore.getProteinExpect(p))) {
+                expectValue = aResultStore.getProteinExpect(p);
+            }
+
+            Double summedScore = null;
+            if (!Double.isNaN(aResultStore.getProteinSummedIntensity(p))) {
+                summedScore = aResultStore.getProteinSummedIntensity(p);
+            }
+
+            // Create an instance of a protein.
+            Protein protein = new Protein(proteinID, proteinUID, proteinID, proteinDescription, expectValue, summedScore);
+
+            // Put the protein into the map, value is the id.
+            iProteinMap.put(proteinID, protein);
+        }
+    }
+
     /**
      * Returns a protein object for a given protein id.
      *
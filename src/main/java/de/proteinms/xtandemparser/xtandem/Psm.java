@@ -0,0 +1,61 @@
+package de.proteinms.xtandemparser.xtandem;
+
+/**
+ * A peptide to spectrum match, i.e., a domain of a peptide identified with a
+ * spectrum.
+ */
+public class Psm {
+
+    /**
+     * The spectrum.
+     */
+    private Spectrum iSpectrum;
+    /**
+     * The peptide.
+     */
+    private Peptide iPeptide;
+    /**
+     * The domain.
+     */
+    private Domain iDomain;
+
+    /**
+     * Creates a peptide to spectrum match.
+     *
+     * @param aSpectrum the spectrum
+     * @param aPeptide the peptide identified with the spectrum
+     * @param aDomain the domain of the peptide
+     */
+    public Psm(Spectrum aSpectrum, Peptide aPeptide, Domain aDomain) {
+        iSpectrum = aSpectrum;
+        iPeptide = aPeptide;
+        iDomain = aDomain;
+    }
+
+    /**
+     * Returns the spectrum.
+     *
+     * @return the spectrum
+     */
+    public Spectrum getSpectrum() {
+        return iSpectrum;
+    }
+
+    /**
+     * Returns the peptide.
+     *
+     * @return the peptide
+     */
+    public Peptide getPeptide() {
+        return iPeptide;
+    }
+
+    /**
+     * Returns the domain.
+     *
+     * @return the domain
+     */
+    public Domain getDomain() {
+        return iDomain;
+    }
+}
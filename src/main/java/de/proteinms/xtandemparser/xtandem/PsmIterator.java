@@ -0,0 +1,154 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class iterates over the peptide to spectrum matches of a result
+ * store, spectrum by spectrum and in file order within a spectrum. The
+ * spectrum and the peptides of a spectrum are built only when its first match
+ * is requested. Like {@link SpectrumIterator}, the iterator can be split into
+ * iterators over disjoint ranges of spectra which can be processed on
+ * separate threads, the matches of a spectrum always stay together.
+ */
+public class PsmIterator implements Iterator<Psm> {
+
+    /**
+     * The result store holding the matches.
+     */
+    private XTandemResultStore iResultStore;
+    /**
+     * The index of the next spectrum.
+     */
+    private int iNextSpectrum;
+    /**
+     * The index after the last spectrum.
+     */
+    private int iEnd;
+    /**
+     * The spectrum whose matches are iterated, null between spectra.
+     */
+    private Spectrum iSpectrum = null;
+    /**
+     * The peptides of the spectrum, null between spectra.
+     */
+    private List<Peptide> iPeptides = null;
+    /**
+     * The index of the current peptide.
+     */
+    private int iPeptide = 0;
+    /**
+     * The index of the next domain of the current peptide.
+     */
+    private int iDomain = 0;
+    /**
+     * The next match, null if not looked up yet.
+     */
+    private Psm iNextPsm = null;
+    /**
+     * The trimmed protein sequences by stored sequence, shared by the
+     * peptides of the same protein.
+     */
+    private IdentityHashMap<AminoAcidSequence, AminoAcidSequence> iTrimmedSequences = new IdentityHashMap<AminoAcidSequence, AminoAcidSequence>();
+
+    /**
+     * Creates an iterator over the matches of a range of the spectra of a
+     * result store.
+     *
+     * @param aResultStore the result store
+     * @param aStart the index of the first spectrum
+     * @param aEnd the index after the last spectrum
+     */
+    PsmIterator(XTandemResultStore aResultStore, int aStart, int aEnd) {
+        iResultStore = aResultStore;
+        iNextSpectrum = aStart;
+        iEnd = aEnd;
+    }
+
+    public boolean hasNext() {
+        return iNextPsm != null || advance();
+    }
+
+    public Psm next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Psm psm = iNextPsm;
+        iNextPsm = null;
+        return psm;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("The matches cannot be removed");
+    }
+
+    /**
+     * Looks up the next match, moving on to the next spectrum with peptides
+     * once the matches of the current one are used up.
+     *
+     * @return true if a match was found
+     */
+    private boolean advance() {
+        while (true) {
+            if (iPeptides != null) {
+                while (iPeptide < iPeptides.size()) {
+                    Peptide peptide = iPeptides.get(iPeptide);
+                    List<Domain> domains = peptide.getDomains();
+                    if (iDomain < domains.size()) {
+                        iNextPsm = new Psm(iSpectrum, peptide, domains.get(iDomain++));
+                        return true;
+                    }
+                    iPeptide++;
+                    iDomain = 0;
+                }
+                iSpectrum = null;
+                iPeptides = null;
+            }
+            if (iNextSpectrum >= iEnd) {
+                return false;
+            }
+            // Spectra without peptides are not built at all
+            if (iResultStore.getPeptideCount(iNextSpectrum) > 0) {
+                iSpectrum = XTandemFile.buildSpectrum(iResultStore, iNextSpectrum);
+                iPeptides = PeptideMap.buildPeptides(iResultStore, iNextSpectrum, iTrimmedSequences);
+                iPeptide = 0;
+                iDomain = 0;
+            }
+            iNextSpectrum++;
+        }
+    }
+
+    /**
+     * Returns the number of spectra whose matches were not iterated yet,
+     * without the spectrum currently iterated.
+     *
+     * @return the number of spectra left
+     */
+    public int getRemainingSpectra() {
+        return iEnd - iNextSpectrum;
+    }
+
+    /**
+     * Splits the spectra left in two halves. The returned iterator covers the
+     * first half, this iterator keeps the second one. The matches of a
+     * spectrum are never split, so an iterator is best split before its
+     * iteration starts.
+     *
+     * @return the iterator over the first half, null if less than two spectra
+     * are left or the matches of a spectrum are being iterated
+     */
+    public PsmIterator trySplit() {
+        int remaining = iEnd - iNextSpectrum;
+        if (remaining < 2 || iPeptides != null) {
+            return null;
+        }
+        int middle = iNextSpectrum + remaining / 2;
+        PsmIterator firstHalf = new PsmIterator(iResultStore, iNextSpectrum, middle);
+        iNextSpectrum = middle;
+        return firstHalf;
+    }
+}
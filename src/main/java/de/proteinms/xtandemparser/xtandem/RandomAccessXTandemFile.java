@@ -0,0 +1,368 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.parser.XTandemIndex;
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+/**
+ * This class gives random access to the spectra of an X!Tandem file. An
+ * {@link XTandemIndex} with the location of every model group is loaded or
+ * built when the file is opened, a spectrum is then read by seeking to its
+ * model group and parsing only this group together with the parameter groups.
+ */
+public class RandomAccessXTandemFile {
+
+    /**
+     * The name of the root element used when parsing a single group.
+     */
+    private static final byte[] ROOT_START = "<bioml>".getBytes(Charset.forName("US-ASCII"));
+    /**
+     * The end tag of the root element.
+     */
+    private static final byte[] ROOT_END = "</bioml>".getBytes(Charset.forName("US-ASCII"));
+    /**
+     * The X!Tandem file.
+     */
+    private File iFile;
+    /**
+     * The random access file used to read the groups.
+     */
+    private RandomAccessFile iRandomAccessFile;
+    /**
+     * The index of the file.
+     */
+    private XTandemIndex iIndex;
+    /**
+     * The sections parsed for a spectrum.
+     */
+    private EnumSet<XTandemSection> iSections;
+    /**
+     * The parameter groups of the file.
+     */
+    private byte[] iParameterGroups;
+    /**
+     * The input parameters.
+     */
+    private InputParams iInputParams = null;
+    /**
+     * The perform parameters.
+     */
+    private PerformParams iPerformParams = null;
+    /**
+     * The number of the last parsed spectrum.
+     */
+    private int iLastSpectrumNumber = -1;
+    /**
+     * The parser of the last parsed spectrum.
+     */
+    private XTandemParser iLastParser = null;
+    /**
+     * The peptide map of the last parsed spectrum.
+     */
+    private PeptideMap iLastPeptideMap = null;
+
+    /**
+     * Opens an X!Tandem file for random access. The index is read from the
+     * index file next to the X!Tandem file, or built and written there if it
+     * is missing or out of date.
+     *
+     * @param aXTandemFile the X!Tandem file
+     *
+     * @exception IOException if the file or the index could not be read
+     */
+    public RandomAccessXTandemFile(File aXTandemFile) throws IOException {
+        this(aXTandemFile, XTandemIndex.load(aXTandemFile), XTandemSection.all());
+    }
+
+    /**
+     * Opens an X!Tandem file for random access with the given index, parsing
+     * only the given sections of each spectrum.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @param aIndex the index of the file
+     * @param aSections the sections to parse
+     *
+     * @exception IOException if the file could not be read
+     */
+    public RandomAccessXTandemFile(File aXTandemFile, XTandemIndex aIndex, EnumSet<XTandemSection> aSections) throws IOException {
+        iFile = aXTandemFile;
+        iIndex = aIndex;
+        iSections = EnumSet.copyOf(aSections);
+        // The parameters are needed for the ion types and the modifications
+        iSections.add(XTandemSection.PARAMETERS);
+        iRandomAccessFile = new RandomAccessFile(aXTandemFile, "r");
+
+        ByteArrayOutputStream parameterGroups = new ByteArrayOutputStream();
+        for (int i = 0; i < iIndex.getNumberOfParameterGroups(); i++) {
+            parameterGroups.write(readBytes(iIndex.getParameterGroupOffset(i), iIndex.getParameterGroupLength(i)));
+        }
+        iParameterGroups = parameterGroups.toByteArray();
+    }
+
+    /**
+     * Returns the number of spectra in the file.
+     *
+     * @return the number of spectra
+     */
+    public int getSpectraNumber() {
+        return iIndex.getNumberOfSpectra();
+    }
+
+    /**
+     * Returns the index of the file.
+     *
+     * @return the index
+     */
+    public XTandemIndex getIndex() {
+        return iIndex;
+    }
+
+    /**
+     * Returns the spectrum number for a spectrum id.
+     *
+     * @param aSpectrumId the spectrum id
+     * @return the spectrum number, -1 if not found
+     */
+    public int getSpectrumNumberForId(int aSpectrumId) {
+        return iIndex.getSpectrumNumberForId(aSpectrumId);
+    }
+
+    /**
+     * Returns the spectrum number for a spectrum title.
+     *
+     * @param aTitle the spectrum title
+     * @return the spectrum number, -1 if not found
+     */
+    public int getSpectrumNumberForTitle(String aTitle) {
+        return iIndex.getSpectrumNumberForTitle(aTitle);
+    }
+
+    /**
+     * Returns the parser holding only the given spectrum and the parameters.
+     * The parser of the last requested spectrum is kept, so that the
+     * different parts of a spectrum can be requested one after another.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the parser
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public XTandemParser getXTandemParser(int aSpectrumNumber) throws IOException, SAXException {
+        if (aSpectrumNumber != iLastSpectrumNumber) {
+            byte[] group = readBytes(iIndex.getGroupOffset(aSpectrumNumber), iIndex.getGroupLength(aSpectrumNumber));
+            iLastParser = parse(group, aSpectrumNumber);
+            iLastPeptideMap = null;
+            iLastSpectrumNumber = aSpectrumNumber;
+        }
+        return iLastParser;
+    }
+
+    /**
+     * Returns a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the spectrum
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public Spectrum getSpectrum(int aSpectrumNumber) throws IOException, SAXException {
+        return XTandemFile.buildSpectrum(getXTandemParser(aSpectrumNumber).getResultStore(), 0);
+    }
+
+    /**
+     * Returns the peptides of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the peptides
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public ArrayList<Peptide> getPeptides(int aSpectrumNumber) throws IOException, SAXException {
+        return getPeptideMap(aSpectrumNumber).getAllPeptides(aSpectrumNumber);
+    }
+
+    /**
+     * Returns the peptide map holding the peptides of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the peptide map
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public PeptideMap getPeptideMap(int aSpectrumNumber) throws IOException, SAXException {
+        XTandemParser parser = getXTandemParser(aSpectrumNumber);
+        if (iLastPeptideMap == null) {
+            iLastPeptideMap = new PeptideMap(parser.getResultStore());
+        }
+        return iLastPeptideMap;
+    }
+
+    /**
+     * Returns the proteins of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the protein map
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public ProteinMap getProteinMap(int aSpectrumNumber) throws IOException, SAXException {
+        return new ProteinMap(getXTandemParser(aSpectrumNumber).getResultStore());
+    }
+
+    /**
+     * Returns the modifications of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the modification map
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public ModificationMap getModificationMap(int aSpectrumNumber) throws IOException, SAXException {
+        PeptideMap peptideMap = getPeptideMap(aSpectrumNumber);
+        return new ModificationMap(iLastParser.getResultStore(), peptideMap, getInputParameters());
+    }
+
+    /**
+     * Returns the support data of a spectrum.
+     *
+     * @param aSpectrumNumber the spectrum number, starting from one
+     * @return the support data
+     *
+     * @exception IOException if the group could not be read
+     * @exception SAXException if the group could not be parsed
+     */
+    public SupportData getSupportData(int aSpectrumNumber) throws IOException, SAXException {
+        return new SupportData(getXTandemParser(aSpectrumNumber).getSupportDataMap(), aSpectrumNumber);
+    }
+
+    /**
+     * Returns the input parameters.
+     *
+     * @return the input parameters
+     *
+     * @exception SAXException if the parameter groups could not be parsed
+     */
+    public InputParams getInputParameters() throws SAXException {
+        if (iInputParams == null) {
+            parseParameters();
+        }
+        return iInputParams;
+    }
+
+    /**
+     * Returns the perform parameters.
+     *
+     * @return the perform parameters
+     *
+     * @exception SAXException if the parameter groups could not be parsed
+     */
+    public PerformParams getPerformParameters() throws SAXException {
+        if (iPerformParams == null) {
+            parseParameters();
+        }
+        return iPerformParams;
+    }
+
+    /**
+     * Returns the name of the X!Tandem file.
+     *
+     * @return the file name
+     */
+    public String getFileName() {
+        return iFile.getName();
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @exception IOException if the file could not be closed
+     */
+    public void close() throws IOException {
+        iRandomAccessFile.close();
+        iLastParser = null;
+        iLastPeptideMap = null;
+        iLastSpectrumNumber = -1;
+    }
+
+    /**
+     * Parses the parameter groups.
+     *
+     * @exception SAXException if the parameter groups could not be parsed
+     */
+    private void parseParameters() throws SAXException {
+        XTandemParser parser = parse(new byte[0], 1);
+        iInputParams = new InputParams(parser.getInputParamMap());
+        iPerformParams = new PerformParams(parser.getPerformParamMap());
+    }
+
+    /**
+     * Parses a model group together with the parameter groups.
+     *
+     * @param aGroup the bytes of the model group, may be empty
+     * @param aSpectrumNumber the spectrum number of the model group
+     * @return the parser holding the group
+     *
+     * @exception SAXException if the group could not be parsed
+     */
+    private XTandemParser parse(byte[] aGroup, int aSpectrumNumber) throws SAXException {
+        byte[] prolog = iIndex.getProlog();
+        byte[] document = new byte[prolog.length + ROOT_START.length + aGroup.length + iParameterGroups.length + ROOT_END.length];
+        int position = 0;
+        System.arraycopy(prolog, 0, document, position, prolog.length);
+        position += prolog.length;
+        System.arraycopy(ROOT_START, 0, document, position, ROOT_START.length);
+        position += ROOT_START.length;
+        System.arraycopy(aGroup, 0, document, position, aGroup.length);
+        position += aGroup.length;
+        System.arraycopy(iParameterGroups, 0, document, position, iParameterGroups.length);
+        position += iParameterGroups.length;
+        System.arraycopy(ROOT_END, 0, document, position, ROOT_END.length);
+
+        XTandemParserOptions options = new XTandemParserOptions();
+        options.setSections(iSections);
+        options.setFirstSpectrumNumber(aSpectrumNumber);
+        try {
+            // The document is in memory, these are not expected
+            return new XTandemParser(new ByteArrayInputStream(document), options);
+        } catch (IOException e) {
+            throw new SAXException("Error parsing the X!Tandem file: " + e.getMessage(), e);
+        } catch (ParserConfigurationException e) {
+            throw new SAXException("Error parsing the X!Tandem file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a range of bytes from the file.
+     *
+     * @param aOffset the byte offset
+     * @param aLength the number of bytes
+     * @return the bytes
+     *
+     * @exception IOException if the bytes could not be read
+     */
+    private byte[] readBytes(long aOffset, int aLength) throws IOException {
+        byte[] bytes = new byte[aLength];
+        iRandomAccessFile.seek(aOffset);
+        iRandomAccessFile.readFully(bytes);
+        return bytes;
+    }
+}
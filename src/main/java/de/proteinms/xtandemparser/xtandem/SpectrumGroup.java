@@ -0,0 +1,92 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.interfaces.Modification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class holds the results of a single model group of an X!Tandem file:
+ * the spectrum, its peptides with their domains, the modifications of the
+ * domains and the support data.
+ */
+public class SpectrumGroup {
+
+    /**
+     * The spectrum.
+     */
+    private Spectrum iSpectrum;
+    /**
+     * The peptides in file order.
+     */
+    private List<Peptide> iPeptides;
+    /**
+     * The fixed and variable modifications by domain key.
+     */
+    private HashMap<String, List<Modification>> iModifications;
+    /**
+     * The support data, null if not parsed.
+     */
+    private SupportData iSupportData;
+
+    /**
+     * Creates a spectrum group.
+     *
+     * @param aSpectrum the spectrum
+     * @param aPeptides the peptides in file order
+     * @param aModifications the fixed and variable modifications by domain
+     * key
+     * @param aSupportData the support data, null if not parsed
+     */
+    public SpectrumGroup(Spectrum aSpectrum, List<Peptide> aPeptides, HashMap<String, List<Modification>> aModifications, SupportData aSupportData) {
+        iSpectrum = aSpectrum;
+        iPeptides = aPeptides;
+        iModifications = aModifications;
+        iSupportData = aSupportData;
+    }
+
+    /**
+     * Returns the spectrum.
+     *
+     * @return the spectrum
+     */
+    public Spectrum getSpectrum() {
+        return iSpectrum;
+    }
+
+    /**
+     * Returns the peptides identified with the spectrum, in file order. The
+     * domains are held by the peptides.
+     *
+     * @return the peptides
+     */
+    public List<Peptide> getPeptides() {
+        return iPeptides;
+    }
+
+    /**
+     * Returns the modifications of a domain, the fixed modifications followed
+     * by the variable modifications.
+     *
+     * @param aDomain the domain
+     * @return the modifications, empty if the domain is not modified
+     */
+    public List<Modification> getModifications(Domain aDomain) {
+        List<Modification> modifications = iModifications.get(aDomain.getDomainKey());
+        if (modifications == null) {
+            return new ArrayList<Modification>(0);
+        }
+        return modifications;
+    }
+
+    /**
+     * Returns the support data.
+     *
+     * @return the support data, null if neither the histograms nor the
+     * fragment ion spectra were parsed
+     */
+    public SupportData getSupportData() {
+        return iSupportData;
+    }
+}
@@ -0,0 +1,268 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.interfaces.Flow;
+import de.proteinms.xtandemparser.interfaces.Modification;
+import de.proteinms.xtandemparser.parser.XTandemGroupListener;
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+/**
+ * This class publishes the model groups of an X!Tandem file as
+ * {@link SpectrumGroup}s while the file is parsed. Every subscription parses
+ * the file on its own thread, see {@link StreamingXTandemFile}, and the
+ * parsing waits whenever the subscriber has not requested more groups, so a
+ * slow subscriber throttles the parser and only the groups in flight are held
+ * in memory. Cancelling a subscription stops the parsing and closes the file.
+ */
+public class SpectrumGroupPublisher implements Flow.Publisher<SpectrumGroup> {
+
+    /**
+     * The X!Tandem file.
+     */
+    private File iFile;
+    /**
+     * The sections parsed for every spectrum.
+     */
+    private EnumSet<XTandemSection> iSections;
+    /**
+     * The executor running the subscriptions, null to start a thread for
+     * every subscription.
+     */
+    private Executor iExecutor;
+    /**
+     * True if the model groups are parsed in fast mode.
+     */
+    private boolean iFastMode = false;
+
+    /**
+     * Creates a publisher for an X!Tandem file, parsing every subscription on
+     * a new thread.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @param aSections the sections to parse
+     */
+    public SpectrumGroupPublisher(String aXTandemFile, EnumSet<XTandemSection> aSections) {
+        this(aXTandemFile, aSections, null);
+    }
+
+    /**
+     * Creates a publisher for an X!Tandem file, parsing the subscriptions
+     * with the given executor. A subscription occupies a thread of the
+     * executor until it is completed or cancelled.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @param aSections the sections to parse
+     * @param aExecutor the executor, null to start a thread for every
+     * subscription
+     */
+    public SpectrumGroupPublisher(String aXTandemFile, EnumSet<XTandemSection> aSections, Executor aExecutor) {
+        iFile = new File(aXTandemFile);
+        if (!iFile.exists()) {
+            throw new IllegalArgumentException("XTandem xml-file " + aXTandemFile + " doesn't exist.");
+        }
+        iSections = EnumSet.copyOf(aSections);
+        iExecutor = aExecutor;
+    }
+
+    /**
+     * Sets whether the model groups are parsed in fast mode.
+     *
+     * @param aFastMode if true the model groups are parsed in fast mode
+     */
+    public void setFastMode(boolean aFastMode) {
+        iFastMode = aFastMode;
+    }
+
+    public void subscribe(Flow.Subscriber<? super SpectrumGroup> aSubscriber) {
+        if (aSubscriber == null) {
+            throw new NullPointerException("The subscriber is null");
+        }
+        final GroupSubscription subscription = new GroupSubscription(aSubscriber);
+        aSubscriber.onSubscribe(subscription);
+
+        Runnable publisher = new Runnable() {
+            public void run() {
+                subscription.publish();
+            }
+        };
+        if (iExecutor != null) {
+            iExecutor.execute(publisher);
+        } else {
+            new Thread(publisher, "X!Tandem publisher " + iFile.getName()).start();
+        }
+    }
+
+    /**
+     * This class parses the file for a subscriber and sends it the groups it
+     * requested.
+     */
+    private class GroupSubscription implements Flow.Subscription, XTandemGroupListener {
+
+        /**
+         * The subscriber.
+         */
+        private Flow.Subscriber<? super SpectrumGroup> iSubscriber;
+        /**
+         * The number of groups requested and not sent yet.
+         */
+        private long iDemand = 0;
+        /**
+         * True once the subscription is cancelled.
+         */
+        private boolean iCancelled = false;
+        /**
+         * The error failing the subscription, null if none.
+         */
+        private Throwable iError = null;
+        /**
+         * The input parameters, null until the first group is parsed.
+         */
+        private InputParams iInputParams = null;
+
+        /**
+         * Creates the subscription of a subscriber.
+         *
+         * @param aSubscriber the subscriber
+         */
+        private GroupSubscription(Flow.Subscriber<? super SpectrumGroup> aSubscriber) {
+            iSubscriber = aSubscriber;
+        }
+
+        public synchronized void request(long aCount) {
+            if (aCount <= 0) {
+                if (iError == null) {
+                    iError = new IllegalArgumentException("The number of requested groups must be positive: " + aCount);
+                }
+            } else {
+                iDemand += aCount;
+                if (iDemand < 0) {
+                    // unbounded
+                    iDemand = Long.MAX_VALUE;
+                }
+            }
+            notifyAll();
+        }
+
+        public synchronized void cancel() {
+            iCancelled = true;
+            notifyAll();
+        }
+
+        /**
+         * Parses the file and sends the groups to the subscriber. Runs on the
+         * publishing thread.
+         */
+        private void publish() {
+            try {
+                XTandemParserOptions options = new XTandemParserOptions();
+                options.setSections(iSections);
+                options.setFastMode(iFastMode);
+                options.setGroupListener(this);
+                new XTandemParser(iFile, options);
+                awaitDemand(false);
+                iSubscriber.onComplete();
+            } catch (CancellationException e) {
+                Throwable error = getError();
+                if (error != null) {
+                    iSubscriber.onError(error);
+                } else if (!isCancelled()) {
+                    iSubscriber.onError(e);
+                }
+            } catch (Exception e) {
+                if (!isCancelled()) {
+                    iSubscriber.onError(e);
+                }
+            }
+        }
+
+        public void groupParsed(XTandemParser aParser, int aSpectrumNumber) {
+            awaitDemand(true);
+
+            if (iInputParams == null) {
+                iInputParams = new InputParams(aParser.getInputParamMap());
+            }
+
+            XTandemResultStore resultStore = aParser.getResultStore();
+            PeptideMap peptideMap = new PeptideMap(resultStore);
+            ModificationMap modificationMap = new ModificationMap(resultStore, peptideMap, iInputParams);
+
+            List<Peptide> peptides = new ArrayList<Peptide>(peptideMap.getNumberOfPeptides(aSpectrumNumber));
+            HashMap<String, List<Modification>> modifications = new HashMap<String, List<Modification>>();
+            for (int p = 1; p <= peptideMap.getNumberOfPeptides(aSpectrumNumber); p++) {
+                Peptide peptide = peptideMap.getPeptideByIndex(aSpectrumNumber, p);
+                peptides.add(peptide);
+                for (Domain domain : peptide.getDomains()) {
+                    ArrayList<Modification> domainModifications = modificationMap.getFixedModifications(domain.getDomainKey());
+                    domainModifications.addAll(modificationMap.getVariableModifications(domain.getDomainKey()));
+                    if (!domainModifications.isEmpty()) {
+                        modifications.put(domain.getDomainKey(), domainModifications);
+                    }
+                }
+            }
+
+            SupportData supportData = null;
+            if (!aParser.getSupportDataMap().isEmpty()) {
+                supportData = new SupportData(aParser.getSupportDataMap(), aSpectrumNumber);
+            }
+
+            iSubscriber.onNext(new SpectrumGroup(XTandemFile.buildSpectrum(resultStore, 0), peptides, modifications, supportData));
+        }
+
+        /**
+         * Waits until the subscriber requested another group, and takes it
+         * from the demand.
+         *
+         * @param aTakeDemand if true one group is taken from the demand,
+         * otherwise only the cancellation and the errors are checked
+         *
+         * @exception CancellationException if the subscription was cancelled
+         * or failed, which stops the parsing
+         */
+        private synchronized void awaitDemand(boolean aTakeDemand) {
+            try {
+                while (aTakeDemand && iDemand == 0 && !iCancelled && iError == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (iError == null) {
+                    iError = e;
+                }
+            }
+            if (iCancelled || iError != null) {
+                throw new CancellationException();
+            }
+            if (aTakeDemand && iDemand != Long.MAX_VALUE) {
+                iDemand--;
+            }
+        }
+
+        /**
+         * Returns true if the subscription was cancelled.
+         *
+         * @return true if cancelled
+         */
+        private synchronized boolean isCancelled() {
+            return iCancelled;
+        }
+
+        /**
+         * Returns the error failing the subscription.
+         *
+         * @return the error, null if none
+         */
+        private synchronized Throwable getError() {
+            return iError;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class iterates over the spectra of a result store. The spectra are
+ * built only when they are requested, and the iterator can be split into
+ * iterators over disjoint ranges of spectra which can be processed on
+ * separate threads, e.g.:
+ * <pre>
+ * SpectrumIterator second = xTandemFile.spectra();
+ * SpectrumIterator first = second.trySplit();
+ * // iterate over first and second on two threads
+ * </pre>
+ * Iterators over the same result store can be used concurrently, a single
+ * iterator cannot.
+ */
+public class SpectrumIterator implements Iterator<Spectrum> {
+
+    /**
+     * The result store holding the spectra.
+     */
+    private XTandemResultStore iResultStore;
+    /**
+     * The index of the next spectrum.
+     */
+    private int iNext;
+    /**
+     * The index after the last spectrum.
+     */
+    private int iEnd;
+
+    /**
+     * Creates an iterator over a range of the spectra of a result store.
+     *
+     * @param aResultStore the result store
+     * @param aStart the index of the first spectrum
+     * @param aEnd the index after the last spectrum
+     */
+    SpectrumIterator(XTandemResultStore aResultStore, int aStart, int aEnd) {
+        iResultStore = aResultStore;
+        iNext = aStart;
+        iEnd = aEnd;
+    }
+
+    public boolean hasNext() {
+        return iNext < iEnd;
+    }
+
+    public Spectrum next() {
+        if (iNext >= iEnd) {
+            throw new NoSuchElementException();
+        }
+        return XTandemFile.buildSpectrum(iResultStore, iNext++);
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("The spectra cannot be removed");
+    }
+
+    /**
+     * Returns the number of spectra left.
+     *
+     * @return the number of spectra left
+     */
+    public int getRemainingSpectra() {
+        return iEnd - iNext;
+    }
+
+    /**
+     * Splits the spectra left in two halves. The returned iterator covers the
+     * first half, this iterator keeps the second one.
+     *
+     * @return the iterator over the first half, null if less than two spectra
+     * are left
+     */
+    public SpectrumIterator trySplit() {
+        int remaining = iEnd - iNext;
+        if (remaining < 2) {
+            return null;
+        }
+        int middle = iNext + remaining / 2;
+        SpectrumIterator firstHalf = new SpectrumIterator(iResultStore, iNext, middle);
+        iNext = middle;
+        return firstHalf;
+    }
+}
@@ -0,0 +1,236 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.interfaces.Modification;
+import de.proteinms.xtandemparser.parser.XTandemGroupListener;
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+/**
+ * This class processes an X!Tandem file spectrum by spectrum with an
+ * {@link XTandemHandler}, using constant memory whatever the size of the file.
+ * The parser hands every model group to this class as soon as it is parsed,
+ * the spectrum, peptides, domains, modifications and support data of the
+ * group are built and passed to the handler, and the group is dropped before
+ * the next one is parsed.
+ * <p>
+ * As the modifications and the ion histograms need the parameters, which
+ * X!Tandem writes at the end of the file, the model groups read before the
+ * parameter groups are spooled, in memory up to a few megabytes and in a
+ * temporary file beyond, and passed to the handler once the parameters are
+ * read. The file is read in one pass, so it can also be read from a stream,
+ * e.g., an entry of an archive.
+ */
+public class StreamingXTandemFile {
+
+    /**
+     * The X!Tandem file, null if read from a stream.
+     */
+    private File iFile = null;
+    /**
+     * The stream to read the X!Tandem file from, null if read from a file or
+     * once processed.
+     */
+    private InputStream iInputStream = null;
+    /**
+     * The name of the X!Tandem file.
+     */
+    private String iFileName;
+    /**
+     * The sections parsed for every spectrum.
+     */
+    private EnumSet<XTandemSection> iSections;
+    /**
+     * True if the model groups are parsed in fast mode.
+     */
+    private boolean iFastMode = false;
+    /**
+     * The number of spectra processed by the last run.
+     */
+    private int iSpectraNumber = 0;
+
+    /**
+     * Creates a streaming reader for an X!Tandem file, parsing all sections.
+     *
+     * @param aXTandemFile the X!Tandem file
+     */
+    public StreamingXTandemFile(String aXTandemFile) {
+        this(aXTandemFile, XTandemSection.all());
+    }
+
+    /**
+     * Creates a streaming reader for an X!Tandem file, parsing only the given
+     * sections of every spectrum. The parameters are always parsed.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @param aSections the sections to parse
+     */
+    public StreamingXTandemFile(String aXTandemFile, EnumSet<XTandemSection> aSections) {
+        iFile = new File(aXTandemFile);
+        if (!iFile.exists()) {
+            throw new IllegalArgumentException("XTandem xml-file " + aXTandemFile + " doesn't exist.");
+        }
+        iFileName = iFile.getName();
+        iSections = EnumSet.copyOf(aSections);
+    }
+
+    /**
+     * Creates a streaming reader for an X!Tandem file read from a stream,
+     * parsing only the given sections of every spectrum. The parameters are
+     * always parsed. gzip compressed streams are decompressed. The stream can
+     * only be processed once, and is closed by
+     * {@link #process(XTandemHandler)}.
+     *
+     * @param aInputStream the stream to read the X!Tandem file from
+     * @param aFileName the name of the X!Tandem file
+     * @param aSections the sections to parse
+     */
+    public StreamingXTandemFile(InputStream aInputStream, String aFileName, EnumSet<XTandemSection> aSections) {
+        iInputStream = aInputStream;
+        iFileName = aFileName;
+        iSections = EnumSet.copyOf(aSections);
+    }
+
+    /**
+     * Sets whether the model groups are parsed in fast mode.
+     *
+     * @param aFastMode if true the model groups are parsed in fast mode
+     */
+    public void setFastMode(boolean aFastMode) {
+        iFastMode = aFastMode;
+    }
+
+    /**
+     * Parses the file and passes it spectrum by spectrum to the handler. A
+     * file can be processed several times, e.g., with different handlers, a
+     * stream only once.
+     *
+     * @param aHandler the handler
+     *
+     * @exception IOException if the file could not be read
+     * @exception SAXException if the file could not be parsed
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public void process(XTandemHandler aHandler) throws IOException, SAXException, ParserConfigurationException {
+        GroupHandler groupHandler = new GroupHandler(aHandler);
+        XTandemParserOptions options = new XTandemParserOptions();
+        options.setSections(iSections);
+        options.setFastMode(iFastMode);
+        options.setGroupListener(groupHandler);
+        XTandemParser parser;
+        if (iFile != null) {
+            parser = new XTandemParser(iFile, options);
+        } else if (iInputStream != null) {
+            InputStream inputStream = iInputStream;
+            iInputStream = null;
+            parser = new XTandemParser(inputStream, options);
+        } else {
+            throw new IllegalStateException("The stream of " + iFileName + " has already been processed");
+        }
+
+        // A file without spectra still has its parameters
+        groupHandler.startFile(parser);
+        iSpectraNumber = parser.getNumberOfSpectra();
+        aHandler.onEnd(new PerformParams(parser.getPerformParamMap()));
+    }
+
+    /**
+     * Returns the number of spectra processed by the last run.
+     *
+     * @return the number of spectra
+     */
+    public int getSpectraNumber() {
+        return iSpectraNumber;
+    }
+
+    /**
+     * Returns the name of the X!Tandem file.
+     *
+     * @return the file name
+     */
+    public String getFileName() {
+        return iFileName;
+    }
+
+    /**
+     * This class builds the objects of the model groups streamed by the parser
+     * and passes them to the handler.
+     */
+    private static class GroupHandler implements XTandemGroupListener {
+
+        /**
+         * The handler.
+         */
+        private XTandemHandler iHandler;
+        /**
+         * The input parameters, null until passed to the handler.
+         */
+        private InputParams iInputParams = null;
+
+        /**
+         * Creates the listener for a handler.
+         *
+         * @param aHandler the handler
+         */
+        private GroupHandler(XTandemHandler aHandler) {
+            iHandler = aHandler;
+        }
+
+        /**
+         * Passes the input parameters to the handler, unless already done.
+         *
+         * @param aParser the parser
+         */
+        private void startFile(XTandemParser aParser) {
+            if (iInputParams == null) {
+                iInputParams = new InputParams(aParser.getInputParamMap());
+                iHandler.onParameters(iInputParams);
+            }
+        }
+
+        public void groupParsed(XTandemParser aParser, int aSpectrumNumber) {
+            startFile(aParser);
+
+            XTandemResultStore resultStore = aParser.getResultStore();
+
+            if (iHandler.onSpectrum(XTandemFile.buildSpectrum(resultStore, 0)) == XTandemHandler.Action.SKIP_GROUP) {
+                return;
+            }
+
+            PeptideMap peptideMap = new PeptideMap(resultStore);
+            ModificationMap modificationMap = null;
+
+            // The peptides in file order
+            for (int p = 1; p <= peptideMap.getNumberOfPeptides(aSpectrumNumber); p++) {
+                Peptide peptide = peptideMap.getPeptideByIndex(aSpectrumNumber, p);
+                if (iHandler.onPeptide(peptide) == XTandemHandler.Action.SKIP_GROUP) {
+                    return;
+                }
+                for (Domain domain : peptide.getDomains()) {
+                    if (modificationMap == null) {
+                        modificationMap = new ModificationMap(resultStore, peptideMap, iInputParams);
+                    }
+                    ArrayList<Modification> modifications = modificationMap.getFixedModifications(domain.getDomainKey());
+                    modifications.addAll(modificationMap.getVariableModifications(domain.getDomainKey()));
+                    if (iHandler.onDomain(domain, modifications) == XTandemHandler.Action.SKIP_GROUP) {
+                        return;
+                    }
+                }
+            }
+
+            if (!aParser.getSupportDataMap().isEmpty()) {
+                iHandler.onSupportData(new SupportData(aParser.getSupportDataMap(), aSpectrumNumber));
+            }
+        }
+    }
+}
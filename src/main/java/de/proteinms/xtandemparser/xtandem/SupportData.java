@@ -1,5 +1,7 @@
 package de.proteinms.xtandemparser.xtandem;
 
+import de.proteinms.xtandemparser.parser.GamlValuesScanner;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -27,24 +29,24 @@ public class SupportData implements Serializable {
     private int iFragIonCharge;
     private double iHyper_a0;
     private double iHyper_a1;
-    private ArrayList<Integer> iXValuesHyperscore = null;
-    private ArrayList<Integer> iYValuesHyperscore = null;
-    private ArrayList<Integer> iXValuesConvolute = null;
-    private ArrayList<Integer> iYValuesConvolute = null;
-    private ArrayList<Integer> iXValuesaIons = null;
-    private ArrayList<Integer> iYValuesaIons = null;
-    private ArrayList<Integer> iXValuesbIons = null;
-    private ArrayList<Integer> iYValuesbIons = null;
-    private ArrayList<Integer> iXValuescIons = null;
-    private ArrayList<Integer> iYValuescIons = null;
-    private ArrayList<Integer> iXValuesxIons = null;
-    private ArrayList<Integer> iYValuesxIons = null;
-    private ArrayList<Integer> iXValuesyIons = null;
-    private ArrayList<Integer> iYValuesyIons = null;
-    private ArrayList<Integer> iXValueszIons = null;
-    private ArrayList<Integer> iYValueszIons = null;
-    private ArrayList<Double> iXValuesFragIonMass2Charge = null;
-    private ArrayList<Double> iYValuesFragIonMass2Charge = null;
+    private int[] iXValuesHyperscore = null;
+    private int[] iYValuesHyperscore = null;
+    private int[] iXValuesConvolute = null;
+    private int[] iYValuesConvolute = null;
+    private int[] iXValuesaIons = null;
+    private int[] iYValuesaIons = null;
+    private int[] iXValuesbIons = null;
+    private int[] iYValuesbIons = null;
+    private int[] iXValuescIons = null;
+    private int[] iYValuescIons = null;
+    private int[] iXValuesxIons = null;
+    private int[] iYValuesxIons = null;
+    private int[] iXValuesyIons = null;
+    private int[] iYValuesyIons = null;
+    private int[] iXValueszIons = null;
+    private int[] iYValueszIons = null;
+    private double[] iXValuesFragIonMass2Charge = null;
+    private double[] iYValuesFragIonMass2Charge = null;
 
     /**
      * Constructor gets the raw support map and the spectrum number.
@@ -96,58 +98,58 @@ public class SupportData implements Serializable {
             iHyper_a1 = Double.parseDouble(map.get("HYPER_A1" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_HYPER" + "_s" + spectrumNumber) != null) {
-            iXValuesHyperscore = splitStringToIntegerList(map.get("XVAL_HYPER" + "_s" + spectrumNumber).toString());
+            iXValuesHyperscore = GamlValuesScanner.parseInts(map.get("XVAL_HYPER" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_HYPER" + "_s" + spectrumNumber) != null) {
-            iYValuesHyperscore = splitStringToIntegerList(map.get("YVAL_HYPER" + "_s" + spectrumNumber).toString());
+            iYValuesHyperscore = GamlValuesScanner.parseInts(map.get("YVAL_HYPER" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_CONVOL" + "_s" + spectrumNumber) != null) {
-            iXValuesConvolute = splitStringToIntegerList(map.get("XVAL_CONVOL" + "_s" + spectrumNumber).toString());
+            iXValuesConvolute = GamlValuesScanner.parseInts(map.get("XVAL_CONVOL" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_CONVOL" + "_s" + spectrumNumber) != null) {
-            iYValuesConvolute = splitStringToIntegerList(map.get("YVAL_CONVOL" + "_s" + spectrumNumber).toString());
+            iYValuesConvolute = GamlValuesScanner.parseInts(map.get("YVAL_CONVOL" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_AIONS" + "_s" + spectrumNumber) != null) {
-            iXValuesaIons = splitStringToIntegerList(map.get("XVAL_AIONS" + "_s" + spectrumNumber).toString());
+            iXValuesaIons = GamlValuesScanner.parseInts(map.get("XVAL_AIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_AIONS" + "_s" + spectrumNumber) != null) {
-            iYValuesaIons = splitStringToIntegerList(map.get("YVAL_AIONS" + "_s" + spectrumNumber).toString());
+            iYValuesaIons = GamlValuesScanner.parseInts(map.get("YVAL_AIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_BIONS" + "_s" + spectrumNumber) != null) {
-            iXValuesbIons = splitStringToIntegerList(map.get("XVAL_BIONS" + "_s" + spectrumNumber).toString());
+            iXValuesbIons = GamlValuesScanner.parseInts(map.get("XVAL_BIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_BIONS" + "_s" + spectrumNumber) != null) {
-            iYValuesbIons = splitStringToIntegerList(map.get("YVAL_BIONS" + "_s" + spectrumNumber).toString());
+            iYValuesbIons = GamlValuesScanner.parseInts(map.get("YVAL_BIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_CIONS" + "_s" + spectrumNumber) != null) {
-            iXValuescIons = splitStringToIntegerList(map.get("XVAL_CIONS" + "_s" + spectrumNumber).toString());
+            iXValuescIons = GamlValuesScanner.parseInts(map.get("XVAL_CIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_CIONS" + "_s" + spectrumNumber) != null) {
-            iYValuescIons = splitStringToIntegerList(map.get("YVAL_CIONS" + "_s" + spectrumNumber).toString());
+            iYValuescIons = GamlValuesScanner.parseInts(map.get("YVAL_CIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_XIONS" + "_s" + spectrumNumber) != null) {
-            iXValuesxIons = splitStringToIntegerList(map.get("XVAL_XIONS" + "_s" + spectrumNumber).toString());
+            iXValuesxIons = GamlValuesScanner.parseInts(map.get("XVAL_XIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_XIONS" + "_s" + spectrumNumber) != null) {
-            iYValuesxIons = splitStringToIntegerList(map.get("YVAL_XIONS" + "_s" + spectrumNumber).toString());
+            iYValuesxIons = GamlValuesScanner.parseInts(map.get("YVAL_XIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_YIONS" + "_s" + spectrumNumber) != null) {
-            iXValuesyIons = splitStringToIntegerList(map.get("XVAL_YIONS" + "_s" + spectrumNumber).toString());
+            iXValuesyIons = GamlValuesScanner.parseInts(map.get("XVAL_YIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_YIONS" + "_s" + spectrumNumber) != null) {
-            iYValuesyIons = splitStringToIntegerList(map.get("YVAL_YIONS" + "_s" + spectrumNumber).toString());
+            iYValuesyIons = GamlValuesScanner.parseInts(map.get("YVAL_YIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_ZIONS" + "_s" + spectrumNumber) != null) {
-            iXValueszIons = splitStringToIntegerList(map.get("XVAL_ZIONS" + "_s" + spectrumNumber).toString());
+            iXValueszIons = GamlValuesScanner.parseInts(map.get("XVAL_ZIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_ZIONS" + "_s" + spectrumNumber) != null) {
-            iYValueszIons = splitStringToIntegerList(map.get("YVAL_ZIONS" + "_s" + spectrumNumber).toString());
+            iYValueszIons = GamlValuesScanner.parseInts(map.get("YVAL_ZIONS" + "_s" + spectrumNumber).toString());
         }
         if (map.get("XVAL_FRAGIONMZ" + "_s" + spectrumNumber) != null) {
-            iXValuesFragIonMass2Charge = splitStringToDoubleList(map.get("XVAL_FRAGIONMZ" + "_s" + spectrumNumber).toString());
+            iXValuesFragIonMass2Charge = GamlValuesScanner.parseDoubles(map.get("XVAL_FRAGIONMZ" + "_s" + spectrumNumber).toString());
         }
         if (map.get("YVAL_FRAGIONMZ" + "_s" + spectrumNumber) != null) {
-            iYValuesFragIonMass2Charge = splitStringToDoubleList(map.get("YVAL_FRAGIONMZ" + "_s" + spectrumNumber).toString());
+            iYValuesFragIonMass2Charge = GamlValuesScanner.parseDoubles(map.get("YVAL_FRAGIONMZ" + "_s" + spectrumNumber).toString());
         }
     }
 
@@ -259,190 +261,603 @@ public class SupportData implements Serializable {
         return iHyper_a1;
     }
 
+    /**
+     * Returns the x values of the hyperscore expectation function as a new list
+     * of boxed values, created on every call. Changes to the list do not change
+     * the support data. See {@link #getXValuesHyperscoreArray()} to read the
+     * values without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuesHyperscore() {
+        return toIntegerList(iXValuesHyperscore);
+    }
+
+    /**
+     * Returns the x values of the hyperscore expectation function without
+     * boxing. The array is shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuesHyperscoreArray() {
         return iXValuesHyperscore;
     }
 
     public void setXValuesHyperscore(ArrayList<Integer> valuesHyperscore) {
-        iXValuesHyperscore = valuesHyperscore;
+        iXValuesHyperscore = toIntArray(valuesHyperscore);
     }
 
+    /**
+     * Returns the y values of the hyperscore expectation function as a new list
+     * of boxed values, created on every call. Changes to the list do not change
+     * the support data. See {@link #getYValuesHyperscoreArray()} to read the
+     * values without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuesHyperscore() {
+        return toIntegerList(iYValuesHyperscore);
+    }
+
+    /**
+     * Returns the y values of the hyperscore expectation function without
+     * boxing. The array is shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuesHyperscoreArray() {
         return iYValuesHyperscore;
     }
 
     public void setYValuesHyperscore(ArrayList<Integer> valuesHyperscore) {
-        iYValuesHyperscore = valuesHyperscore;
+        iYValuesHyperscore = toIntArray(valuesHyperscore);
     }
 
+    /**
+     * Returns the x values of the convolution survival function as a new list
+     * of boxed values, created on every call. Changes to the list do not change
+     * the support data. See {@link #getXValuesConvoluteArray()} to read the
+     * values without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuesConvolute() {
+        return toIntegerList(iXValuesConvolute);
+    }
+
+    /**
+     * Returns the x values of the convolution survival function without boxing.
+     * The array is shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuesConvoluteArray() {
         return iXValuesConvolute;
     }
 
     public void setXValuesConvolute(ArrayList<Integer> valuesConvolute) {
-        iXValuesConvolute = valuesConvolute;
+        iXValuesConvolute = toIntArray(valuesConvolute);
     }
 
+    /**
+     * Returns the y values of the convolution survival function as a new list
+     * of boxed values, created on every call. Changes to the list do not change
+     * the support data. See {@link #getYValuesConvoluteArray()} to read the
+     * values without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuesConvolute() {
+        return toIntegerList(iYValuesConvolute);
+    }
+
+    /**
+     * Returns the y values of the convolution survival function without boxing.
+     * The array is shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuesConvoluteArray() {
         return iYValuesConvolute;
     }
 
     public void setYValuesConvolute(ArrayList<Integer> valuesConvolute) {
-        iYValuesConvolute = valuesConvolute;
+        iYValuesConvolute = toIntArray(valuesConvolute);
     }
 
+    /**
+     * Returns the x values of the a ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getXValuesaIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuesaIons() {
+        return toIntegerList(iXValuesaIons);
+    }
+
+    /**
+     * Returns the x values of the a ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuesaIonsArray() {
         return iXValuesaIons;
     }
 
     public void setXValuesaIons(ArrayList<Integer> aValuesaIons) {
-        iXValuesaIons = aValuesaIons;
+        iXValuesaIons = toIntArray(aValuesaIons);
     }
 
+    /**
+     * Returns the y values of the a ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getYValuesaIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuesaIons() {
+        return toIntegerList(iYValuesaIons);
+    }
+
+    /**
+     * Returns the y values of the a ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuesaIonsArray() {
         return iYValuesaIons;
     }
 
     public void setYValuesaIons(ArrayList<Integer> aValuesaIons) {
-        iYValuesaIons = aValuesaIons;
+        iYValuesaIons = toIntArray(aValuesaIons);
     }
 
+    /**
+     * Returns the x values of the b ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getXValuesbIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuesbIons() {
+        return toIntegerList(iXValuesbIons);
+    }
+
+    /**
+     * Returns the x values of the b ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuesbIonsArray() {
         return iXValuesbIons;
     }
 
     public void setXValuesbIons(ArrayList<Integer> valuesbIons) {
-        iXValuesbIons = valuesbIons;
+        iXValuesbIons = toIntArray(valuesbIons);
     }
 
+    /**
+     * Returns the y values of the b ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getYValuesbIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuesbIons() {
+        return toIntegerList(iYValuesbIons);
+    }
+
+    /**
+     * Returns the y values of the b ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuesbIonsArray() {
         return iYValuesbIons;
     }
 
     public void setYValuesbIons(ArrayList<Integer> valuesbIons) {
-        iYValuesbIons = valuesbIons;
+        iYValuesbIons = toIntArray(valuesbIons);
     }
 
+    /**
+     * Returns the x values of the y ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getXValuesyIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuesyIons() {
+        return toIntegerList(iXValuesyIons);
+    }
+
+    /**
+     * Returns the x values of the y ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuesyIonsArray() {
         return iXValuesyIons;
     }
 
     public void setXValuesyIons(ArrayList<Integer> valuesyIons) {
-        iXValuesyIons = valuesyIons;
+        iXValuesyIons = toIntArray(valuesyIons);
     }
 
+    /**
+     * Returns the y values of the y ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getYValuesyIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuesyIons() {
+        return toIntegerList(iYValuesyIons);
+    }
+
+    /**
+     * Returns the y values of the y ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuesyIonsArray() {
         return iYValuesyIons;
     }
 
     public void setYValuesyIons(ArrayList<Integer> valuesyIons) {
-        iYValuesyIons = valuesyIons;
+        iYValuesyIons = toIntArray(valuesyIons);
     }
 
+    /**
+     * Returns the y values of the c ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getYValuescIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuescIons() {
+        return toIntegerList(iYValuescIons);
+    }
+
+    /**
+     * Returns the y values of the c ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuescIonsArray() {
         return iYValuescIons;
     }
 
     public void setYValuescIons(ArrayList<Integer> iYValuescIons) {
-        this.iYValuescIons = iYValuescIons;
+        this.iYValuescIons = toIntArray(iYValuescIons);
     }
 
+    /**
+     * Returns the x values of the c ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getXValuescIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuescIons() {
+        return toIntegerList(iXValuescIons);
+    }
+
+    /**
+     * Returns the x values of the c ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuescIonsArray() {
         return iXValuescIons;
     }
 
     public void setXValuescIons(ArrayList<Integer> iXValuescIons) {
-        this.iXValuescIons = iXValuescIons;
+        this.iXValuescIons = toIntArray(iXValuescIons);
     }
 
+    /**
+     * Returns the x values of the x ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getXValuesxIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValuesxIons() {
+        return toIntegerList(iXValuesxIons);
+    }
+
+    /**
+     * Returns the x values of the x ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValuesxIonsArray() {
         return iXValuesxIons;
     }
 
     public void setXValuesxIons(ArrayList<Integer> iXValuesxIons) {
-        this.iXValuesxIons = iXValuesxIons;
+        this.iXValuesxIons = toIntArray(iXValuesxIons);
     }
 
+    /**
+     * Returns the y values of the x ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getYValuesxIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValuesxIons() {
+        return toIntegerList(iYValuesxIons);
+    }
+
+    /**
+     * Returns the y values of the x ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValuesxIonsArray() {
         return iYValuesxIons;
     }
 
     public void setYValuesxIons(ArrayList<Integer> iYValuesxIons) {
-        this.iYValuesxIons = iYValuesxIons;
+        this.iYValuesxIons = toIntArray(iYValuesxIons);
     }
 
+    /**
+     * Returns the x values of the z ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getXValueszIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getXValueszIons() {
+        return toIntegerList(iXValueszIons);
+    }
+
+    /**
+     * Returns the x values of the z ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getXValueszIonsArray() {
         return iXValueszIons;
     }
 
     public void setXValueszIons(ArrayList<Integer> iXValueszIons) {
-        this.iXValueszIons = iXValueszIons;
+        this.iXValueszIons = toIntArray(iXValueszIons);
     }
 
+    /**
+     * Returns the y values of the z ion histogram as a new list of boxed
+     * values, created on every call. Changes to the list do not change the
+     * support data. See {@link #getYValueszIonsArray()} to read the values
+     * without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Integer> getYValueszIons() {
+        return toIntegerList(iYValueszIons);
+    }
+
+    /**
+     * Returns the y values of the z ion histogram without boxing. The array is
+     * shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public int[] getYValueszIonsArray() {
         return iYValueszIons;
     }
 
     public void setYValueszIons(ArrayList<Integer> iYValueszIons) {
-        this.iYValueszIons = iYValueszIons;
+        this.iYValueszIons = toIntArray(iYValueszIons);
     }
 
+    /**
+     * Returns the m/z values of the fragment ion spectrum as a new list of
+     * boxed values, created on every call. Changes to the list do not change
+     * the support data. See {@link #getXValuesFragIonMass2ChargeArray()} to
+     * read the values without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Double> getXValuesFragIonMass2Charge() {
+        return toDoubleList(iXValuesFragIonMass2Charge);
+    }
+
+    /**
+     * Returns the m/z values of the fragment ion spectrum without boxing. The
+     * array is shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public double[] getXValuesFragIonMass2ChargeArray() {
         return iXValuesFragIonMass2Charge;
     }
 
-    public void setXValuesFragIonMass2Charge(
-            ArrayList<Double> valuesFragIonMass2Charge) {
-        iXValuesFragIonMass2Charge = valuesFragIonMass2Charge;
+    public void setXValuesFragIonMass2Charge(ArrayList<Double> valuesFragIonMass2Charge) {
+        iXValuesFragIonMass2Charge = toDoubleArray(valuesFragIonMass2Charge);
     }
 
+    /**
+     * Returns the intensities of the fragment ion spectrum as a new list of
+     * boxed values, created on every call. Changes to the list do not change
+     * the support data. See {@link #getYValuesFragIonMass2ChargeArray()} to
+     * read the values without copying.
+     *
+     * @return the values, null if not given
+     */
     public ArrayList<Double> getYValuesFragIonMass2Charge() {
+        return toDoubleList(iYValuesFragIonMass2Charge);
+    }
+
+    /**
+     * Returns the intensities of the fragment ion spectrum without boxing. The
+     * array is shared, not copied, and must not be changed.
+     *
+     * @return the values, null if not given
+     */
+    public double[] getYValuesFragIonMass2ChargeArray() {
         return iYValuesFragIonMass2Charge;
     }
 
     public void setYValuesFragIonMass2Charge(ArrayList<Double> aValuesFragIonMass2Charge) {
-        iYValuesFragIonMass2Charge = aValuesFragIonMass2Charge;
+        iYValuesFragIonMass2Charge = toDoubleArray(aValuesFragIonMass2Charge);
+    }
+
+    /**
+     * Creates a copy of the given support data, e.g., of the support data
+     * kept in a cache. The arrays of values are shared, as they are only ever
+     * replaced and never changed.
+     *
+     * @param aSupportData the support data to copy
+     */
+    SupportData(SupportData aSupportData) {
+        iHyperlabel = aSupportData.iHyperlabel;
+        iConvolLabel = aSupportData.iConvolLabel;
+        iA_ionLabel = aSupportData.iA_ionLabel;
+        iB_ionLabel = aSupportData.iB_ionLabel;
+        iC_ionLabel = aSupportData.iC_ionLabel;
+        iX_ionLabel = aSupportData.iX_ionLabel;
+        iY_ionLabel = aSupportData.iY_ionLabel;
+        iZ_ionLabel = aSupportData.iZ_ionLabel;
+        iSpectrumLabel = aSupportData.iSpectrumLabel;
+        iFragIonSpectrumDescription = aSupportData.iFragIonSpectrumDescription;
+        iFragIonMz = aSupportData.iFragIonMz;
+        iFragIonCharge = aSupportData.iFragIonCharge;
+        iHyper_a0 = aSupportData.iHyper_a0;
+        iHyper_a1 = aSupportData.iHyper_a1;
+        setValues(new int[][]{
+            aSupportData.iXValuesHyperscore, aSupportData.iYValuesHyperscore,
+            aSupportData.iXValuesConvolute, aSupportData.iYValuesConvolute,
+            aSupportData.iXValuesaIons, aSupportData.iYValuesaIons,
+            aSupportData.iXValuesbIons, aSupportData.iYValuesbIons,
+            aSupportData.iXValuescIons, aSupportData.iYValuescIons,
+            aSupportData.iXValuesxIons, aSupportData.iYValuesxIons,
+            aSupportData.iXValuesyIons, aSupportData.iYValuesyIons,
+            aSupportData.iXValueszIons, aSupportData.iYValueszIons
+        }, aSupportData.iXValuesFragIonMass2Charge, aSupportData.iYValuesFragIonMass2Charge);
     }
 
     /**
-     * Splits a given number string into a separate Integer values, which are
-     * stored in an array list.
+     * Sets the values of the histograms and of the fragment ion spectrum,
+     * e.g., once read from an {@link OffHeapSupportData}.
      *
-     * @param aNumberString Number string
-     * @return NumberList
+     * @param aHistogramValues the x and y values of the hyperscore,
+     * convolution, a, b, c, x, y and z ion histograms, null for missing values
+     * @param aXValuesFragIonMass2Charge the m/z values of the fragment ions
+     * @param aYValuesFragIonMass2Charge the intensities of the fragment ions
      */
-    private ArrayList<Integer> splitStringToIntegerList(String aNumberString) {
-        ArrayList<Integer> NumberList = new ArrayList<Integer>();
-        String[] temp;
-        aNumberString = aNumberString.trim();
-        aNumberString = aNumberString.replaceAll("\n", " ");
-        temp = aNumberString.split(" ");
+    void setValues(int[][] aHistogramValues, double[] aXValuesFragIonMass2Charge, double[] aYValuesFragIonMass2Charge) {
+        iXValuesHyperscore = aHistogramValues[0];
+        iYValuesHyperscore = aHistogramValues[1];
+        iXValuesConvolute = aHistogramValues[2];
+        iYValuesConvolute = aHistogramValues[3];
+        iXValuesaIons = aHistogramValues[4];
+        iYValuesaIons = aHistogramValues[5];
+        iXValuesbIons = aHistogramValues[6];
+        iYValuesbIons = aHistogramValues[7];
+        iXValuescIons = aHistogramValues[8];
+        iYValuescIons = aHistogramValues[9];
+        iXValuesxIons = aHistogramValues[10];
+        iYValuesxIons = aHistogramValues[11];
+        iXValuesyIons = aHistogramValues[12];
+        iYValuesyIons = aHistogramValues[13];
+        iXValueszIons = aHistogramValues[14];
+        iYValueszIons = aHistogramValues[15];
+        iXValuesFragIonMass2Charge = aXValuesFragIonMass2Charge;
+        iYValuesFragIonMass2Charge = aYValuesFragIonMass2Charge;
+    }
 
-        for (String string : temp) {
-            if (string.length() > 0) {
-                NumberList.add(Integer.parseInt((string)));
-            }
+    /**
+     * Boxes the given values into an array list.
+     *
+     * @param aValues the values, may be null
+     * @return the values as list, null if no values are given
+     */
+    private static ArrayList<Integer> toIntegerList(int[] aValues) {
+        if (aValues == null) {
+            return null;
         }
-        return NumberList;
+        ArrayList<Integer> list = new ArrayList<Integer>(aValues.length);
+        for (int value : aValues) {
+            list.add(value);
+        }
+        return list;
     }
 
     /**
-     * Splits a given number string into a separate Double values, which are
-     * stored in an array list.
+     * Boxes the given values into an array list.
      *
-     * @param aNumberString Number string
-     * @return NumberList
+     * @param aValues the values, may be null
+     * @return the values as list, null if no values are given
      */
-    private ArrayList<Double> splitStringToDoubleList(String aNumberString) {
-        ArrayList<Double> NumberList = new ArrayList<Double>();
-        String[] temp;
-        aNumberString = aNumberString.trim();
-        aNumberString = aNumberString.replaceAll("\n", " ");
-        temp = aNumberString.split(" ");
+    private static ArrayList<Double> toDoubleList(double[] aValues) {
+        if (aValues == null) {
+            return null;
+        }
+        ArrayList<Double> list = new ArrayList<Double>(aValues.length);
+        for (double value : aValues) {
+            list.add(value);
+        }
+        return list;
+    }
 
-        for (String string : temp) {
-            NumberList.add(Double.parseDouble((string)));
+    /**
+     * Unboxes the values of the given list.
+     *
+     * @param aValues the values, may be null
+     * @return the values as array, null if no values are given
+     */
+    private static int[] toIntArray(ArrayList<Integer> aValues) {
+        if (aValues == null) {
+            return null;
+        }
+        int[] array = new int[aValues.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = aValues.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Unboxes the values of the given list.
+     *
+     * @param aValues the values, may be null
+     * @return the values as array, null if no values are given
+     */
+    private static double[] toDoubleArray(ArrayList<Double> aValues) {
+        if (aValues == null) {
+            return null;
+        }
+        double[] array = new double[aValues.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = aValues.get(i);
         }
-        return NumberList;
+        return array;
     }
 }
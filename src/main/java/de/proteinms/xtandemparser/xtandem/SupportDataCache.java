@@ -0,0 +1,164 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class caches the support data of the spectra, so that repeated
+ * requests for the same spectrum do not rebuild the support data from the raw
+ * support map. The cache holds at most the given number of spectra and
+ * evicts the least recently used one when full. The number of hits, misses
+ * and evictions are counted. The cache only keeps the support data, the raw
+ * support map is never changed.
+ */
+public class SupportDataCache {
+
+    /**
+     * The maximum size to use for no cache, every request is a miss.
+     */
+    public static final int NO_CACHE = 0;
+    /**
+     * The maximum size to use for a cache without limit.
+     */
+    public static final int UNBOUNDED = -1;
+    /**
+     * The default maximum number of cached spectra.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+    /**
+     * The maximum number of cached spectra, {@link #NO_CACHE} to cache
+     * nothing, {@link #UNBOUNDED} for no limit.
+     */
+    private int iMaximumSize;
+    /**
+     * The cached support data by spectrum number, in access order.
+     */
+    private LinkedHashMap<Integer, SupportData> iCache;
+    /**
+     * The number of requests answered from the cache.
+     */
+    private long iHitCount = 0;
+    /**
+     * The number of requests not answered from the cache.
+     */
+    private long iMissCount = 0;
+    /**
+     * The number of evicted entries.
+     */
+    private long iEvictionCount = 0;
+
+    /**
+     * Creates a cache with the given maximum size.
+     *
+     * @param aMaximumSize the maximum number of cached spectra,
+     * {@link #NO_CACHE} to cache nothing, {@link #UNBOUNDED} for no limit
+     */
+    public SupportDataCache(int aMaximumSize) {
+        if (aMaximumSize < UNBOUNDED) {
+            throw new IllegalArgumentException("The maximum size must not be negative: " + aMaximumSize);
+        }
+        iMaximumSize = aMaximumSize;
+        iCache = new LinkedHashMap<Integer, SupportData>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, SupportData> aEldest) {
+                if (iMaximumSize != UNBOUNDED && size() > iMaximumSize) {
+                    iEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the support data of a spectrum and marks it as recently used.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @return the support data, null if not cached
+     */
+    public synchronized SupportData get(int aSpectrumNumber) {
+        SupportData supportData = iCache.get(aSpectrumNumber);
+        if (supportData != null) {
+            iHitCount++;
+        } else {
+            iMissCount++;
+        }
+        return supportData;
+    }
+
+    /**
+     * Adds the support data of a spectrum, evicting the least recently used
+     * entry if the cache is full. Nothing is added without cache.
+     *
+     * @param aSpectrumNumber the spectrum number
+     * @param aSupportData the support data
+     */
+    public synchronized void put(int aSpectrumNumber, SupportData aSupportData) {
+        if (iMaximumSize != NO_CACHE) {
+            iCache.put(aSpectrumNumber, aSupportData);
+        }
+    }
+
+    /**
+     * Removes all entries. The counters are not reset.
+     */
+    public synchronized void clear() {
+        iCache.clear();
+    }
+
+    /**
+     * Returns true if the cache has no limit, i.e., entries are never
+     * evicted.
+     *
+     * @return true if the cache has no limit
+     */
+    public boolean isUnbounded() {
+        return iMaximumSize == UNBOUNDED;
+    }
+
+    /**
+     * Returns the maximum number of cached spectra.
+     *
+     * @return the maximum size, {@link #NO_CACHE} if nothing is cached,
+     * {@link #UNBOUNDED} for no limit
+     */
+    public int getMaximumSize() {
+        return iMaximumSize;
+    }
+
+    /**
+     * Returns the number of cached spectra.
+     *
+     * @return the number of cached spectra
+     */
+    public synchronized int size() {
+        return iCache.size();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHitCount() {
+        return iHitCount;
+    }
+
+    /**
+     * Returns the number of requests not answered from the cache.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMissCount() {
+        return iMissCount;
+    }
+
+    /**
+     * Returns the number of entries evicted because the cache was full.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return iEvictionCount;
+    }
+}
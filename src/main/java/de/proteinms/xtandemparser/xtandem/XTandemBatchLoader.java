@@ -0,0 +1,409 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.parser.DecompressingInputStream;
+import de.proteinms.xtandemparser.parser.StringDictionary;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * This class loads many X!Tandem files concurrently. The files are parsed
+ * into {@link XTandemFile}s by the given executor, and the results are taken
+ * one by one with {@link #take()}, either in the order in which the files
+ * finish or in the order of the paths.
+ * <p>
+ * The memory used is bounded by a budget of bytes in flight: a file counts
+ * with its size from the moment it is submitted until its result is taken,
+ * and no file is submitted while the budget is used up. A file larger than
+ * the whole budget is loaded on its own. The size of a compressed file is
+ * estimated as {@link #COMPRESSION_RATIO} times its size on disk, as the
+ * uncompressed size of a gzip file is only known once it is read.
+ */
+public class XTandemBatchLoader {
+
+    /**
+     * The default budget of bytes in flight.
+     */
+    public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 1L << 30;
+    /**
+     * The estimated ratio of the uncompressed to the compressed size of a
+     * compressed X!Tandem file.
+     */
+    public static final int COMPRESSION_RATIO = 8;
+    /**
+     * The paths of the files.
+     */
+    private List<String> iPaths;
+    /**
+     * The sections to parse.
+     */
+    private EnumSet<XTandemSection> iSections;
+    /**
+     * The executor parsing the files.
+     */
+    private Executor iExecutor;
+    /**
+     * The budget of bytes in flight.
+     */
+    private long iMaxBytesInFlight = DEFAULT_MAX_BYTES_IN_FLIGHT;
+    /**
+     * True if the results are taken in the order of the paths.
+     */
+    private boolean iInputOrder = false;
+    /**
+     * The dictionary shared by the files, null if every file uses its own.
+     */
+    private StringDictionary iStringDictionary = null;
+    /**
+     * The finished results by path index, used in input order.
+     */
+    private Result[] iResults;
+    /**
+     * The finished results in completion order.
+     */
+    private LinkedList<Result> iCompletedResults = new LinkedList<Result>();
+    /**
+     * The index of the next path to submit.
+     */
+    private int iNextSubmitted = 0;
+    /**
+     * The number of results taken.
+     */
+    private int iTaken = 0;
+    /**
+     * The estimated size of the files submitted and not taken yet.
+     */
+    private long iBytesInFlight = 0;
+
+    /**
+     * Creates a loader for a list of X!Tandem files. Nothing is loaded before
+     * the first result is taken.
+     *
+     * @param aPaths the paths of the files
+     * @param aSections the sections to parse
+     * @param aExecutor the executor parsing the files, e.g., a fixed thread
+     * pool with one thread per core
+     */
+    public XTandemBatchLoader(List<String> aPaths, EnumSet<XTandemSection> aSections, Executor aExecutor) {
+        iPaths = new ArrayList<String>(aPaths);
+        iSections = EnumSet.copyOf(aSections);
+        iExecutor = aExecutor;
+        iResults = new Result[iPaths.size()];
+    }
+
+    /**
+     * Sets the budget of bytes in flight.
+     *
+     * @param aMaxBytesInFlight the maximum total estimated size of the files
+     * submitted and not taken yet
+     */
+    public synchronized void setMaxBytesInFlight(long aMaxBytesInFlight) {
+        if (aMaxBytesInFlight <= 0) {
+            throw new IllegalArgumentException("The budget must be positive: " + aMaxBytesInFlight);
+        }
+        iMaxBytesInFlight = aMaxBytesInFlight;
+    }
+
+    /**
+     * Sets the order in which the results are taken. Must be set before the
+     * first result is taken.
+     *
+     * @param aInputOrder if true the results are taken in the order of the
+     * paths, otherwise in the order in which the files finish
+     */
+    public synchronized void setInputOrder(boolean aInputOrder) {
+        if (iNextSubmitted > 0) {
+            throw new IllegalStateException("The loading has already started");
+        }
+        iInputOrder = aInputOrder;
+    }
+
+    /**
+     * Sets a dictionary shared by all the files, so that the protein labels,
+     * descriptions and sequences found in several files are kept in memory
+     * only once. Must be set before the first result is taken.
+     *
+     * @param aStringDictionary the dictionary, null if every file uses its own
+     */
+    public synchronized void setStringDictionary(StringDictionary aStringDictionary) {
+        if (iNextSubmitted > 0) {
+            throw new IllegalStateException("The loading has already started");
+        }
+        iStringDictionary = aStringDictionary;
+    }
+
+    /**
+     * Returns the number of files.
+     *
+     * @return the number of files
+     */
+    public int getNumberOfFiles() {
+        return iPaths.size();
+    }
+
+    /**
+     * Returns the next result, waiting for it if it is not finished yet. The
+     * budget used by the file is released.
+     *
+     * @return the result, null once all results are taken
+     *
+     * @exception InterruptedException if interrupted while waiting
+     */
+    public synchronized Result take() throws InterruptedException {
+        if (iTaken == iPaths.size()) {
+            return null;
+        }
+        submitFiles();
+
+        Result result;
+        if (iInputOrder) {
+            while (iResults[iTaken] == null) {
+                wait();
+            }
+            result = iResults[iTaken];
+            iResults[iTaken] = null;
+        } else {
+            while (iCompletedResults.isEmpty()) {
+                wait();
+            }
+            result = iCompletedResults.removeFirst();
+        }
+        iTaken++;
+
+        iBytesInFlight -= result.getEstimatedSize();
+        submitFiles();
+        return result;
+    }
+
+    /**
+     * Submits the next files as long as the budget allows it. In input order
+     * the next result to take is always submitted before the later ones, so
+     * the budget cannot be used up by results waiting for it.
+     */
+    private synchronized void submitFiles() {
+        while (iNextSubmitted < iPaths.size()) {
+            String path = iPaths.get(iNextSubmitted);
+            long size = new File(path).length();
+            long estimatedSize = isCompressed(path) ? size * COMPRESSION_RATIO : size;
+            if (iBytesInFlight > 0 && iBytesInFlight + estimatedSize > iMaxBytesInFlight) {
+                return;
+            }
+            final Result result = new Result(iNextSubmitted, path, size, estimatedSize);
+            iBytesInFlight += estimatedSize;
+            iNextSubmitted++;
+            try {
+                iExecutor.execute(new Runnable() {
+                    public void run() {
+                        load(result);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.iError = e;
+                finished(result);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a file is compressed, as recognized from its magic
+     * bytes.
+     *
+     * @param aPath the path of the file
+     * @return true if compressed, false if not or if the file cannot be read,
+     * which fails its loading anyway
+     */
+    private static boolean isCompressed(String aPath) {
+        try {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(aPath), 16);
+            try {
+                return DecompressingInputStream.detect(inputStream) != DecompressingInputStream.Compression.NONE;
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a file. Runs on a thread of the executor.
+     *
+     * @param aResult the result to fill
+     */
+    private void load(Result aResult) {
+        aResult.iStartTime = System.nanoTime();
+        try {
+            if (iStringDictionary != null) {
+                aResult.iXTandemFile = new XTandemFile(aResult.getPath(), iSections, iStringDictionary);
+            } else {
+                aResult.iXTandemFile = new XTandemFile(aResult.getPath(), iSections);
+            }
+        } catch (Throwable t) {
+            // also errors, e.g., running out of memory, must not leave the result missing
+            aResult.iError = t;
+        } finally {
+            aResult.iEndTime = System.nanoTime();
+            finished(aResult);
+        }
+    }
+
+    /**
+     * Hands a finished result to the threads taking them.
+     *
+     * @param aResult the result
+     */
+    private synchronized void finished(Result aResult) {
+        if (iInputOrder) {
+            iResults[aResult.getIndex()] = aResult;
+        } else {
+            iCompletedResults.add(aResult);
+        }
+        notifyAll();
+    }
+
+    /**
+     * The result of loading one file.
+     */
+    public static class Result {
+
+        /**
+         * The index of the path.
+         */
+        private int iIndex;
+        /**
+         * The path of the file.
+         */
+        private String iPath;
+        /**
+         * The size of the file.
+         */
+        private long iFileSize;
+        /**
+         * The estimated uncompressed size of the file.
+         */
+        private long iEstimatedSize;
+        /**
+         * The loaded file, null if the loading failed.
+         */
+        private XTandemFile iXTandemFile = null;
+        /**
+         * The error, null if the loading succeeded.
+         */
+        private Throwable iError = null;
+        /**
+         * The time the file was submitted to the executor.
+         */
+        private long iSubmitTime;
+        /**
+         * The time the parsing started.
+         */
+        private long iStartTime;
+        /**
+         * The time the parsing ended.
+         */
+        private long iEndTime;
+
+        /**
+         * Creates the result of a submitted file.
+         *
+         * @param aIndex the index of the path
+         * @param aPath the path of the file
+         * @param aFileSize the size of the file
+         * @param aEstimatedSize the estimated uncompressed size of the file
+         */
+        private Result(int aIndex, String aPath, long aFileSize, long aEstimatedSize) {
+            iIndex = aIndex;
+            iPath = aPath;
+            iFileSize = aFileSize;
+            iEstimatedSize = aEstimatedSize;
+            iSubmitTime = System.nanoTime();
+            iStartTime = iSubmitTime;
+            iEndTime = iSubmitTime;
+        }
+
+        /**
+         * Returns the index of the path in the list of paths.
+         *
+         * @return the index
+         */
+        public int getIndex() {
+            return iIndex;
+        }
+
+        /**
+         * Returns the path of the file.
+         *
+         * @return the path
+         */
+        public String getPath() {
+            return iPath;
+        }
+
+        /**
+         * Returns the size of the file on disk.
+         *
+         * @return the size in bytes
+         */
+        public long getFileSize() {
+            return iFileSize;
+        }
+
+        /**
+         * Returns the estimated uncompressed size of the file, counted in the
+         * budget of bytes in flight.
+         *
+         * @return the size in bytes,
+         * {@link XTandemBatchLoader#COMPRESSION_RATIO} times the size on disk
+         * for a compressed file
+         */
+        public long getEstimatedSize() {
+            return iEstimatedSize;
+        }
+
+        /**
+         * Returns the loaded file.
+         *
+         * @return the file, null if the loading failed
+         */
+        public XTandemFile getXTandemFile() {
+            return iXTandemFile;
+        }
+
+        /**
+         * Returns the error which made the loading fail.
+         *
+         * @return the error, null if the loading succeeded
+         */
+        public Throwable getError() {
+            return iError;
+        }
+
+        /**
+         * Returns the time the file waited in the queue of the executor.
+         *
+         * @return the queue time in nanoseconds
+         */
+        public long getQueueTime() {
+            return iStartTime - iSubmitTime;
+        }
+
+        /**
+         * Returns the time spent parsing the file.
+         *
+         * @return the parse time in nanoseconds
+         */
+        public long getParseTime() {
+            return iEndTime - iStartTime;
+        }
+    }
+}
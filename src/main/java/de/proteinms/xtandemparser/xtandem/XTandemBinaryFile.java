@@ -0,0 +1,153 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.parser.BinaryBlocks;
+import de.proteinms.xtandemparser.parser.XTandemParser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * This class saves parsed X!Tandem files in a binary format and loads them
+ * again, which is much faster than parsing the XML file again. The spectra,
+ * peptides, domains and modifications are saved as the length prefixed
+ * primitive columns of the result store, and the histograms and fragment ion
+ * spectra optionally as the buffer of an {@link OffHeapSupportData}. The file
+ * is memory mapped when loaded, the support data is used straight from the
+ * mapping.
+ * <p>
+ * The format starts with a magic number and a version. A file of another
+ * version is refused, it has to be saved again from the X!Tandem file.
+ */
+public class XTandemBinaryFile {
+
+    /**
+     * The usual extension of the binary files.
+     */
+    public static final String EXTENSION = ".xtb";
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 2;
+    /**
+     * The magic number at the start of the files, "XTB" and a zero byte.
+     */
+    private static final int MAGIC = 0x58544200;
+
+    /**
+     * Static methods only.
+     */
+    private XTandemBinaryFile() {
+    }
+
+    /**
+     * Saves a parsed X!Tandem file.
+     *
+     * @param aXTandemFile the parsed X!Tandem file
+     * @param aPath the path of the binary file
+     * @param aSupportData if true the support data is saved as well
+     * @exception IOException if the file could not be written
+     */
+    public static void save(XTandemFile aXTandemFile, String aPath, boolean aSupportData) throws IOException {
+        XTandemParser parser = aXTandemFile.getParser();
+        HashMap<String, String> supportDataMap = parser.getSupportDataMap();
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aPath), 1 << 16));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeBoolean(aSupportData);
+            BinaryBlocks.writeString(output, aXTandemFile.getFileName());
+
+            if (!aSupportData) {
+                parser.writeBinary(output, new HashMap<String, String>());
+            } else {
+                aXTandemFile.getSupportDataLock().readLock().lock();
+                try {
+                    OffHeapSupportData offHeapSupportData = aXTandemFile.getOffHeapSupportData();
+                    if (offHeapSupportData != null) {
+                        parser.writeBinary(output, supportDataMap);
+                        offHeapSupportData.write(output);
+                    } else {
+                        // Move the values of a copy, the file itself is left as it is
+                        HashMap<String, String> labels = new HashMap<String, String>(supportDataMap);
+                        offHeapSupportData = new OffHeapSupportData(labels);
+                        try {
+                            parser.writeBinary(output, labels);
+                            offHeapSupportData.write(output);
+                        } finally {
+                            offHeapSupportData.close();
+                        }
+                    }
+                } finally {
+                    aXTandemFile.getSupportDataLock().readLock().unlock();
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Loads an X!Tandem file saved before. The support data, if saved, is
+     * mapped from the file and released by {@link XTandemFile#close()}.
+     *
+     * @param aPath the path of the binary file
+     * @return the X!Tandem file
+     * @exception IOException if the file could not be read or is not a binary
+     * X!Tandem file of this version
+     */
+    public static XTandemFile load(String aPath) throws IOException {
+        File file = new File(aPath);
+        if (!file.exists()) {
+            throw new IllegalArgumentException("XTandem binary file " + aPath + " doesn't exist.");
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (input.remaining() < 9 || input.getInt() != MAGIC) {
+                    throw new IOException("Not an X!Tandem binary file: " + aPath);
+                }
+                int version = input.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported X!Tandem binary file version " + version + ": " + aPath);
+                }
+                boolean supportData = input.get() != 0;
+                String fileName = BinaryBlocks.readString(input);
+                XTandemParser parser = XTandemParser.readBinary(input);
+
+                OffHeapSupportData offHeapSupportData = null;
+                if (supportData) {
+                    int[] spectrumNumbers = BinaryBlocks.readInts(input);
+                    int[] offsets = BinaryBlocks.readInts(input);
+                    ByteOrder order = input.get() != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+                    int size = input.getInt();
+                    if (size > input.remaining()) {
+                        throw new IOException("Corrupt X!Tandem binary file " + aPath + ": the support data is truncated");
+                    }
+                    ByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, input.position(), size).order(order);
+                    offHeapSupportData = new OffHeapSupportData(values, spectrumNumbers, offsets);
+                }
+                return new XTandemFile(parser, fileName, offHeapSupportData);
+            } catch (RuntimeException e) {
+                // e.g., a buffer underflow in a truncated file
+                throw new IOException("Corrupt X!Tandem binary file " + aPath + ": " + e, e);
+            } finally {
+                // Everything but the support data was copied out of the mapping
+                OffHeapSupportData.free(input);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
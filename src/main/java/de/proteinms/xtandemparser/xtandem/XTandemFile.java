@@ -1,15 +1,27 @@
 package de.proteinms.xtandemparser.xtandem;
 
 import de.proteinms.xtandemparser.interfaces.Ion;
+import de.proteinms.xtandemparser.parser.StringDictionary;
 import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.parser.XTandemSection;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.xml.sax.SAXException;
@@ -63,6 +75,25 @@ public class XTandemFile implements Serializable {
      * This variable holds the number of spectra.
      */
     private int iSpectraNumber = 0;
+    /**
+     * The cache of the support data, created when first used.
+     */
+    private transient SupportDataCache iSupportDataCache = null;
+    /**
+     * The maximum number of spectra in the support data cache.
+     */
+    private int iSupportDataCacheSize = SupportDataCache.DEFAULT_MAXIMUM_SIZE;
+    /**
+     * The histograms and fragment ion spectra kept off-heap, null if they are
+     * kept in the support data map.
+     */
+    private transient volatile OffHeapSupportData iOffHeapSupportData = null;
+    /**
+     * The lock of the raw support data: the support data is built under the
+     * read lock, so that any number of threads build it at the same time,
+     * while the raw values are moved off-heap and freed under the write lock.
+     */
+    private final ReentrantReadWriteLock iSupportDataLock = new ReentrantReadWriteLock();
 
     /**
      * Constructor of XTandemFile gets a string to an existing path and filename
@@ -105,6 +136,138 @@ public class XTandemFile implements Serializable {
         }
     }
 
+    /**
+     * Constructor of XTandemFile gets a string to an existing path and filename
+     * of the xtandem file and the sections of the file to parse. The other
+     * sections are skipped, e.g., the histograms and the fragment ion spectra
+     * which make up most of the file are not read if only the domains are
+     * needed.
+     *
+     * @param aXTandemFile the given XTandem file.
+     * @param aSections the sections to parse
+     * @throws SAXException SAX parsing exception thrown.
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public XTandemFile(String aXTandemFile, EnumSet<XTandemSection> aSections) throws SAXException, ParserConfigurationException {
+        try {
+            File inputFile = new File(aXTandemFile);
+            if (!inputFile.exists()) {
+                throw new IllegalArgumentException("XTandem xml-file " + aXTandemFile + " doesn't exist.");
+            }
+            XTandemParserOptions options = new XTandemParserOptions();
+            options.setSections(aSections);
+            iXTParser = new XTandemParser(inputFile, options);
+            setFileName(aXTandemFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates an X!Tandem file of the results of a parser, e.g., a parser
+     * reading the file through memory mapped windows or on several threads.
+     *
+     * @param aParser the parser holding the results
+     * @param aFileName the path of the X!Tandem file, may be null
+     */
+    public XTandemFile(XTandemParser aParser, String aFileName) {
+        this(aParser, aFileName, null);
+    }
+
+    /**
+     * Creates an X!Tandem file of results read by a parser before, e.g., from
+     * the binary format.
+     *
+     * @param aParser the parser holding the results
+     * @param aFileName the path of the X!Tandem file, may be null
+     * @param aOffHeapSupportData the histograms and fragment ion spectra kept
+     * off-heap, null if they are kept in the support data map
+     */
+    XTandemFile(XTandemParser aParser, String aFileName, OffHeapSupportData aOffHeapSupportData) {
+        iXTParser = aParser;
+        iFileName = aFileName;
+        iOffHeapSupportData = aOffHeapSupportData;
+    }
+
+    /**
+     * Returns the parser holding the results.
+     *
+     * @return the parser
+     */
+    XTandemParser getParser() {
+        return iXTParser;
+    }
+
+    /**
+     * Constructor of XTandemFile gets a string to an existing path and filename
+     * of the xtandem file and the sections of the file to parse, and interns
+     * the repeated strings with the given dictionary. Files loaded with the
+     * same dictionary share the protein labels, descriptions and sequences
+     * they have in common.
+     *
+     * @param aXTandemFile the given XTandem file.
+     * @param aSections the sections to parse
+     * @param aStringDictionary the dictionary shared by the files
+     * @throws SAXException SAX parsing exception thrown.
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public XTandemFile(String aXTandemFile, EnumSet<XTandemSection> aSections, StringDictionary aStringDictionary) throws SAXException, ParserConfigurationException {
+        try {
+            File inputFile = new File(aXTandemFile);
+            if (!inputFile.exists()) {
+                throw new IllegalArgumentException("XTandem xml-file " + aXTandemFile + " doesn't exist.");
+            }
+            XTandemParserOptions options = new XTandemParserOptions();
+            options.setSections(aSections);
+            options.setStringDictionary(aStringDictionary);
+            iXTParser = new XTandemParser(inputFile, options);
+            setFileName(aXTandemFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Constructor of XTandemFile reading the xtandem file from a stream and
+     * parsing the given sections. gzip compressed files are decompressed on
+     * the fly, so archived .t.xml.gz files can be read without decompressing
+     * them to disk. The stream is closed. The file name is not known and
+     * stays null.
+     *
+     * @param aInputStream the stream to read the XTandem file from
+     * @param aSections the sections to parse
+     * @throws IOException if the stream could not be read, or is compressed
+     * in a format which cannot be decompressed
+     * @throws SAXException SAX parsing exception thrown.
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public XTandemFile(InputStream aInputStream, EnumSet<XTandemSection> aSections) throws IOException, SAXException, ParserConfigurationException {
+        XTandemParserOptions options = new XTandemParserOptions();
+        options.setSections(aSections);
+        iXTParser = new XTandemParser(aInputStream, options);
+    }
+
+    /**
+     * Constructor of XTandemFile reading the xtandem file from a channel and
+     * parsing the given sections. gzip compressed files are decompressed on
+     * the fly. The channel is closed. The file name is not known and stays
+     * null.
+     *
+     * @param aChannel the channel to read the XTandem file from
+     * @param aSections the sections to parse
+     * @throws IOException if the channel could not be read, or the file is
+     * compressed in a format which cannot be decompressed
+     * @throws SAXException SAX parsing exception thrown.
+     * @throws ParserConfigurationException if a ParserConfigurationException
+     * occurs
+     */
+    public XTandemFile(ReadableByteChannel aChannel, EnumSet<XTandemSection> aSections) throws IOException, SAXException, ParserConfigurationException {
+        this(Channels.newInputStream(aChannel), aSections);
+    }
+
     /**
      * Returns the input parameters.
      *
@@ -179,7 +342,7 @@ public class XTandemFile implements Serializable {
      */
     public ModificationMap getModificationMap() {
         if (iModMap == null) {
-            iModMap = new ModificationMap(iXTParser.getRawModMap(), this.getPeptideMap(), this.getInputParameters(), iXTParser.getNumberOfSpectra());
+            iModMap = new ModificationMap(iXTParser.getResultStore(), this.getPeptideMap(), this.getInputParameters());
         }
         return iModMap;
     }
@@ -201,14 +364,8 @@ public class XTandemFile implements Serializable {
         // The vector should contain two arrays: b ions & y ions
         SupportData supData = this.getSupportData(peptide.getSpectrumNumber());
 
-        ArrayList<Double> mzList = supData.getXValuesFragIonMass2Charge();
-        ArrayList<Double> intList = supData.getYValuesFragIonMass2Charge();
-        SpectrumPeak[] peaks = new SpectrumPeak[mzList.size()];
-        for (int i = 0; i < mzList.size(); i++) {
-            peaks[i] = new SpectrumPeak();
-            peaks[i].setMz(mzList.get(i));
-            peaks[i].setIntensity(intList.get(i));
-        }
+        // The peaks are sorted once and matched against all the ion types
+        PeakMatcher peaks = new PeakMatcher(supData.getXValuesFragIonMass2ChargeArray(), supData.getYValuesFragIonMass2ChargeArray());
 
         // Match MH peaks
         Vector<FragmentIon> matchedMHIons = digester.getMatchedIons(FragmentIon.MH_ION, peaks);
@@ -325,7 +482,7 @@ public class XTandemFile implements Serializable {
      */
     public PeptideMap getPeptideMap() {
         if (iPeptideMap == null) {
-            iPeptideMap = new PeptideMap(iXTParser.getRawPeptideMap(), this.getProteinMap(), iXTParser.getNumberOfSpectra());
+            iPeptideMap = new PeptideMap(iXTParser.getResultStore());
         }
         return iPeptideMap;
     }
@@ -344,6 +501,30 @@ public class XTandemFile implements Serializable {
         }
     }
 
+    /**
+     * Returns a lazy iterator over all the spectra. Unlike
+     * {@link #getSpectraIterator()} the spectra are not collected in a list,
+     * every spectrum is built when it is requested, and the iterator can be
+     * split to process the spectra on several threads.
+     *
+     * @return the spectrum iterator
+     */
+    public SpectrumIterator spectra() {
+        return new SpectrumIterator(iXTParser.getResultStore(), 0, iXTParser.getResultStore().getNumberOfSpectra());
+    }
+
+    /**
+     * Returns a lazy iterator over all the peptide to spectrum matches, i.e.,
+     * over every domain of every peptide of every spectrum. The matches are
+     * built spectrum by spectrum when they are requested, and the iterator can
+     * be split to process the spectra on several threads.
+     *
+     * @return the match iterator
+     */
+    public PsmIterator psms() {
+        return new PsmIterator(iXTParser.getResultStore(), 0, iXTParser.getResultStore().getNumberOfSpectra());
+    }
+
     /**
      * This method returns a list of all the spectra.
      *
@@ -353,50 +534,48 @@ public class XTandemFile implements Serializable {
         if (iSpectraList == null) {
 
             iSpectraNumber = iXTParser.getNumberOfSpectra();
-            iSpectraList = new ArrayList<Spectrum>();
-            //Get the entries from the spectrum map
-            HashMap<String, String> spectrumSection = iXTParser.getRawSpectrumMap();
+            iSpectraList = new ArrayList<Spectrum>(iSpectraNumber);
+            //Get the spectra from the result store
+            XTandemResultStore resultStore = iXTParser.getResultStore();
 
             // Set the IdToNumberMap
-            iIdToNumberMap = new HashMap<String, Integer>();
+            iIdToNumberMap = new HashMap<String, Integer>(iSpectraNumber);
 
             for (int i = 1; i < iSpectraNumber + 1; i++) {
 
-                // SpectrumID
-                int spectrumID = Integer.parseInt(spectrumSection.get("id" + i));
-                iIdToNumberMap.put(spectrumSection.get("id" + i), i);
-
-                // Precursor mass
-                double precursorMh = Double.parseDouble(spectrumSection.get("mh" + i));
-
-                // Precursor charge
-                int precursorCharge = Integer.parseInt(spectrumSection.get("z" + i));
+                int index = i - 1;
 
-                // Precursor retention time
-                String precursorRetentionTime = spectrumSection.get("rt" + i);
-
-                // valueList contains exspectValue, summedScore, maxFragIonIntensity and intensityMultiplier
-                ArrayList<Double> valueList = new ArrayList<Double>();
-
-                double expectValue = Double.parseDouble(spectrumSection.get("expect" + i));
-                valueList.add(expectValue);
-                double summedScore = Double.parseDouble(spectrumSection.get("sumI" + i));
-                valueList.add(summedScore);
-                double maxFragIonIntensity = Double.parseDouble(spectrumSection.get("maxI" + i));
-                valueList.add(maxFragIonIntensity);
-                double intensityMultiplier = Double.parseDouble(spectrumSection.get("fI" + i));
-                valueList.add(intensityMultiplier);
-
-                // Spectrum label
-                String label = spectrumSection.get("label" + i);
+                // SpectrumID
+                int spectrumID = resultStore.getSpectrumId(index);
+                iIdToNumberMap.put(Integer.toString(spectrumID), i);
 
                 // Add all the spectra parameters to the list
-                iSpectraList.add(new Spectrum(spectrumID, precursorMh, precursorCharge, precursorRetentionTime, valueList, label, i));
+                iSpectraList.add(buildSpectrum(resultStore, index));
             }
         }
         return iSpectraList;
     }
 
+    /**
+     * Builds a spectrum from the result store of the parser.
+     *
+     * @param aResultStore the result store
+     * @param aSpectrum the index of the spectrum in the result store
+     * @return the spectrum
+     */
+    static Spectrum buildSpectrum(XTandemResultStore aResultStore, int aSpectrum) {
+
+        // valueList contains exspectValue, summedScore, maxFragIonIntensity and intensityMultiplier
+        ArrayList<Double> valueList = new ArrayList<Double>(4);
+        valueList.add(aResultStore.getSpectrumExpect(aSpectrum));
+        valueList.add(aResultStore.getSummedIntensity(aSpectrum));
+        valueList.add(aResultStore.getMaxIntensity(aSpectrum));
+        valueList.add(aResultStore.getIntensityMultiplier(aSpectrum));
+
+        return new Spectrum(aResultStore.getSpectrumId(aSpectrum), aResultStore.getPrecursorMh(aSpectrum), aResultStore.getPrecursorCharge(aSpectrum),
+                aResultStore.getRetentionTime(aSpectrum), valueList, aResultStore.getSpectrumLabel(aSpectrum), aResultStore.getSpectrumNumber(aSpectrum));
+    }
+
     /**
      * This method returns a specific spectrum for a given spectrum number.
      *
@@ -424,14 +603,160 @@ public class XTandemFile implements Serializable {
     }
 
     /**
-     * Returns the support data section.
+     * Returns the support data section. Every call returns a new object, so
+     * that changing it does not change the support data returned to other
+     * callers.
      *
      * @param aSpectrumNumber The spectrum number
      * @return the support data section
      */
     public SupportData getSupportData(int aSpectrumNumber) {
-        return new SupportData(iXTParser.getSupportDataMap(), aSpectrumNumber);
+        SupportDataCache cache = getSupportDataCache();
+        SupportData supportData = cache.get(aSpectrumNumber);
+        if (supportData == null) {
+            iSupportDataLock.readLock().lock();
+            try {
+                supportData = new SupportData(iXTParser.getSupportDataMap(), aSpectrumNumber);
+                if (iOffHeapSupportData != null) {
+                    iOffHeapSupportData.copyValues(supportData, aSpectrumNumber);
+                }
+            } finally {
+                iSupportDataLock.readLock().unlock();
+            }
+            cache.put(aSpectrumNumber, supportData);
+        }
+        return new SupportData(supportData);
+    }
+
+    /**
+     * Returns the cache of the support data, e.g., to read its hit and miss
+     * counts.
+     *
+     * @return the support data cache
+     */
+    public synchronized SupportDataCache getSupportDataCache() {
+        if (iSupportDataCache == null) {
+            iSupportDataCache = new SupportDataCache(iSupportDataCacheSize);
+        }
+        return iSupportDataCache;
+    }
+
+    /**
+     * Sets the maximum number of spectra whose support data is cached, the
+     * least recently used spectra are evicted. With
+     * {@link SupportDataCache#NO_CACHE} the support data is built from the
+     * support data map of the parser on every call, with
+     * {@link SupportDataCache#UNBOUNDED} the support data of all requested
+     * spectra is kept. The support data map itself is never changed. The
+     * cached support data is cleared.
+     *
+     * @param aMaximumSize the maximum number of cached spectra
+     */
+    public synchronized void setSupportDataCacheSize(int aMaximumSize) {
+        iSupportDataCache = new SupportDataCache(aMaximumSize);
+        iSupportDataCacheSize = aMaximumSize;
+    }
+
+    /**
+     * Returns the lock of the raw support data, held for reading while the
+     * raw values are read and for writing while they are moved off-heap or
+     * freed.
+     *
+     * @return the lock of the raw support data
+     */
+    ReentrantReadWriteLock getSupportDataLock() {
+        return iSupportDataLock;
+    }
+
+    /**
+     * Moves the histograms and fragment ion spectra of all spectra out of the
+     * Java heap into a direct buffer, which takes them out of the way of the
+     * garbage collector in applications keeping many files open. The support
+     * data is built from the buffer from then on. The buffer is freed by
+     * {@link #close()}. When the file is serialized the off-heap values are
+     * written with it and read back into a new direct buffer.
+     *
+     * @return the off-heap support data
+     */
+    public OffHeapSupportData moveSupportDataOffHeap() {
+        iSupportDataLock.writeLock().lock();
+        try {
+            if (iOffHeapSupportData == null) {
+                iOffHeapSupportData = new OffHeapSupportData(iXTParser.getSupportDataMap());
+            }
+            return iOffHeapSupportData;
+        } finally {
+            iSupportDataLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the histograms and fragment ion spectra kept off-heap.
+     *
+     * @return the off-heap support data, null if not moved off-heap
+     */
+    public OffHeapSupportData getOffHeapSupportData() {
+        return iOffHeapSupportData;
+    }
 
+    /**
+     * Writes the file, followed by the off-heap support data if any. The
+     * support data of a closed file stays unavailable once read back.
+     *
+     * @param aOutput the output
+     * @exception IOException if the file could not be written
+     */
+    private void writeObject(ObjectOutputStream aOutput) throws IOException {
+        iSupportDataLock.readLock().lock();
+        try {
+            aOutput.defaultWriteObject();
+            OffHeapSupportData offHeapSupportData = iOffHeapSupportData;
+            aOutput.writeBoolean(offHeapSupportData != null);
+            if (offHeapSupportData != null) {
+                aOutput.writeBoolean(offHeapSupportData.isClosed());
+                if (!offHeapSupportData.isClosed()) {
+                    DataOutputStream output = new DataOutputStream(aOutput);
+                    offHeapSupportData.write(output);
+                    output.flush();
+                }
+            }
+        } finally {
+            iSupportDataLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a file written by {@link #writeObject(ObjectOutputStream)}.
+     *
+     * @param aInput the input
+     * @exception IOException if the file could not be read
+     * @exception ClassNotFoundException if a class of the file is not found
+     */
+    private void readObject(ObjectInputStream aInput) throws IOException, ClassNotFoundException {
+        aInput.defaultReadObject();
+        if (aInput.readBoolean()) {
+            if (aInput.readBoolean()) {
+                iOffHeapSupportData = new OffHeapSupportData(null, new int[0], new int[0]);
+            } else {
+                iOffHeapSupportData = OffHeapSupportData.read(aInput);
+            }
+        }
+    }
+
+    /**
+     * Frees the off-heap support data and clears the support data cache. The
+     * support data of the spectra moved off-heap is not available anymore.
+     */
+    public void close() {
+        iSupportDataLock.writeLock().lock();
+        try {
+            if (iOffHeapSupportData != null) {
+                iOffHeapSupportData.close();
+            }
+            getSupportDataCache().clear();
+        } finally {
+            iSupportDataLock.writeLock().unlock();
+        }
     }
 
     /**
@@ -441,7 +766,7 @@ public class XTandemFile implements Serializable {
      */
     public ProteinMap getProteinMap() {
         if (iProteinMap == null) {
-            iProteinMap = new ProteinMap(iXTParser.getProteinIDList(), iXTParser.getRawProteinMap());
+            iProteinMap = new ProteinMap(iXTParser.getResultStore());
         }
         return iProteinMap;
     }
@@ -480,9 +805,9 @@ public class XTandemFile implements Serializable {
     /**
      * Returns the total number of spectra.
      *
-     * @return iSpectraNumber
+     * @return the number of spectra
      */
     public int getSpectraNumber() {
-        return iSpectraNumber;
+        return iXTParser.getNumberOfSpectra();
     }
 }
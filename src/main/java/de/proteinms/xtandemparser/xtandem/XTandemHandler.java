@@ -0,0 +1,84 @@
+package de.proteinms.xtandemparser.xtandem;
+
+import de.proteinms.xtandemparser.interfaces.Modification;
+import java.util.List;
+
+/**
+ * This interface is implemented by the classes processing an X!Tandem file
+ * spectrum by spectrum, see {@link StreamingXTandemFile}. The file is not
+ * kept in memory, every object handed to the handler is built from the model
+ * group currently parsed and dropped by the parser afterwards.
+ * <p>
+ * The callbacks of a model group are called in file order: the spectrum
+ * first, then every peptide followed by its domains, and finally the support
+ * data. A callback returning {@link Action#SKIP_GROUP} skips the remaining
+ * callbacks of the group, e.g., to leave out spectra without good
+ * identifications before their peptides and support data are built.
+ */
+public interface XTandemHandler {
+
+    /**
+     * The action to take after a callback.
+     */
+    enum Action {
+
+        /**
+         * Continue with the next callback of the group.
+         */
+        CONTINUE,
+        /**
+         * Skip the remaining callbacks of the group and continue with the
+         * next group.
+         */
+        SKIP_GROUP
+    }
+
+    /**
+     * Called once before the first spectrum with the input parameters.
+     *
+     * @param aInputParams the input parameters
+     */
+    void onParameters(InputParams aInputParams);
+
+    /**
+     * Called for the spectrum of a model group.
+     *
+     * @param aSpectrum the spectrum
+     * @return the action to take
+     */
+    Action onSpectrum(Spectrum aSpectrum);
+
+    /**
+     * Called for every peptide of a model group.
+     *
+     * @param aPeptide the peptide
+     * @return the action to take
+     */
+    Action onPeptide(Peptide aPeptide);
+
+    /**
+     * Called for every domain of a peptide, after the peptide.
+     *
+     * @param aDomain the domain
+     * @param aModifications the fixed modifications followed by the variable
+     * modifications of the domain
+     * @return the action to take
+     */
+    Action onDomain(Domain aDomain, List<Modification> aModifications);
+
+    /**
+     * Called for the support data of a model group, if the histograms or the
+     * fragment ion spectra are parsed.
+     *
+     * @param aSupportData the support data
+     * @return the action to take
+     */
+    Action onSupportData(SupportData aSupportData);
+
+    /**
+     * Called once after the last spectrum with the perform parameters.
+     *
+     * @param aPerformParams the perform parameters
+     */
+    void onEnd(PerformParams aPerformParams);
+}
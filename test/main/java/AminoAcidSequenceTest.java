@@ -0,0 +1,166 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.StringDictionary;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.AminoAcidSequence;
+import de.proteinms.xtandemparser.xtandem.Domain;
+import de.proteinms.xtandemparser.xtandem.Peptide;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Tests packing amino acid sequences.
+ */
+public class AminoAcidSequenceTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ[] \t\n\r";
+
+    /**
+     * Test that the sequences of all lengths, around the word boundaries, give
+     * back their residues.
+     */
+    public void testRoundTrip() {
+        for (int length = 0; length <= 40; length++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET.charAt((i * 7 + length) % ALPHABET.length()));
+            }
+            String string = text.toString();
+            AminoAcidSequence sequence = new AminoAcidSequence(string);
+            assertEquals(string, sequence.toString());
+            assertEquals(length, sequence.length());
+            for (int i = 0; i < length; i++) {
+                assertEquals(string.charAt(i), sequence.charAt(i));
+                assertTrue(sequence.getCode(i) != AminoAcidSequence.NO_CODE);
+            }
+            assertEquals(sequence, AminoAcidSequence.valueOf(string));
+            assertEquals(sequence.hashCode(), AminoAcidSequence.valueOf(string).hashCode());
+            assertEquals(string.trim(), sequence.trim().toString());
+        }
+    }
+
+    /**
+     * Test that the sequences with a character outside of the alphabet are
+     * kept as strings and still behave like the strings.
+     */
+    public void testFallback() {
+        String[] strings = {"PEPTIDEk", "AC*DE", "MK\u00c9L", "X-Y", "a"};
+        for (String string : strings) {
+            AminoAcidSequence sequence = AminoAcidSequence.valueOf(string);
+            assertEquals(string, sequence.toString());
+            assertEquals(string.length(), sequence.length());
+            for (int i = 0; i < string.length(); i++) {
+                assertEquals(string.charAt(i), sequence.charAt(i));
+                assertEquals(AminoAcidSequence.NO_CODE, sequence.getCode(i));
+            }
+            assertEquals(sequence, new AminoAcidSequence(string));
+            assertFalse(sequence.equals(new AminoAcidSequence(string.toUpperCase().replaceAll("[^A-Z]", "A"))));
+            assertTrue(Double.isNaN(sequence.getMass(0, new double[32])));
+        }
+        try {
+            AminoAcidSequence.valueOf("AC").getCode(2);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // as String.charAt
+        }
+    }
+
+    /**
+     * Test that the sequences sort and match prefixes like their strings,
+     * packed or not.
+     */
+    public void testCompare() {
+        String[] strings = {"", "A", "AB", "ABC", "B", "[A", "A]", "AAAAAAAAAAAA", "AAAAAAAAAAAAB", "AAAAAAAAAAAA*",
+            "PEPTIDEPEPTIDEPEPTIDE", "PEPTIDEPEPTIDE", "PEPTIDEK", " PEPTIDE", "Z", "z"};
+        List<String> sortedStrings = new ArrayList<String>();
+        List<AminoAcidSequence> sortedSequences = new ArrayList<AminoAcidSequence>();
+        for (String string : strings) {
+            sortedStrings.add(string);
+            sortedSequences.add(AminoAcidSequence.valueOf(string));
+        }
+        Collections.sort(sortedStrings);
+        Collections.sort(sortedSequences);
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(sortedStrings.get(i), sortedSequences.get(i).toString());
+        }
+        for (String string : strings) {
+            for (String prefix : strings) {
+                assertEquals(string + " " + prefix, string.startsWith(prefix),
+                        AminoAcidSequence.valueOf(string).startsWith(AminoAcidSequence.valueOf(prefix)));
+            }
+        }
+    }
+
+    /**
+     * Test that the short sequences and the interned sequences are shared.
+     */
+    public void testSharing() {
+        assertSame(AminoAcidSequence.valueOf(""), AminoAcidSequence.valueOf(""));
+        assertSame(AminoAcidSequence.valueOf("K"), AminoAcidSequence.valueOf("K"));
+        assertNotSame(AminoAcidSequence.valueOf("k"), AminoAcidSequence.valueOf("k"));
+        assertNull(AminoAcidSequence.valueOf(null));
+
+        StringDictionary dictionary = new StringDictionary();
+        AminoAcidSequence sequence = dictionary.internSequence("PEPTIDE");
+        assertSame(sequence, dictionary.internSequence(new String("PEPTIDE")));
+        assertEquals(1, dictionary.getSequenceCount());
+        assertNull(dictionary.internSequence(null));
+
+        AminoAcidSequence untrimmed = AminoAcidSequence.valueOf("PEPTIDE");
+        assertSame(untrimmed, untrimmed.trim());
+        assertEquals(untrimmed, AminoAcidSequence.valueOf("\n\tPEPTIDE \n").trim());
+    }
+
+    /**
+     * Test that the domains and peptides point at the sequences of the result
+     * store, every distinct sequence stored once.
+     */
+    public void testXTandemFile() throws Exception {
+        XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+        XTandemResultStore resultStore = xTandemFile.getXTandemParser().getResultStore();
+
+        HashMap<AminoAcidSequence, AminoAcidSequence> stored = new HashMap<AminoAcidSequence, AminoAcidSequence>();
+        for (int d = 0; d < resultStore.getNumberOfDomains(); d++) {
+            AminoAcidSequence[] sequences = {resultStore.getPackedDomainSequence(d),
+                resultStore.getPackedUpFlankSequence(d), resultStore.getPackedDownFlankSequence(d)};
+            for (AminoAcidSequence sequence : sequences) {
+                AminoAcidSequence first = stored.get(sequence);
+                if (first == null) {
+                    stored.put(sequence, sequence);
+                } else {
+                    assertSame(first, sequence);
+                }
+            }
+            assertEquals(resultStore.getDomainSequence(d), resultStore.getPackedDomainSequence(d).toString());
+        }
+
+        IdentityHashMap<AminoAcidSequence, Boolean> storedInstances = new IdentityHashMap<AminoAcidSequence, Boolean>();
+        for (AminoAcidSequence sequence : stored.values()) {
+            storedInstances.put(sequence, Boolean.TRUE);
+        }
+        HashMap<AminoAcidSequence, AminoAcidSequence> proteins = new HashMap<AminoAcidSequence, AminoAcidSequence>();
+        for (int s = 1; s <= xTandemFile.getSpectraNumber(); s++) {
+            for (Peptide peptide : xTandemFile.getPeptideMap().getAllPeptides(s)) {
+                assertEquals(peptide.getSequence().trim(), peptide.getSequence());
+                AminoAcidSequence protein = proteins.get(peptide.getPackedSequence());
+                if (protein == null) {
+                    proteins.put(peptide.getPackedSequence(), peptide.getPackedSequence());
+                } else {
+                    assertSame(protein, peptide.getPackedSequence());
+                }
+                for (Domain domain : peptide.getDomains()) {
+                    assertTrue(storedInstances.containsKey(domain.getPackedDomainSequence()));
+                    assertTrue(storedInstances.containsKey(domain.getPackedUpFlankSequence()));
+                    assertTrue(storedInstances.containsKey(domain.getPackedDownFlankSequence()));
+                }
+            }
+        }
+    }
+}
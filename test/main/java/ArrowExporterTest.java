@@ -0,0 +1,406 @@
+package main.java;
+
+import de.proteinms.xtandemparser.export.ArrowExporter;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the Arrow export by decoding the streams written.
+ */
+public class ArrowExporterTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * The type ids of the Type union of the Arrow schema.
+     */
+    private static final int TYPE_INT = 2;
+    private static final int TYPE_FLOATING_POINT = 3;
+    private static final int TYPE_UTF8 = 5;
+
+    private XTandemResultStore iResultStore;
+    private ArrowExporter iExporter;
+
+    @Override
+    protected void setUp() throws Exception {
+        iResultStore = new XTandemFile(TEST_FILE).getXTandemParser().getResultStore();
+        iExporter = new ArrowExporter(iResultStore);
+        // several batches per table
+        iExporter.setBatchSize(4);
+    }
+
+    /**
+     * Test the spectra table, including the retention times missing in some
+     * of the spectra written as nulls.
+     */
+    public void testSpectra() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(6, iExporter.exportSpectra(output));
+        ArrowTable table = new ArrowTable(output.toByteArray());
+
+        assertEquals(Arrays.asList("spectrum_number", "spectrum_id", "precursor_charge", "expect", "precursor_mh",
+                "retention_time", "label", "summed_intensity", "max_intensity", "intensity_multiplier"), table.iNames);
+        assertEquals("int32", table.iTypes.get(0));
+        assertEquals("float64", table.iTypes.get(3));
+        assertEquals("utf8", table.iTypes.get(5));
+        assertEquals(6, table.getRowCount());
+        assertEquals(2, table.iBatchCount);
+
+        int nullRetentionTimes = 0;
+        for (int row = 0; row < 6; row++) {
+            assertEquals(iResultStore.getSpectrumNumber(row), table.get(0, row));
+            assertEquals(iResultStore.getSpectrumId(row), table.get(1, row));
+            assertEquals(iResultStore.getPrecursorCharge(row), table.get(2, row));
+            assertEquals(iResultStore.getSpectrumExpect(row), table.get(3, row));
+            assertEquals(iResultStore.getPrecursorMh(row), table.get(4, row));
+            String retentionTime = iResultStore.getRetentionTime(row);
+            if (retentionTime == null || retentionTime.length() == 0) {
+                assertNull(table.get(5, row));
+                nullRetentionTimes++;
+            } else {
+                assertEquals(retentionTime, table.get(5, row));
+            }
+            assertEquals(iResultStore.getSpectrumLabel(row), table.get(6, row));
+        }
+        assertEquals(4, nullRetentionTimes);
+        assertEquals(4, table.getNullCount(5));
+        assertEquals(0, table.getNullCount(0));
+    }
+
+    /**
+     * Test the domain table.
+     */
+    public void testDomains() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(iResultStore.getNumberOfDomains(), iExporter.exportDomains(output));
+        ArrowTable table = new ArrowTable(output.toByteArray());
+
+        assertEquals(19, table.iNames.size());
+        assertEquals(iResultStore.getNumberOfDomains(), table.getRowCount());
+        for (int row = 0; row < table.getRowCount(); row++) {
+            int domain = (Integer) table.get(1, row);
+            assertEquals(row, domain);
+            assertEquals(iResultStore.getDomainId(domain), table.get(2, row));
+            assertEquals(iResultStore.getDomainStart(domain), table.get(4, row));
+            assertEquals(iResultStore.getDomainExpect(domain), table.get(6, row));
+            assertEquals(iResultStore.getDomainHyperScore(domain), table.get(9, row));
+            assertEquals(iResultStore.getDomainBIons(domain), table.get(12, row));
+            assertEquals(iResultStore.getDomainSequence(domain), table.get(16, row));
+        }
+    }
+
+    /**
+     * Test the row counts and schemas of the modification and protein
+     * tables.
+     */
+    public void testModificationsAndProteins() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(iResultStore.getNumberOfModifications(), iExporter.exportModifications(output));
+        ArrowTable table = new ArrowTable(output.toByteArray());
+        assertEquals(Arrays.asList("spectrum_number", "domain_index", "position", "mass", "residue", "substitution"), table.iNames);
+        assertEquals(Arrays.asList("int32", "int32", "int32", "float64", "utf8", "utf8"), table.iTypes);
+        assertEquals(iResultStore.getNumberOfModifications(), table.getRowCount());
+        assertTrue(table.getRowCount() > 0);
+
+        output = new ByteArrayOutputStream();
+        assertEquals(iResultStore.getNumberOfPeptides(), iExporter.exportProteins(output));
+        table = new ArrowTable(output.toByteArray());
+        assertEquals(10, table.iNames.size());
+        assertEquals(iResultStore.getNumberOfPeptides(), table.getRowCount());
+        assertTrue(((String) table.get(6, 0)).contains(" & "));
+    }
+
+    /**
+     * Test a table without rows.
+     */
+    public void testEmpty() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ArrowExporter(new XTandemResultStore()).exportSpectra(output);
+        ArrowTable table = new ArrowTable(output.toByteArray());
+        assertEquals(10, table.iNames.size());
+        assertEquals(0, table.getRowCount());
+    }
+
+    /**
+     * A table decoded from an Arrow IPC stream. Checks the framing of the
+     * messages, the alignment and the bounds of the buffers while decoding.
+     */
+    private static class ArrowTable {
+
+        private List<String> iNames = new ArrayList<String>();
+        private List<String> iTypes = new ArrayList<String>();
+        private List<List<Object>> iColumns = new ArrayList<List<Object>>();
+        private long[] iNullCounts;
+        private int iBatchCount = 0;
+
+        /**
+         * Decodes a stream.
+         *
+         * @param aStream the stream
+         */
+        ArrowTable(byte[] aStream) {
+            ByteBuffer buffer = ByteBuffer.wrap(aStream).order(ByteOrder.LITTLE_ENDIAN);
+            boolean schemaRead = false;
+            while (true) {
+                assertEquals(0, buffer.position() % 8);
+                assertEquals(0xffffffff, buffer.getInt());
+                int metadataLength = buffer.getInt();
+                if (metadataLength == 0) {
+                    break;
+                }
+                // the body starts 8 byte aligned
+                assertEquals(0, metadataLength % 8);
+                ByteBuffer metadata = slice(buffer, buffer.position(), metadataLength);
+                buffer.position(buffer.position() + metadataLength);
+
+                int message = metadata.getInt(0);
+                // version V5
+                assertEquals(4, getShort(metadata, message, 0, 0));
+                int headerType = getByte(metadata, message, 1);
+                int header = getTable(metadata, message, 2);
+                long bodyLength = getLong(metadata, message, 3);
+                assertEquals(0, bodyLength % 8);
+                assertTrue(bodyLength <= buffer.remaining());
+                ByteBuffer body = slice(buffer, buffer.position(), (int) bodyLength);
+                buffer.position(buffer.position() + (int) bodyLength);
+
+                if (headerType == 1) {
+                    assertFalse(schemaRead);
+                    readSchema(metadata, header);
+                    assertEquals(0, bodyLength);
+                    schemaRead = true;
+                } else {
+                    assertEquals(3, headerType);
+                    assertTrue(schemaRead);
+                    readBatch(metadata, header, body);
+                }
+            }
+            assertEquals(aStream.length, buffer.position());
+        }
+
+        /**
+         * Reads the schema.
+         *
+         * @param aMetadata the metadata of the message
+         * @param aSchema the position of the schema table
+         */
+        private void readSchema(ByteBuffer aMetadata, int aSchema) {
+            int fields = getVector(aMetadata, aSchema, 1);
+            int count = aMetadata.getInt(fields);
+            for (int i = 0; i < count; i++) {
+                int position = fields + 4 + 4 * i;
+                int field = position + aMetadata.getInt(position);
+                iNames.add(getString(aMetadata, field, 0));
+                assertEquals(1, getByte(aMetadata, field, 1));
+                int typeType = getByte(aMetadata, field, 2);
+                int type = getTable(aMetadata, field, 3);
+                if (typeType == TYPE_INT) {
+                    assertEquals(1, getByte(aMetadata, type, 1));
+                    iTypes.add("int" + getInt(aMetadata, type, 0));
+                } else if (typeType == TYPE_FLOATING_POINT) {
+                    assertEquals(2, getShort(aMetadata, type, 0, 0));
+                    iTypes.add("float64");
+                } else {
+                    assertEquals(TYPE_UTF8, typeType);
+                    iTypes.add("utf8");
+                }
+                iColumns.add(new ArrayList<Object>());
+            }
+            iNullCounts = new long[count];
+        }
+
+        /**
+         * Reads a record batch.
+         *
+         * @param aMetadata the metadata of the message
+         * @param aBatch the position of the record batch table
+         * @param aBody the body of the message
+         */
+        private void readBatch(ByteBuffer aMetadata, int aBatch, ByteBuffer aBody) {
+            iBatchCount++;
+            int length = (int) getLong(aMetadata, aBatch, 0);
+            int nodes = getVector(aMetadata, aBatch, 1);
+            int buffers = getVector(aMetadata, aBatch, 2);
+            assertEquals(iNames.size(), aMetadata.getInt(nodes));
+
+            int bufferIndex = 0;
+            long end = 0;
+            for (int column = 0; column < iNames.size(); column++) {
+                int node = nodes + 4 + 16 * column;
+                assertEquals(length, aMetadata.getLong(node));
+                long nullCount = aMetadata.getLong(node + 8);
+                iNullCounts[column] += nullCount;
+
+                boolean utf8 = iTypes.get(column).equals("utf8");
+                ByteBuffer[] columnBuffers = new ByteBuffer[utf8 ? 3 : 2];
+                for (int i = 0; i < columnBuffers.length; i++) {
+                    int position = buffers + 4 + 16 * bufferIndex++;
+                    long offset = aMetadata.getLong(position);
+                    long size = aMetadata.getLong(position + 8);
+                    assertEquals(0, offset % 8);
+                    assertTrue(offset >= end);
+                    end = offset + size;
+                    assertTrue(end <= aBody.capacity());
+                    columnBuffers[i] = slice(aBody, (int) offset, (int) size);
+                }
+
+                ByteBuffer validity = columnBuffers[0];
+                if (nullCount == 0) {
+                    assertTrue(validity.capacity() == 0 || validity.capacity() >= (length + 7) / 8);
+                } else {
+                    assertTrue(validity.capacity() >= (length + 7) / 8);
+                }
+                int nulls = 0;
+                for (int row = 0; row < length; row++) {
+                    boolean valid = validity.capacity() == 0 || (validity.get(row >> 3) >> (row & 7) & 1) != 0;
+                    if (!valid) {
+                        nulls++;
+                        iColumns.get(column).add(null);
+                    } else if (utf8) {
+                        int start = columnBuffers[1].getInt(4 * row);
+                        int stop = columnBuffers[1].getInt(4 * row + 4);
+                        byte[] bytes = new byte[stop - start];
+                        for (int i = 0; i < bytes.length; i++) {
+                            bytes[i] = columnBuffers[2].get(start + i);
+                        }
+                        iColumns.get(column).add(new String(bytes, java.nio.charset.Charset.forName("UTF-8")));
+                    } else if (iTypes.get(column).equals("int32")) {
+                        assertTrue(columnBuffers[1].capacity() >= 4 * length);
+                        iColumns.get(column).add(columnBuffers[1].getInt(4 * row));
+                    } else {
+                        assertTrue(columnBuffers[1].capacity() >= 8 * length);
+                        iColumns.get(column).add(columnBuffers[1].getDouble(8 * row));
+                    }
+                }
+                assertEquals(nullCount, nulls);
+                if (utf8) {
+                    assertEquals(0, columnBuffers[1].getInt(0));
+                    assertTrue(columnBuffers[1].getInt(4 * length) <= columnBuffers[2].capacity());
+                }
+            }
+            // only the padding of the last buffer follows it
+            assertTrue(aBody.capacity() - end < 8);
+        }
+
+        /**
+         * Returns the number of rows.
+         *
+         * @return the number of rows
+         */
+        int getRowCount() {
+            return iColumns.get(0).size();
+        }
+
+        /**
+         * Returns a value.
+         *
+         * @param aColumn the column
+         * @param aRow the row
+         * @return the value, null if missing
+         */
+        Object get(int aColumn, int aRow) {
+            return iColumns.get(aColumn).get(aRow);
+        }
+
+        /**
+         * Returns the number of nulls of a column.
+         *
+         * @param aColumn the column
+         * @return the number of nulls
+         */
+        long getNullCount(int aColumn) {
+            return iNullCounts[aColumn];
+        }
+
+        /**
+         * Returns a little endian slice of a buffer.
+         */
+        private static ByteBuffer slice(ByteBuffer aBuffer, int aOffset, int aLength) {
+            ByteBuffer slice = aBuffer.duplicate();
+            slice.position(aOffset);
+            slice.limit(aOffset + aLength);
+            return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Returns the position of a field of a flatbuffer table, 0 if absent.
+         */
+        private static int getField(ByteBuffer aBuffer, int aTable, int aField) {
+            int vtable = aTable - aBuffer.getInt(aTable);
+            int vtableSize = aBuffer.getShort(vtable);
+            if (4 + 2 * aField >= vtableSize) {
+                return 0;
+            }
+            int offset = aBuffer.getShort(vtable + 4 + 2 * aField);
+            return offset == 0 ? 0 : aTable + offset;
+        }
+
+        /**
+         * Returns a byte or bool field of a flatbuffer table, 0 if absent.
+         */
+        private static int getByte(ByteBuffer aBuffer, int aTable, int aField) {
+            int field = getField(aBuffer, aTable, aField);
+            return field == 0 ? 0 : aBuffer.get(field);
+        }
+
+        /**
+         * Returns a short field of a flatbuffer table.
+         */
+        private static int getShort(ByteBuffer aBuffer, int aTable, int aField, int aDefault) {
+            int field = getField(aBuffer, aTable, aField);
+            return field == 0 ? aDefault : aBuffer.getShort(field);
+        }
+
+        /**
+         * Returns an int field of a flatbuffer table, 0 if absent.
+         */
+        private static int getInt(ByteBuffer aBuffer, int aTable, int aField) {
+            int field = getField(aBuffer, aTable, aField);
+            return field == 0 ? 0 : aBuffer.getInt(field);
+        }
+
+        /**
+         * Returns a long field of a flatbuffer table, 0 if absent.
+         */
+        private static long getLong(ByteBuffer aBuffer, int aTable, int aField) {
+            int field = getField(aBuffer, aTable, aField);
+            return field == 0 ? 0 : aBuffer.getLong(field);
+        }
+
+        /**
+         * Returns the position of a table referenced by a flatbuffer table.
+         */
+        private static int getTable(ByteBuffer aBuffer, int aTable, int aField) {
+            int field = getField(aBuffer, aTable, aField);
+            assertTrue(field != 0);
+            return field + aBuffer.getInt(field);
+        }
+
+        /**
+         * Returns the position of a vector referenced by a flatbuffer table.
+         */
+        private static int getVector(ByteBuffer aBuffer, int aTable, int aField) {
+            return getTable(aBuffer, aTable, aField);
+        }
+
+        /**
+         * Returns a string field of a flatbuffer table.
+         */
+        private static String getString(ByteBuffer aBuffer, int aTable, int aField) {
+            int string = getTable(aBuffer, aTable, aField);
+            byte[] bytes = new byte[aBuffer.getInt(string)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = aBuffer.get(string + 4 + i);
+            }
+            return new String(bytes, java.nio.charset.Charset.forName("UTF-8"));
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.DecompressingInputStream;
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import junit.framework.TestCase;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests the decompression of gzip compressed streams.
+ */
+public class DecompressingInputStreamTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test a file compressed in blocks by bgzip, decompressed in parallel.
+     */
+    public void testBgzf() throws Exception {
+        byte[] content = randomContent(1 << 20);
+        byte[] compressed = bgzf(content, 1 << 13, true);
+        assertTrue(Arrays.equals(content, decompress(compressed, 4)));
+        assertTrue(Arrays.equals(content, decompress(compressed, 1)));
+    }
+
+    /**
+     * Test a file of several gzip members not recording their size.
+     */
+    public void testMultiMember() throws Exception {
+        byte[] first = randomContent(3 << 20);
+        byte[] second = "the second member".getBytes("UTF-8");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(first));
+        compressed.write(gzip(second));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertTrue(Arrays.equals(expected.toByteArray(), decompress(compressed.toByteArray(), 4)));
+    }
+
+    /**
+     * Test blocks written by bgzip followed by a gzip member not recording
+     * its size.
+     */
+    public void testBgzfFollowedByMember() throws Exception {
+        byte[] first = randomContent(100000);
+        byte[] second = randomContent(200000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(bgzf(first, 1 << 14, false));
+        compressed.write(gzip(second));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertTrue(Arrays.equals(expected.toByteArray(), decompress(compressed.toByteArray(), 2)));
+    }
+
+    /**
+     * Test parsing X!Tandem files compressed with gzip and bgzip.
+     */
+    public void testXTandemFile() throws Exception {
+        byte[] content = XTandemParserTest.read(new File(TEST_FILE)).getBytes("UTF-8");
+        XTandemParser expected = new XTandemParser(new File(TEST_FILE));
+        XTandemParser gzip = new XTandemParser(new ByteArrayInputStream(gzip(content)), new XTandemParserOptions());
+        XTandemParserOptions fastMode = new XTandemParserOptions();
+        fastMode.setFastMode(true);
+        XTandemParser bgzf = new XTandemParser(new ByteArrayInputStream(bgzf(content, 1 << 12, true)), fastMode);
+        assertEquals(expected.getRawPeptideMap(), gzip.getRawPeptideMap());
+        assertEquals(expected.getRawPeptideMap(), bgzf.getRawPeptideMap());
+        assertEquals(expected.getSupportDataMap(), bgzf.getSupportDataMap());
+    }
+
+    /**
+     * Test a block with a wrong CRC.
+     */
+    public void testBgzfCrcMismatch() throws Exception {
+        byte[] compressed = bgzf(randomContent(50000), 1 << 14, true);
+        // the CRC of the first block
+        int blockSize = blockSize(compressed, 0);
+        compressed[blockSize - 8] ^= 1;
+        assertFails(compressed, "Corrupt gzip block, CRC mismatch");
+    }
+
+    /**
+     * Test blocks recording a wrong uncompressed size.
+     */
+    public void testBgzfWrongSize() throws Exception {
+        byte[] compressed = bgzf(randomContent(50000), 1 << 14, true);
+        int blockSize = blockSize(compressed, 0);
+        setInt(compressed, blockSize - 4, 16385);
+        assertFails(compressed, "Corrupt gzip block, 16384 bytes instead of 16385");
+
+        setInt(compressed, blockSize - 4, 16383);
+        assertFails(compressed, "Corrupt gzip block, more than 16383 bytes");
+    }
+
+    /**
+     * Test a file truncated in a block.
+     */
+    public void testBgzfTruncated() throws Exception {
+        byte[] compressed = bgzf(randomContent(50000), 1 << 14, false);
+        assertFails(Arrays.copyOf(compressed, compressed.length - 10), "Unexpected end of the gzip compressed stream");
+    }
+
+    /**
+     * Test a gzip member with a wrong CRC and a truncated gzip member.
+     */
+    public void testGzipErrors() throws Exception {
+        byte[] compressed = gzip(randomContent(50000));
+        compressed[compressed.length - 8] ^= 1;
+        assertFails(compressed, "Corrupt GZIP trailer");
+
+        compressed = gzip(randomContent(50000));
+        assertFails(Arrays.copyOf(compressed, compressed.length / 2), "Unexpected end of ZLIB input stream");
+    }
+
+    /**
+     * Test the detection of the compression.
+     */
+    public void testDetect() throws Exception {
+        assertEquals(DecompressingInputStream.Compression.GZIP, detect(gzip(new byte[0])));
+        assertEquals(DecompressingInputStream.Compression.BZIP2, detect("BZh91AY&SY".getBytes("UTF-8")));
+        assertEquals(DecompressingInputStream.Compression.XZ, detect(new byte[]{(byte) 0xfd, '7', 'z', 'X', 'Z', 0}));
+        assertEquals(DecompressingInputStream.Compression.NONE, detect("<?xml".getBytes("UTF-8")));
+        assertEquals(DecompressingInputStream.Compression.NONE, detect(new byte[0]));
+        try {
+            DecompressingInputStream.open(new ByteArrayInputStream("BZh91AY&SY".getBytes("UTF-8")));
+            fail();
+        } catch (IOException e) {
+            assertEquals("BZIP2 compressed files are not supported, only gzip compressed ones", e.getMessage());
+        }
+    }
+
+    /**
+     * Asserts that decompressing the given bytes fails with the given
+     * message.
+     *
+     * @param aCompressed the compressed bytes
+     * @param aMessage the message of the cause
+     */
+    private static void assertFails(byte[] aCompressed, String aMessage) {
+        try {
+            decompress(aCompressed, 2);
+            fail();
+        } catch (IOException e) {
+            assertEquals("Error decompressing the file: " + aMessage, e.getMessage());
+        }
+    }
+
+    /**
+     * Decompresses the given bytes.
+     *
+     * @param aCompressed the compressed bytes
+     * @param aThreads the number of threads
+     * @return the uncompressed bytes
+     */
+    private static byte[] decompress(byte[] aCompressed, int aThreads) throws IOException {
+        InputStream inputStream = new DecompressingInputStream(new BufferedInputStream(new ByteArrayInputStream(aCompressed)), aThreads);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[12345];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Detects the compression of the given bytes.
+     *
+     * @param aBytes the bytes
+     * @return the compression
+     */
+    private static DecompressingInputStream.Compression detect(byte[] aBytes) throws IOException {
+        return DecompressingInputStream.detect(new ByteArrayInputStream(aBytes));
+    }
+
+    /**
+     * Returns random content which compresses, like text.
+     *
+     * @param aLength the length
+     * @return the content
+     */
+    private static byte[] randomContent(int aLength) {
+        Random random = new Random(aLength);
+        byte[] content = new byte[aLength];
+        for (int i = 0; i < aLength; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return content;
+    }
+
+    /**
+     * Compresses bytes as a single gzip member.
+     *
+     * @param aContent the bytes
+     * @return the gzip member
+     */
+    private static byte[] gzip(byte[] aContent) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream outputStream = new GZIPOutputStream(compressed);
+        outputStream.write(aContent);
+        outputStream.close();
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Compresses bytes in blocks recording their size like bgzip.
+     *
+     * @param aContent the bytes
+     * @param aBlockSize the uncompressed size of the blocks
+     * @param aEndOfFile if true the empty end of file block is added
+     * @return the blocks
+     */
+    private static byte[] bgzf(byte[] aContent, int aBlockSize, boolean aEndOfFile) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int offset = 0; offset < aContent.length; offset += aBlockSize) {
+            writeBlock(compressed, Arrays.copyOfRange(aContent, offset, Math.min(aContent.length, offset + aBlockSize)));
+        }
+        if (aEndOfFile) {
+            writeBlock(compressed, new byte[0]);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Writes a block recording its size like bgzip.
+     *
+     * @param aOutput the output
+     * @param aContent the uncompressed bytes of the block
+     */
+    private static void writeBlock(ByteArrayOutputStream aOutput, byte[] aContent) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(aContent);
+        deflater.finish();
+        byte[] data = new byte[aContent.length + 1024];
+        int dataLength = 0;
+        while (!deflater.finished()) {
+            dataLength += deflater.deflate(data, dataLength, data.length - dataLength);
+        }
+        deflater.end();
+
+        CRC32 crc = new CRC32();
+        crc.update(aContent);
+        int blockSize = 18 + dataLength + 8;
+        byte[] header = {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+            (byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)};
+        aOutput.write(header, 0, header.length);
+        aOutput.write(data, 0, dataLength);
+        writeInt(aOutput, crc.getValue());
+        writeInt(aOutput, aContent.length);
+    }
+
+    /**
+     * Writes a little endian int.
+     *
+     * @param aOutput the output
+     * @param aValue the value
+     */
+    private static void writeInt(ByteArrayOutputStream aOutput, long aValue) {
+        for (int i = 0; i < 4; i++) {
+            aOutput.write((int) (aValue >> (8 * i)) & 0xff);
+        }
+    }
+
+    /**
+     * Sets a little endian int.
+     *
+     * @param aBytes the bytes
+     * @param aOffset the position of the int
+     * @param aValue the value
+     */
+    private static void setInt(byte[] aBytes, int aOffset, int aValue) {
+        for (int i = 0; i < 4; i++) {
+            aBytes[aOffset + i] = (byte) (aValue >> (8 * i));
+        }
+    }
+
+    /**
+     * Returns the size of a block written by bgzip.
+     *
+     * @param aCompressed the blocks
+     * @param aOffset the offset of the block
+     * @return the size of the block
+     */
+    private static int blockSize(byte[] aCompressed, int aOffset) {
+        return ((aCompressed[aOffset + 16] & 0xff) | (aCompressed[aOffset + 17] & 0xff) << 8) + 1;
+    }
+}
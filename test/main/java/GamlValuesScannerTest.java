@@ -0,0 +1,98 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.GamlValuesScanner;
+import junit.framework.TestCase;
+
+/**
+ * Tests parsing the values of GAML:values elements.
+ */
+public class GamlValuesScannerTest extends TestCase {
+
+    /**
+     * Test that the doubles are identical to the ones of the Java parser,
+     * for the numbers computed from their digits as well as the ones parsed
+     * by the fallback.
+     */
+    public void testParseDoubles() {
+        String[] values = {
+            // computed from the digits
+            "0", "-0", "+0", "1", "-1", "+1.5", "0.1", ".5", "5.", "00012", "3.14159", "-273.15",
+            "1e5", "1E5", "1e+05", "1E-05", "-2.5e-07", "1.0e22", "1e-22", "123456789012345", "0.000123456789012345",
+            // parsed by the fallback
+            "1234567890123456789", "1.0e-100", "1e23", "1e308", "-1.7976931348623157e308", "4.9e-324", "1e-400",
+            "1e1000", "1.0e0001", "NaN", "-Infinity", "1d", "2.5f", "0x1p3"
+        };
+        StringBuilder text = new StringBuilder();
+        for (String value : values) {
+            text.append(value).append(' ');
+        }
+        double[] parsed = GamlValuesScanner.parseDoubles(text);
+        assertEquals(values.length, parsed.length);
+        for (int i = 0; i < values.length; i++) {
+            // compares the bits, e.g., -0.0 is not 0.0
+            assertEquals(values[i], Double.valueOf(values[i]), Double.valueOf(parsed[i]));
+        }
+    }
+
+    /**
+     * Test that the ints are identical to the ones of the Java parser.
+     */
+    public void testParseInts() {
+        String[] values = {"0", "-0", "+7", "-1", "0012", "123456789", "2147483647", "-2147483648", "1000000000"};
+        StringBuilder text = new StringBuilder();
+        for (String value : values) {
+            text.append(value).append(' ');
+        }
+        int[] parsed = GamlValuesScanner.parseInts(text);
+        assertEquals(values.length, parsed.length);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], Integer.parseInt(values[i]), parsed[i]);
+        }
+    }
+
+    /**
+     * Test that the values may be separated by any whitespace, with blanks
+     * before, after and between them.
+     */
+    public void testBlanks() {
+        assertEquals(0, GamlValuesScanner.parseInts("").length);
+        assertEquals(0, GamlValuesScanner.parseDoubles(" \n\t ").length);
+        assertEquals(0, GamlValuesScanner.countValues("\r\n"));
+
+        int[] ints = GamlValuesScanner.parseInts("\n  1\t2 \r\n3    4\n");
+        assertEquals(4, ints.length);
+        for (int i = 0; i < ints.length; i++) {
+            assertEquals(i + 1, ints[i]);
+        }
+
+        double[] doubles = GamlValuesScanner.parseDoubles("  1.5\n\n-2e3\t 0.25 ");
+        assertEquals(3, doubles.length);
+        assertEquals(1.5, doubles[0], 0);
+        assertEquals(-2000, doubles[1], 0);
+        assertEquals(0.25, doubles[2], 0);
+    }
+
+    /**
+     * Test that invalid values are rejected as by the Java parser.
+     */
+    public void testInvalidValues() {
+        String[] doubles = {"abc", "1.5e", "1e+", "-", "1..5", "1e5e5"};
+        for (String value : doubles) {
+            try {
+                GamlValuesScanner.parseDoubles("1 " + value + " 2");
+                fail(value);
+            } catch (NumberFormatException e) {
+                // as Double.parseDouble
+            }
+        }
+        String[] ints = {"1.5", "2147483648", "-2147483649", "+", "1e5", "12345678901"};
+        for (String value : ints) {
+            try {
+                GamlValuesScanner.parseInts("1 " + value + " 2");
+                fail(value);
+            } catch (NumberFormatException e) {
+                // as Integer.parseInt
+            }
+        }
+    }
+}
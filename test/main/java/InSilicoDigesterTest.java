@@ -1,13 +1,11 @@
 package main.java;
 
-import junit.framework.TestCase;
-
-
-
+import de.proteinms.xtandemparser.interfaces.Modification;
 import de.proteinms.xtandemparser.xtandem.*;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -18,11 +16,13 @@ import java.util.ArrayList;
  */
 public class InSilicoDigesterTest extends TestCase {
 
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
     private XTandemFile xTandemFile;
 
     public InSilicoDigesterTest() {
         try {
-            xTandemFile = new XTandemFile("C:/Users/User/workspace/XTandem-Parser/orbitrap001756.xml");
+            xTandemFile = new XTandemFile(TEST_FILE);
         } catch (Exception e) {
             e.printStackTrace();
             fail();
@@ -36,8 +36,16 @@ public class InSilicoDigesterTest extends TestCase {
     public void testSamplerPeptideCharged1() {
         try {
             Peptide peptide = new Peptide("1", 0, 6, "SAMPLER");
-            Domain domain = peptide.getDomains().get(0);
-            InSilicoDigester digester = new InSilicoDigester(peptide, domain, null, XTandemFile.getMassesMap(), 1);
+            Domain domain = new Domain();
+            domain.setDomainKey("s0_p1_d1");
+            domain.setDomainStart(1);
+            domain.setDomainEnd(7);
+            domain.setDomainSequence("SAMPLER");
+            domain.setDomainMh(803.4080);
+            ArrayList<Domain> domains = new ArrayList<Domain>();
+            domains.add(domain);
+            peptide.setDomains(domains);
+            InSilicoDigester digester = new InSilicoDigester(peptide, domain, xTandemFile.getModificationMap(), XTandemFile.getMassesMap(), 1, 0.5);
             FragmentIon[] bIons = digester.getTheoreticIons(FragmentIon.B_ION);
             FragmentIon[] yIons = digester.getTheoreticIons(FragmentIon.Y_ION);
             FragmentIon[] bH20Ions = digester.getTheoreticIons(FragmentIon.BH2O_ION);
@@ -51,29 +59,31 @@ public class InSilicoDigesterTest extends TestCase {
             assertEquals(785.3974, mhH20Ions[0].getMZ(), 0.001);
             assertEquals(786.3815, mhNH3Ions[0].getMZ(), 0.001);
 
-            // Test all bIons
-            assertEquals(159.076963, bIons[0].getMZ());
-            assertEquals(290.117448, bIons[1].getMZ());
-            assertEquals(387.170212, bIons[2].getMZ());
-            assertEquals(500.254276, bIons[3].getMZ());
-            assertEquals(629.296869, bIons[4].getMZ());
-            assertEquals(785.397980, bIons[5].getMZ(), 0.000001);
+            // Test all bIons, bIons[0] is the b1 ion
+            assertEquals(7, bIons.length);
+            assertEquals(88.039853, bIons[0].getMZ(), 0.000001);
+            assertEquals(159.076963, bIons[1].getMZ(), 0.000001);
+            assertEquals(290.117448, bIons[2].getMZ(), 0.000001);
+            assertEquals(387.170212, bIons[3].getMZ(), 0.000001);
+            assertEquals(500.254276, bIons[4].getMZ(), 0.000001);
+            assertEquals(629.296869, bIons[5].getMZ(), 0.000001);
+            assertEquals(785.397980, bIons[6].getMZ(), 0.000001);
 
             // Test all yIons
-            assertEquals(175.119496, yIons[0].getMZ());
+            assertEquals(175.119496, yIons[0].getMZ(), 0.000001);
             assertEquals(304.162089, yIons[1].getMZ(), 0.000001);
             assertEquals(417.246153, yIons[2].getMZ(), 0.000001);
             assertEquals(514.298917, yIons[3].getMZ(), 0.000001);
             assertEquals(645.339402, yIons[4].getMZ(), 0.000001);
-            assertEquals(716.376512, yIons[5].getMZ());
+            assertEquals(716.376512, yIons[5].getMZ(), 0.000001);
 
             // Test all bH20Ions
-            assertEquals(141.066403, bH20Ions[0].getMZ());
-            assertEquals(272.106888, bH20Ions[1].getMZ());
-            assertEquals(369.159652, bH20Ions[2].getMZ());
-            assertEquals(482.243716, bH20Ions[3].getMZ());
-            assertEquals(611.286309, bH20Ions[4].getMZ());
-            assertEquals(767.38742, bH20Ions[5].getMZ());
+            assertEquals(141.066403, bH20Ions[1].getMZ(), 0.000001);
+            assertEquals(272.106888, bH20Ions[2].getMZ(), 0.000001);
+            assertEquals(369.159652, bH20Ions[3].getMZ(), 0.000001);
+            assertEquals(482.243716, bH20Ions[4].getMZ(), 0.000001);
+            assertEquals(611.286309, bH20Ions[5].getMZ(), 0.000001);
+            assertEquals(767.38742, bH20Ions[6].getMZ(), 0.000001);
 
             // Test all yNH3Ions
             assertEquals(158.0924, yNH3Ions[0].getMZ(), 0.001);
@@ -90,26 +100,62 @@ public class InSilicoDigesterTest extends TestCase {
     }
 
     /**
-     * Test XML test file orbitrap0001756.xml
+     * Test the b and y ions of the modified domains of the test file, for
+     * the charges 1 to 3, against the masses summed residue by residue.
      */
-    public void testFile0001756() {
-        try {
-            PeptideMap pepMap = xTandemFile.getPeptideMap();
-            ArrayList<Peptide> pepList = pepMap.getAllPeptides(2);
-            Peptide peptide = pepList.get(0);
-            Domain domain = peptide.getDomains().get(0);
-            InSilicoDigester digester = new InSilicoDigester(peptide, domain, xTandemFile.getModificationMap(), XTandemFile.getMassesMap(), 1);            
-            FragmentIon[] bIons = digester.getTheoreticIons(FragmentIon.B_ION);
-            FragmentIon[] mhIons = digester.getTheoreticIons(FragmentIon.MH_ION);
-            FragmentIon[] mhH20Ions = digester.getTheoreticIons(FragmentIon.MHH2O_ION);
-            FragmentIon[] mhNH3Ions = digester.getTheoreticIons(FragmentIon.MHNH3_ION);
-            System.out.println("MH: " + mhIons[0].getMZ());
-            System.out.println("MH-H20: " + mhH20Ions[0].getMZ());
-            System.out.println("MH-NH3: " + mhNH3Ions[0].getMZ());
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            fail();
+    public void testModifiedDomains() {
+        HashMap masses = XTandemFile.getMassesMap();
+        double cTerm = (Double) masses.get("C_term");
+        ModificationMap modificationMap = xTandemFile.getModificationMap();
+        int modifiedDomains = 0;
+
+        for (int s = 1; s <= xTandemFile.getSpectraNumber(); s++) {
+            for (Peptide peptide : xTandemFile.getPeptideMap().getAllPeptides(s)) {
+                for (Domain domain : peptide.getDomains()) {
+                    String sequence = domain.getDomainSequence();
+                    int length = sequence.length();
+                    double[] residues = new double[length];
+                    for (int i = 0; i < length; i++) {
+                        residues[i] = (Double) masses.get(String.valueOf(sequence.charAt(i)));
+                    }
+                    ArrayList<Modification> modifications = modificationMap.getFixedModifications(domain.getDomainKey());
+                    modifications.addAll(modificationMap.getVariableModifications(domain.getDomainKey()));
+                    for (Modification modification : modifications) {
+                        int index = Integer.parseInt(modification.getLocation()) - domain.getDomainStart();
+                        if (index >= 0 && index < length) {
+                            residues[index] += modification.getMass();
+                        }
+                    }
+                    if (!modifications.isEmpty()) {
+                        modifiedDomains++;
+                    }
+
+                    for (int charge = 1; charge <= 3; charge++) {
+                        InSilicoDigester digester = new InSilicoDigester(peptide, domain, modificationMap, masses, charge, 0.5);
+                        FragmentIon[] bIons = digester.getTheoreticIons(FragmentIon.B_ION);
+                        FragmentIon[] yIons = digester.getTheoreticIons(FragmentIon.Y_ION);
+                        assertEquals(length * charge, bIons.length);
+                        for (int z = 1; z <= charge; z++) {
+                            for (int i = 0; i < length; i++) {
+                                double bMass = 0;
+                                double yMass = 0;
+                                for (int j = 0; j <= i; j++) {
+                                    bMass += residues[j];
+                                    yMass += residues[length - 1 - j];
+                                }
+                                yMass += cTerm + Masses.Hydrogen;
+                                FragmentIon bIon = bIons[(z - 1) * length + i];
+                                FragmentIon yIon = yIons[(z - 1) * length + i];
+                                assertEquals(i + 1, bIon.getNumber());
+                                assertEquals((double) z, bIon.getCharge());
+                                assertEquals((bMass + z * Masses.Hydrogen) / z, bIon.getMZ(), 0.000001);
+                                assertEquals((yMass + z * Masses.Hydrogen) / z, yIon.getMZ(), 0.000001);
+                            }
+                        }
+                    }
+                }
+            }
         }
+        assertTrue(modifiedDomains > 0);
     }
 }
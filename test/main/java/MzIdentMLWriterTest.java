@@ -0,0 +1,108 @@
+package main.java;
+
+import de.proteinms.xtandemparser.export.MzIdentMLWriter;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+
+/**
+ * Tests the mzIdentML export by parsing the documents written.
+ */
+public class MzIdentMLWriterTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test the spectra, the hits and the references of the document.
+     */
+    public void testWrite() throws Exception {
+        XTandemResultStore resultStore = new XTandemFile(TEST_FILE).getXTandemParser().getResultStore();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(6, new MzIdentMLWriter(TEST_FILE).write(output));
+
+        Document document = parse(output.toByteArray());
+        assertEquals("MzIdentML", document.getDocumentElement().getLocalName());
+        assertEquals(MzIdentMLWriter.VERSION_1_1, document.getDocumentElement().getAttribute("version"));
+        assertEquals(resultStore.getNumberOfSpectra(), count(document, "SpectrumIdentificationResult"));
+        assertEquals(resultStore.getNumberOfDomains(), count(document, "SpectrumIdentificationItem"));
+        assertEquals(resultStore.getNumberOfDomains(), count(document, "PeptideEvidenceRef"));
+
+        // every reference resolves
+        HashSet<String> ids = new HashSet<String>();
+        NodeList elements = document.getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            String id = ((Element) elements.item(i)).getAttribute("id");
+            if (id.length() > 0) {
+                assertTrue(id, ids.add(id));
+            }
+        }
+        int references = 0;
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            for (int a = 0; a < element.getAttributes().getLength(); a++) {
+                String name = element.getAttributes().item(a).getNodeName();
+                if (name.endsWith("_ref") && !name.equals("cvRef")) {
+                    assertTrue(name, ids.contains(element.getAttribute(name)));
+                    references++;
+                }
+            }
+        }
+        assertTrue(references > resultStore.getNumberOfDomains());
+
+        // the & of the protein descriptions is escaped once
+        String text = output.toString("UTF-8");
+        assertTrue(text.contains("Protein &amp; thing"));
+        assertFalse(text.contains("&amp;amp;"));
+        NodeList sequences = document.getElementsByTagNameNS("*", "DBSequence");
+        assertTrue(sequences.getLength() > 0);
+        for (int i = 0; i < sequences.getLength(); i++) {
+            Element description = (Element) ((Element) sequences.item(i)).getElementsByTagNameNS("*", "cvParam").item(0);
+            assertEquals("protein description", description.getAttribute("name"));
+            assertTrue(description.getAttribute("value").contains("Protein & thing"));
+        }
+    }
+
+    /**
+     * Test the version 1.2.
+     */
+    public void testVersion12() throws Exception {
+        MzIdentMLWriter writer = new MzIdentMLWriter(TEST_FILE);
+        writer.setVersion(MzIdentMLWriter.VERSION_1_2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(output);
+        Document document = parse(output.toByteArray());
+        assertEquals(MzIdentMLWriter.VERSION_1_2, document.getDocumentElement().getAttribute("version"));
+        assertEquals(6, count(document, "SpectrumIdentificationResult"));
+    }
+
+    /**
+     * Parses a document.
+     *
+     * @param aDocument the document
+     * @return the parsed document
+     */
+    private static Document parse(byte[] aDocument) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(aDocument));
+    }
+
+    /**
+     * Counts the elements of a name.
+     *
+     * @param aDocument the document
+     * @param aName the local name of the elements
+     * @return the number of elements
+     */
+    private static int count(Document aDocument, String aName) {
+        return aDocument.getElementsByTagNameNS("*", aName).getLength();
+    }
+}
@@ -0,0 +1,168 @@
+package main.java;
+
+import de.proteinms.xtandemparser.xtandem.OffHeapSupportData;
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Tests keeping the support data off-heap.
+ */
+public class OffHeapSupportDataTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the histograms and fragment ion spectra of the off-heap store
+     * and of the support data built from it are the ones of the on-heap
+     * support data.
+     */
+    public void testValues() throws Exception {
+        XTandemFile onHeap = new XTandemFile(TEST_FILE);
+        XTandemFile offHeap = new XTandemFile(TEST_FILE);
+        OffHeapSupportData store = offHeap.moveSupportDataOffHeap();
+        try {
+            assertTrue(store.getSize() > 0);
+            assertNotNull(store.getXValues(1, OffHeapSupportData.HYPERSCORE));
+            for (int s = 1; s <= onHeap.getSpectraNumber(); s++) {
+                SupportData expected = onHeap.getSupportData(s);
+                assertSameValues(expected, offHeap.getSupportData(s));
+
+                assertEquals(expected.getXValuesHyperscoreArray(), store.getXValues(s, OffHeapSupportData.HYPERSCORE));
+                assertEquals(expected.getYValuesHyperscoreArray(), store.getYValues(s, OffHeapSupportData.HYPERSCORE));
+                assertEquals(expected.getXValuesConvoluteArray(), store.getXValues(s, OffHeapSupportData.CONVOLUTION));
+                assertEquals(expected.getYValuesConvoluteArray(), store.getYValues(s, OffHeapSupportData.CONVOLUTION));
+                assertEquals(expected.getXValuesbIonsArray(), store.getXValues(s, OffHeapSupportData.B_IONS));
+                assertEquals(expected.getYValuesbIonsArray(), store.getYValues(s, OffHeapSupportData.B_IONS));
+                assertEquals(expected.getXValuesyIonsArray(), store.getXValues(s, OffHeapSupportData.Y_IONS));
+                assertEquals(expected.getYValuesyIonsArray(), store.getYValues(s, OffHeapSupportData.Y_IONS));
+                assertEquals(expected.getXValuesFragIonMass2ChargeArray(), store.getXValuesFragIonMass2Charge(s));
+                assertEquals(expected.getYValuesFragIonMass2ChargeArray(), store.getYValuesFragIonMass2Charge(s));
+            }
+        } finally {
+            offHeap.close();
+        }
+        assertTrue(store.isClosed());
+        assertEquals(0, store.getSize());
+    }
+
+    /**
+     * Test that the off-heap support data is serialized with the file, and
+     * that the support data of a closed file stays unavailable.
+     */
+    public void testSerialization() throws Exception {
+        XTandemFile onHeap = new XTandemFile(TEST_FILE);
+        XTandemFile offHeap = new XTandemFile(TEST_FILE);
+        offHeap.moveSupportDataOffHeap();
+
+        XTandemFile copy = serialize(offHeap);
+        offHeap.close();
+        try {
+            assertNotNull(copy.getOffHeapSupportData());
+            for (int s = 1; s <= onHeap.getSpectraNumber(); s++) {
+                assertSameValues(onHeap.getSupportData(s), copy.getSupportData(s));
+            }
+        } finally {
+            copy.close();
+        }
+
+        XTandemFile closed = serialize(offHeap);
+        assertTrue(closed.getOffHeapSupportData().isClosed());
+        try {
+            closed.getSupportData(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // as for the closed file
+        }
+
+        assertNull(serialize(onHeap).getOffHeapSupportData());
+    }
+
+    /**
+     * Serializes and deserializes a file.
+     *
+     * @param aXTandemFile the file
+     * @return the deserialized file
+     */
+    private static XTandemFile serialize(XTandemFile aXTandemFile) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(aXTandemFile);
+        output.close();
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return (XTandemFile) input.readObject();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Asserts that two support data hold the same values.
+     *
+     * @param aExpected the expected support data
+     * @param aActual the actual support data
+     */
+    private static void assertSameValues(SupportData aExpected, SupportData aActual) {
+        assertEquals(aExpected.getFragIonSpectrumDescription(), aActual.getFragIonSpectrumDescription());
+        assertEquals(aExpected.getConvolLabel(), aActual.getConvolLabel());
+        assertTrue(Arrays.equals(aExpected.getXValuesHyperscoreArray(), aActual.getXValuesHyperscoreArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesHyperscoreArray(), aActual.getYValuesHyperscoreArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuesConvoluteArray(), aActual.getXValuesConvoluteArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesConvoluteArray(), aActual.getYValuesConvoluteArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuesaIonsArray(), aActual.getXValuesaIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesaIonsArray(), aActual.getYValuesaIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuesbIonsArray(), aActual.getXValuesbIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesbIonsArray(), aActual.getYValuesbIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuescIonsArray(), aActual.getXValuescIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuescIonsArray(), aActual.getYValuescIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuesxIonsArray(), aActual.getXValuesxIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesxIonsArray(), aActual.getYValuesxIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuesyIonsArray(), aActual.getXValuesyIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesyIonsArray(), aActual.getYValuesyIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getXValueszIonsArray(), aActual.getXValueszIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getYValueszIonsArray(), aActual.getYValueszIonsArray()));
+        assertTrue(Arrays.equals(aExpected.getXValuesFragIonMass2ChargeArray(), aActual.getXValuesFragIonMass2ChargeArray()));
+        assertTrue(Arrays.equals(aExpected.getYValuesFragIonMass2ChargeArray(), aActual.getYValuesFragIonMass2ChargeArray()));
+    }
+
+    /**
+     * Asserts that the off-heap values are the on-heap ones.
+     *
+     * @param aExpected the on-heap values, may be null
+     * @param aActual the off-heap values, may be null
+     */
+    private static void assertEquals(int[] aExpected, IntBuffer aActual) {
+        if (aExpected == null) {
+            assertNull(aActual);
+        } else {
+            int[] actual = new int[aActual.remaining()];
+            aActual.get(actual);
+            assertTrue(Arrays.equals(aExpected, actual));
+        }
+    }
+
+    /**
+     * Asserts that the off-heap values are the on-heap ones.
+     *
+     * @param aExpected the on-heap values, may be null
+     * @param aActual the off-heap values, may be null
+     */
+    private static void assertEquals(double[] aExpected, DoubleBuffer aActual) {
+        if (aExpected == null) {
+            assertNull(aActual);
+        } else {
+            double[] actual = new double[aActual.remaining()];
+            aActual.get(actual);
+            assertTrue(Arrays.equals(aExpected, actual));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package main.java;
+
+import de.proteinms.xtandemparser.interfaces.Peak;
+import de.proteinms.xtandemparser.xtandem.PeakMatcher;
+import de.proteinms.xtandemparser.xtandem.SpectrumPeak;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests matching theoretical m/z values against the peaks of a spectrum.
+ */
+public class PeakMatcherTest extends TestCase {
+
+    /**
+     * Test that the peaks inside the tolerance are matched, including the
+     * ones exactly at its bounds, and that the most intense or the closest
+     * one is chosen.
+     */
+    public void testTolerance() {
+        double[] mz = {100.0, 100.3, 100.5, 101.0, 200.0};
+        double[] intensities = {50, 80, 10, 80, 5};
+        PeakMatcher mostIntense = new PeakMatcher(mz, intensities);
+        PeakMatcher closest = new PeakMatcher(mz, intensities, PeakMatcher.Selection.CLOSEST);
+        assertEquals(PeakMatcher.Selection.MOST_INTENSE, mostIntense.getSelection());
+        assertEquals(5, mostIntense.getNumberOfPeaks());
+
+        assertEquals(1, mostIntense.findPeak(100.45, 0.25));
+        assertEquals(2, closest.findPeak(100.45, 0.25));
+        // 100.3 and 101.0 are equally intense, 100.3 is closer
+        assertEquals(1, mostIntense.findPeak(100.6, 0.5));
+        assertEquals(2, closest.findPeak(100.6, 0.5));
+
+        // At the bounds of the tolerance
+        assertEquals(4, mostIntense.findPeak(200.5, 0.5));
+        assertEquals(4, mostIntense.findPeak(199.5, 0.5));
+        assertEquals(-1, mostIntense.findPeak(200.5, 0.4999));
+        assertEquals(-1, mostIntense.findPeak(199.5, 0.4999));
+
+        // Outside of all peaks
+        assertEquals(-1, mostIntense.findPeak(50, 1));
+        assertEquals(-1, mostIntense.findPeak(150, 1));
+        assertEquals(-1, mostIntense.findPeak(300, 1));
+        assertEquals(-1, new PeakMatcher(new double[0], new double[0]).findPeak(100, 1));
+    }
+
+    /**
+     * Test that the peaks given in any order are sorted, and that the
+     * matches are the ones of a linear scan over all peaks.
+     */
+    public void testLinearScan() {
+        Random random = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            int n = random.nextInt(200);
+            double[] mz = new double[n];
+            double[] intensities = new double[n];
+            Peak[] peaks = new Peak[n];
+            for (int i = 0; i < n; i++) {
+                mz[i] = 100 + random.nextInt(20000) / 10.0;
+                intensities[i] = random.nextInt(10);
+                peaks[i] = new SpectrumPeak(mz[i], intensities[i], 1);
+            }
+            double[] mzCopy = mz.clone();
+
+            for (PeakMatcher.Selection selection : PeakMatcher.Selection.values()) {
+                PeakMatcher fromArrays = new PeakMatcher(mz, intensities, selection);
+                PeakMatcher fromPeaks = new PeakMatcher(peaks, selection);
+                for (int i = 1; i < fromArrays.getNumberOfPeaks(); i++) {
+                    assertTrue(fromArrays.getMz(i - 1) <= fromArrays.getMz(i));
+                }
+                for (int t = 0; t < 200; t++) {
+                    double target = 90 + random.nextDouble() * 2020;
+                    double error = random.nextInt(4) * 0.5;
+                    double expected = linearScan(mz, intensities, target, error, selection);
+
+                    int match = fromArrays.findPeak(target, error);
+                    int peakMatch = fromPeaks.findPeak(target, error);
+                    if (expected < 0) {
+                        assertEquals(-1, match);
+                        assertEquals(-1, peakMatch);
+                    } else {
+                        assertEquals(expected, fromArrays.getMz(match), 0);
+                        assertEquals(expected, fromPeaks.getMz(peakMatch), 0);
+                        assertEquals(fromArrays.getIntensity(match), fromPeaks.getIntensity(peakMatch), 0);
+                    }
+                }
+            }
+            // the arrays are not changed
+            assertTrue(Arrays.equals(mzCopy, mz));
+        }
+    }
+
+    /**
+     * Returns the m/z of the best peak inside the tolerance found by a linear
+     * scan. The peaks with the same m/z and intensity cannot be told apart,
+     * so the m/z is returned rather than the index.
+     *
+     * @param aMz the m/z values
+     * @param aIntensities the intensities
+     * @param aTarget the theoretical m/z
+     * @param aMassError the mass error tolerance
+     * @param aSelection the rule for choosing one of the peaks
+     * @return the m/z of the best peak, -1 if none
+     */
+    private static double linearScan(double[] aMz, double[] aIntensities, double aTarget, double aMassError,
+            PeakMatcher.Selection aSelection) {
+        int best = -1;
+        for (int i = 0; i < aMz.length; i++) {
+            if (aMz[i] - aTarget < -aMassError || aMz[i] - aTarget > aMassError) {
+                continue;
+            }
+            if (best == -1) {
+                best = i;
+                continue;
+            }
+            double error = Math.abs(aMz[i] - aTarget);
+            double bestError = Math.abs(aMz[best] - aTarget);
+            boolean better;
+            if (aSelection == PeakMatcher.Selection.MOST_INTENSE) {
+                better = aIntensities[i] > aIntensities[best] || (aIntensities[i] == aIntensities[best] && error < bestError);
+            } else {
+                better = error < bestError || (error == bestError && aIntensities[i] > aIntensities[best]);
+            }
+            // of two peaks as good, the lower m/z
+            if (better || (aIntensities[i] == aIntensities[best] && error == bestError && aMz[i] < aMz[best])) {
+                best = i;
+            }
+        }
+        return best == -1 ? -1 : aMz[best];
+    }
+}
@@ -0,0 +1,64 @@
+package main.java;
+
+import de.proteinms.xtandemparser.export.PepXMLWriter;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Tests the pepXML export by parsing the documents written.
+ */
+public class PepXMLWriterTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test the spectrum queries and the search hits of the document.
+     */
+    public void testWrite() throws Exception {
+        XTandemResultStore resultStore = new XTandemFile(TEST_FILE).getXTandemParser().getResultStore();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(6, new PepXMLWriter(TEST_FILE).write(output));
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals("msms_pipeline_analysis", document.getDocumentElement().getLocalName());
+
+        NodeList queries = document.getElementsByTagNameNS("*", "spectrum_query");
+        assertEquals(resultStore.getNumberOfSpectra(), queries.getLength());
+        NodeList hits = document.getElementsByTagNameNS("*", "search_hit");
+        assertEquals(resultStore.getNumberOfDomains(), hits.getLength());
+
+        for (int i = 0; i < queries.getLength(); i++) {
+            Element query = (Element) queries.item(i);
+            assertEquals(Integer.toString(i + 1), query.getAttribute("index"));
+            assertEquals(Integer.toString(resultStore.getSpectrumId(i)), query.getAttribute("start_scan"));
+            // hits of the same expectation value share their rank
+            NodeList queryHits = query.getElementsByTagNameNS("*", "search_hit");
+            int previousRank = 0;
+            for (int hit = 0; hit < queryHits.getLength(); hit++) {
+                int rank = Integer.parseInt(((Element) queryHits.item(hit)).getAttribute("hit_rank"));
+                assertTrue(rank == hit + 1 || rank == previousRank);
+                previousRank = rank;
+            }
+        }
+
+        // the & of the protein descriptions is escaped once
+        String text = output.toString("UTF-8");
+        assertTrue(text.contains("Protein &amp; thing"));
+        assertFalse(text.contains("&amp;amp;"));
+        for (int i = 0; i < hits.getLength(); i++) {
+            Element hit = (Element) hits.item(i);
+            assertTrue(hit.getAttribute("protein_descr").startsWith("Protein & thing"));
+            assertEquals(3, hit.getElementsByTagNameNS("*", "search_score").getLength());
+        }
+    }
+}
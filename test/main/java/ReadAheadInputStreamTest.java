@@ -0,0 +1,157 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.ReadAheadInputStream;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests reading files ahead on a separate thread.
+ */
+public class ReadAheadInputStreamTest extends TestCase {
+
+    /**
+     * The size of the buffers, small so that the reads cross many buffers.
+     */
+    private static final int BUFFER_SIZE = 64;
+
+    /**
+     * Test that files of sizes around the buffer size are read completely,
+     * with reads of any size crossing the buffer boundaries.
+     */
+    public void testBufferBoundaries() throws Exception {
+        int[] sizes = {1, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, 3 * BUFFER_SIZE, 100 * BUFFER_SIZE + 7};
+        int[] readSizes = {1, 7, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, 1000};
+        Random random = new Random(7);
+        for (int size : sizes) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            File file = File.createTempFile("readahead", ".bin");
+            try {
+                XTandemParserTest.write(content, file, false);
+                for (int bufferCount : new int[]{2, 3, ReadAheadInputStream.DEFAULT_BUFFER_COUNT}) {
+                    for (int readSize : readSizes) {
+                        String message = size + " " + bufferCount + " " + readSize;
+                        ReadAheadInputStream inputStream = new ReadAheadInputStream(file, bufferCount, BUFFER_SIZE);
+                        try {
+                            assertEquals(bufferCount, inputStream.getBufferCount());
+                            assertEquals(BUFFER_SIZE, inputStream.getBufferSize());
+                            assertTrue(message, Arrays.equals(content, readAll(inputStream, readSize)));
+                        } finally {
+                            inputStream.close();
+                        }
+                    }
+                }
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Test that the end of the file is reported again and again, also for an
+     * empty file, and that a stream cannot be read once closed.
+     */
+    public void testEndOfFile() throws Exception {
+        File file = File.createTempFile("readahead", ".bin");
+        try {
+            XTandemParserTest.write(new byte[0], file, false);
+            ReadAheadInputStream inputStream = new ReadAheadInputStream(file, 2, BUFFER_SIZE);
+            assertEquals(-1, inputStream.read());
+            assertEquals(-1, inputStream.read(new byte[10], 0, 10));
+            assertEquals(0, inputStream.available());
+            inputStream.close();
+
+            byte[] content = new byte[BUFFER_SIZE * 2];
+            Arrays.fill(content, (byte) 0xff);
+            XTandemParserTest.write(content, file, false);
+            inputStream = new ReadAheadInputStream(file, 2, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            assertEquals(BUFFER_SIZE, inputStream.read(buffer, 0, BUFFER_SIZE));
+            assertEquals(BUFFER_SIZE, inputStream.read(buffer, 0, BUFFER_SIZE));
+            // at the end of the last buffer, not known to be the end of the file yet
+            assertEquals(0, inputStream.read(buffer, 0, 0));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(-1, inputStream.read(buffer, 0, BUFFER_SIZE));
+                assertEquals(-1, inputStream.read());
+            }
+            assertEquals(0, inputStream.read(buffer, 0, 0));
+            inputStream.close();
+            inputStream.close();
+            try {
+                inputStream.read();
+                fail();
+            } catch (IOException e) {
+                // closed
+            }
+
+            // Closed in the middle of the file, stopping the I/O thread waiting for a free buffer
+            XTandemParserTest.write(new byte[BUFFER_SIZE * 20], file, false);
+            inputStream = new ReadAheadInputStream(file, 2, BUFFER_SIZE);
+            assertEquals(0, inputStream.read());
+            inputStream.close();
+            try {
+                inputStream.read(buffer, 0, 1);
+                fail();
+            } catch (IOException e) {
+                // closed
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that at least two buffers of a positive size are needed.
+     */
+    public void testInvalidBuffers() throws Exception {
+        File file = File.createTempFile("readahead", ".bin");
+        try {
+            try {
+                new ReadAheadInputStream(file, 1, BUFFER_SIZE);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // one buffer cannot be read while the other is filled
+            }
+            try {
+                new ReadAheadInputStream(file, 2, 0);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // empty buffers
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Reads a stream until its end.
+     *
+     * @param aInputStream the stream
+     * @param aReadSize the number of bytes requested by every read, 1 to read
+     * byte by byte
+     * @return the bytes read
+     */
+    private static byte[] readAll(ReadAheadInputStream aInputStream, int aReadSize) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        if (aReadSize == 1) {
+            int read;
+            while ((read = aInputStream.read()) != -1) {
+                content.write(read);
+            }
+        } else {
+            byte[] buffer = new byte[aReadSize + 3];
+            int read;
+            // at an offset, to check that the offset is used
+            while ((read = aInputStream.read(buffer, 3, aReadSize)) != -1) {
+                assertTrue(read > 0 && read <= aReadSize);
+                content.write(buffer, 3, read);
+            }
+        }
+        return content.toByteArray();
+    }
+}
@@ -0,0 +1,183 @@
+package main.java;
+
+import de.proteinms.xtandemparser.interfaces.Flow;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.SpectrumGroup;
+import de.proteinms.xtandemparser.xtandem.SpectrumGroupPublisher;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests publishing the model groups of a file to subscribers.
+ */
+public class SpectrumGroupPublisherTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+    /**
+     * The time in milliseconds given to the publishing thread to send groups
+     * which were not requested.
+     */
+    private static final long QUIET_TIME = 200;
+    /**
+     * The maximum time in milliseconds to wait for the publishing thread.
+     */
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Test that the groups are sent only as requested, in file order, and
+     * that the subscription completes after the last group.
+     */
+    public void testBackpressure() throws Exception {
+        XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int s = 1; s <= xTandemFile.getSpectraNumber(); s++) {
+            expected.add(xTandemFile.getSpectrum(s).getSpectrumNumber());
+        }
+
+        for (boolean fastMode : new boolean[]{false, true}) {
+            SpectrumGroupPublisher publisher = new SpectrumGroupPublisher(TEST_FILE, XTandemSection.all());
+            publisher.setFastMode(fastMode);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+
+            subscriber.getSubscription().request(1);
+            subscriber.awaitEvents(1);
+            Thread.sleep(QUIET_TIME);
+            assertEquals(1, subscriber.getEvents().size());
+
+            subscriber.getSubscription().request(2);
+            subscriber.awaitEvents(3);
+            Thread.sleep(QUIET_TIME);
+            assertEquals(3, subscriber.getEvents().size());
+
+            subscriber.getSubscription().request(Long.MAX_VALUE);
+            subscriber.getSubscription().request(Long.MAX_VALUE);
+            subscriber.awaitEvents(expected.size() + 1);
+            List<Object> events = subscriber.getEvents();
+            assertEquals(new ArrayList<Object>(expected), events.subList(0, expected.size()));
+            assertEquals("complete", events.get(expected.size()));
+        }
+    }
+
+    /**
+     * Test that cancelling a subscription stops the parsing thread without
+     * sending anything else to the subscriber.
+     */
+    public void testCancel() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SpectrumGroupPublisher publisher = new SpectrumGroupPublisher(TEST_FILE, XTandemSection.all(), executor);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+
+            subscriber.getSubscription().request(1);
+            subscriber.awaitEvents(1);
+            subscriber.getSubscription().cancel();
+
+            // The parsing thread is free again
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            subscriber.getSubscription().request(10);
+            Thread.sleep(QUIET_TIME);
+            assertEquals(1, subscriber.getEvents().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that requesting zero or a negative number of groups fails the
+     * subscription with an IllegalArgumentException.
+     */
+    public void testInvalidRequest() throws Exception {
+        for (long count : new long[]{0, -1}) {
+            SpectrumGroupPublisher publisher = new SpectrumGroupPublisher(TEST_FILE, XTandemSection.all());
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+
+            subscriber.getSubscription().request(count);
+            subscriber.awaitEvents(1);
+            subscriber.getSubscription().request(10);
+            Thread.sleep(QUIET_TIME);
+
+            List<Object> events = subscriber.getEvents();
+            assertEquals(1, events.size());
+            assertTrue(events.get(0) instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * This subscriber records the spectrum numbers of the groups, the error
+     * and the completion, and requests nothing on its own.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<SpectrumGroup> {
+
+        /**
+         * The subscription.
+         */
+        private Flow.Subscription iSubscription = null;
+        /**
+         * The spectrum numbers of the groups, the error and "complete", in
+         * call order.
+         */
+        private List<Object> iEvents = new ArrayList<Object>();
+
+        public synchronized void onSubscribe(Flow.Subscription aSubscription) {
+            iSubscription = aSubscription;
+        }
+
+        public synchronized void onNext(SpectrumGroup aItem) {
+            iEvents.add(aItem.getSpectrum().getSpectrumNumber());
+            notifyAll();
+        }
+
+        public synchronized void onError(Throwable aThrowable) {
+            iEvents.add(aThrowable);
+            notifyAll();
+        }
+
+        public synchronized void onComplete() {
+            iEvents.add("complete");
+            notifyAll();
+        }
+
+        /**
+         * Returns the subscription.
+         *
+         * @return the subscription
+         */
+        private synchronized Flow.Subscription getSubscription() {
+            return iSubscription;
+        }
+
+        /**
+         * Returns a copy of the events.
+         *
+         * @return the events
+         */
+        private synchronized List<Object> getEvents() {
+            return new ArrayList<Object>(iEvents);
+        }
+
+        /**
+         * Waits until the given number of events is recorded.
+         *
+         * @param aCount the number of events
+         */
+        private synchronized void awaitEvents(int aCount) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT;
+            while (iEvents.size() < aCount) {
+                long left = end - System.currentTimeMillis();
+                assertTrue("Timeout waiting for " + aCount + " events: " + iEvents, left > 0);
+                wait(left);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package main.java;
+
+import de.proteinms.xtandemparser.xtandem.Psm;
+import de.proteinms.xtandemparser.xtandem.PsmIterator;
+import de.proteinms.xtandemparser.xtandem.Spectrum;
+import de.proteinms.xtandemparser.xtandem.SpectrumIterator;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests iterating over the spectra and the matches of a file, and splitting
+ * the iterators.
+ */
+public class SpectrumIteratorTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the iterators split again and again cover every spectrum
+     * exactly once, in file order from the first half to the second.
+     */
+    public void testSplitSpectra() throws Exception {
+        XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+        List<String> expected = spectra(xTandemFile.spectra());
+        assertEquals(xTandemFile.getSpectraNumber(), expected.size());
+
+        List<SpectrumIterator> parts = new ArrayList<SpectrumIterator>();
+        split(xTandemFile.spectra(), parts);
+        assertEquals(xTandemFile.getSpectraNumber(), parts.size());
+        for (SpectrumIterator part : parts) {
+            assertEquals(1, part.getRemainingSpectra());
+            assertNull(part.trySplit());
+        }
+
+        // The parts iterated on separate threads
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (final SpectrumIterator part : parts) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+                    public List<String> call() {
+                        return spectra(part);
+                    }
+                }));
+            }
+            List<String> actual = new ArrayList<String>();
+            for (Future<List<String>> future : futures) {
+                actual.addAll(future.get());
+            }
+            assertEquals(expected, actual);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Split once some spectra are used
+        SpectrumIterator second = xTandemFile.spectra();
+        List<String> actual = new ArrayList<String>();
+        actual.add(spectrum(second.next()));
+        SpectrumIterator first = second.trySplit();
+        assertEquals(xTandemFile.getSpectraNumber() - 1, first.getRemainingSpectra() + second.getRemainingSpectra());
+        actual.addAll(spectra(first));
+        actual.addAll(spectra(second));
+        assertEquals(expected, actual);
+        assertFalse(second.hasNext());
+        assertNull(second.trySplit());
+    }
+
+    /**
+     * Test that the match iterators split again and again cover every match
+     * exactly once, in file order, the matches of a spectrum together, and
+     * that an iterator in the middle of a spectrum is not split.
+     */
+    public void testSplitPsms() throws Exception {
+        XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+        List<String> expected = psms(xTandemFile.psms());
+        assertFalse(expected.isEmpty());
+
+        List<PsmIterator> parts = new ArrayList<PsmIterator>();
+        split(xTandemFile.psms(), parts);
+        assertEquals(xTandemFile.getSpectraNumber(), parts.size());
+        List<String> actual = new ArrayList<String>();
+        for (PsmIterator part : parts) {
+            List<String> psms = psms(part);
+            // a single spectrum in every part
+            for (String psm : psms) {
+                assertEquals(psms.get(0).split(" ")[0], psm.split(" ")[0]);
+            }
+            actual.addAll(psms);
+        }
+        assertEquals(expected, actual);
+
+        // Not split while the matches of a spectrum are iterated
+        PsmIterator psmIterator = xTandemFile.psms();
+        actual = new ArrayList<String>();
+        actual.add(psm(psmIterator.next()));
+        assertNull(psmIterator.trySplit());
+        actual.addAll(psms(psmIterator));
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Splits a spectrum iterator until it cannot be split anymore.
+     *
+     * @param aIterator the iterator
+     * @param aParts the parts, in file order
+     */
+    private static void split(SpectrumIterator aIterator, List<SpectrumIterator> aParts) {
+        SpectrumIterator first = aIterator.trySplit();
+        if (first == null) {
+            aParts.add(aIterator);
+        } else {
+            split(first, aParts);
+            split(aIterator, aParts);
+        }
+    }
+
+    /**
+     * Splits a match iterator until it cannot be split anymore.
+     *
+     * @param aIterator the iterator
+     * @param aParts the parts, in file order
+     */
+    private static void split(PsmIterator aIterator, List<PsmIterator> aParts) {
+        PsmIterator first = aIterator.trySplit();
+        if (first == null) {
+            aParts.add(aIterator);
+        } else {
+            split(first, aParts);
+            split(aIterator, aParts);
+        }
+    }
+
+    /**
+     * Returns the spectra left in an iterator.
+     *
+     * @param aIterator the iterator
+     * @return the spectra as text
+     */
+    private static List<String> spectra(SpectrumIterator aIterator) {
+        List<String> spectra = new ArrayList<String>();
+        while (aIterator.hasNext()) {
+            spectra.add(spectrum(aIterator.next()));
+        }
+        return spectra;
+    }
+
+    /**
+     * Returns a spectrum as text.
+     *
+     * @param aSpectrum the spectrum
+     * @return the text
+     */
+    private static String spectrum(Spectrum aSpectrum) {
+        return aSpectrum.getSpectrumNumber() + " " + aSpectrum.getSpectrumId() + " " + aSpectrum.getPrecursorMh();
+    }
+
+    /**
+     * Returns the matches left in an iterator.
+     *
+     * @param aIterator the iterator
+     * @return the matches as text
+     */
+    private static List<String> psms(PsmIterator aIterator) {
+        List<String> psms = new ArrayList<String>();
+        while (aIterator.hasNext()) {
+            psms.add(psm(aIterator.next()));
+        }
+        return psms;
+    }
+
+    /**
+     * Returns a match as text.
+     *
+     * @param aPsm the match
+     * @return the text
+     */
+    private static String psm(Psm aPsm) {
+        return aPsm.getSpectrum().getSpectrumNumber() + " " + aPsm.getPeptide().getPeptideID()
+                + " " + aPsm.getDomain().getDomainKey();
+    }
+}
@@ -0,0 +1,204 @@
+package main.java;
+
+import de.proteinms.xtandemparser.interfaces.Modification;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.Domain;
+import de.proteinms.xtandemparser.xtandem.InputParams;
+import de.proteinms.xtandemparser.xtandem.ModificationMap;
+import de.proteinms.xtandemparser.xtandem.Peptide;
+import de.proteinms.xtandemparser.xtandem.PerformParams;
+import de.proteinms.xtandemparser.xtandem.Spectrum;
+import de.proteinms.xtandemparser.xtandem.StreamingXTandemFile;
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import de.proteinms.xtandemparser.xtandem.XTandemHandler;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests processing X!Tandem files spectrum by spectrum with a handler.
+ */
+public class StreamingXTandemFileTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the handler is passed the parameters, spectra, peptides,
+     * domains, modifications and support data of the file, in file order, in
+     * fast mode or not.
+     */
+    public void testEvents() throws Exception {
+        List<String> expected = expectedEvents(new XTandemFile(TEST_FILE));
+        for (boolean fastMode : new boolean[]{false, true}) {
+            StreamingXTandemFile streamingFile = new StreamingXTandemFile(TEST_FILE);
+            streamingFile.setFastMode(fastMode);
+            for (int run = 0; run < 2; run++) {
+                RecordingHandler handler = new RecordingHandler();
+                streamingFile.process(handler);
+                assertEquals(fastMode + " " + run, expected, handler.iEvents);
+            }
+            assertEquals(new XTandemFile(TEST_FILE).getSpectraNumber(), streamingFile.getSpectraNumber());
+            assertEquals(new File(TEST_FILE).getName(), streamingFile.getFileName());
+        }
+    }
+
+    /**
+     * Test that a file read from a stream, compressed or not, gives the same
+     * events as the file, wherever its parameter groups are, and that a
+     * stream is only processed once.
+     */
+    public void testStreams() throws Exception {
+        List<String> expected = expectedEvents(new XTandemFile(TEST_FILE));
+        String content = XTandemParserTest.read(new File(TEST_FILE));
+
+        // The parameter groups at the end, first, and between the model groups
+        int parametersStart = content.indexOf("<group label=\"input parameters\"");
+        int parametersEnd = content.indexOf("</bioml>");
+        String parameters = content.substring(parametersStart, parametersEnd);
+        String models = content.substring(0, parametersStart) + content.substring(parametersEnd);
+        int firstGroup = models.indexOf("\n<group id=") + 1;
+        int thirdGroup = models.indexOf("\n<group id=", models.indexOf("\n<group id=", firstGroup) + 1) + 1;
+        String[] contents = {content,
+            models.substring(0, firstGroup) + parameters + models.substring(firstGroup),
+            models.substring(0, thirdGroup) + parameters + models.substring(thirdGroup)};
+
+        for (int c = 0; c < contents.length; c++) {
+            byte[] bytes = contents[c].getBytes("UTF-8");
+            for (boolean gzip : new boolean[]{false, true}) {
+                for (boolean fastMode : new boolean[]{false, true}) {
+                    String message = c + (gzip ? " gzip" : "") + (fastMode ? " fast" : "");
+                    StreamingXTandemFile streamingFile = new StreamingXTandemFile(
+                            new ByteArrayInputStream(gzip ? gzip(bytes) : bytes), "stream.t.xml", XTandemSection.all());
+                    streamingFile.setFastMode(fastMode);
+                    RecordingHandler handler = new RecordingHandler();
+                    streamingFile.process(handler);
+                    assertEquals(message, expected, handler.iEvents);
+                    assertEquals(message, 6, streamingFile.getSpectraNumber());
+                    assertEquals("stream.t.xml", streamingFile.getFileName());
+
+                    try {
+                        streamingFile.process(new RecordingHandler());
+                        fail(message);
+                    } catch (IllegalStateException e) {
+                        // the stream is read
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that skipping a group skips its remaining callbacks only.
+     */
+    public void testSkipGroup() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        for (String event : expectedEvents(new XTandemFile(TEST_FILE))) {
+            if (event.startsWith("parameters") || event.startsWith("spectrum") || event.startsWith("end")) {
+                expected.add(event);
+            }
+        }
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public Action onSpectrum(Spectrum aSpectrum) {
+                super.onSpectrum(aSpectrum);
+                return Action.SKIP_GROUP;
+            }
+        };
+        new StreamingXTandemFile(TEST_FILE).process(handler);
+        assertEquals(expected, handler.iEvents);
+    }
+
+    /**
+     * Returns the events a handler records for an X!Tandem file.
+     *
+     * @param aXTandemFile the X!Tandem file
+     * @return the events
+     */
+    private static List<String> expectedEvents(XTandemFile aXTandemFile) {
+        RecordingHandler handler = new RecordingHandler();
+        handler.onParameters(aXTandemFile.getInputParameters());
+        ModificationMap modificationMap = aXTandemFile.getModificationMap();
+        for (int s = 1; s <= aXTandemFile.getSpectraNumber(); s++) {
+            handler.onSpectrum(aXTandemFile.getSpectrum(s));
+            // The peptides in file order
+            for (int p = 1; p <= aXTandemFile.getPeptideMap().getNumberOfPeptides(s); p++) {
+                Peptide peptide = aXTandemFile.getPeptideMap().getPeptideByIndex(s, p);
+                handler.onPeptide(peptide);
+                for (Domain domain : peptide.getDomains()) {
+                    ArrayList<Modification> modifications = modificationMap.getFixedModifications(domain.getDomainKey());
+                    modifications.addAll(modificationMap.getVariableModifications(domain.getDomainKey()));
+                    handler.onDomain(domain, modifications);
+                }
+            }
+            handler.onSupportData(aXTandemFile.getSupportData(s));
+        }
+        handler.onEnd(aXTandemFile.getPerformParameters());
+        return handler.iEvents;
+    }
+
+    /**
+     * Compresses bytes with gzip.
+     *
+     * @param aBytes the bytes
+     * @return the compressed bytes
+     */
+    private static byte[] gzip(byte[] aBytes) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream outputStream = new GZIPOutputStream(bytes);
+        outputStream.write(aBytes);
+        outputStream.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * This handler records the callbacks as text.
+     */
+    private static class RecordingHandler implements XTandemHandler {
+
+        /**
+         * The callbacks, in call order.
+         */
+        private List<String> iEvents = new ArrayList<String>();
+
+        public void onParameters(InputParams aInputParams) {
+            iEvents.add("parameters " + aInputParams.getSpectrumPath() + " " + aInputParams.getProteinCleavageSite());
+        }
+
+        public Action onSpectrum(Spectrum aSpectrum) {
+            iEvents.add("spectrum " + aSpectrum.getSpectrumNumber() + " " + aSpectrum.getSpectrumId()
+                    + " " + aSpectrum.getPrecursorMh());
+            return Action.CONTINUE;
+        }
+
+        public Action onPeptide(Peptide aPeptide) {
+            iEvents.add("peptide " + aPeptide.getPeptideID() + " " + aPeptide.getSequence());
+            return Action.CONTINUE;
+        }
+
+        public Action onDomain(Domain aDomain, List<Modification> aModifications) {
+            StringBuilder event = new StringBuilder("domain " + aDomain.getDomainKey() + " " + aDomain.getDomainSequence());
+            for (Modification modification : aModifications) {
+                event.append(' ').append(modification.getName()).append('@').append(modification.getLocation());
+            }
+            iEvents.add(event.toString());
+            return Action.CONTINUE;
+        }
+
+        public Action onSupportData(SupportData aSupportData) {
+            iEvents.add("support " + Arrays.toString(aSupportData.getYValuesHyperscoreArray())
+                    + " " + Arrays.toString(aSupportData.getYValuesFragIonMass2ChargeArray()));
+            return Action.CONTINUE;
+        }
+
+        public void onEnd(PerformParams aPerformParams) {
+            iEvents.add("end " + aPerformParams.getInputModelNumber() + " " + aPerformParams.getInputSpectraNumber());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.StringDictionary;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.XTandemBatchLoader;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests interning strings and sequences with a dictionary.
+ */
+public class StringDictionaryTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the strings are numbered in the order in which they were
+     * added, and keep their ids and stored instances while the dictionary
+     * grows.
+     */
+    public void testIds() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals(StringDictionary.NO_ID, dictionary.getId(null));
+        assertNull(dictionary.getString(StringDictionary.NO_ID));
+        assertNull(dictionary.intern(null));
+
+        String[] strings = new String[5000];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = "protein " + i;
+            assertEquals(i, dictionary.getId(strings[i]));
+        }
+        assertEquals(strings.length, dictionary.size());
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(i, dictionary.getId(new String(strings[i])));
+            assertSame(strings[i], dictionary.getString(i));
+            assertSame(strings[i], dictionary.intern(new String(strings[i])));
+        }
+        assertEquals(strings.length, dictionary.size());
+    }
+
+    /**
+     * Test that the threads adding the same strings and sequences at the same
+     * time get the same ids and stored instances.
+     */
+    public void testConcurrentAdd() throws Exception {
+        final StringDictionary dictionary = new StringDictionary();
+        final List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            strings.add("label " + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object[]>> futures = new ArrayList<Future<Object[]>>();
+            for (int t = 0; t < 8; t++) {
+                final List<String> shuffled = new ArrayList<String>(strings);
+                Collections.shuffle(shuffled, new Random(t));
+                futures.add(executor.submit(new Callable<Object[]>() {
+                    public Object[] call() {
+                        int[] ids = new int[strings.size()];
+                        Object[] sequences = new Object[strings.size()];
+                        for (String string : shuffled) {
+                            int index = Integer.parseInt(string.substring("label ".length()));
+                            ids[index] = dictionary.getId(new String(string));
+                            sequences[index] = dictionary.internSequence(sequence(index));
+                        }
+                        return new Object[]{ids, sequences};
+                    }
+                }));
+            }
+
+            Object[] first = futures.get(0).get();
+            for (Future<Object[]> future : futures) {
+                Object[] result = future.get();
+                assertTrue(Arrays.equals((int[]) first[0], (int[]) result[0]));
+                Object[] firstSequences = (Object[]) first[1];
+                Object[] sequences = (Object[]) result[1];
+                for (int i = 0; i < sequences.length; i++) {
+                    assertSame(firstSequences[i], sequences[i]);
+                }
+            }
+
+            assertEquals(strings.size(), dictionary.size());
+            assertEquals(strings.size(), dictionary.getSequenceCount());
+            int[] ids = (int[]) first[0];
+            boolean[] used = new boolean[strings.size()];
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(strings.get(i), dictionary.getString(ids[i]));
+                assertFalse(used[ids[i]]);
+                used[ids[i]] = true;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that the files loaded with a shared dictionary share their strings
+     * and sequences, and add nothing to it once the first file is loaded.
+     */
+    public void testBatchLoader() throws Exception {
+        StringDictionary single = new StringDictionary();
+        new XTandemFile(TEST_FILE, XTandemSection.all(), single);
+
+        StringDictionary shared = new StringDictionary();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<XTandemFile> xTandemFiles = new ArrayList<XTandemFile>();
+        try {
+            XTandemBatchLoader loader = new XTandemBatchLoader(Arrays.asList(TEST_FILE, TEST_FILE, TEST_FILE),
+                    XTandemSection.all(), executor);
+            loader.setStringDictionary(shared);
+            XTandemBatchLoader.Result result;
+            while ((result = loader.take()) != null) {
+                assertNull(result.getError());
+                xTandemFiles.add(result.getXTandemFile());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(single.size(), shared.size());
+        assertEquals(single.getSequenceCount(), shared.getSequenceCount());
+
+        XTandemResultStore expected = xTandemFiles.get(0).getXTandemParser().getResultStore();
+        for (XTandemFile xTandemFile : xTandemFiles) {
+            XTandemResultStore resultStore = xTandemFile.getXTandemParser().getResultStore();
+            assertSame(shared, resultStore.getStringDictionary());
+            for (int p = 0; p < resultStore.getNumberOfPeptides(); p++) {
+                assertSame(expected.getProteinDescription(p), resultStore.getProteinDescription(p));
+                assertSame(expected.getPackedPeptideSequence(p), resultStore.getPackedPeptideSequence(p));
+            }
+            for (int d = 0; d < resultStore.getNumberOfDomains(); d++) {
+                assertSame(expected.getPackedDomainSequence(d), resultStore.getPackedDomainSequence(d));
+                assertSame(expected.getPackedUpFlankSequence(d), resultStore.getPackedUpFlankSequence(d));
+            }
+        }
+    }
+
+    /**
+     * Returns a distinct sequence for a number.
+     *
+     * @param aNumber the number
+     * @return the sequence
+     */
+    private static String sequence(int aNumber) {
+        StringBuilder sequence = new StringBuilder("PEPTIDE");
+        for (int n = aNumber; n > 0; n /= 20) {
+            sequence.append("ACDEFGHIKLMNPQRSTVWY".charAt(n % 20));
+        }
+        return sequence.toString();
+    }
+}
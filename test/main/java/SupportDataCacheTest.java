@@ -0,0 +1,119 @@
+package main.java;
+
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.SupportDataCache;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Tests caching the support data of the spectra.
+ */
+public class SupportDataCacheTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the least recently used entry is evicted and that the hits,
+     * misses and evictions are counted.
+     */
+    public void testEviction() {
+        SupportDataCache cache = new SupportDataCache(2);
+        SupportData one = new SupportData(new HashMap(), 1);
+        SupportData two = new SupportData(new HashMap(), 2);
+        SupportData three = new SupportData(new HashMap(), 3);
+
+        assertNull(cache.get(1));
+        cache.put(1, one);
+        cache.put(2, two);
+        assertSame(one, cache.get(1));
+        // 2 is the least recently used entry now
+        cache.put(3, three);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2));
+        assertSame(one, cache.get(1));
+        assertSame(three, cache.get(3));
+
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    /**
+     * Test that nothing is cached with NO_CACHE and nothing evicted with
+     * UNBOUNDED.
+     */
+    public void testSizes() {
+        SupportDataCache noCache = new SupportDataCache(SupportDataCache.NO_CACHE);
+        noCache.put(1, new SupportData(new HashMap(), 1));
+        assertNull(noCache.get(1));
+        assertEquals(0, noCache.size());
+        assertEquals(0, noCache.getHitCount());
+        assertEquals(1, noCache.getMissCount());
+        assertEquals(0, noCache.getEvictionCount());
+
+        SupportDataCache unbounded = new SupportDataCache(SupportDataCache.UNBOUNDED);
+        assertTrue(unbounded.isUnbounded());
+        for (int i = 1; i <= 1000; i++) {
+            unbounded.put(i, new SupportData(new HashMap(), i));
+        }
+        assertEquals(1000, unbounded.size());
+        assertNotNull(unbounded.get(1));
+        assertEquals(0, unbounded.getEvictionCount());
+
+        try {
+            new SupportDataCache(-2);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // only UNBOUNDED is negative
+        }
+    }
+
+    /**
+     * Test that the file leaves the raw support map as it is, and that the
+     * support data returned can be changed without changing the cached one.
+     */
+    public void testXTandemFile() throws Exception {
+        int[] sizes = {SupportDataCache.NO_CACHE, 1, SupportDataCache.UNBOUNDED};
+        for (int size : sizes) {
+            XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+            xTandemFile.setSupportDataCacheSize(size);
+            HashMap<String, String> rawMap = new HashMap<String, String>(xTandemFile.getXTandemParser().getSupportDataMap());
+
+            for (int i = 1; i <= xTandemFile.getSpectraNumber(); i++) {
+                SupportData supportData = xTandemFile.getSupportData(i);
+                assertNotNull(supportData.getXValuesHyperscoreArray());
+                supportData.setXValuesHyperscore(new ArrayList<Integer>());
+                supportData.setFragIonSpectrumDescription("changed");
+                SupportData again = xTandemFile.getSupportData(i);
+                assertNotSame(supportData, again);
+                assertTrue(again.getXValuesHyperscoreArray().length > 0);
+                assertFalse("changed".equals(again.getFragIonSpectrumDescription()));
+            }
+            assertEquals(rawMap, xTandemFile.getXTandemParser().getSupportDataMap());
+
+            SupportDataCache cache = xTandemFile.getSupportDataCache();
+            int spectra = xTandemFile.getSpectraNumber();
+            if (size == SupportDataCache.NO_CACHE) {
+                assertEquals(0, cache.getHitCount());
+                assertEquals(2 * spectra, cache.getMissCount());
+            } else {
+                assertEquals(spectra, cache.getHitCount());
+                assertEquals(spectra, cache.getMissCount());
+                assertEquals(size == 1 ? spectra - 1 : 0, cache.getEvictionCount());
+            }
+
+            // Still available after changing the cache
+            xTandemFile.setSupportDataCacheSize(2);
+            assertNotNull(xTandemFile.getSupportData(1).getXValuesHyperscoreArray());
+        }
+    }
+}
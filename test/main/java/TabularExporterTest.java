@@ -0,0 +1,187 @@
+package main.java;
+
+import de.proteinms.xtandemparser.export.TabularExporter;
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the tab and comma separated export of the matches.
+ */
+public class TabularExporterTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+    /**
+     * The label given to the first spectrum, with a comma, quotes, a tab and
+     * line breaks.
+     */
+    private static final String LABEL = "a,b \"c\"\td\ne\rf";
+    /**
+     * The number of columns of the matches.
+     */
+    private static final int PSM_COLUMNS = 24;
+    /**
+     * The index of the label column of the matches.
+     */
+    private static final int LABEL_COLUMN = 5;
+
+    private File iFile;
+    private XTandemResultStore iResultStore;
+
+    @Override
+    protected void setUp() throws Exception {
+        String content = XTandemParserTest.read(new File(TEST_FILE));
+        String label = "label=\"sp|P00032|PROT32_HUMAN Protein &amp; thing 32 OS=Homo sapiens\" type=\"model\"";
+        assertTrue(content.contains(label));
+        content = content.replace(label, "label=\"a,b &quot;c&quot;&#9;d&#10;e&#13;f\" type=\"model\"");
+        iFile = File.createTempFile("special", ".t.xml");
+        XTandemParserTest.write(content.getBytes("UTF-8"), iFile, false);
+        iResultStore = new XTandemFile(iFile.getPath()).getXTandemParser().getResultStore();
+        assertEquals(LABEL, iResultStore.getSpectrumLabel(0));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        iFile.delete();
+    }
+
+    /**
+     * Test that the comma separated values holding commas, quotes or line
+     * breaks are quoted as described in RFC 4180, and only these.
+     */
+    public void testCsvQuoting() throws Exception {
+        TabularExporter exporter = new TabularExporter(iResultStore);
+        exporter.setSeparator(TabularExporter.COMMA);
+        String output = export(exporter);
+        assertTrue(output.contains(",\"a,b \"\"c\"\"\td\ne\rf\","));
+        assertTrue(output.startsWith("spectrum_number,spectrum_id,"));
+
+        List<List<String>> rows = parseCsv(output);
+        assertEquals(iResultStore.getNumberOfDomains() + 1, rows.size());
+        Map<String, String> labels = labels();
+        int quoted = 0;
+        for (List<String> row : rows.subList(1, rows.size())) {
+            assertEquals(PSM_COLUMNS, row.size());
+            assertEquals(labels.get(row.get(0)), row.get(LABEL_COLUMN));
+            if (row.get(LABEL_COLUMN).equals(LABEL)) {
+                quoted++;
+            }
+        }
+        assertTrue(quoted > 0);
+        // the other values are written as they are, the label with six quotes
+        int quotes = 0;
+        for (int i = 0; i < output.length(); i++) {
+            if (output.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        assertEquals(6 * quoted, quotes);
+    }
+
+    /**
+     * Test that the tabs and line breaks of the tab separated values are
+     * replaced by spaces, the quotes are kept and no value is quoted.
+     */
+    public void testTsvCleaning() throws Exception {
+        for (int threads : new int[]{1, 3}) {
+            TabularExporter exporter = new TabularExporter(iResultStore);
+            exporter.setThreads(threads);
+            exporter.setChunkSize(1);
+            String output = export(exporter);
+            assertTrue(output.contains("\ta,b \"c\" d e f\t"));
+
+            String[] lines = output.split("\n", -1);
+            assertEquals("", lines[lines.length - 1]);
+            assertEquals(iResultStore.getNumberOfDomains() + 1, lines.length - 1);
+            Map<String, String> labels = labels();
+            for (int i = 1; i < lines.length - 1; i++) {
+                String[] row = lines[i].split("\t", -1);
+                assertEquals(PSM_COLUMNS, row.length);
+                assertEquals(labels.get(row[0]).replace('\t', ' ').replace('\n', ' ').replace('\r', ' '),
+                        row[LABEL_COLUMN]);
+            }
+        }
+
+        try {
+            new TabularExporter(iResultStore).setSeparator('"');
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the quote cannot separate values
+        }
+    }
+
+    /**
+     * Exports the matches to a string.
+     *
+     * @param aExporter the exporter
+     * @return the output
+     */
+    private static String export(TabularExporter aExporter) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        aExporter.exportPsms(Channels.newChannel(output));
+        return new String(output.toByteArray(), "UTF-8");
+    }
+
+    /**
+     * Returns the labels of the spectra.
+     *
+     * @return the labels indexed by spectrum number
+     */
+    private Map<String, String> labels() {
+        Map<String, String> labels = new HashMap<String, String>();
+        for (int s = 0; s < iResultStore.getNumberOfSpectra(); s++) {
+            labels.put(String.valueOf(iResultStore.getSpectrumNumber(s)), iResultStore.getSpectrumLabel(s));
+        }
+        return labels;
+    }
+
+    /**
+     * Parses comma separated values as described in RFC 4180, the rows
+     * ending with a line break.
+     *
+     * @param aText the text
+     * @return the rows of values
+     */
+    private static List<List<String>> parseCsv(String aText) {
+        List<List<String>> rows = new ArrayList<List<String>>();
+        List<String> row = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < aText.length(); i++) {
+            char c = aText.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < aText.length() && aText.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                assertEquals(0, value.length());
+                quoted = true;
+            } else if (c == ',' || c == '\n') {
+                row.add(value.toString());
+                value.setLength(0);
+                if (c == '\n') {
+                    rows.add(row);
+                    row = new ArrayList<String>();
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        assertFalse(quoted);
+        assertTrue(row.isEmpty());
+        return rows;
+    }
+}
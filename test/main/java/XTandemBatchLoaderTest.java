@@ -0,0 +1,203 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.XTandemBatchLoader;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tests loading many X!Tandem files concurrently.
+ */
+public class XTandemBatchLoaderTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the results are taken in the order of the paths or in the
+     * order in which the files finish.
+     */
+    public void testOrder() throws Exception {
+        List<String> paths = Arrays.asList(TEST_FILE, TEST_FILE, TEST_FILE, TEST_FILE);
+        for (boolean inputOrder : new boolean[]{true, false}) {
+            XTandemBatchLoader loader = new XTandemBatchLoader(paths, XTandemSection.all(), new ReverseExecutor(paths.size()));
+            loader.setInputOrder(inputOrder);
+            List<Integer> indexes = new ArrayList<Integer>();
+            XTandemBatchLoader.Result result;
+            while ((result = loader.take()) != null) {
+                assertNull(result.getError());
+                assertEquals(6, result.getXTandemFile().getSpectraNumber());
+                assertTrue(result.getParseTime() >= 0);
+                indexes.add(result.getIndex());
+            }
+            // the last file finishes first
+            assertEquals(inputOrder ? Arrays.asList(0, 1, 2, 3) : Arrays.asList(3, 2, 1, 0), indexes);
+            assertNull(loader.take());
+
+            try {
+                loader.setInputOrder(inputOrder);
+                fail();
+            } catch (IllegalStateException e) {
+                // already started
+            }
+        }
+    }
+
+    /**
+     * Test that the files are submitted as long as the budget of bytes in
+     * flight allows it, a file larger than the whole budget on its own, and
+     * that a compressed file counts with its estimated uncompressed size.
+     */
+    public void testBudget() throws Exception {
+        File gzipFile = File.createTempFile("small", ".t.xml.gz");
+        try {
+            XTandemParserTest.write(XTandemParserTest.read(new File(TEST_FILE)).getBytes("UTF-8"), gzipFile, true);
+            long size = new File(TEST_FILE).length();
+            long gzipSize = gzipFile.length();
+            String[] paths = {TEST_FILE, TEST_FILE, TEST_FILE, gzipFile.getPath(), TEST_FILE};
+            long[] estimatedSizes = {size, size, size, gzipSize * XTandemBatchLoader.COMPRESSION_RATIO, size};
+
+            long[] budgets = {1, size, 2 * size, 3 * size + size / 2, 10 * size};
+            for (long budget : budgets) {
+                CountingExecutor executor = new CountingExecutor();
+                XTandemBatchLoader loader = new XTandemBatchLoader(Arrays.asList(paths), XTandemSection.all(), executor);
+                loader.setMaxBytesInFlight(budget);
+                loader.setInputOrder(true);
+                int taken = 0;
+                XTandemBatchLoader.Result result;
+                while ((result = loader.take()) != null) {
+                    assertNull(result.getError());
+                    assertEquals(paths[taken], result.getPath());
+                    assertEquals(taken == 3 ? gzipSize : size, result.getFileSize());
+                    assertEquals(estimatedSizes[taken], result.getEstimatedSize());
+                    taken++;
+
+                    // The files run on the calling thread, the files in flight are the ones submitted and not taken
+                    long bytesInFlight = 0;
+                    for (int i = taken; i < executor.iSubmitted; i++) {
+                        bytesInFlight += estimatedSizes[i];
+                    }
+                    String message = budget + " " + taken;
+                    assertTrue(message, executor.iSubmitted - taken <= 1 || bytesInFlight <= budget);
+                    if (executor.iSubmitted < paths.length) {
+                        assertTrue(message, executor.iSubmitted > taken);
+                        assertTrue(message, bytesInFlight + estimatedSizes[executor.iSubmitted] > budget);
+                    }
+                }
+                assertEquals(paths.length, taken);
+            }
+        } finally {
+            gzipFile.delete();
+        }
+
+        try {
+            new XTandemBatchLoader(Arrays.asList(TEST_FILE), XTandemSection.all(), new CountingExecutor()).setMaxBytesInFlight(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the budget must be positive
+        }
+    }
+
+    /**
+     * Test that the files which cannot be loaded give results with the error,
+     * without stopping the other files.
+     */
+    public void testErrors() throws Exception {
+        File invalidFile = File.createTempFile("invalid", ".t.xml");
+        try {
+            XTandemParserTest.write("<html></html>".getBytes("UTF-8"), invalidFile, false);
+            String[] paths = {TEST_FILE, "testFiles/missing.t.xml", invalidFile.getPath(), TEST_FILE};
+            XTandemBatchLoader loader = new XTandemBatchLoader(Arrays.asList(paths), XTandemSection.all(), new CountingExecutor());
+            loader.setInputOrder(true);
+            for (int i = 0; i < paths.length; i++) {
+                XTandemBatchLoader.Result result = loader.take();
+                assertEquals(i, result.getIndex());
+                assertEquals(paths[i], result.getPath());
+                if (i == 1 || i == 2) {
+                    assertNotNull(result.getError());
+                    assertNull(result.getXTandemFile());
+                } else {
+                    assertNull(result.getError());
+                    assertNotNull(result.getXTandemFile());
+                }
+            }
+            assertNull(loader.take());
+        } finally {
+            invalidFile.delete();
+        }
+
+        // An executor rejecting the files
+        XTandemBatchLoader loader = new XTandemBatchLoader(Arrays.asList(TEST_FILE, TEST_FILE), XTandemSection.all(), new Executor() {
+            public void execute(Runnable aCommand) {
+                throw new RejectedExecutionException();
+            }
+        });
+        for (int i = 0; i < 2; i++) {
+            XTandemBatchLoader.Result result = loader.take();
+            assertTrue(result.getError() instanceof RejectedExecutionException);
+            assertNull(result.getXTandemFile());
+        }
+        assertNull(loader.take());
+    }
+
+    /**
+     * This executor runs the files on the calling thread and counts them.
+     */
+    private static class CountingExecutor implements Executor {
+
+        /**
+         * The number of files submitted.
+         */
+        private int iSubmitted = 0;
+
+        public void execute(Runnable aCommand) {
+            iSubmitted++;
+            aCommand.run();
+        }
+    }
+
+    /**
+     * This executor runs the files on separate threads once all are
+     * submitted, the last one first and every one after the next one has
+     * finished.
+     */
+    private static class ReverseExecutor implements Executor {
+
+        /**
+         * The number of files.
+         */
+        private int iFiles;
+        /**
+         * The files submitted.
+         */
+        private List<Runnable> iCommands = new ArrayList<Runnable>();
+
+        /**
+         * Creates an executor for the given number of files.
+         *
+         * @param aFiles the number of files
+         */
+        private ReverseExecutor(int aFiles) {
+            iFiles = aFiles;
+        }
+
+        public void execute(Runnable aCommand) {
+            iCommands.add(aCommand);
+            if (iCommands.size() == iFiles) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        for (int i = iCommands.size() - 1; i >= 0; i--) {
+                            iCommands.get(i).run();
+                        }
+                    }
+                }.start();
+            }
+        }
+    }
+}
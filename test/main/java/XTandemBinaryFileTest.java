@@ -0,0 +1,104 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.XTandemBinaryFile;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Tests saving parsed files to the binary format and loading them again.
+ */
+public class XTandemBinaryFileTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test a round trip without the support data.
+     */
+    public void testRoundTrip() throws Exception {
+        XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+        File binaryFile = File.createTempFile("small", ".xtb");
+        try {
+            XTandemBinaryFile.save(xTandemFile, binaryFile.getPath(), false);
+            XTandemFile loaded = XTandemBinaryFile.load(binaryFile.getPath());
+            try {
+                assertEquals(TEST_FILE, loaded.getFileName());
+                assertEquals(6, loaded.getSpectraNumber());
+                assertRawMapsEqual(xTandemFile.getXTandemParser(), loaded.getXTandemParser());
+                assertTrue(loaded.getXTandemParser().getSupportDataMap().isEmpty());
+            } finally {
+                loaded.close();
+            }
+        } finally {
+            binaryFile.delete();
+        }
+    }
+
+    /**
+     * Test a round trip with the support data, including the histograms of
+     * the a and x ions derived from the b and y ion histograms.
+     */
+    public void testRoundTripWithSupportData() throws Exception {
+        XTandemFile xTandemFile = new XTandemFile(TEST_FILE);
+        File binaryFile = File.createTempFile("small", ".xtb");
+        try {
+            XTandemBinaryFile.save(xTandemFile, binaryFile.getPath(), true);
+            XTandemFile loaded = XTandemBinaryFile.load(binaryFile.getPath());
+            try {
+                assertEquals(6, loaded.getSpectraNumber());
+                assertRawMapsEqual(xTandemFile.getXTandemParser(), loaded.getXTandemParser());
+                for (int i = 1; i <= xTandemFile.getSpectraNumber(); i++) {
+                    SupportData expected = xTandemFile.getSupportData(i);
+                    SupportData actual = loaded.getSupportData(i);
+                    assertEquals(expected.getFragIonSpectrumDescription(), actual.getFragIonSpectrumDescription());
+                    assertEquals(expected.getHyper_a0(), actual.getHyper_a0(), 0.0);
+                    assertEquals(expected.getXValuesFragIonMass2Charge(), actual.getXValuesFragIonMass2Charge());
+                    assertEquals(expected.getYValuesFragIonMass2Charge(), actual.getYValuesFragIonMass2Charge());
+                    assertEquals(expected.getA_ionLabel(), actual.getA_ionLabel());
+                    assertEquals(expected.getXValuesaIons(), actual.getXValuesaIons());
+                    assertEquals(expected.getYValuesaIons(), actual.getYValuesaIons());
+                    assertEquals(expected.getX_ionLabel(), actual.getX_ionLabel());
+                    assertEquals(expected.getXValuesxIons(), actual.getXValuesxIons());
+                    assertFalse(actual.getXValuesaIons().isEmpty());
+                }
+            } finally {
+                loaded.close();
+            }
+        } finally {
+            binaryFile.delete();
+        }
+    }
+
+    /**
+     * Test that a file which is not in the binary format is rejected.
+     */
+    public void testNotBinary() throws Exception {
+        try {
+            XTandemBinaryFile.load(TEST_FILE);
+            fail();
+        } catch (java.io.IOException e) {
+            assertTrue(e.getMessage().startsWith("Not an X!Tandem binary file"));
+        }
+    }
+
+    /**
+     * Asserts that the raw maps and the parameters of the two parsers are
+     * equal, including the a, b, x and y ion values of the scoring ions.
+     *
+     * @param aExpected the parser of the X!Tandem file
+     * @param aActual the parser loaded from the binary file
+     */
+    private static void assertRawMapsEqual(XTandemParser aExpected, XTandemParser aActual) {
+        assertEquals(aExpected.getRawSpectrumMap(), aActual.getRawSpectrumMap());
+        assertEquals(aExpected.getRawPeptideMap(), aActual.getRawPeptideMap());
+        assertEquals(aExpected.getRawProteinMap(), aActual.getRawProteinMap());
+        assertEquals(aExpected.getInputParamMap(), aActual.getInputParamMap());
+        assertEquals(aExpected.getPerformParamMap(), aActual.getPerformParamMap());
+        assertTrue(aActual.getRawPeptideMap().containsKey("a_ions_s1_p1_d1"));
+        assertTrue(aActual.getRawPeptideMap().containsKey("x_ions_s1_p1_d1"));
+        assertFalse(aActual.getRawPeptideMap().containsKey("c_ions_s1_p1_d1"));
+    }
+}
@@ -0,0 +1,115 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Tests that the fast mode parses X!Tandem files like the StAX parser.
+ */
+public class XTandemFastParserTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test the test file as written by X!Tandem.
+     */
+    public void testParity() throws Exception {
+        assertParity(XTandemParserTest.read(new File(TEST_FILE)));
+    }
+
+    /**
+     * Test a file with Windows line endings.
+     */
+    public void testCrlf() throws Exception {
+        assertParity(XTandemParserTest.read(new File(TEST_FILE)).replace("\n", "\r\n"));
+    }
+
+    /**
+     * Test a file with single-quoted attribute values.
+     */
+    public void testSingleQuotes() throws Exception {
+        String content = XTandemParserTest.read(new File(TEST_FILE));
+        String quoted = content.replaceAll("=\"([^\"']*)\"", "='$1'");
+        assertFalse(quoted.equals(content));
+        assertParity(quoted);
+    }
+
+    /**
+     * Test a file with comments between and inside the elements.
+     */
+    public void testComments() throws Exception {
+        String content = XTandemParserTest.read(new File(TEST_FILE));
+        content = content.replace("<group id=", "<!-- model group -->\n<group id=");
+        content = content.replace("</domain>", "<!-- <domain id=\"0\"> --></domain>");
+        content = content.replace("<note label=\"description\">", "<note label=\"description\"><!-- description -->");
+        content = content.replace("<group label=\"input parameters\"", "<!-- parameters -->\n<group label=\"input parameters\"");
+        assertParity(content);
+    }
+
+    /**
+     * Test a file with decimal and hexadecimal character references in the
+     * attribute values and the text.
+     */
+    public void testCharacterReferences() throws Exception {
+        String content = XTandemParserTest.read(new File(TEST_FILE));
+        content = content.replace("Protein &amp; thing", "Protein &#38; &#x41;thing");
+        content = content.replace("&lt;cmpd&gt;", "&#60;cmpd&#x3E;");
+        content = content.replace(" seq=\"", " seq=\"&#x4D;");
+        XTandemParser parser = assertParity(content);
+        assertTrue(parser.getRawProteinMap().toString().contains("Protein & Athing"));
+        assertTrue(parser.getRawPeptideMap().get("domainseq_s1_p1_d1").startsWith("M"));
+    }
+
+    /**
+     * Test a modification without a mass, which is tolerated as a missing
+     * value.
+     */
+    public void testModificationWithoutMass() throws Exception {
+        String content = XTandemParserTest.read(new File(TEST_FILE)).replaceFirst(" modified=\"57.021464\"", "");
+        XTandemParser parser = assertParity(content);
+        int positions = 0;
+        int masses = 0;
+        for (String key : parser.getRawModMap().keySet()) {
+            if (key.startsWith("at_")) {
+                positions++;
+            } else if (key.startsWith("modified_")) {
+                masses++;
+            }
+        }
+        assertTrue(positions > 1);
+        assertEquals(positions - 1, masses);
+    }
+
+    /**
+     * Asserts that the fast mode and the StAX parser give the same results
+     * for the given content.
+     *
+     * @param aContent the content of the X!Tandem file
+     * @return the parser in fast mode
+     */
+    private static XTandemParser assertParity(String aContent) throws Exception {
+        File file = File.createTempFile("parity", ".t.xml");
+        try {
+            XTandemParserTest.write(aContent.getBytes("UTF-8"), file, false);
+            XTandemParser expected = new XTandemParser(file);
+            XTandemParserOptions fastMode = new XTandemParserOptions();
+            fastMode.setFastMode(true);
+            XTandemParser actual = new XTandemParser(file, fastMode);
+            assertEquals(6, expected.getNumberOfSpectra());
+            assertEquals(expected.getNumberOfSpectra(), actual.getNumberOfSpectra());
+            assertEquals(expected.getRawSpectrumMap(), actual.getRawSpectrumMap());
+            assertEquals(expected.getRawPeptideMap(), actual.getRawPeptideMap());
+            assertEquals(expected.getRawProteinMap(), actual.getRawProteinMap());
+            assertEquals(expected.getRawModMap(), actual.getRawModMap());
+            assertEquals(expected.getSupportDataMap(), actual.getSupportDataMap());
+            assertEquals(expected.getInputParamMap(), actual.getInputParamMap());
+            assertEquals(expected.getPerformParamMap(), actual.getPerformParamMap());
+            return actual;
+        } finally {
+            file.delete();
+        }
+    }
+}
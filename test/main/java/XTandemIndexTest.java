@@ -0,0 +1,154 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.XTandemIndex;
+import de.proteinms.xtandemparser.xtandem.RandomAccessXTandemFile;
+import de.proteinms.xtandemparser.xtandem.Spectrum;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Tests the index of the model groups of X!Tandem files.
+ */
+public class XTandemIndexTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test looking up the spectra by number, id and title.
+     */
+    public void testLookup() throws Exception {
+        File file = copyTestFile();
+        try {
+            XTandemIndex index = XTandemIndex.load(file);
+            assertEquals(6, index.getNumberOfSpectra());
+            assertEquals(3, index.getNumberOfParameterGroups());
+            assertEquals(59295, index.getSpectrumId(1));
+            assertEquals(1, index.getSpectrumNumberForId(59295));
+            assertEquals(3, index.getSpectrumNumberForId(71228));
+            assertEquals(-1, index.getSpectrumNumberForId(1));
+            assertEquals("Spectrum 2 scans: 16516 <cmpd> RTINSECONDS=6", index.getTitle(2));
+            assertEquals(2, index.getSpectrumNumberForTitle("Spectrum 2 scans: 16516 <cmpd> RTINSECONDS=6"));
+            assertEquals(-1, index.getSpectrumNumberForTitle("Spectrum 2"));
+            assertTrue(XTandemIndex.getIndexFile(file).exists());
+
+            RandomAccessXTandemFile xTandemFile = new RandomAccessXTandemFile(file);
+            try {
+                Spectrum spectrum = xTandemFile.getSpectrum(xTandemFile.getSpectrumNumberForId(71228));
+                assertEquals(71228, spectrum.getSpectrumId());
+                assertEquals(3, spectrum.getSpectrumNumber());
+            } finally {
+                xTandemFile.close();
+            }
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Test that the index file is used while up to date and rebuilt once
+     * the X!Tandem file changed or if it is corrupt.
+     */
+    public void testStaleIndexFile() throws Exception {
+        File file = copyTestFile();
+        try {
+            File indexFile = XTandemIndex.getIndexFile(file);
+            XTandemIndex.load(file);
+            assertTrue(XTandemIndex.read(indexFile).isValidFor(file));
+
+            // Drop the last spectrum, the index file is stale
+            String content = XTandemParserTest.read(file);
+            int lastGroup = content.lastIndexOf("<group id=");
+            int parameters = content.indexOf("<group label=\"input parameters\"");
+            XTandemParserTest.write((content.substring(0, lastGroup) + content.substring(parameters)).getBytes("UTF-8"), file, false);
+            file.setLastModified(file.lastModified() + 2000);
+            assertFalse(XTandemIndex.read(indexFile).isValidFor(file));
+
+            XTandemIndex index = XTandemIndex.load(file);
+            assertEquals(5, index.getNumberOfSpectra());
+            assertEquals(-1, index.getSpectrumNumberForId(9162));
+            assertTrue(XTandemIndex.read(indexFile).isValidFor(file));
+
+            // A corrupt index file is rebuilt as well
+            write("not an index".getBytes("UTF-8"), indexFile);
+            assertEquals(5, XTandemIndex.load(file).getNumberOfSpectra());
+            assertEquals(5, XTandemIndex.read(indexFile).getNumberOfSpectra());
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Test that compressed, empty and non X!Tandem files are rejected
+     * without writing an index file.
+     */
+    public void testInvalidFiles() throws Exception {
+        assertNotIndexed(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0});
+        assertNotIndexed("BZh91AY&SY".getBytes("UTF-8"));
+        assertNotIndexed(new byte[0]);
+        assertNotIndexed("just some text".getBytes("UTF-8"));
+        assertNotIndexed("<?xml version=\"1.0\"?>\n<mzML>\n</mzML>\n".getBytes("UTF-8"));
+    }
+
+    /**
+     * Asserts that a file with the given content cannot be indexed and that
+     * no index file is written.
+     *
+     * @param aContent the content of the file
+     */
+    private static void assertNotIndexed(byte[] aContent) throws IOException {
+        File file = File.createTempFile("invalid", ".t.xml");
+        try {
+            write(aContent, file);
+            try {
+                XTandemIndex.load(file);
+                fail();
+            } catch (IOException e) {
+                // expected
+            }
+            assertFalse(XTandemIndex.getIndexFile(file).exists());
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Copies the test file to a temporary file, so that the index file is
+     * written next to the copy.
+     *
+     * @return the copy
+     */
+    private static File copyTestFile() throws IOException {
+        File file = File.createTempFile("small", ".t.xml");
+        write(XTandemParserTest.read(new File(TEST_FILE)).getBytes("UTF-8"), file);
+        return file;
+    }
+
+    /**
+     * Writes bytes to a file.
+     *
+     * @param aContent the bytes
+     * @param aFile the file
+     */
+    private static void write(byte[] aContent, File aFile) throws IOException {
+        OutputStream outputStream = new FileOutputStream(aFile);
+        try {
+            outputStream.write(aContent);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Deletes a file and its index file.
+     *
+     * @param aFile the file
+     */
+    private static void delete(File aFile) {
+        XTandemIndex.getIndexFile(aFile).delete();
+        aFile.delete();
+    }
+}
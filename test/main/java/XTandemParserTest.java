@@ -0,0 +1,322 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.StringDictionary;
+import de.proteinms.xtandemparser.parser.XTandemGroupListener;
+import de.proteinms.xtandemparser.parser.XTandemParser;
+import de.proteinms.xtandemparser.parser.XTandemParserOptions;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests parsing X!Tandem files on several threads.
+ */
+public class XTandemParserTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that the spectra of a file split into several chunks are merged in
+     * file order.
+     */
+    public void testParallelOrder() throws Exception {
+        String content = read(new File(TEST_FILE));
+        int modelsStart = content.indexOf("<group id=");
+        int modelsEnd = content.indexOf("<group label=\"input parameters\"");
+        String models = content.substring(modelsStart, modelsEnd);
+
+        // Distinct copies of the model groups, large enough for several chunks
+        StringBuilder builder = new StringBuilder(content.substring(0, modelsStart));
+        Pattern groupId = Pattern.compile("<group id=\"(\\d+)\"");
+        int copies = 80;
+        for (int copy = 0; copy < copies; copy++) {
+            Matcher matcher = groupId.matcher(models);
+            StringBuffer copied = new StringBuffer();
+            while (matcher.find()) {
+                matcher.appendReplacement(copied, "<group id=\"" + (copy * 100000 + Integer.parseInt(matcher.group(1))) + "\"");
+            }
+            matcher.appendTail(copied);
+            builder.append(copied);
+        }
+        builder.append(content.substring(modelsEnd));
+        assertTrue(builder.length() > 2 << 20);
+
+        File file = File.createTempFile("large", ".t.xml");
+        try {
+            write(builder.toString().getBytes("UTF-8"), file, false);
+            XTandemParser expected = new XTandemParser(file);
+            XTandemParser actual = new XTandemParser(file, threads(4));
+            assertEquals(6 * copies, actual.getNumberOfSpectra());
+            assertEquals(expected.getRawSpectrumMap(), actual.getRawSpectrumMap());
+            assertEquals(expected.getRawPeptideMap(), actual.getRawPeptideMap());
+            assertEquals(expected.getSupportDataMap(), actual.getSupportDataMap());
+            assertEquals(expected.getInputParamMap(), actual.getInputParamMap());
+            for (int i = 0; i < 6 * copies; i++) {
+                assertEquals(expected.getResultStore().getSpectrumId(i), actual.getResultStore().getSpectrumId(i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test an X!Tandem file of the results of a parser reading the file
+     * through memory mapped windows.
+     */
+    public void testMemoryMappedXTandemFile() throws Exception {
+        XTandemParserOptions options = new XTandemParserOptions();
+        options.setMemoryMapped(true);
+        XTandemParser parser = new XTandemParser(new File(TEST_FILE), options);
+        XTandemFile xTandemFile = new XTandemFile(parser, TEST_FILE);
+        XTandemFile expected = new XTandemFile(TEST_FILE);
+        assertEquals(TEST_FILE, xTandemFile.getFileName());
+        assertEquals(6, xTandemFile.getSpectraNumber());
+        assertEquals(6, xTandemFile.getSpectraList().size());
+        for (int i = 1; i <= 6; i++) {
+            assertEquals(expected.getSpectrum(i).getSpectrumId(), xTandemFile.getSpectrum(i).getSpectrumId());
+            assertEquals(expected.getPeptideMap().getAllPeptides(i).size(), xTandemFile.getPeptideMap().getAllPeptides(i).size());
+            assertEquals(expected.getSupportData(i).getFragIonSpectrumDescription(), xTandemFile.getSupportData(i).getFragIonSpectrumDescription());
+        }
+        assertEquals(expected.getInputParameters().getSpectrumPath(), xTandemFile.getInputParameters().getSpectrumPath());
+    }
+
+    /**
+     * Test that a gzip compressed file is decompressed when parsed in
+     * parallel.
+     */
+    public void testParallelGzip() throws Exception {
+        File file = File.createTempFile("small", ".t.xml.gz");
+        try {
+            write(read(new File(TEST_FILE)).getBytes("UTF-8"), file, true);
+            XTandemParser expected = new XTandemParser(new File(TEST_FILE));
+            XTandemParser actual = new XTandemParser(file, threads(2));
+            assertEquals(6, actual.getNumberOfSpectra());
+            assertEquals(expected.getRawSpectrumMap(), actual.getRawSpectrumMap());
+            assertEquals(expected.getRawPeptideMap(), actual.getRawPeptideMap());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that an empty file, a file without a bioml root element and a
+     * bzip2 compressed file are rejected instead of yielding no spectra, in
+     * every mode and from files as well as streams.
+     */
+    public void testInvalidFiles() throws Exception {
+        assertFails(new byte[0], SAXException.class);
+        assertFails("<?xml version=\"1.0\"?>\n<mzML>\n</mzML>\n".getBytes("UTF-8"), SAXException.class);
+        assertFails("<?xml version=\"1.0\"?>\n<mzML>\n<group type=\"model\" id=\"1\" z=\"2\"/>\n</mzML>\n".getBytes("UTF-8"), SAXException.class);
+        assertFails("BZh91AY&SY".getBytes("UTF-8"), IOException.class);
+    }
+
+    /**
+     * Asserts that parsing the given content fails in every mode.
+     *
+     * @param aContent the content of the file
+     * @param aExceptionClass the exception expected
+     */
+    private static void assertFails(byte[] aContent, Class<? extends Exception> aExceptionClass) throws IOException {
+        File file = File.createTempFile("invalid", ".t.xml");
+        try {
+            write(aContent, file, false);
+            for (int mode = 0; mode < 8; mode++) {
+                XTandemParserOptions options = threads((mode & 1) != 0 ? 2 : 1);
+                options.setFastMode((mode & 2) != 0);
+                try {
+                    if ((mode & 4) != 0) {
+                        new XTandemParser(new ByteArrayInputStream(aContent), options);
+                    } else {
+                        new XTandemParser(file, options);
+                    }
+                    fail("mode " + mode);
+                } catch (Exception e) {
+                    assertTrue(mode + ": " + e, aExceptionClass.isInstance(e));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that gzip compressed and memory mapped input is parsed on several
+     * threads in fast mode, from files as well as streams.
+     */
+    public void testParallelInputs() throws Exception {
+        byte[] content = read(new File(TEST_FILE)).getBytes("UTF-8");
+        File file = File.createTempFile("small", ".t.xml.gz");
+        try {
+            write(content, file, true);
+            XTandemParser expected = new XTandemParser(new File(TEST_FILE));
+            for (int mode = 0; mode < 4; mode++) {
+                XTandemParserOptions options = threads(2);
+                options.setFastMode((mode & 1) != 0);
+                XTandemParser actual;
+                if ((mode & 2) != 0) {
+                    options.setMemoryMapped(true);
+                    actual = new XTandemParser(file, options);
+                } else {
+                    actual = new XTandemParser(new FileInputStream(file), options);
+                }
+                assertEquals(6, actual.getNumberOfSpectra());
+                assertEquals(expected.getRawSpectrumMap(), actual.getRawSpectrumMap());
+                assertEquals(expected.getRawPeptideMap(), actual.getRawPeptideMap());
+                assertEquals(expected.getSupportDataMap(), actual.getSupportDataMap());
+                assertEquals(expected.getInputParamMap(), actual.getInputParamMap());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that the raw maps hold the numbers as written in the file, also
+     * the ones whose text cannot be given back from their value.
+     */
+    public void testRawMapTexts() throws Exception {
+        XTandemParser parser = new XTandemParser(new File(TEST_FILE));
+        assertEquals("8.0e-01", parser.getRawSpectrumMap().get("expect1"));
+        assertEquals("80572", parser.getRawSpectrumMap().get("maxI1"));
+        assertEquals("974.755078", parser.getRawSpectrumMap().get("mh1"));
+        assertEquals("0.2580", parser.getRawPeptideMap().get("delta_s1_p1_d1"));
+        assertEquals("57.021464", parser.getRawModMap().get("modified_s1_p2_d1_m1"));
+
+        String[] texts = {"+1.5", "007", "1.23456789012345678", "1E5", "1.0E+05", "-0.0", "1.0e-100", "abc",
+            "1.0e+005", "0.000", "12.", ".5", "1.50", "-2.5e-07", "0.0e+00", "1e-05"};
+        Matcher matcher = Pattern.compile(" expect=\"[^\"]*\"").matcher(read(new File(TEST_FILE)));
+        StringBuffer content = new StringBuffer();
+        for (int i = 0; i < texts.length && matcher.find(); i++) {
+            matcher.appendReplacement(content, " expect=\"" + texts[i] + "\"");
+        }
+        matcher.appendTail(content);
+
+        File file = File.createTempFile("texts", ".t.xml");
+        try {
+            write(content.toString().getBytes("UTF-8"), file, false);
+            XTandemParserOptions fastMode = new XTandemParserOptions();
+            fastMode.setFastMode(true);
+            XTandemParser[] parsers = {new XTandemParser(file), new XTandemParser(file, fastMode), new XTandemParser(file, threads(2))};
+            for (XTandemParser textParser : parsers) {
+                HashSet<String> values = new HashSet<String>();
+                values.addAll(textParser.getRawSpectrumMap().values());
+                values.addAll(textParser.getRawProteinMap().values());
+                values.addAll(textParser.getRawPeptideMap().values());
+                for (String text : texts) {
+                    assertTrue(text, values.contains(text));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that the parser options combine, e.g., parsing in fast mode on
+     * several threads from a memory mapped file, and give the same results as
+     * the default options.
+     */
+    public void testOptionCombinations() throws Exception {
+        File file = new File(TEST_FILE);
+        for (boolean skipDetails : new boolean[]{false, true}) {
+            XTandemParser expected = new XTandemParser(file, skipDetails);
+            for (int combination = 0; combination < 16; combination++) {
+                XTandemParserOptions options = new XTandemParserOptions();
+                if (skipDetails) {
+                    options.setSections(XTandemSection.identifications());
+                    options.setSkipDetails(true);
+                }
+                options.setFastMode((combination & 1) != 0);
+                options.setMemoryMapped((combination & 2) != 0);
+                options.setThreads((combination & 4) != 0 ? 2 : 1);
+                options.setStringDictionary((combination & 8) != 0 ? new StringDictionary() : null);
+                XTandemParser actual = new XTandemParser(file, options);
+                String message = combination + (skipDetails ? " skipping details" : "");
+                assertEquals(message, expected.getNumberOfSpectra(), actual.getNumberOfSpectra());
+                assertEquals(message, expected.getRawSpectrumMap(), actual.getRawSpectrumMap());
+                assertEquals(message, expected.getRawPeptideMap(), actual.getRawPeptideMap());
+                assertEquals(message, expected.getRawModMap(), actual.getRawModMap());
+                assertEquals(message, expected.getSupportDataMap(), actual.getSupportDataMap());
+                assertEquals(message, expected.getInputParamMap(), actual.getInputParamMap());
+            }
+        }
+
+        XTandemParserOptions options = threads(2);
+        options.setGroupListener(new XTandemGroupListener() {
+            public void groupParsed(XTandemParser aParser, int aSpectrumNumber) {
+            }
+        });
+        try {
+            new XTandemParser(file, options);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // streaming on several threads is not supported
+        }
+    }
+
+    /**
+     * Returns the options parsing on the given number of threads.
+     *
+     * @param aThreads the number of threads
+     * @return the options
+     */
+    static XTandemParserOptions threads(int aThreads) {
+        XTandemParserOptions options = new XTandemParserOptions();
+        options.setThreads(aThreads);
+        return options;
+    }
+
+    /**
+     * Reads a file as UTF-8.
+     *
+     * @param aFile the file
+     * @return the content
+     */
+    static String read(File aFile) throws IOException {
+        InputStream inputStream = new FileInputStream(aFile);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes bytes to a file.
+     *
+     * @param aContent the bytes
+     * @param aFile the file
+     * @param aGzip if true the bytes are gzip compressed
+     */
+    static void write(byte[] aContent, File aFile, boolean aGzip) throws IOException {
+        OutputStream outputStream = new FileOutputStream(aFile);
+        if (aGzip) {
+            outputStream = new GZIPOutputStream(outputStream);
+        }
+        try {
+            outputStream.write(aContent);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package main.java;
+
+import de.proteinms.xtandemparser.parser.XTandemResultStore;
+import de.proteinms.xtandemparser.parser.XTandemSection;
+import de.proteinms.xtandemparser.xtandem.Domain;
+import de.proteinms.xtandemparser.xtandem.Peptide;
+import de.proteinms.xtandemparser.xtandem.SupportData;
+import de.proteinms.xtandemparser.xtandem.XTandemFile;
+import junit.framework.TestCase;
+
+import java.util.EnumSet;
+
+/**
+ * Tests loading only some sections of an X!Tandem file.
+ */
+public class XTandemSectionTest extends TestCase {
+
+    private static final String TEST_FILE = "testFiles/small.t.xml";
+
+    /**
+     * Test that each section on its own loads the values of the section and
+     * none of the values of the other sections.
+     */
+    public void testSingleSections() throws Exception {
+        for (XTandemSection section : XTandemSection.values()) {
+            XTandemFile xTandemFile = new XTandemFile(TEST_FILE, EnumSet.of(section));
+            assertLoaded(xTandemFile, EnumSet.of(section), false);
+        }
+    }
+
+    /**
+     * Test that all the sections load the same values as the default
+     * constructor.
+     */
+    public void testAllSections() throws Exception {
+        assertLoaded(new XTandemFile(TEST_FILE, XTandemSection.all()), XTandemSection.all(), false);
+        assertLoaded(new XTandemFile(TEST_FILE), XTandemSection.all(), false);
+    }
+
+    /**
+     * Test that the identification sections load their values in full, while
+     * the skipDetails constructor also skips the details inside these
+     * sections.
+     */
+    public void testIdentifications() throws Exception {
+        assertLoaded(new XTandemFile(TEST_FILE, XTandemSection.identifications()), XTandemSection.identifications(), false);
+        assertLoaded(new XTandemFile(TEST_FILE, true), XTandemSection.identifications(), true);
+    }
+
+    /**
+     * Asserts which getters of a file return data.
+     *
+     * @param aXTandemFile the file
+     * @param aSections the sections the file was loaded with
+     * @param aSkipDetails true if the details were skipped
+     */
+    private static void assertLoaded(XTandemFile aXTandemFile, EnumSet<XTandemSection> aSections, boolean aSkipDetails) {
+        String message = aSections + (aSkipDetails ? " skipping details" : "");
+        boolean spectra = aSections.contains(XTandemSection.SPECTRA);
+        boolean peptides = aSections.contains(XTandemSection.PEPTIDES);
+        boolean domains = aSections.contains(XTandemSection.DOMAINS);
+        boolean modifications = aSections.contains(XTandemSection.MODIFICATIONS);
+        boolean descriptions = aSections.contains(XTandemSection.PROTEIN_DESCRIPTIONS);
+        boolean fragmentSpectra = aSections.contains(XTandemSection.FRAGMENT_SPECTRA);
+
+        // The spectrum ids are always loaded
+        assertEquals(message, 6, aXTandemFile.getSpectraNumber());
+        assertEquals(message, 59295, aXTandemFile.getSpectrum(1).getSpectrumId());
+        assertEquals(message, spectra && !aSkipDetails, !Double.isNaN(aXTandemFile.getSpectrum(1).getPrecursorMh()));
+
+        // The peptide entries are created for any of their child sections, the domain entries for the modifications
+        assertEquals(message, peptides || domains || modifications || descriptions, aXTandemFile.getPeptideMap().getNumberOfPeptides(1) > 0);
+        if (peptides || domains || modifications || descriptions) {
+            Peptide peptide = aXTandemFile.getPeptideMap().getPeptideByIndex(1, 1);
+            assertEquals(message, peptides && !aSkipDetails, peptide.getSequence().length() > 0);
+            assertEquals(message, peptides && !aSkipDetails, peptide.getFastaFilePath() != null);
+            assertEquals(message, domains || modifications, !peptide.getDomains().isEmpty());
+        }
+        if (domains || modifications) {
+            Domain domain = aXTandemFile.getPeptideMap().getPeptideByIndex(1, 1).getDomains().get(0);
+            assertEquals(message, domains, domain.getDomainID() != null);
+            assertEquals(message, domains, domain.getDomainSequence() != null);
+            assertEquals(message, domains && !aSkipDetails, domain.getUpFlankSequence() != null);
+            // The modifications are fixed or variable depending on the parameters
+            assertEquals(message, modifications, !aXTandemFile.getModificationMap().getAllFixedModifications().isEmpty()
+                    || !aXTandemFile.getModificationMap().getAllVariableModifications().isEmpty());
+        }
+
+        XTandemResultStore resultStore = aXTandemFile.getXTandemParser().getResultStore();
+        assertEquals(message, descriptions && !aSkipDetails,
+                resultStore.getNumberOfPeptides() > 0 && resultStore.getProteinDescription(0) != null);
+
+        SupportData supportData = aXTandemFile.getSupportData(1);
+        assertEquals(message, aSections.contains(XTandemSection.HISTOGRAMS) && !aSkipDetails,
+                supportData.getXValuesHyperscoreArray() != null);
+        assertEquals(message, (spectra || fragmentSpectra) && !aSkipDetails, supportData.getFragIonSpectrumDescription() != null);
+        assertEquals(message, fragmentSpectra && !aSkipDetails,
+                supportData.getXValuesFragIonMass2ChargeArray() != null);
+
+        assertEquals(message, aSections.contains(XTandemSection.PARAMETERS),
+                aXTandemFile.getInputParameters().getSpectrumPath() != null);
+    }
+}